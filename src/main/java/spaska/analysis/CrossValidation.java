@@ -1,17 +1,24 @@
 package spaska.analysis;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import spaska.classifiers.IClassifier;
+import spaska.classifiers.util.Classifiers;
 import spaska.data.Attribute.ValueType;
 import spaska.data.Dataset;
+import spaska.data.FoldPlan;
 import spaska.data.Instance;
 import spaska.data.NominalValue;
 import spaska.data.Value;
@@ -31,6 +38,13 @@ import spaska.statistics.ClassifierStatistics;
  * evaluate on the former</li>
  * </ol>
  * 
+ * <p>
+ * With more than one thread the folds are built and tested at the same time,
+ * every fold on its own copy of the classifier (see
+ * {@link Classifiers#copy(IClassifier)}). The results of the folds are added
+ * to the statistics in the order of the folds, so they do not depend on the
+ * number of threads.
+ * </p>
  */
 public final class CrossValidation implements IAnalyzer {
 
@@ -44,6 +58,7 @@ public final class CrossValidation implements IAnalyzer {
     public static Map<String, String> getParameters() {
         Map<String, String> parameters = new HashMap<String, String>();
         parameters.put(FOLDS, String.valueOf(DEFAULT_NUMBER_OF_FOLDS));
+        parameters.put(THREADS, "1");
         return parameters;
     }
 
@@ -51,11 +66,13 @@ public final class CrossValidation implements IAnalyzer {
             .getLogger(CrossValidation.class);
 
     private static final String FOLDS = "folds";
+    private static final String THREADS = "threads";
 
     private int folds;
     private Dataset data;
     private IClassifier classifier;
     private int seed;
+    private int threads = 1;
 
     /**
      * Constructor for the crossvalidationa analyzer.
@@ -160,27 +177,68 @@ public final class CrossValidation implements IAnalyzer {
         this.seed = seed;
     }
 
+    /**
+     * Get the number of threads that build and test the folds.
+     * 
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the number of threads that build and test the folds. With one
+     * thread all folds are built on the classifier of this analyzer one after
+     * the other, with more threads every fold is built on a copy of it.
+     * 
+     * @param threads
+     *            the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: "
+                    + threads);
+        }
+        this.threads = threads;
+    }
+
     @Override
     public ClassifierStatistics analyze(Dataset dataset) {
         setData(dataset);
 
         long startTime = System.currentTimeMillis();
 
-        // how many elements will have every dataset
-        int[] datasetsCount = new int[folds];
+        if (threads > 1 && folds > 1) {
+            List<Fold> tasks = createFolds(dataset);
+            runAll(tasks, Math.min(threads, folds));
+            ClassifierStatistics result = collect(tasks);
+            result.setTestTime(System.currentTimeMillis() - startTime);
+            return result;
+        }
 
-        List<Instance> instances = data.getElements();
-        int instancesCount = instances.size();
+        FoldPlan plan = data.getFoldPlan(folds, seed);
+        ClassifierStatistics result = createStatistics();
 
-        int instancesInGroup = instancesCount / folds;
-        Arrays.fill(datasetsCount, instancesInGroup);
-        int cnt = instancesInGroup * folds;
-        int tmpCnt = 0;
-        while (cnt++ < instancesCount) {
-            datasetsCount[tmpCnt++]++;
+        for (int testInd = 0; testInd < folds; testInd++) {
+            // build classifier for all test datasets
+            classifier.buildClassifier(plan.getTrainSet(testInd));
+
+            // test classifier
+            for (Instance currentInstance : plan.getTestSet(testInd)
+                    .getElements()) {
+                Value v = classifier.classifyInstance(currentInstance);
+                addInfo(result, currentInstance, v);
+            }
         }
 
-        Dataset[] datasets = data.getSubDataSets(datasetsCount, seed);
+        result.setTestTime(System.currentTimeMillis() - startTime);
+        result.setAdditionalInfo(String.format(
+                "Additional info :\n------------------\n%s",
+                classifier.toString()));
+        return result;
+    }
+
+    private ClassifierStatistics createStatistics() {
         int classIndex = data.getClassIndex();
         ValueType type = data.getAttributes().get(classIndex).getType();
         ClassifierStatistics result = new ClassifierStatistics(type);
@@ -188,51 +246,191 @@ public final class CrossValidation implements IAnalyzer {
             result.setClassNames(data.getAllClassNamesArray());
         }
         result.setAlgorithmName(classifier.getName());
+        return result;
+    }
 
-        for (int testInd = 0; testInd < folds; testInd++) {
-            // build classifier for all test datasets
-            // first merge them
-            Dataset[] testDatasets = new Dataset[datasets.length - 1];
-            tmpCnt = 0;
-            Dataset testDataset = null;
-            for (int i = 0; i < folds; i++) {
-                if (i == testInd) {
-                    testDataset = datasets[i];
-                    continue;
-                }
-                testDatasets[tmpCnt++] = datasets[i];
-            }
-            Dataset trainDataset = Dataset.merge(testDatasets);
-
-            classifier.buildClassifier(trainDataset);
+    private void addInfo(ClassifierStatistics result, Instance instance,
+            Value v) {
+        switch (v.getType()) {
+        case Nominal:
+            result.addNominalInfo(data.getClassName(instance),
+                    ((NominalValue) v).getValue());
+            break;
+        case Numeric:
+            result.addNumericInfo(
+                    (Double) data.getClassValue(instance).getValue(),
+                    (Double) v.getValue());
+            break;
+        default:
+            throw new RuntimeException("other attribute type added");
+        }
+    }
 
-            // test classifier
-            for (Instance currentInstance : testDataset.getElements()) {
-                Value v = classifier.classifyInstance(currentInstance);
+    /**
+     * Split a dataset in folds by the current seed and create a task for
+     * every fold. Every task builds its own copy of the classifier, so the
+     * tasks can run in any order and on any thread, also together with the
+     * tasks of other crossvalidations.
+     * 
+     * @param dataset
+     *            the dataset for the crossvalidation
+     * @return the tasks of the folds
+     * @see #collect(List)
+     */
+    List<Fold> createFolds(Dataset dataset) {
+        setData(dataset);
+        FoldPlan plan = data.getFoldPlan(folds, seed);
+        List<Fold> tasks = new ArrayList<Fold>(folds);
+        for (int testInd = 0; testInd < folds; testInd++) {
+            tasks.add(new Fold(Classifiers.copy(classifier), plan, testInd));
+        }
+        return tasks;
+    }
 
-                switch (v.getType()) {
-                case Nominal:
-                    result.addNominalInfo(data.getClassName(currentInstance),
-                            ((NominalValue) v).getValue());
-                    break;
-                case Numeric:
-                    result.addNumericInfo(
-                            (Double) data.getClassValue(currentInstance)
-                                    .getValue(), (Double) v.getValue());
-                    break;
-                default:
-                    throw new RuntimeException("other attribute type added");
-                }
+    /**
+     * Create the statistics from the finished tasks of the folds. The results
+     * are added in the order of the folds, so they are the same as the results
+     * of the folds run one after the other. The test time is the sum of the
+     * times of the folds.
+     * 
+     * @param tasks
+     *            the finished tasks from {@link #createFolds(Dataset)}
+     * @return the statistics of the crossvalidation
+     */
+    ClassifierStatistics collect(List<Fold> tasks) {
+        ClassifierStatistics result = createStatistics();
+        long time = 0;
+        for (Fold fold : tasks) {
+            List<Instance> tested = fold.plan.getTestSet(fold.testInd)
+                    .getElements();
+            for (int i = 0; i < tested.size(); i++) {
+                addInfo(result, tested.get(i), fold.classified.get(i));
             }
+            time += fold.time;
         }
-
-        result.setTestTime(System.currentTimeMillis() - startTime);
+        result.setTestTime(time);
         result.setAdditionalInfo(String.format(
                 "Additional info :\n------------------\n%s",
-                classifier.toString()));
+                tasks.get(tasks.size() - 1).description));
         return result;
     }
 
+    /**
+     * Crossvalidate classifiers once for every seed. The folds of all
+     * crossvalidations are run together on one pool, so the pool stays busy
+     * until the last fold. The statistics are the same as the ones from
+     * {@link #analyze(Dataset)} with one thread, except for the test times,
+     * which are the sums of the times of the folds.
+     * 
+     * @param classifiers
+     *            the classifiers to crossvalidate, they are copied for every
+     *            fold
+     * @param dataset
+     *            the dataset for the crossvalidations
+     * @param folds
+     *            the number of folds
+     * @param seeds
+     *            the seeds for splitting the dataset in folds
+     * @param threads
+     *            the number of threads of the pool
+     * @return the statistics for every classifier and every seed
+     */
+    static ClassifierStatistics[][] crossValidateAll(
+            IClassifier[] classifiers, Dataset dataset, int folds,
+            List<Integer> seeds, int threads) {
+        CrossValidation[][] validations = new CrossValidation[classifiers.length][seeds
+                .size()];
+        List<List<Fold>> tasks = new ArrayList<List<Fold>>();
+        List<Fold> allTasks = new ArrayList<Fold>();
+        for (int c = 0; c < classifiers.length; c++) {
+            for (int i = 0; i < seeds.size(); i++) {
+                validations[c][i] = new CrossValidation(folds, dataset,
+                        classifiers[c]);
+                validations[c][i].setSeed(seeds.get(i));
+                List<Fold> current = validations[c][i].createFolds(dataset);
+                tasks.add(current);
+                allTasks.addAll(current);
+            }
+        }
+        runAll(allTasks, threads);
+        ClassifierStatistics[][] result = new ClassifierStatistics[classifiers.length][seeds
+                .size()];
+        for (int c = 0; c < classifiers.length; c++) {
+            for (int i = 0; i < seeds.size(); i++) {
+                result[c][i] = validations[c][i].collect(tasks.get(c
+                        * seeds.size() + i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run tasks on a pool and wait for all of them.
+     * 
+     * @param tasks
+     *            the tasks to run
+     * @param threads
+     *            the number of threads of the pool
+     */
+    static void runAll(List<? extends Callable<?>> tasks, int threads) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> parts = new ArrayList<Future<?>>(tasks.size());
+            for (Callable<?> task : tasks) {
+                parts.add(pool.submit(task));
+            }
+            for (Future<?> part : parts) {
+                part.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("The analysis was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Builds a classifier on all folds but one and classifies the instances
+     * of that fold. Only the classes are kept after that, the classifier is
+     * let go, so the folds of many crossvalidations do not keep their models
+     * until they are all collected. The last fold also keeps the description
+     * of its model for the statistics.
+     */
+    static final class Fold implements Callable<Void> {
+        private IClassifier classifier;
+        private final FoldPlan plan;
+        private final int testInd;
+        private List<Value> classified;
+        private String description;
+        private long time;
+
+        Fold(IClassifier classifier, FoldPlan plan, int testInd) {
+            this.classifier = classifier;
+            this.plan = plan;
+            this.testInd = testInd;
+        }
+
+        @Override
+        public Void call() {
+            long startTime = System.currentTimeMillis();
+            classifier.buildClassifier(plan.getTrainSet(testInd));
+            classified = classifier.classifyBatch(plan.getTestSet(testInd)
+                    .getElements());
+            time = System.currentTimeMillis() - startTime;
+            if (testInd == plan.getFoldsCount() - 1) {
+                description = classifier.toString();
+            }
+            classifier = null;
+            return null;
+        }
+    }
+
     @Override
     public void setParameters(Map<String, String> parameters) {
         boolean ex = false;
@@ -245,6 +443,13 @@ public final class CrossValidation implements IAnalyzer {
                     LOG.warn("Value {} for folds was not set as it's "
                             + "not a number!", entry.getValue(), e);
                 }
+            } else if (param.equalsIgnoreCase(THREADS)) {
+                try {
+                    setThreads(Integer.parseInt(entry.getValue()));
+                } catch (NumberFormatException e) {
+                    LOG.warn("Value {} for threads was not set as it's "
+                            + "not a number!", entry.getValue(), e);
+                }
             } else {
                 ex = true;
             }
@@ -26,6 +26,7 @@ public final class PairedTTest implements ICompareAnalyzer, IStatisticalTest {
     private static String testTypeName = "Test Type ("
             + Arrays.toString(TestType.values()) + ")";
     private static String foldsName = "Cross Validation folds";
+    private static String threadsName = "Threads";
 
     /**
      * Get the parameters for this analyzer.
@@ -37,6 +38,7 @@ public final class PairedTTest implements ICompareAnalyzer, IStatisticalTest {
         params.put(alphaName, String.valueOf(IStatisticalTest.DEFAULT_ALPHA));
         params.put(testTypeName, IStatisticalTest.DEFAULT_TEST_TYPE.toString());
         params.put(foldsName, String.valueOf(DEFAULT_FOLD_VALUE));
+        params.put(threadsName, "1");
         return params;
     }
 
@@ -45,6 +47,7 @@ public final class PairedTTest implements ICompareAnalyzer, IStatisticalTest {
     private IClassifier secondClassifier;
     private IStatisticalTest test;
     private int folds;
+    private int threads = 1;
 
     /**
      * Default constructor.
@@ -101,6 +104,10 @@ public final class PairedTTest implements ICompareAnalyzer, IStatisticalTest {
             }
             if (name.equalsIgnoreCase(foldsName)) {
                 setFolds(Integer.parseInt(value));
+                continue;
+            }
+            if (name.equalsIgnoreCase(threadsName)) {
+                setThreads(Integer.parseInt(value));
             }
         }
     }
@@ -133,20 +140,30 @@ public final class PairedTTest implements ICompareAnalyzer, IStatisticalTest {
                     "Paired T Test : dataset cannot be null");
         }
 
-        CrossValidation firstValidator = createValidator(folds,
-                firstClassifier, dataset);
-        CrossValidation secondValidator = createValidator(folds,
-                secondClassifier, dataset);
-
         double[] firstSuccessRates = new double[SEEDS.size()];
         double[] secondSuccessRates = new double[SEEDS.size()];
         long[] firstClassifierTimes = new long[SEEDS.size()];
         long[] secondClassifierTimes = new long[SEEDS.size()];
 
-        testAlgorithm(firstValidator, dataset, firstSuccessRates,
-                firstClassifierTimes);
-        testAlgorithm(secondValidator, dataset, secondSuccessRates,
-                secondClassifierTimes);
+        if (threads > 1) {
+            ClassifierStatistics[][] results = CrossValidation
+                    .crossValidateAll(new IClassifier[] { firstClassifier,
+                            secondClassifier }, dataset, folds, SEEDS,
+                            threads);
+            collectResults(results[0], firstSuccessRates,
+                    firstClassifierTimes);
+            collectResults(results[1], secondSuccessRates,
+                    secondClassifierTimes);
+        } else {
+            CrossValidation firstValidator = createValidator(folds,
+                    firstClassifier, dataset);
+            CrossValidation secondValidator = createValidator(folds,
+                    secondClassifier, dataset);
+            testAlgorithm(firstValidator, dataset, firstSuccessRates,
+                    firstClassifierTimes);
+            testAlgorithm(secondValidator, dataset, secondSuccessRates,
+                    secondClassifierTimes);
+        }
 
         CompareStatistics statistics = new CompareStatistics();
         statistics.setFirstClassifierName(firstClassifier.getName());
@@ -197,6 +214,14 @@ public final class PairedTTest implements ICompareAnalyzer, IStatisticalTest {
         }
     }
 
+    private static void collectResults(ClassifierStatistics[] results,
+            double[] successRates, long[] times) {
+        for (int i = 0; i < successRates.length; i++) {
+            successRates[i] = results[i].getGeneralPrecision();
+            times[i] = results[i].getTestTime();
+        }
+    }
+
     /**
      * Get the statistical test behind this pairedTTest.
      * 
@@ -236,4 +261,29 @@ public final class PairedTTest implements ICompareAnalyzer, IStatisticalTest {
     public void setFolds(int folds) {
         this.folds = folds;
     }
+
+    /**
+     * Get the number of threads that run the crossvalidations.
+     * 
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the number of threads that run the crossvalidations. With more than
+     * one thread the folds of all seeds and both classifiers are run together,
+     * every fold on its own copy of the classifier.
+     * 
+     * @param threads
+     *            the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: "
+                    + threads);
+        }
+        this.threads = threads;
+    }
 }
@@ -26,6 +26,7 @@ public final class Wilcoxon implements ICompareAnalyzer, IStatisticalTest {
             + Arrays.toString(TestType.values()) + ")";
     private static final String NAME_FOLDS = 
             "Number of folds in Cross Validation";
+    private static final String NAME_THREADS = "Threads";
 
     /**
      * Get the parameters for this analyzer.
@@ -37,6 +38,7 @@ public final class Wilcoxon implements ICompareAnalyzer, IStatisticalTest {
         parameters.put(NAME_ALPHA, String.valueOf(DEFAULT_ALPHA));
         parameters.put(NAME_TEST_TYPE, TestType.TwoSided.toString());
         parameters.put(NAME_FOLDS, String.valueOf(DEFAULT_NUMBER_OF_FOLDS));
+        parameters.put(NAME_THREADS, "1");
 
         return parameters;
     }
@@ -51,6 +53,7 @@ public final class Wilcoxon implements ICompareAnalyzer, IStatisticalTest {
     private double alpha = DEFAULT_ALPHA;
     private TestType testType = TestType.TwoSided;
     private int folds = DEFAULT_NUMBER_OF_FOLDS;
+    private int threads = 1;
 
     private CompareStatistics statistic;
 
@@ -71,26 +74,38 @@ public final class Wilcoxon implements ICompareAnalyzer, IStatisticalTest {
         double[] sndSample = new double[SEEDS.size()];
         long[] sndTime = new long[SEEDS.size()];
 
-        for (int i = 0; i < SEEDS.size(); i++) {
-            CrossValidation cv1 = new CrossValidation();
-            cv1.setFolds(folds);
-            cv1.setSeed(SEEDS.get(i));
-            cv1.setClassifier(classifier1);
-            cv1.setData(dataSet);
-
-            ClassifierStatistics cs1 = cv1.analyze(dataSet);
-            fstSample[i] = cs1.getGeneralPrecision();
-            fstTime[i] = cs1.getTestTime();
-
-            CrossValidation cv2 = new CrossValidation();
-            cv2.setFolds(folds);
-            cv2.setSeed(SEEDS.get(i));
-            cv2.setClassifier(classifier2);
-            cv2.setData(dataSet);
-
-            ClassifierStatistics cs2 = cv2.analyze(dataSet);
-            sndSample[i] = cs2.getGeneralPrecision();
-            sndTime[i] = cs2.getTestTime();
+        if (threads > 1) {
+            ClassifierStatistics[][] results = CrossValidation
+                    .crossValidateAll(new IClassifier[] { classifier1,
+                            classifier2 }, dataSet, folds, SEEDS, threads);
+            for (int i = 0; i < SEEDS.size(); i++) {
+                fstSample[i] = results[0][i].getGeneralPrecision();
+                fstTime[i] = results[0][i].getTestTime();
+                sndSample[i] = results[1][i].getGeneralPrecision();
+                sndTime[i] = results[1][i].getTestTime();
+            }
+        } else {
+            for (int i = 0; i < SEEDS.size(); i++) {
+                CrossValidation cv1 = new CrossValidation();
+                cv1.setFolds(folds);
+                cv1.setSeed(SEEDS.get(i));
+                cv1.setClassifier(classifier1);
+                cv1.setData(dataSet);
+
+                ClassifierStatistics cs1 = cv1.analyze(dataSet);
+                fstSample[i] = cs1.getGeneralPrecision();
+                fstTime[i] = cs1.getTestTime();
+
+                CrossValidation cv2 = new CrossValidation();
+                cv2.setFolds(folds);
+                cv2.setSeed(SEEDS.get(i));
+                cv2.setClassifier(classifier2);
+                cv2.setData(dataSet);
+
+                ClassifierStatistics cs2 = cv2.analyze(dataSet);
+                sndSample[i] = cs2.getGeneralPrecision();
+                sndTime[i] = cs2.getTestTime();
+            }
         }
 
         statistic.setFirstSamplePopulation(fstSample);
@@ -214,6 +229,11 @@ public final class Wilcoxon implements ICompareAnalyzer, IStatisticalTest {
             setTestType(TestType.valueOf(paramValue));
             return;
         }
+
+        if (paramName.equalsIgnoreCase(NAME_THREADS)) {
+            setThreads(Integer.parseInt(paramValue));
+            return;
+        }
         throw new IllegalArgumentException("Wilcoxon: unknown parameter:"
                 + paramName);
     }
@@ -237,6 +257,31 @@ public final class Wilcoxon implements ICompareAnalyzer, IStatisticalTest {
         this.folds = folds;
     }
 
+    /**
+     * Get the number of threads that run the crossvalidations.
+     * 
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the number of threads that run the crossvalidations. With more than
+     * one thread the folds of all seeds and both classifiers are run together,
+     * every fold on its own copy of the classifier.
+     * 
+     * @param threads
+     *            the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: "
+                    + threads);
+        }
+        this.threads = threads;
+    }
+
     /**
      * Get the statistics after for this analysis.
      * 
@@ -1,23 +1,37 @@
 package spaska.classifiers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
+import DistLib.normal;
+
+import spaska.classifiers.util.BinnedColumns;
+import spaska.classifiers.util.CompiledTree;
 import spaska.classifiers.util.Condition;
-import spaska.classifiers.util.ContinuousValueService;
 import spaska.classifiers.util.DatasetService;
 import spaska.classifiers.util.Node;
 import spaska.classifiers.util.NominalInfoService;
+import spaska.classifiers.util.NumericSplit;
+import spaska.classifiers.util.ParallelClassification;
+import spaska.classifiers.util.SortedColumns;
+import spaska.classifiers.util.SplitFinder;
+import spaska.classifiers.util.SplitSearch;
+import spaska.classifiers.util.TaskPool;
 import spaska.classifiers.util.Trees;
 import spaska.data.Attribute.ValueType;
 import spaska.data.Dataset;
+import spaska.data.DatasetView;
+import spaska.data.FoldPlan;
 import spaska.data.Instance;
-import spaska.data.UnknownValue;
 import spaska.data.Value;
-import edu.umd.cs.findbugs.annotations.SuppressWarnings;
 
-// TODO : pruning
 /**
  * A dicision tree algorithm based on ID3 and C4.5. Attributes are considered
  * for splitting according to their gain ratio. The higher the gain ratio, the
@@ -28,25 +42,98 @@ import edu.umd.cs.findbugs.annotations.SuppressWarnings;
  * according to the popularity of the attribute value, however, at this stage
  * this weight is not considered. New instances which encounter a test, such
  * that their value for that attribute is unknown, are classified as the most
- * popular class for that branch.
+ * popular class for that branch. The instances are sorted by every numeric
+ * attribute only once, the nodes keep their sorted order from the root (see
+ * {@link SortedColumns}). With the "histogram" splits the numeric attributes
+ * are cut in at most "bins" quantile bins instead and only the thresholds
+ * between two bins are tried, which is faster for big datasets (see
+ * {@link BinnedColumns}). With more than one "threads" the attributes of the
+ * nodes with many instances are evaluated in parallel and their subtrees are
+ * grown in parallel, the tree is the same as with a single thread. The built
+ * tree is lowered to flat arrays for classification (see {@link CompiledTree}).
+ * 
+ * <p>
+ * The tree can be kept small while it is grown: a node is not split deeper
+ * than "maxDepth" (0 for no limit) or when fewer than two of its children
+ * would get "minLeaf" instances. It can also be pruned after it is grown
+ * ("pruning"): "pessimistic" replaces a subtree with a leaf when the upper
+ * limit of the "confidence" interval of the errors of the leaf is not worse
+ * than the one of the subtree, like C4.5 does, and "reduced_error" grows the
+ * tree on all but one of "pruneFolds" stratified folds and replaces a subtree
+ * with a leaf when the leaf makes no more errors on the remaining fold. The
+ * test of the root is never pruned.
+ * </p>
+ * 
+ * <p>
+ * With "features" above 0 every node may only split on that many random
+ * attributes, which is how the trees of a {@link RandomForest} are grown.
+ * </p>
  */
 
 public final class DecisionTree implements IClassifier {
+    /**
+     * The ways to prune a tree after it is grown.
+     */
+    public enum Pruning {
+        /**
+         * Keep the whole tree.
+         */
+        NONE,
+        /**
+         * Estimate the errors from the instances the tree is grown on, like
+         * C4.5.
+         */
+        PESSIMISTIC,
+        /**
+         * Count the errors on instances that are held out of growing.
+         */
+        REDUCED_ERROR
+    }
+
     /**
      * Get the parameters for this classifier.
      * 
      * @return the parameters for this classifier
      */
     public static Map<String, String> getParameters() {
-        return null;
+        Map<String, String> result = new HashMap<String, String>();
+        result.put("splits", "exact");
+        result.put("bins", String.valueOf(BinnedColumns.MAX_BINS));
+        result.put("threads", "1");
+        result.put("pruning", "none");
+        result.put("confidence", String.valueOf(DEFAULT_CONFIDENCE));
+        result.put("pruneFolds", String.valueOf(DEFAULT_PRUNE_FOLDS));
+        result.put("seed", "1");
+        result.put("minLeaf", "1");
+        result.put("maxDepth", "0");
+        result.put("features", "0");
+        return result;
     }
 
+    private static final double DEFAULT_CONFIDENCE = 0.25;
+    private static final int DEFAULT_PRUNE_FOLDS = 3;
+    // a subtree is pessimistically pruned even if its leaf is a bit worse
+    private static final double PRUNING_TOLERANCE = 0.1;
+
+    // the nodes with fewer instances are grown by a single thread
+    private static final int MIN_PARALLEL_ROWS = 1000;
+
     private Node tree; // actual tree after building classifier
 
+    private CompiledTree compiled; // the tree for classification
+
     private DatasetService datasetService; // a helpful service
 
-    // @java.lang.SuppressWarnings("unused")
-    // private boolean postPrune; // whether or not to prune after building
+    private SplitSearch splits = SplitSearch.EXACT; // numeric split search
+    private int bins = BinnedColumns.MAX_BINS; // bins of the histograms
+    private int threads = 1; // threads for growing the tree
+    private Pruning pruning = Pruning.NONE;
+    private double confidence = DEFAULT_CONFIDENCE; // for pessimistic pruning
+    private int pruneFolds = DEFAULT_PRUNE_FOLDS; // for reduced error pruning
+    private int seed = 1; // for reduced error pruning and random attributes
+    private int minLeaf = 1; // instances of at least two children of a test
+    private int maxDepth = 0; // the depth of the deepest tests or 0
+    private int features = 0; // random attributes per node or 0 for all
 
     // check if all instances are of class defaultClass
     private boolean allHaveTheSameClass(List<Instance> instances,
@@ -60,12 +147,14 @@ public final class DecisionTree implements IClassifier {
     }
 
     // get index of best nominal attribute (according to information theory)
-    private int getBestNominal(NominalInfoService service, boolean[] used) {
+    private int getBestNominal(NominalInfoService service, boolean[] used,
+            boolean[] candidates) {
         int[] nominalIndices = datasetService.getNominalIndices();
         double max = 0, currentRatio;
         int index = -1;
         for (int i = 0; i < nominalIndices.length; i++) {
-            if (!used[nominalIndices[i]]) {
+            if (!used[nominalIndices[i]]
+                    && (candidates == null || candidates[nominalIndices[i]])) {
                 currentRatio = service.getGainRatio(nominalIndices[i]);
                 if (max < currentRatio) {
                     max = currentRatio;
@@ -76,19 +165,84 @@ public final class DecisionTree implements IClassifier {
         return index;
     }
 
+    // start the evaluation of every numeric attribute in the pool
+    private List<Future<NumericSplit>> forkNumericSplits(
+            final SplitFinder finder, final double classesEntropy,
+            boolean[] candidates, TaskPool pool) {
+        int[] numericIndices = datasetService.getNumericIndices();
+        List<Future<NumericSplit>> splits = new ArrayList<Future<NumericSplit>>();
+        for (int j = 0; j < finder.numberOfAttributes(); j++) {
+            if (candidates != null && !candidates[numericIndices[j]]) {
+                continue;
+            }
+            final int attribute = j;
+            splits.add(pool.fork(new Callable<NumericSplit>() {
+                @Override
+                public NumericSplit call() {
+                    return finder.getSplit(attribute, classesEntropy);
+                }
+            }));
+        }
+        return splits;
+    }
+
+    // get the best of the numeric splits like SplitFinder.getBestNumeric
+    private NumericSplit joinNumericSplits(List<Future<NumericSplit>> splits,
+            TaskPool pool) {
+        List<NumericSplit> joined = new ArrayList<NumericSplit>();
+        for (Future<NumericSplit> split : splits) {
+            joined.add(pool.join(split));
+        }
+        return SplitFinder.getBest(joined);
+    }
+
+    // choose the attributes that a node of a random tree may split on
+    private boolean[] chooseCandidates(boolean[] used, Random random) {
+        int[] free = new int[used.length];
+        int count = 0;
+        for (int i = 0; i < used.length; i++) {
+            if (!used[i]
+                    && datasetService.getAttribute(i).getType() != ValueType.Unknown) {
+                free[count++] = i;
+            }
+        }
+        boolean[] candidates = new boolean[used.length];
+        for (int k = 0; k < Math.min(features, count); k++) {
+            int chosen = k + random.nextInt(count - k);
+            int swap = free[k];
+            free[k] = free[chosen];
+            free[chosen] = swap;
+            candidates[free[k]] = true;
+        }
+        return candidates;
+    }
+
     // get children of the current node
     private List<Condition> getChildrenConditions(List<Instance> list,
-            boolean[] used) {
+            SplitFinder finder, boolean[] used, Random random, TaskPool pool) {
         List<Condition> children = new ArrayList<Condition>();
         NominalInfoService infoService = new NominalInfoService(datasetService,
                 list, used);
-        ContinuousValueService continuousService = Trees.getBestNumeric(list,
-                infoService.getClassesEntropy(), datasetService);
+        boolean[] candidates = random == null ? null : chooseCandidates(used,
+                random);
+        NumericSplit continuousService;
+        int nominalIndex;
+        if (pool == null || list.size() < MIN_PARALLEL_ROWS) {
+            continuousService = finder.getBestNumeric(
+                    infoService.getClassesEntropy(), candidates);
+            nominalIndex = getBestNominal(infoService, used, candidates);
+        } else {
+            // the nominal attributes are evaluated while the numeric ones are
+            // evaluated in the pool
+            List<Future<NumericSplit>> splits = forkNumericSplits(finder,
+                    infoService.getClassesEntropy(), candidates, pool);
+            nominalIndex = getBestNominal(infoService, used, candidates);
+            continuousService = joinNumericSplits(splits, pool);
+        }
         if (infoService.isEmpty() && continuousService.isEmpty()) {
             return children;
         }
         Value majorityClass = infoService.getSiblingsMajorityClass();
-        int nominalIndex = getBestNominal(infoService, used);
         if (nominalIndex < 0 && continuousService.isEmpty()) {
             return children;
         }
@@ -107,8 +261,160 @@ public final class DecisionTree implements IClassifier {
         return children;
     }
 
-    private void buildTree(Node node, List<Instance> treeInstances,
-            boolean[] used) {
+    // the weight of every class of the instances
+    private double[] getClassWeights(DatasetView view) {
+        double[] weights = new double[datasetService.numberOfClasses()];
+        int classIndex = datasetService.classIndex();
+        for (int i = 0; i < view.size(); i++) {
+            int code = datasetService.getCode(classIndex,
+                    datasetService.getClass(view.get(i)));
+            if (code >= 0) {
+                weights[code] += view.getWeight(i);
+            }
+        }
+        return weights;
+    }
+
+    // the index of the biggest weight or -1 if there is no weight at all
+    private static int getMajority(double[] weights) {
+        int result = -1;
+        double max = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (max < weights[i]) {
+                max = weights[i];
+                result = i;
+            }
+        }
+        return result;
+    }
+
+    private static double sum(double[] weights) {
+        double result = 0;
+        for (double weight : weights) {
+            result += weight;
+        }
+        return result;
+    }
+
+    // check if at least two children get minLeaf instances
+    private boolean isBigEnough(List<DatasetView> distribution) {
+        int big = 0;
+        for (DatasetView child : distribution) {
+            double weight = 0;
+            for (int i = 0; i < child.size(); i++) {
+                weight += child.getWeight(i);
+            }
+            if (weight >= minLeaf) {
+                big++;
+            }
+        }
+        return big >= 2;
+    }
+
+    // turn a node into a leaf of the majority class of its instances
+    private void makeLeaf(Node node, DatasetView view) {
+        Condition c = getNodeCondition(node);
+        int majority = getMajority(getClassWeights(view));
+        c.setEffect(majority < 0 ? c.getMajorityClass() : datasetService
+                .getValueFromInt(datasetService.classIndex(), majority));
+        c.setNumber(view.size());
+        node.removeChildren();
+    }
+
+    /*
+     * prune the subtree of a node bottom up and get its errors, which are
+     * counted on the held out instances or estimated from the instances that
+     * grew the tree if there are none
+     */
+    private double prune(Node node, DatasetView grown, DatasetView heldOut) {
+        double[] weights = getClassWeights(grown);
+        if (node.getChildren().isEmpty()) {
+            Condition c = getNodeCondition(node);
+            int code = c.getEffect() == null ? -1 : datasetService.getCode(
+                    datasetService.classIndex(), c.getEffect());
+            return getErrors(weights, code, heldOut);
+        }
+        List<Condition> conditions = new ArrayList<Condition>();
+        for (Node child : node.getChildren()) {
+            conditions.add(getNodeCondition(child));
+        }
+        // the reach of the conditions stays the one of the grown tree
+        List<DatasetView> grownParts = Trees.route(grown, conditions,
+                datasetService);
+        List<DatasetView> heldOutParts = heldOut == null ? null : Trees
+                .route(heldOut, conditions, datasetService);
+        double subtreeErrors = 0;
+        for (int k = 0; k < conditions.size(); k++) {
+            subtreeErrors += prune(node.getChildren().get(k),
+                    grownParts.get(k),
+                    heldOutParts == null ? null : heldOutParts.get(k));
+        }
+        if (!(node.getValue() instanceof Condition)) {
+            return subtreeErrors;
+        }
+        double leafErrors = getErrors(weights, getMajority(weights), heldOut);
+        if (heldOut == null ? leafErrors <= subtreeErrors + PRUNING_TOLERANCE
+                : leafErrors <= subtreeErrors) {
+            makeLeaf(node, grown);
+            return leafErrors;
+        }
+        return subtreeErrors;
+    }
+
+    // the errors of a leaf of a class
+    private double getErrors(double[] weights, int leafClass,
+            DatasetView heldOut) {
+        if (heldOut != null) {
+            double[] heldOutWeights = getClassWeights(heldOut);
+            return sum(heldOutWeights)
+                    - (leafClass < 0 ? 0 : heldOutWeights[leafClass]);
+        }
+        double total = sum(weights);
+        double errors = total - (leafClass < 0 ? 0 : weights[leafClass]);
+        return errors + getPessimisticErrors(total, errors, confidence);
+    }
+
+    /**
+     * Get the number of errors that have to be added to the errors of a leaf
+     * for the upper limit of their confidence interval, like C4.5 does.
+     * 
+     * @param total
+     *            the weight of the instances of the leaf
+     * @param errors
+     *            the weight of the misclassified instances of the leaf
+     * @param confidence
+     *            the confidence level, at most 0.5
+     * @return the extra errors
+     */
+    static double getPessimisticErrors(double total, double errors,
+            double confidence) {
+        if (total <= 0) {
+            return 0;
+        }
+        if (errors < 1) {
+            // interpolate between no errors and a single error
+            double base = total * (1 - Math.pow(confidence, 1 / total));
+            if (errors == 0) {
+                return base;
+            }
+            return base + errors
+                    * (getPessimisticErrors(total, 1, confidence) - base);
+        }
+        if (errors + 0.5 >= total) {
+            return Math.max(total - errors, 0);
+        }
+        double z = normal.quantile(1 - confidence, 0, 1);
+        double f = (errors + 0.5) / total;
+        double r = (f + z * z / (2 * total) + z
+                * Math.sqrt(f / total - f * f / total + z * z
+                        / (4 * total * total)))
+                / (1 + z * z / total);
+        return r * total - errors;
+    }
+
+    private void buildTree(Node node, DatasetView view, SplitFinder finder,
+            boolean[] used, int depth, Random random, TaskPool pool) {
+        List<Instance> treeInstances = view.getElements();
         // stopping criteria
         // all - the same class
         Value firstClass = datasetService.getClass(treeInstances.get(0));
@@ -125,10 +431,15 @@ public final class DecisionTree implements IClassifier {
             return;
         }
         // zero gain - all tests
+        if (maxDepth > 0 && depth >= maxDepth) {
+            makeLeaf(node, view);
+            return;
+        }
 
         // for each attribute (numeric or non-used nominal) calculate gain ratio
         // choose the best attribute
-        List<Condition> children = getChildrenConditions(treeInstances, used);
+        List<Condition> children = getChildrenConditions(treeInstances,
+                finder, used, random, pool);
         if (children.isEmpty()) { // no patterns extracted from data => possibly
             // unknown values
             Condition c = getNodeCondition(node);
@@ -137,60 +448,107 @@ public final class DecisionTree implements IClassifier {
             return;
         }
         // split on that attribute
-        List<List<Instance>> distribution = Trees.distribute(treeInstances,
-                children, datasetService);
+        List<int[]> positions = new ArrayList<int[]>();
+        List<DatasetView> distribution = Trees.distribute(view, children,
+                datasetService, positions);
+        if (minLeaf > 1 && node.getValue() instanceof Condition
+                && !isBigEnough(distribution)) {
+            makeLeaf(node, view);
+            return;
+        }
+        List<SplitFinder> finders = finder.split(positions);
+        // the big subtrees are grown in the pool, the small ones right away
+        List<Future<Void>> subtrees = new ArrayList<Future<Void>>();
         int counter = 0;
         for (Condition c : children) {
             Node child = new Node(c);
             node.addChild(child);
             boolean[] newUsed = new boolean[used.length];
             System.arraycopy(used, 0, newUsed, 0, used.length);
-            buildTree(child, distribution.get(counter++), newUsed);
+            // every subtree gets its own random numbers, whichever thread
+            // grows it
+            Random childRandom = random == null ? null : new Random(
+                    random.nextLong());
+            if (pool != null
+                    && distribution.get(counter).size() >= MIN_PARALLEL_ROWS) {
+                subtrees.add(pool.fork(new Subtree(child, distribution
+                        .get(counter), finders.get(counter), newUsed,
+                        depth + 1, childRandom, pool)));
+            } else {
+                buildTree(child, distribution.get(counter),
+                        finders.get(counter), newUsed, depth + 1, childRandom,
+                        pool);
+            }
+            counter++;
+        }
+        for (Future<Void> subtree : subtrees) {
+            pool.join(subtree);
         }
     }
 
-    private Node buildTree(List<Instance> instances) {
+    private Node buildTree(DatasetView instances) {
         Node root = new Node(new Object());
         boolean[] used = new boolean[datasetService.numberOfAttributes()];
         used[datasetService.classIndex()] = true;
-        buildTree(root, instances, used);
+        TaskPool pool = threads > 1 ? new TaskPool(threads) : null;
+        try {
+            buildTree(root, instances,
+                    splits.createFinder(instances, datasetService, bins), used,
+                    0, features > 0 ? new Random(seed) : null, pool);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
         return root;
     }
 
     @Override
     public void buildClassifier(Dataset instances) {
+        buildClassifier(instances, new DatasetView(instances));
+    }
+
+    /**
+     * Build the tree from a sample of a dataset, for example a bootstrap
+     * sample of a forest.
+     * 
+     * @param instances
+     *            the dataset
+     * @param sample
+     *            the instances of the dataset to grow the tree from, the same
+     *            instance can be in it more than once
+     */
+    void buildClassifier(Dataset instances, DatasetView sample) {
         datasetService = new DatasetService(instances);
-        tree = buildTree(instances.getElements());
+        DatasetView grown = sample;
+        DatasetView heldOut = null;
+        if (pruning == Pruning.REDUCED_ERROR) {
+            // the folds are positions in the sample, so the rows keep their
+            // weights in it
+            FoldPlan plan = sample.toDataset().getFoldPlan(pruneFolds, seed);
+            grown = sample.select(plan.getTrainRows(0));
+            heldOut = sample.select(plan.getTestRows(0));
+        }
+        tree = buildTree(grown);
+        if (pruning != Pruning.NONE) {
+            prune(tree, grown, heldOut);
+        }
+        compiled = new CompiledTree(tree, datasetService);
     }
 
     @Override
     public Value classifyInstance(Instance instance) {
-        return classify(instance, tree);
+        return compiled.classify(instance.getVector());
     }
 
-    // recursive classification
-    private Value classify(Instance instance, Node node) {
-        if (isLeaf(node)) {
-            return getNodeCondition(node).getEffect();
-        } else {
-            Value result = null;
-            for (Node current : node.getChildren()) {
-                if (Thread.interrupted()) {
-                    return UnknownValue.getInstance();
-                }
-                Condition c = (Condition) current.getValue();
-                int aIndex = datasetService.getAttributeIndex(c.getAttribute());
-                Value aValue = instance.getVector().get(aIndex);
-                if (aValue.getType() == ValueType.Unknown) {
-                    return c.getMajorityClass();
-                }
-                if (c.ifTrue(aValue)) {
-                    result = classify(instance, current);
-                    break;
-                }
-            }
-            return result;
-        }
+    @Override
+    public List<Value> classifyBatch(List<Instance> instances) {
+        return ParallelClassification.classifyBatch(this, instances);
+    }
+
+    @Override
+    public List<Value> classifyAll(Dataset dataset) {
+        return classifyBatch(dataset.getElements());
     }
 
     // separated cast
@@ -198,20 +556,254 @@ public final class DecisionTree implements IClassifier {
         return (Condition) node.getValue();
     }
 
-    // check if tree node is a leaf
-    private boolean isLeaf(Node node) {
-        if (!(node.getValue() instanceof Condition)) {
-            return false;
-        }
-        Condition c = getNodeCondition(node);
-        return c.getEffect() != null;
-    }
-
     @Override
     public String getName() {
         return "DecisionTree /elements from C4.5/";
     }
 
+    /**
+     * Get the way the numeric splits are searched for.
+     * 
+     * @return the numeric split search
+     */
+    public SplitSearch getSplits() {
+        return splits;
+    }
+
+    /**
+     * Set the way the numeric splits are searched for. The new value is used
+     * after the classifier is built again.
+     * 
+     * @param splits
+     *            the new numeric split search
+     */
+    public void setSplits(SplitSearch splits) {
+        if (splits == null) {
+            throw new IllegalArgumentException("\"splits\" must not be null.");
+        }
+        this.splits = splits;
+    }
+
+    /**
+     * Get the maximum number of bins of a numeric attribute for the histogram
+     * splits.
+     * 
+     * @return the maximum number of bins
+     */
+    public int getBins() {
+        return bins;
+    }
+
+    /**
+     * Set the maximum number of bins of a numeric attribute for the histogram
+     * splits. The new value is used after the classifier is built again.
+     * 
+     * @param bins
+     *            the new maximum number of bins, between 2 and 256
+     */
+    public void setBins(int bins) {
+        if (bins < 2 || bins > BinnedColumns.MAX_BINS) {
+            throw new IllegalArgumentException("\"bins\" must be between 2 and "
+                    + BinnedColumns.MAX_BINS + ".");
+        }
+        this.bins = bins;
+    }
+
+    /**
+     * Get the number of threads that grow the tree.
+     * 
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the number of threads that grow the tree. The new value is used
+     * after the classifier is built again.
+     * 
+     * @param threads
+     *            the new number of threads, at least 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "\"threads\" must be positive.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Get the way the tree is pruned after it is grown.
+     * 
+     * @return the pruning
+     */
+    public Pruning getPruning() {
+        return pruning;
+    }
+
+    /**
+     * Set the way the tree is pruned after it is grown. The new value is used
+     * after the classifier is built again.
+     * 
+     * @param pruning
+     *            the new pruning
+     */
+    public void setPruning(Pruning pruning) {
+        if (pruning == null) {
+            throw new IllegalArgumentException(
+                    "\"pruning\" must not be null.");
+        }
+        this.pruning = pruning;
+    }
+
+    /**
+     * Get the confidence level of pessimistic pruning.
+     * 
+     * @return the confidence level
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Set the confidence level of pessimistic pruning. A smaller confidence
+     * prunes more. The new value is used after the classifier is built again.
+     * 
+     * @param confidence
+     *            the new confidence level, above 0 and at most 0.5
+     */
+    public void setConfidence(double confidence) {
+        if (!(confidence > 0 && confidence <= 0.5)) {
+            throw new IllegalArgumentException(
+                    "\"confidence\" must be above 0 and at most 0.5.");
+        }
+        this.confidence = confidence;
+    }
+
+    /**
+     * Get the number of folds for reduced error pruning.
+     * 
+     * @return the number of folds
+     */
+    public int getPruneFolds() {
+        return pruneFolds;
+    }
+
+    /**
+     * Set the number of folds for reduced error pruning. One of the folds is
+     * held out of growing the tree for pruning it. The new value is used
+     * after the classifier is built again.
+     * 
+     * @param pruneFolds
+     *            the new number of folds, at least 2
+     */
+    public void setPruneFolds(int pruneFolds) {
+        if (pruneFolds < 2) {
+            throw new IllegalArgumentException(
+                    "\"pruneFolds\" must be at least 2.");
+        }
+        this.pruneFolds = pruneFolds;
+    }
+
+    /**
+     * Get the seed of the folds for reduced error pruning and of the random
+     * attributes of the nodes.
+     * 
+     * @return the seed
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Set the seed of the folds for reduced error pruning and of the random
+     * attributes of the nodes. The new value is used after the classifier is
+     * built again.
+     * 
+     * @param seed
+     *            the new seed
+     */
+    public void setSeed(int seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Get the minimum number of instances of a leaf.
+     * 
+     * @return the minimum number of instances
+     */
+    public int getMinLeaf() {
+        return minLeaf;
+    }
+
+    /**
+     * Set the minimum number of instances of a leaf. A node is only split if
+     * at least two of its children get that many instances. The new value is
+     * used after the classifier is built again.
+     * 
+     * @param minLeaf
+     *            the new minimum number of instances, at least 1
+     */
+    public void setMinLeaf(int minLeaf) {
+        if (minLeaf < 1) {
+            throw new IllegalArgumentException(
+                    "\"minLeaf\" must be positive.");
+        }
+        this.minLeaf = minLeaf;
+    }
+
+    /**
+     * Get the maximum depth of the tests of the tree.
+     * 
+     * @return the maximum depth or 0 if there is no limit
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Set the maximum depth of the tests of the tree. The tests of the root
+     * are at depth 1. The new value is used after the classifier is built
+     * again.
+     * 
+     * @param maxDepth
+     *            the new maximum depth or 0 for no limit
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException(
+                    "\"maxDepth\" must not be negative.");
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Get the number of random attributes that a node may split on.
+     * 
+     * @return the number of attributes or 0 if a node may split on all
+     */
+    public int getFeatures() {
+        return features;
+    }
+
+    /**
+     * Set the number of random attributes that a node may split on. Every
+     * node chooses its own attributes, with random numbers from the "seed",
+     * like the trees of a random forest. The new value is used after the
+     * classifier is built again.
+     * 
+     * @param features
+     *            the new number of attributes or 0 for all attributes
+     */
+    public void setFeatures(int features) {
+        if (features < 0) {
+            throw new IllegalArgumentException(
+                    "\"features\" must not be negative.");
+        }
+        this.features = features;
+    }
+
     /**
      * Set the parameters for this classifier.
      * 
@@ -220,15 +812,56 @@ public final class DecisionTree implements IClassifier {
      * @param paramValue
      *            the parameter value
      */
-    @SuppressWarnings(value = "URF_UNREAD_FIELD", justification = "This will be used when someone implement pruning")
     public void setParameters(String paramName, String paramValue) {
-//        if (paramName.equalsIgnoreCase("postPrune")) {
-            // if (paramValue.equalsIgnoreCase("true")) {
-            // postPrune = true;
-            // } else {
-            // postPrune = false;
-            // }
-//        }
+        if (paramName.equalsIgnoreCase("splits")) {
+            try {
+                setSplits(SplitSearch.valueOf(paramValue.toUpperCase()));
+            } catch (IllegalArgumentException ex) {
+                throw new RuntimeException("\"splits\" must be one of "
+                        + Arrays.toString(SplitSearch.values()) + ".");
+            }
+        } else if (paramName.equalsIgnoreCase("bins")) {
+            setBins(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("threads")) {
+            setThreads(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("pruning")) {
+            try {
+                setPruning(Pruning.valueOf(paramValue.toUpperCase()));
+            } catch (IllegalArgumentException ex) {
+                throw new RuntimeException("\"pruning\" must be one of "
+                        + Arrays.toString(Pruning.values()) + ".");
+            }
+        } else if (paramName.equalsIgnoreCase("confidence")) {
+            try {
+                setConfidence(Double.parseDouble(paramValue));
+            } catch (NumberFormatException ex) {
+                throw new RuntimeException(
+                        "\"confidence\" must be a number.");
+            }
+        } else if (paramName.equalsIgnoreCase("pruneFolds")) {
+            setPruneFolds(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("seed")) {
+            setSeed(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("minLeaf")) {
+            setMinLeaf(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("maxDepth")) {
+            setMaxDepth(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("features")) {
+            setFeatures(parseInt(paramName, paramValue));
+        } else {
+            throw new IllegalArgumentException("DecisionTree: unknown parameter "
+                    + "(valid: Splits; Bins; Threads; Pruning; Confidence; "
+                    + "PruneFolds; Seed; MinLeaf; MaxDepth; Features)");
+        }
+    }
+
+    private static int parseInt(String paramName, String paramValue) {
+        try {
+            return Integer.parseInt(paramValue);
+        } catch (NumberFormatException ex) {
+            throw new RuntimeException("\"" + paramName
+                    + "\" must be an integer.");
+        }
     }
 
     @Override
@@ -244,6 +877,38 @@ public final class DecisionTree implements IClassifier {
 
     @Override
     public void setParameters(Map<String, String> parameters) {
-        // do nothing
+        for (Entry<String, String> entry : parameters.entrySet()) {
+            setParameters(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Grows the subtree of a node in the pool.
+     */
+    private final class Subtree implements Callable<Void> {
+        private final Node node;
+        private final DatasetView view;
+        private final SplitFinder finder;
+        private final boolean[] used;
+        private final int depth;
+        private final Random random;
+        private final TaskPool pool;
+
+        Subtree(Node node, DatasetView view, SplitFinder finder,
+                boolean[] used, int depth, Random random, TaskPool pool) {
+            this.node = node;
+            this.view = view;
+            this.finder = finder;
+            this.used = used;
+            this.depth = depth;
+            this.random = random;
+            this.pool = pool;
+        }
+
+        @Override
+        public Void call() {
+            buildTree(node, view, finder, used, depth, random, pool);
+            return null;
+        }
     }
 }
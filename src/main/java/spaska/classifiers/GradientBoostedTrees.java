@@ -0,0 +1,1105 @@
+package spaska.classifiers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import spaska.classifiers.util.BinnedColumns;
+import spaska.classifiers.util.ParallelClassification;
+import spaska.classifiers.util.TaskPool;
+import spaska.data.Attribute.ValueType;
+import spaska.data.ColumnStore;
+import spaska.data.Dataset;
+import spaska.data.FoldPlan;
+import spaska.data.Instance;
+import spaska.data.NumericValue;
+import spaska.data.Value;
+
+/**
+ * Gradient boosted regression trees. Every round grows small trees that fit
+ * the gradients of the loss of the trees before them, and the leaves of the
+ * trees are added to the scores of the instances. A numeric class is learned
+ * with the squared loss and one tree per round, a nominal class with the log
+ * loss of the softmax of the scores and one tree per class and round.
+ *
+ * <p>
+ * The attributes are cut in at most 255 bins once, with the cut points of
+ * {@link BinnedColumns}, and the bin of every row is kept in a
+ * <code>byte[]</code> with an extra bin for the unknown values. A node sums
+ * the gradients of its rows by bin, so its best split is found by going once
+ * over the bins of every attribute. The sums of the bigger child of a node
+ * are the sums of the node minus the ones of the smaller child, and the sums
+ * of the attributes are built by many threads for big nodes. The gradients
+ * and the scores are kept in arrays that are allocated once for all rounds.
+ * </p>
+ *
+ * <p>
+ * A numeric test sends the values up to a threshold to the left child, a
+ * nominal test sends one value to the left child and the others to the right
+ * one. Unknown values always go to the right child. The leaves are shrunk by
+ * the "shrinkage" and every tree may be grown from a random part of the
+ * instances. A fold of the instances is held out to stop the boosting when
+ * its loss has not gone down for a number of rounds, and the model is cut
+ * back to the round with the lowest loss.
+ * </p>
+ *
+ * @see <a href="http://dx.doi.org/10.1214/aos/1013203451">Greedy function
+ *      approximation: A gradient boosting machine</a>
+ */
+public final class GradientBoostedTrees implements IClassifier {
+
+    private static final int DEFAULT_TREES = 100;
+    private static final double DEFAULT_SHRINKAGE = 0.1;
+    // a code of a byte is a bin, the last code is for the unknown values
+    private static final int MAX_BINS = 255;
+    private static final int THREADS = Runtime.getRuntime()
+            .availableProcessors();
+    private static final int MIN_PARALLEL_ROWS = 1000;
+    // the L2 regularization of the leaf values
+    private static final double LAMBDA = 1;
+    private static final double MIN_GAIN = 1e-10;
+    private static final int LEAF = -1;
+
+    /**
+     * Get the parameters for this classifier.
+     *
+     * @return the parameters for this classifier
+     */
+    public static Map<String, String> getParameters() {
+        Map<String, String> result = new HashMap<String, String>();
+        result.put("trees", String.valueOf(DEFAULT_TREES));
+        result.put("shrinkage", String.valueOf(DEFAULT_SHRINKAGE));
+        result.put("subsample", "1.0");
+        result.put("maxDepth", "3");
+        result.put("minLeaf", "1");
+        result.put("bins", String.valueOf(MAX_BINS));
+        result.put("validationFolds", "5");
+        result.put("earlyStopping", "10");
+        result.put("seed", "1");
+        result.put("threads", String.valueOf(THREADS));
+        return result;
+    }
+
+    private int trees = DEFAULT_TREES; // the maximum number of rounds
+    private double shrinkage = DEFAULT_SHRINKAGE;
+    private double subsample = 1;
+    private int maxDepth = 3;
+    private int minLeaf = 1;
+    private int bins = MAX_BINS;
+    private int validationFolds = 5;
+    private int earlyStopping = 10; // rounds without progress or 0
+    private int seed = 1;
+    private int threads = THREADS;
+
+    // the code of every value of the nominal attributes, null for the
+    // numeric ones, and the class values
+    private List<Map<Value, Integer>> valueCodes;
+    private Value[] classValues;
+    private boolean regression;
+    private int outputs; // the number of trees per round
+    private double[] base; // the initial score of every output
+    private int rounds;
+    private double validationLoss = Double.NaN;
+    // the root of the tree of every round and output
+    private int[] roots;
+    // the tested attribute or LEAF, for every node of every tree
+    private int[] features;
+    private boolean[] nominal;
+    // the last bin of the left child or the nominal code that goes left
+    private int[] splitBins;
+    // the biggest value of the last bin of the left child for numeric tests
+    private double[] thresholds;
+    // the left child, the right child is the next node
+    private int[] children;
+    private double[] leafValues;
+    private int nodes;
+
+    @Override
+    public void buildClassifier(Dataset instances) {
+        ColumnStore columns = instances.getColumns();
+        int classIndex = instances.getClassIndex();
+        regression = columns.isNumeric(classIndex);
+        outputs = regression ? 1 : Math.max(columns.getDomainSize(classIndex),
+                1);
+        // the model keeps the codes, not the columns of the training rows
+        valueCodes = new ArrayList<Map<Value, Integer>>();
+        for (int j = 0; j < columns.getAttributesCount(); j++) {
+            Map<Value, Integer> codes = null;
+            if (j != classIndex && !columns.isNumeric(j)) {
+                codes = new HashMap<Value, Integer>();
+                for (int code = 0; code < columns.getDomainSize(j); code++) {
+                    codes.put(columns.getNominalValue(j, code), code);
+                }
+            }
+            valueCodes.add(codes);
+        }
+        classValues = new Value[regression ? 0 : columns
+                .getDomainSize(classIndex)];
+        for (int code = 0; code < classValues.length; code++) {
+            classValues[code] = columns.getNominalValue(classIndex, code);
+        }
+        nodes = 0;
+        features = new int[16];
+        nominal = new boolean[16];
+        splitBins = new int[16];
+        thresholds = new double[16];
+        children = new int[16];
+        leafValues = new double[16];
+        TaskPool pool = new TaskPool(threads);
+        try {
+            new Booster(instances, columns, pool).boost();
+        } finally {
+            pool.shutdown();
+        }
+        features = Arrays.copyOf(features, nodes);
+        nominal = Arrays.copyOf(nominal, nodes);
+        splitBins = Arrays.copyOf(splitBins, nodes);
+        thresholds = Arrays.copyOf(thresholds, nodes);
+        children = Arrays.copyOf(children, nodes);
+        leafValues = Arrays.copyOf(leafValues, nodes);
+    }
+
+    // add nodes to the trees and get the index of the first one
+    private int addNodes(int count) {
+        if (nodes + count > features.length) {
+            int capacity = Math.max(features.length * 2, nodes + count);
+            features = Arrays.copyOf(features, capacity);
+            nominal = Arrays.copyOf(nominal, capacity);
+            splitBins = Arrays.copyOf(splitBins, capacity);
+            thresholds = Arrays.copyOf(thresholds, capacity);
+            children = Arrays.copyOf(children, capacity);
+            leafValues = Arrays.copyOf(leafValues, capacity);
+        }
+        int first = nodes;
+        for (int n = first; n < first + count; n++) {
+            features[n] = LEAF;
+        }
+        nodes += count;
+        return first;
+    }
+
+    // the value of the leaf that the values of an instance reach in a tree
+    private double getLeafValue(List<Value> vector, int root) {
+        int n = root;
+        while (features[n] != LEAF) {
+            Value value = vector.get(features[n]);
+            boolean left;
+            if (value.getType() == ValueType.Unknown) {
+                left = false;
+            } else if (nominal[n]) {
+                Integer code = valueCodes.get(features[n]).get(value);
+                left = code != null && code == splitBins[n];
+            } else {
+                left = (Double) value.getValue() <= thresholds[n];
+            }
+            n = left ? children[n] : children[n] + 1;
+        }
+        return leafValues[n];
+    }
+
+    // the scores of every output for the values of an instance
+    private void score(List<Value> vector, double[] scores) {
+        for (int k = 0; k < outputs; k++) {
+            scores[k] = base[k];
+        }
+        for (int t = 0; t < rounds * outputs; t++) {
+            scores[t % outputs] += getLeafValue(vector, roots[t]);
+        }
+    }
+
+    private Value classify(Instance instance, double[] scores) {
+        score(instance.getVector(), scores);
+        if (regression) {
+            return new NumericValue(scores[0]);
+        }
+        if (classValues.length == 0) {
+            return null;
+        }
+        int best = 0;
+        for (int k = 1; k < outputs; k++) {
+            if (scores[k] > scores[best]) {
+                best = k;
+            }
+        }
+        return classValues[best];
+    }
+
+    @Override
+    public Value classifyInstance(Instance instance) {
+        return classify(instance, new double[outputs]);
+    }
+
+    @Override
+    public List<Value> classifyBatch(List<Instance> instances) {
+        return ParallelClassification.classifyBatch(
+                new ParallelClassification.ScorerFactory() {
+                    @Override
+                    public ParallelClassification.Scorer createScorer() {
+                        final double[] scores = new double[outputs];
+                        return new ParallelClassification.Scorer() {
+                            @Override
+                            public Value classify(Instance instance) {
+                                return GradientBoostedTrees.this.classify(
+                                        instance, scores);
+                            }
+                        };
+                    }
+                }, instances);
+    }
+
+    @Override
+    public List<Value> classifyAll(Dataset dataset) {
+        return classifyBatch(dataset.getElements());
+    }
+
+    /**
+     * Get the number of boosting rounds of the built model. A round has a
+     * tree for a numeric class and a tree for every class of a nominal one.
+     *
+     * @return the number of rounds that were kept after the early stopping
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Get the loss of the held out instances for the built model.
+     *
+     * @return the mean squared error for a numeric class, the mean log loss
+     *         for a nominal one or NaN if no instances were held out
+     */
+    public double getValidationLoss() {
+        return validationLoss;
+    }
+
+    /**
+     * Get the maximum number of boosting rounds.
+     *
+     * @return the maximum number of rounds
+     */
+    public int getTrees() {
+        return trees;
+    }
+
+    /**
+     * Set the maximum number of boosting rounds. The new value is used after
+     * the classifier is built again.
+     *
+     * @param trees
+     *            the new maximum number of rounds, at least 1
+     */
+    public void setTrees(int trees) {
+        if (trees < 1) {
+            throw new IllegalArgumentException("\"trees\" must be positive.");
+        }
+        this.trees = trees;
+    }
+
+    /**
+     * Get the factor of the leaf values.
+     *
+     * @return the factor of the leaf values
+     */
+    public double getShrinkage() {
+        return shrinkage;
+    }
+
+    /**
+     * Set the factor of the leaf values. Smaller values need more rounds but
+     * overfit less. The new value is used after the classifier is built
+     * again.
+     *
+     * @param shrinkage
+     *            the new factor, above 0 and at most 1
+     */
+    public void setShrinkage(double shrinkage) {
+        if (!(shrinkage > 0 && shrinkage <= 1)) {
+            throw new IllegalArgumentException(
+                    "\"shrinkage\" must be above 0 and at most 1.");
+        }
+        this.shrinkage = shrinkage;
+    }
+
+    /**
+     * Get the part of the instances that every tree is grown from.
+     *
+     * @return the part of the instances
+     */
+    public double getSubsample() {
+        return subsample;
+    }
+
+    /**
+     * Set the part of the instances that every tree is grown from. The
+     * instances of a tree are drawn without replacement. The new value is
+     * used after the classifier is built again.
+     *
+     * @param subsample
+     *            the new part of the instances, above 0 and at most 1
+     */
+    public void setSubsample(double subsample) {
+        if (!(subsample > 0 && subsample <= 1)) {
+            throw new IllegalArgumentException(
+                    "\"subsample\" must be above 0 and at most 1.");
+        }
+        this.subsample = subsample;
+    }
+
+    /**
+     * Get the maximum depth of the tests of a tree.
+     *
+     * @return the maximum depth
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Set the maximum depth of the tests of a tree. The new value is used
+     * after the classifier is built again.
+     *
+     * @param maxDepth
+     *            the new maximum depth, at least 1
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException(
+                    "\"maxDepth\" must be positive.");
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Get the minimum number of instances of a leaf.
+     *
+     * @return the minimum number of instances
+     */
+    public int getMinLeaf() {
+        return minLeaf;
+    }
+
+    /**
+     * Set the minimum number of instances of a leaf. The new value is used
+     * after the classifier is built again.
+     *
+     * @param minLeaf
+     *            the new minimum number of instances, at least 1
+     */
+    public void setMinLeaf(int minLeaf) {
+        if (minLeaf < 1) {
+            throw new IllegalArgumentException(
+                    "\"minLeaf\" must be positive.");
+        }
+        this.minLeaf = minLeaf;
+    }
+
+    /**
+     * Get the maximum number of bins of a numeric attribute.
+     *
+     * @return the maximum number of bins
+     */
+    public int getBins() {
+        return bins;
+    }
+
+    /**
+     * Set the maximum number of bins of a numeric attribute. The new value is
+     * used after the classifier is built again.
+     *
+     * @param bins
+     *            the new maximum number of bins, between 2 and 255
+     */
+    public void setBins(int bins) {
+        if (bins < 2 || bins > MAX_BINS) {
+            throw new IllegalArgumentException(
+                    "\"bins\" must be between 2 and " + MAX_BINS + ".");
+        }
+        this.bins = bins;
+    }
+
+    /**
+     * Get the number of folds of the instances, one of which is held out for
+     * the early stopping.
+     *
+     * @return the number of folds
+     */
+    public int getValidationFolds() {
+        return validationFolds;
+    }
+
+    /**
+     * Set the number of folds of the instances, one of which is held out for
+     * the early stopping. The new value is used after the classifier is built
+     * again.
+     *
+     * @param validationFolds
+     *            the new number of folds, at least 2
+     */
+    public void setValidationFolds(int validationFolds) {
+        if (validationFolds < 2) {
+            throw new IllegalArgumentException(
+                    "\"validationFolds\" must be at least 2.");
+        }
+        this.validationFolds = validationFolds;
+    }
+
+    /**
+     * Get the number of rounds without a lower loss of the held out instances
+     * after which the boosting stops.
+     *
+     * @return the number of rounds or 0 if no instances are held out
+     */
+    public int getEarlyStopping() {
+        return earlyStopping;
+    }
+
+    /**
+     * Set the number of rounds without a lower loss of the held out instances
+     * after which the boosting stops. The new value is used after the
+     * classifier is built again.
+     *
+     * @param earlyStopping
+     *            the new number of rounds or 0 to grow all trees from all
+     *            instances
+     */
+    public void setEarlyStopping(int earlyStopping) {
+        if (earlyStopping < 0) {
+            throw new IllegalArgumentException(
+                    "\"earlyStopping\" must not be negative.");
+        }
+        this.earlyStopping = earlyStopping;
+    }
+
+    /**
+     * Get the seed of the held out fold and of the samples.
+     *
+     * @return the seed
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Set the seed of the held out fold and of the samples. The new value is
+     * used after the classifier is built again.
+     *
+     * @param seed
+     *            the new seed
+     */
+    public void setSeed(int seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Get the number of threads that sum the gradients.
+     *
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the number of threads that sum the gradients. The trees do not
+     * depend on the number of threads. The new value is used after the
+     * classifier is built again.
+     *
+     * @param threads
+     *            the new number of threads, at least 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "\"threads\" must be positive.");
+        }
+        this.threads = threads;
+    }
+
+    @Override
+    public void setParameters(Map<String, String> parameters) {
+        for (Entry<String, String> entry : parameters.entrySet()) {
+            setParameters(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void setParameters(String paramName, String paramValue) {
+        if (paramName.equalsIgnoreCase("trees")) {
+            setTrees(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("shrinkage")) {
+            setShrinkage(parseDouble(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("subsample")) {
+            setSubsample(parseDouble(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("maxDepth")) {
+            setMaxDepth(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("minLeaf")) {
+            setMinLeaf(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("bins")) {
+            setBins(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("validationFolds")) {
+            setValidationFolds(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("earlyStopping")) {
+            setEarlyStopping(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("seed")) {
+            setSeed(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("threads")) {
+            setThreads(parseInt(paramName, paramValue));
+        } else {
+            throw new IllegalArgumentException(
+                    "GradientBoostedTrees: unknown parameter "
+                            + "(valid: Trees; Shrinkage; Subsample; MaxDepth; "
+                            + "MinLeaf; Bins; ValidationFolds; EarlyStopping; "
+                            + "Seed; Threads)");
+        }
+    }
+
+    private static int parseInt(String paramName, String paramValue) {
+        try {
+            return Integer.parseInt(paramValue);
+        } catch (NumberFormatException ex) {
+            throw new RuntimeException("\"" + paramName
+                    + "\" must be an integer.");
+        }
+    }
+
+    private static double parseDouble(String paramName, String paramValue) {
+        try {
+            return Double.parseDouble(paramValue);
+        } catch (NumberFormatException ex) {
+            throw new RuntimeException("\"" + paramName
+                    + "\" must be a number.");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "GradientBoostedTrees";
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder(
+                "=== Gradient boosted trees ===\n");
+        if (roots != null) {
+            b.append(String.format("Rounds: %d\nTrees: %d\nNodes: %d\n"
+                    + "Validation loss: %f\n", rounds, rounds * outputs,
+                    nodes, validationLoss));
+        }
+        return b.toString();
+    }
+
+    /**
+     * The sums of the gradients, the hessians and the rows of every bin of
+     * every attribute for the rows of a node.
+     */
+    private static final class Histogram {
+        private final double[] gradients;
+        private final double[] hessians;
+        private final int[] counts;
+        private double gradient;
+        private double hessian;
+        private int count;
+
+        Histogram(int size) {
+            gradients = new double[size];
+            hessians = new double[size];
+            counts = new int[size];
+        }
+
+        // take the sums of another node from the ones of this node
+        void subtract(Histogram other) {
+            for (int b = 0; b < counts.length; b++) {
+                gradients[b] -= other.gradients[b];
+                hessians[b] -= other.hessians[b];
+                counts[b] -= other.counts[b];
+            }
+            gradient -= other.gradient;
+            hessian -= other.hessian;
+            count -= other.count;
+        }
+    }
+
+    /**
+     * The best test of a node.
+     */
+    private static final class Split {
+        private int attribute = LEAF;
+        private int bin;
+        private double gain = MIN_GAIN;
+    }
+
+    /**
+     * The binned rows, the gradients and the scores of a dataset while the
+     * trees are grown.
+     */
+    private final class Booster {
+        private final ColumnStore columns;
+        private final int classIndex;
+        private final TaskPool pool;
+        private final Random random;
+        private final int size;
+        // the attributes that can be tested and the offset of their bins in
+        // the histograms
+        private final int[] attributes;
+        private final int[] offsets;
+        private final int binsCount;
+        // the bin of every row and the bins count with the unknown bin, for
+        // every attribute
+        private final byte[][] codes;
+        private final int[] binCounts;
+        // the cut points of the numeric attributes
+        private final double[][] cuts;
+        // the class value or the class code of every row
+        private final double[] targets;
+        private final int[] labels;
+        private final int[] train;
+        private final int[] validation;
+        // the score, the gradient and the hessian of every output and row
+        private final double[][] scores;
+        private final double[][] gradients;
+        private final double[][] hessians;
+        // the rows of the trees of a round and the rows of the nodes
+        private final int[] sample;
+        private final int[] rows;
+        private final List<Histogram> free = new ArrayList<Histogram>();
+
+        Booster(Dataset instances, ColumnStore columns, TaskPool pool) {
+            this.columns = columns;
+            this.classIndex = instances.getClassIndex();
+            this.pool = pool;
+            this.random = new Random(seed);
+            this.size = columns.getRowsCount();
+            int attributesCount = columns.getAttributesCount();
+            codes = new byte[attributesCount][];
+            binCounts = new int[attributesCount];
+            cuts = new double[attributesCount][];
+            attributes = new int[attributesCount - 1];
+            offsets = new int[attributesCount - 1];
+            int position = 0;
+            int offset = 0;
+            for (int j = 0; j < attributesCount; j++) {
+                if (j != classIndex) {
+                    if (columns.isNumeric(j)) {
+                        binNumeric(j);
+                    } else {
+                        binNominal(j);
+                    }
+                    attributes[position] = j;
+                    offsets[position++] = offset;
+                    offset += binCounts[j];
+                }
+            }
+            binsCount = offset;
+
+            BitSet unknownClasses = columns.getUnknowns(classIndex);
+            if (regression) {
+                targets = columns.getNumericColumn(classIndex);
+                labels = null;
+            } else {
+                targets = null;
+                labels = columns.getNominalColumn(classIndex);
+            }
+            BitSet held = new BitSet(size);
+            if (earlyStopping > 0) {
+                FoldPlan plan = instances.getFoldPlan(validationFolds, seed);
+                for (int row : plan.getTestRows(0)) {
+                    held.set(row);
+                }
+            }
+            held.andNot(unknownClasses);
+            validation = new int[held.cardinality()];
+            train = new int[size - unknownClasses.cardinality()
+                    - validation.length];
+            if (train.length == 0) {
+                throw new IllegalArgumentException(
+                        "There are no instances with a known class.");
+            }
+            int trainCount = 0;
+            int validationCount = 0;
+            for (int i = 0; i < size; i++) {
+                if (held.get(i)) {
+                    validation[validationCount++] = i;
+                } else if (!unknownClasses.get(i)) {
+                    train[trainCount++] = i;
+                }
+            }
+
+            scores = new double[outputs][size];
+            gradients = new double[outputs][size];
+            hessians = new double[outputs][size];
+            sample = new int[Math.max(1,
+                    (int) Math.round(subsample * train.length))];
+            rows = new int[sample.length];
+        }
+
+        private void binNumeric(int j) {
+            double[] column = columns.getNumericColumn(j);
+            BitSet unknown = columns.getUnknowns(j);
+            double[] values = new double[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = unknown.get(i) ? Double.NaN : column[i];
+            }
+            cuts[j] = BinnedColumns.getCutPoints(values, bins);
+            int missing = cuts[j].length + 1;
+            binCounts[j] = missing + 1;
+            codes[j] = new byte[size];
+            for (int i = 0; i < size; i++) {
+                int bin = missing;
+                if (!unknown.get(i)) {
+                    bin = Arrays.binarySearch(cuts[j], values[i]);
+                    if (bin < 0) {
+                        bin = -bin - 1;
+                    }
+                }
+                codes[j][i] = (byte) bin;
+            }
+        }
+
+        // the codes of the values are the bins, the rare codes past the last
+        // bin are put with the unknown values
+        private void binNominal(int j) {
+            int[] column = columns.getNominalColumn(j);
+            int missing = Math.min(columns.getDomainSize(j), MAX_BINS);
+            binCounts[j] = missing + 1;
+            codes[j] = new byte[size];
+            for (int i = 0; i < size; i++) {
+                int code = column[i];
+                codes[j][i] = (byte) (code < 0 || code >= missing ? missing
+                        : code);
+            }
+        }
+
+        void boost() {
+            base = getBaseScores();
+            for (int k = 0; k < outputs; k++) {
+                Arrays.fill(scores[k], base[k]);
+            }
+            roots = new int[trees * outputs];
+            int bestRounds = 0;
+            double bestLoss = getValidationLoss();
+            int round = 0;
+            while (round < trees) {
+                updateGradients();
+                int sampleSize = drawSample();
+                for (int k = 0; k < outputs; k++) {
+                    int root = addNodes(1);
+                    roots[round * outputs + k] = root;
+                    growTree(root, sampleSize, gradients[k], hessians[k]);
+                    updateScores(root, scores[k], train);
+                    updateScores(root, scores[k], validation);
+                }
+                round++;
+                if (validation.length > 0) {
+                    double loss = getValidationLoss();
+                    if (loss < bestLoss) {
+                        bestLoss = loss;
+                        bestRounds = round;
+                    } else if (round - bestRounds >= earlyStopping) {
+                        break;
+                    }
+                }
+            }
+            if (validation.length > 0) {
+                // cut the model back to the best round
+                rounds = bestRounds;
+                validationLoss = bestLoss;
+                if (rounds < round) {
+                    nodes = roots[rounds * outputs];
+                }
+            } else {
+                rounds = round;
+                validationLoss = Double.NaN;
+            }
+            roots = Arrays.copyOf(roots, rounds * outputs);
+        }
+
+        // the mean of a numeric class or the log of the smoothed class
+        // frequencies of a nominal one
+        private double[] getBaseScores() {
+            double[] result = new double[outputs];
+            if (regression) {
+                double sum = 0;
+                for (int i : train) {
+                    sum += targets[i];
+                }
+                result[0] = sum / train.length;
+                return result;
+            }
+            for (int i : train) {
+                result[labels[i]]++;
+            }
+            for (int k = 0; k < outputs; k++) {
+                result[k] = Math.log((result[k] + 1)
+                        / (train.length + outputs));
+            }
+            return result;
+        }
+
+        // the gradients of the loss in the scores of the training rows
+        private void updateGradients() {
+            if (regression) {
+                double[] score = scores[0];
+                double[] gradient = gradients[0];
+                double[] hessian = hessians[0];
+                for (int i : train) {
+                    gradient[i] = score[i] - targets[i];
+                    hessian[i] = 1;
+                }
+                return;
+            }
+            for (int i : train) {
+                double max = getMaxScore(i);
+                double sum = 0;
+                for (int k = 0; k < outputs; k++) {
+                    gradients[k][i] = Math.exp(scores[k][i] - max);
+                    sum += gradients[k][i];
+                }
+                for (int k = 0; k < outputs; k++) {
+                    double p = gradients[k][i] / sum;
+                    gradients[k][i] = labels[i] == k ? p - 1 : p;
+                    hessians[k][i] = Math.max(p * (1 - p), 1e-16);
+                }
+            }
+        }
+
+        private double getMaxScore(int row) {
+            double max = scores[0][row];
+            for (int k = 1; k < outputs; k++) {
+                max = Math.max(max, scores[k][row]);
+            }
+            return max;
+        }
+
+        // the mean squared error or the mean log loss of the held out rows
+        private double getValidationLoss() {
+            if (validation.length == 0) {
+                return Double.NaN;
+            }
+            double sum = 0;
+            for (int i : validation) {
+                if (regression) {
+                    double error = scores[0][i] - targets[i];
+                    sum += error * error;
+                } else {
+                    double max = getMaxScore(i);
+                    double exp = 0;
+                    for (int k = 0; k < outputs; k++) {
+                        exp += Math.exp(scores[k][i] - max);
+                    }
+                    sum += Math.log(exp) + max - scores[labels[i]][i];
+                }
+            }
+            return sum / validation.length;
+        }
+
+        // choose the rows of the trees of a round without replacement
+        private int drawSample() {
+            if (sample.length == train.length) {
+                System.arraycopy(train, 0, sample, 0, train.length);
+                return sample.length;
+            }
+            // a partial shuffle of the training rows, the order of the rows
+            // left from the last round does not matter
+            for (int i = 0; i < sample.length; i++) {
+                int j = i + random.nextInt(train.length - i);
+                int row = train[j];
+                train[j] = train[i];
+                train[i] = row;
+                sample[i] = row;
+            }
+            Arrays.sort(sample);
+            return sample.length;
+        }
+
+        private void growTree(int root, int sampleSize, double[] gradient,
+                double[] hessian) {
+            System.arraycopy(sample, 0, rows, 0, sampleSize);
+            Histogram histogram = takeHistogram();
+            sum(histogram, 0, sampleSize, gradient, hessian);
+            grow(root, 0, sampleSize, histogram, 0, gradient, hessian);
+            free.add(histogram);
+        }
+
+        private void grow(int node, int start, int end, Histogram histogram,
+                int depth, double[] gradient, double[] hessian) {
+            Split split = depth < maxDepth ? findSplit(histogram) : null;
+            if (split == null || split.attribute == LEAF) {
+                leafValues[node] = -shrinkage * histogram.gradient
+                        / (histogram.hessian + LAMBDA);
+                return;
+            }
+            int j = split.attribute;
+            int left = addNodes(2);
+            features[node] = j;
+            nominal[node] = cuts[j] == null;
+            splitBins[node] = split.bin;
+            if (!nominal[node]) {
+                thresholds[node] = cuts[j][split.bin];
+            }
+            children[node] = left;
+            int middle = partition(node, start, end);
+
+            // sum the smaller child and subtract it for the bigger one
+            Histogram smaller = takeHistogram();
+            boolean leftIsSmaller = middle - start <= end - middle;
+            if (leftIsSmaller) {
+                sum(smaller, start, middle, gradient, hessian);
+            } else {
+                sum(smaller, middle, end, gradient, hessian);
+            }
+            histogram.subtract(smaller);
+            Histogram leftSums = leftIsSmaller ? smaller : histogram;
+            Histogram rightSums = leftIsSmaller ? histogram : smaller;
+            grow(left, start, middle, leftSums, depth + 1, gradient, hessian);
+            grow(left + 1, middle, end, rightSums, depth + 1, gradient,
+                    hessian);
+            free.add(smaller);
+        }
+
+        private Histogram takeHistogram() {
+            if (free.isEmpty()) {
+                return new Histogram(binsCount);
+            }
+            return free.remove(free.size() - 1);
+        }
+
+        // true if a row goes to the left child of a binned test
+        private boolean goesLeft(int node, int row) {
+            int bin = codes[features[node]][row] & 0xff;
+            return nominal[node] ? bin == splitBins[node]
+                    : bin <= splitBins[node];
+        }
+
+        // put the rows of the left child of a node before the others
+        private int partition(int node, int start, int end) {
+            int middle = start;
+            for (int p = start; p < end; p++) {
+                int row = rows[p];
+                if (goesLeft(node, row)) {
+                    rows[p] = rows[middle];
+                    rows[middle++] = row;
+                }
+            }
+            return middle;
+        }
+
+        // sum the gradients of the rows by bin, in blocks of attributes
+        private void sum(final Histogram histogram, final int start,
+                final int end, final double[] gradient, final double[] hessian) {
+            histogram.gradient = 0;
+            histogram.hessian = 0;
+            for (int p = start; p < end; p++) {
+                histogram.gradient += gradient[rows[p]];
+                histogram.hessian += hessian[rows[p]];
+            }
+            histogram.count = end - start;
+            int blocks = Math.min(threads, attributes.length);
+            if (blocks <= 1 || end - start < MIN_PARALLEL_ROWS) {
+                sum(histogram, 0, attributes.length, start, end, gradient,
+                        hessian);
+                return;
+            }
+            List<Future<Void>> forked = new ArrayList<Future<Void>>(blocks);
+            for (int b = 0; b < blocks; b++) {
+                final int from = b * attributes.length / blocks;
+                final int to = (b + 1) * attributes.length / blocks;
+                forked.add(pool.fork(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        sum(histogram, from, to, start, end, gradient,
+                                hessian);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> block : forked) {
+                pool.join(block);
+            }
+        }
+
+        private void sum(Histogram histogram, int from, int to, int start,
+                int end, double[] gradient, double[] hessian) {
+            double[] gradientSums = histogram.gradients;
+            double[] hessianSums = histogram.hessians;
+            int[] counts = histogram.counts;
+            for (int a = from; a < to; a++) {
+                int offset = offsets[a];
+                int j = attributes[a];
+                Arrays.fill(gradientSums, offset, offset + binCounts[j], 0);
+                Arrays.fill(hessianSums, offset, offset + binCounts[j], 0);
+                Arrays.fill(counts, offset, offset + binCounts[j], 0);
+                byte[] bin = codes[j];
+                for (int p = start; p < end; p++) {
+                    int row = rows[p];
+                    int b = offset + (bin[row] & 0xff);
+                    gradientSums[b] += gradient[row];
+                    hessianSums[b] += hessian[row];
+                    counts[b]++;
+                }
+            }
+        }
+
+        // the test with the biggest drop of the regularized loss, a LEAF one if
+        // no test lowers the loss
+        private Split findSplit(Histogram histogram) {
+            Split best = new Split();
+            double parent = getScore(histogram.gradient, histogram.hessian);
+            for (int a = 0; a < attributes.length; a++) {
+                int j = attributes[a];
+                int offset = offsets[a];
+                // the last bin is for unknown values and always goes right
+                int valueBins = binCounts[j] - 1;
+                double leftGradient = 0;
+                double leftHessian = 0;
+                int leftCount = 0;
+                int last = cuts[j] == null ? valueBins : valueBins - 1;
+                for (int b = 0; b < last; b++) {
+                    int position = offset + b;
+                    if (cuts[j] == null) {
+                        leftGradient = histogram.gradients[position];
+                        leftHessian = histogram.hessians[position];
+                        leftCount = histogram.counts[position];
+                    } else {
+                        leftGradient += histogram.gradients[position];
+                        leftHessian += histogram.hessians[position];
+                        leftCount += histogram.counts[position];
+                    }
+                    int rightCount = histogram.count - leftCount;
+                    if (leftCount < minLeaf || rightCount < minLeaf) {
+                        continue;
+                    }
+                    double gain = getScore(leftGradient, leftHessian)
+                            + getScore(histogram.gradient - leftGradient,
+                                    histogram.hessian - leftHessian) - parent;
+                    if (gain > best.gain) {
+                        best.attribute = j;
+                        best.bin = b;
+                        best.gain = gain;
+                    }
+                }
+            }
+            return best;
+        }
+
+        private double getScore(double gradient, double hessian) {
+            return gradient * gradient / (hessian + LAMBDA);
+        }
+
+        // add the leaves of a tree to the scores of the rows
+        private void updateScores(int root, double[] score, int[] target) {
+            for (int row : target) {
+                int n = root;
+                while (features[n] != LEAF) {
+                    n = goesLeft(n, row) ? children[n] : children[n] + 1;
+                }
+                score[row] += leafValues[n];
+            }
+        }
+    }
+}
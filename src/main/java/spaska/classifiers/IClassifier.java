@@ -1,5 +1,7 @@
 package spaska.classifiers;
 
+import java.util.List;
+
 import spaska.data.Dataset;
 import spaska.data.Instance;
 import spaska.data.Value;
@@ -9,6 +11,12 @@ import spaska.gui.Parametrable;
  * An interface representing all classifiers. Classifiers are objects that given
  * some example instances with known label/class should be able to build a model
  * that will allow them to label/classify other unknown instances.
+ * 
+ * <p>
+ * Once a classifier is built, all classify methods can be called from many
+ * threads at the same time, so a single model can be shared. Building the
+ * classifier or changing its parameters while it classifies is not safe.
+ * </p>
  */
 public interface IClassifier extends Parametrable {
     /**
@@ -29,6 +37,28 @@ public interface IClassifier extends Parametrable {
      */
     Value classifyInstance(Instance instance);
 
+    /**
+     * Classify many instances and return their classes/labels. The instances
+     * may be classified in parallel.
+     * 
+     * @param instances
+     *            the instances to be classified
+     * @return the class/label of every instance in the order of the instances
+     * @see spaska.classifiers.util.ParallelClassification
+     */
+    List<Value> classifyBatch(List<Instance> instances);
+
+    /**
+     * Classify all instances of a dataset and return their classes/labels.
+     * The dataset should have the same attributes as the one the classifier
+     * was built from.
+     * 
+     * @param dataset
+     *            the dataset to be classified
+     * @return the class/label of every instance in the order of the dataset
+     */
+    List<Value> classifyAll(Dataset dataset);
+
     /**
      * Returns the name of the classifier algorithm.
      * 
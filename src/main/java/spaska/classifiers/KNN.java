@@ -1,25 +1,44 @@
 package spaska.classifiers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import spaska.classifiers.util.BallTree;
+import spaska.classifiers.util.HNSWGraph;
+import spaska.classifiers.util.InstanceDistance;
+import spaska.classifiers.util.KDTree;
+import spaska.classifiers.util.NeighbourHeap;
+import spaska.classifiers.util.NeighbourIndex;
+import spaska.classifiers.util.ParallelClassification;
 import spaska.data.Attribute.ValueType;
+import spaska.data.ColumnStore;
 import spaska.data.Dataset;
 import spaska.data.Instance;
 import spaska.data.NumericValue;
+import spaska.data.SparseInstance;
 import spaska.data.Value;
 
 /**
  * Implementation of the K-Nearest Neighbor classifier.
  * 
- * 
+ * <p>
+ * The nearest neighbours are found by a scan over the whole train set or by a
+ * k-d tree or a ball tree over the train set, see {@link Search}. The trees
+ * give the same neighbours as the scan, they only skip the rows that cannot be
+ * near. For big train sets with many attributes there is also an approximate
+ * search over a HNSW graph, which is much faster but can miss some of the
+ * neighbours, its recall can be measured with {@link #getRecall(List)}.
+ * </p>
  * 
  * @author Lazar Chifudov
  */
@@ -28,15 +47,57 @@ public final class KNN implements IClassifier {
 
     private static final Logger LOG = LoggerFactory.getLogger(KNN.class);
     private static final int DEFAULT_K = 9;
+    // smaller train sets are scanned when the search is automatic
+    private static final int MIN_INDEXED_ROWS = 1000;
+    // more numeric attributes are indexed by a ball tree
+    private static final int MAX_KD_DIMENSIONS = 16;
+    private static final int DEFAULT_M = 16;
+    private static final int DEFAULT_EF_CONSTRUCTION = 200;
+    private static final int DEFAULT_EF_SEARCH = 50;
+    private static final long HNSW_SEED = 1;
     private int k;
     private int classIndex;
     private boolean weighted;
-    private DistanceQueue distanceQueue; // queue to store distances
     private List<Instance> trainSet; // list pruned of classless instances
     private Dataset originalTrainSet; // the given train set
     // //for optimization
     private ValueType[] attrTypes;
-    private Value[] queryVectorArray;
+    private ColumnStore trainColumns; // the train set values by columns
+    private boolean sparse; // the train set has only sparse instances
+    private Search search = Search.AUTO;
+    private int m = DEFAULT_M;
+    private int efConstruction = DEFAULT_EF_CONSTRUCTION;
+    private int efSearch = DEFAULT_EF_SEARCH;
+    private InstanceDistance space; // the distance used by the index
+    private NeighbourIndex index; // the index over the complete rows
+    private int[] unindexedRows; // the rows with unknown values
+
+    /**
+     * The ways to find the nearest neighbours.
+     */
+    public enum Search {
+        /**
+         * Choose the search by the size and the attributes of the train set.
+         */
+        AUTO,
+        /**
+         * Compute the distance to every train instance.
+         */
+        BRUTE,
+        /**
+         * Use a k-d tree, which is good for few numeric attributes.
+         */
+        KDTREE,
+        /**
+         * Use a ball tree, which is good for many or nominal attributes.
+         */
+        BALLTREE,
+        /**
+         * Use a HNSW graph, which is approximate and never chosen
+         * automatically.
+         */
+        HNSW
+    }
 
     /**
      * Get parameters for the classifier.
@@ -47,6 +108,10 @@ public final class KNN implements IClassifier {
         Map<String, String> result = new HashMap<String, String>();
         result.put("k", "9");
         result.put("weighted", "false");
+        result.put("search", "auto");
+        result.put("m", String.valueOf(DEFAULT_M));
+        result.put("efConstruction", String.valueOf(DEFAULT_EF_CONSTRUCTION));
+        result.put("efSearch", String.valueOf(DEFAULT_EF_SEARCH));
         return result;
     }
 
@@ -83,10 +148,14 @@ public final class KNN implements IClassifier {
 
     /**
      * A fixed size queue for storing distances and the corresponding instances.
+     * Every query has its own queue, so the classifier can be shared between
+     * threads, and a queue can be reused by the queries of a single thread.
      */
     private class DistanceQueue {
 
         private Pair[] distances; // the queue
+        // squared distances to every train instance for the column scans
+        private double[] squared;
 
         // construct the queue given the classifier parameter K
         DistanceQueue(int k) {
@@ -211,8 +280,6 @@ public final class KNN implements IClassifier {
             k = DEFAULT_K;
         }
         this.k = k;
-        // also create the distance queue
-        distanceQueue = new DistanceQueue(this.k);
     }
 
     /**
@@ -234,72 +301,350 @@ public final class KNN implements IClassifier {
         this.weighted = weighted;
     }
 
+    /**
+     * Get the way the nearest neighbours are found.
+     * 
+     * @return the search of this KNN algorithm
+     */
+    public Search getSearch() {
+        return search;
+    }
+
+    /**
+     * Set the way the nearest neighbours are found. The new search is used
+     * after the classifier is built again.
+     * 
+     * @param search
+     *            the new search
+     */
+    public void setSearch(Search search) {
+        this.search = search;
+    }
+
+    /**
+     * Get the number of neighbours of a node in the HNSW graph.
+     * 
+     * @return the m of the HNSW graph
+     */
+    public int getM() {
+        return m;
+    }
+
+    /**
+     * Set the number of neighbours of a node in the HNSW graph. More
+     * neighbours give a better recall, but a bigger and slower graph. The new
+     * value is used after the classifier is built again.
+     * 
+     * @param m
+     *            the new m, at least 2
+     */
+    public void setM(int m) {
+        if (m < 2) {
+            throw new IllegalArgumentException("\"m\" must be at least 2.");
+        }
+        this.m = m;
+    }
+
+    /**
+     * Get the number of candidates for the neighbours of a new node in the
+     * HNSW graph.
+     * 
+     * @return the efConstruction of the HNSW graph
+     */
+    public int getEfConstruction() {
+        return efConstruction;
+    }
+
+    /**
+     * Set the number of candidates for the neighbours of a new node in the
+     * HNSW graph. More candidates give a better graph, but a slower building.
+     * The new value is used after the classifier is built again.
+     * 
+     * @param efConstruction
+     *            the new efConstruction
+     */
+    public void setEfConstruction(int efConstruction) {
+        if (efConstruction < 1) {
+            throw new IllegalArgumentException(
+                    "\"efConstruction\" must be positive.");
+        }
+        this.efConstruction = efConstruction;
+    }
+
+    /**
+     * Get the number of candidates for the neighbours of a query in the HNSW
+     * graph.
+     * 
+     * @return the efSearch of the HNSW graph
+     */
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    /**
+     * Set the number of candidates for the neighbours of a query in the HNSW
+     * graph. More candidates give a better recall, but a slower search. At
+     * least k candidates are always kept. The new value is used by the
+     * queries that start after the call, also on a built classifier.
+     * 
+     * @param efSearch
+     *            the new efSearch
+     */
+    public void setEfSearch(int efSearch) {
+        if (efSearch < 1) {
+            throw new IllegalArgumentException(
+                    "\"efSearch\" must be positive.");
+        }
+        this.efSearch = efSearch;
+        if (index instanceof HNSWGraph) {
+            ((HNSWGraph) index).setEfSearch(efSearch);
+        }
+    }
+
+    /**
+     * Measure how many of the nearest neighbours of the given instances are
+     * found by the search of this classifier. The neighbours are compared
+     * with the ones found by a scan over all train instances, a neighbour is
+     * counted as found if it is as near as the k-th nearest train instance.
+     * The scan and the trees always find all neighbours.
+     * 
+     * @param queries
+     *            the instances whose neighbours are searched
+     * @return the average part of the neighbours that are found, between 0
+     *         and 1
+     */
+    public double getRecall(List<Instance> queries) {
+        if (index == null || queries.isEmpty()) {
+            return 1.0;
+        }
+        double sum = 0;
+        int rows = space.getRowsCount();
+        for (Instance query : queries) {
+            InstanceDistance.Query prepared = space.query(query.getVector());
+            NeighbourHeap exact = new NeighbourHeap(k);
+            for (int row = 0; row < rows; row++) {
+                exact.offer(Math.sqrt(space.distance(prepared, row)), row);
+            }
+            int[] found = nearestRows(prepared);
+            int hits = 0;
+            for (int row : found) {
+                if (Math.sqrt(space.distance(prepared, row)) <= exact
+                        .worstDistance()) {
+                    hits++;
+                }
+            }
+            sum += (double) hits / exact.sortedRows().length;
+        }
+        return sum / queries.size();
+    }
+
     /*
      * fill the queue with distances from the query instance to its K nearest
      * neighbors
      */
-    private void calculateDistances(Instance query) {
-
-        double result = 0;
+    private void calculateDistances(Instance query, DistanceQueue queue) {
+        if (sparse) {
+            calculateSparseDistances(query, queue);
+            return;
+        }
+        if (index != null) {
+            calculateIndexedDistances(query, queue);
+            return;
+        }
+        int rows = trainColumns.getRowsCount();
+        if (queue.squared == null || queue.squared.length < rows) {
+            queue.squared = new double[rows];
+        }
+        double[] distances = queue.squared;
+        Arrays.fill(distances, 0, rows, 0);
         List<Value> queryVector = query.getVector();
-        int vectorSize = originalTrainSet.getAttributes().size();
-        // for optimization
-        queryVectorArray = new Value[queryVector.size()];
-        for (int i = 0; i < queryVectorArray.length; i++) {
-            queryVectorArray[i] = queryVector.get(i);
+        // the distances are summed column by column, so every scan goes
+        // over a contiguous array of the train set
+        for (int i = 0; i < attrTypes.length; ++i) {
+            if (i == classIndex) {
+                // skip distance beteween class values
+                continue;
+            }
+            addColumnDistances(i, queryVector.get(i), distances, rows);
         }
 
-        for (Instance currentInstance : trainSet) {
+        for (int row = 0; row < rows; row++) {
+            // distance is Euclidean
+            queue.push(Math.sqrt(distances[row]), trainSet.get(row));
+        }
+    }
 
-            List<Value> currentVector = currentInstance.getVector();
-            result = 0;
-            for (int i = 0; i < vectorSize; ++i) {
-                if (i == classIndex) {
-                    // skip distance beteween class values
-                    continue;
-                }
-                Value currentValue = currentVector.get(i);
-                result += distanceBetweenValues(queryVectorArray[i],
-                        currentValue, attrTypes[i]);
-            }
+    /*
+     * fill the queue with the nearest rows from the index and the rows that
+     * are not in it, the rows are pushed in the order of the train set, so
+     * the queue is the same as after a scan over all rows
+     */
+    private void calculateIndexedDistances(Instance query,
+            DistanceQueue queue) {
+        InstanceDistance.Query prepared = space.query(query.getVector());
+        for (int row : nearestRows(prepared)) {
+            queue.push(Math.sqrt(space.distance(prepared, row)),
+                    trainSet.get(row));
+        }
+    }
 
-            result = Math.sqrt(result); // distance is Euclidean
-            distanceQueue.push(result, currentInstance);
+    /* the nearest rows from the index and the rows that are not in it */
+    private int[] nearestRows(InstanceDistance.Query prepared) {
+        NeighbourHeap heap = new NeighbourHeap(k);
+        for (int row : unindexedRows) {
+            heap.offer(Math.sqrt(space.distance(prepared, row)), row);
         }
+        index.search(prepared, heap);
+        return heap.sortedRows();
     }
 
-    /* returns the distance between two values, given their type */
-    private double distanceBetweenValues(Value queryValue, Value currentValue,
-            ValueType attrType) {
-        // 1st case: nominal values
-        if (attrType == ValueType.Nominal) {
+    /* builds the index over the train columns unless they are scanned */
+    private void buildIndex() {
+        space = null;
+        index = null;
+        unindexedRows = null;
+        if (sparse || search == Search.BRUTE) {
+            return;
+        }
+        InstanceDistance distance = new InstanceDistance(trainColumns,
+                classIndex, attrTypes);
+        Search chosen = search;
+        if (chosen == Search.AUTO) {
+            if (distance.getRowsCount() < MIN_INDEXED_ROWS) {
+                return;
+            }
+            chosen = distance.isNumeric()
+                    && distance.getDimensions() <= MAX_KD_DIMENSIONS ? Search.KDTREE
+                    : Search.BALLTREE;
+        }
+        int rows = distance.getRowsCount();
+        int[] complete = new int[rows];
+        int[] incomplete = new int[rows];
+        int completeCount = 0;
+        int incompleteCount = 0;
+        for (int row = 0; row < rows; row++) {
+            if (distance.isComplete(row)) {
+                complete[completeCount++] = row;
+            } else {
+                incomplete[incompleteCount++] = row;
+            }
+        }
+        complete = Arrays.copyOf(complete, completeCount);
+        space = distance;
+        unindexedRows = Arrays.copyOf(incomplete, incompleteCount);
+        if (chosen == Search.KDTREE) {
+            index = new KDTree(distance, complete);
+        } else if (chosen == Search.HNSW) {
+            index = new HNSWGraph(distance, complete, m, efConstruction,
+                    efSearch, new Random(HNSW_SEED));
+        } else {
+            index = new BallTree(distance, complete);
+        }
+    }
 
-            if (queryValue.getType() != ValueType.Unknown
-                    && currentValue.getType() != ValueType.Unknown) {
-                if (!queryValue.equals(currentValue)) {
-                    return 1;
+    /* adds the distances between the query value and a whole column */
+    private void addColumnDistances(int attributeIndex, Value queryValue,
+            double[] distances, int rows) {
+        ValueType attrType = attrTypes[attributeIndex];
+        if (attrType != ValueType.Nominal && attrType != ValueType.Numeric) {
+            return;
+        }
+        BitSet unknowns = trainColumns.getUnknowns(attributeIndex);
+        if (queryValue.getType() == ValueType.Unknown) {
+            // unknown to unknown is 0, unknown to a known value is 1
+            for (int row = 0; row < rows; row++) {
+                if (!unknowns.get(row)) {
+                    distances[row] += 1;
+                }
+            }
+            return;
+        }
+        boolean hasUnknowns = !unknowns.isEmpty();
+        if (attrType == ValueType.Numeric) {
+            double queryDouble = (Double) queryValue.getValue();
+            double[] column = trainColumns.getNumericColumn(attributeIndex);
+            for (int row = 0; row < rows; row++) {
+                if (hasUnknowns && unknowns.get(row)) {
+                    distances[row] += 1;
+                } else {
+                    double dst = queryDouble - column[row];
+                    distances[row] += dst * dst;
+                }
+            }
+        } else {
+            int queryCode = trainColumns.getCode(attributeIndex, queryValue);
+            int[] column = trainColumns.getNominalColumn(attributeIndex);
+            for (int row = 0; row < rows; row++) {
+                if (column[row] != queryCode
+                        || (hasUnknowns && unknowns.get(row))) {
+                    distances[row] += 1;
                 }
-            } else if (queryValue.getType() == ValueType.Unknown
-                    && currentValue.getType() == ValueType.Unknown) {
-                return 0;
-            } else {
-                return 1;
             }
-        } else if (attrType == ValueType.Numeric) {
-            // 2nd case: numeric values
-            if (queryValue.getType() != ValueType.Unknown
-                    && currentValue.getType() != ValueType.Unknown) {
-                double dst = (Double) queryValue.getValue()
-                        - (Double) currentValue.getValue();
-                return dst * dst;
-            } else if ((queryValue.getType() == ValueType.Unknown && currentValue
-                    .getType() == ValueType.Unknown)) {
-                return 0;
+        }
+    }
+
+    /*
+     * fill the queue for a sparse train set, only the values that are stored
+     * in either instance are compared as the defaults are at distance 0
+     */
+    private void calculateSparseDistances(Instance query,
+            DistanceQueue queue) {
+        SparseInstance sparseQuery = query instanceof SparseInstance ? (SparseInstance) query
+                : null;
+        List<Value> queryVector = query.getVector();
+        for (Instance current : trainSet) {
+            SparseInstance train = (SparseInstance) current;
+            double distance = 0;
+            if (sparseQuery == null) {
+                List<Value> trainVector = train.getVector();
+                for (int i = 0; i < attrTypes.length; i++) {
+                    distance += attributeDistance(i, queryVector.get(i),
+                            trainVector.get(i));
+                }
             } else {
-                return 1;
+                int q = 0;
+                int t = 0;
+                int queryCount = sparseQuery.getNonDefaultCount();
+                int trainCount = train.getNonDefaultCount();
+                while (q < queryCount || t < trainCount) {
+                    int queryIndex = q < queryCount ? sparseQuery.getIndex(q)
+                            : Integer.MAX_VALUE;
+                    int trainIndex = t < trainCount ? train.getIndex(t)
+                            : Integer.MAX_VALUE;
+                    int index = Math.min(queryIndex, trainIndex);
+                    Value queryValue = queryIndex == index ? sparseQuery
+                            .getValueAt(q++) : sparseQuery.getDefault(index);
+                    Value trainValue = trainIndex == index ? train
+                            .getValueAt(t++) : train.getDefault(index);
+                    distance += attributeDistance(index, queryValue,
+                            trainValue);
+                }
             }
+            queue.push(Math.sqrt(distance), train);
+        }
+    }
+
+    /* the squared distance between two values of an attribute */
+    private double attributeDistance(int attributeIndex, Value queryValue,
+            Value trainValue) {
+        ValueType attrType = attrTypes[attributeIndex];
+        if (attributeIndex == classIndex
+                || (attrType != ValueType.Nominal && attrType != ValueType.Numeric)) {
+            return 0;
         }
-        return 0;
+        boolean trainUnknown = trainValue.getType() == ValueType.Unknown;
+        if (queryValue.getType() == ValueType.Unknown) {
+            return trainUnknown ? 0 : 1;
+        }
+        if (trainUnknown) {
+            return 1;
+        }
+        if (attrType == ValueType.Numeric) {
+            double dst = (Double) queryValue.getValue()
+                    - (Double) trainValue.getValue();
+            return dst * dst;
+        }
+        return queryValue.equals(trainValue) ? 0 : 1;
     }
 
     @Override
@@ -321,19 +666,67 @@ public final class KNN implements IClassifier {
         for (int i = 0; i < attrTypes.length; i++) {
             attrTypes[i] = instances.getAttributes().get(i).getType();
         }
+        // keep the train set by columns for the distance scans, sparse
+        // train sets are compared by their stored values instead
+        sparse = instances.isSparse();
+        if (sparse) {
+            trainColumns = null;
+        } else if (trainSet.size() == givenInstances.size()) {
+            trainColumns = instances.getColumns();
+        } else {
+            trainColumns = new ColumnStore(instances, trainSet.size());
+            for (Instance current : trainSet) {
+                trainColumns.addRow(current.getVector());
+            }
+        }
 
         if (k > trainSet.size()) {
             setK(trainSet.size());
             LOG.error("KNN: k >= all neighbors! "
                     + "Setting k to number of neighbors.");
         }
+        buildIndex();
     }
 
     @Override
     public Value classifyInstance(Instance instance) {
-        distanceQueue.clear();
-        calculateDistances(instance);
-        return distanceQueue.voteForClass();
+        return classify(instance, new DistanceQueue(k));
+    }
+
+    private Value classify(Instance instance, DistanceQueue queue) {
+        queue.clear();
+        calculateDistances(instance, queue);
+        return queue.voteForClass();
+    }
+
+    /**
+     * Classify many instances in parallel. Every chunk of instances reuses a
+     * distance queue and the buffer for the column scans.
+     * 
+     * @param instances
+     *            the instances to be classified
+     * @return the class/label of every instance
+     */
+    @Override
+    public List<Value> classifyBatch(List<Instance> instances) {
+        return ParallelClassification.classifyBatch(
+                new ParallelClassification.ScorerFactory() {
+                    @Override
+                    public ParallelClassification.Scorer createScorer() {
+                        final DistanceQueue queue = new DistanceQueue(k);
+                        return new ParallelClassification.Scorer() {
+                            @Override
+                            public Value classify(Instance instance) {
+                                return KNN.this.classify(instance, queue);
+                            }
+                        };
+                    }
+                }, instances);
+    }
+
+    @Override
+    public List<Value> classifyAll(Dataset dataset) {
+        return classifyBatch(dataset.getElements());
     }
 
     @Override
@@ -367,16 +760,39 @@ public final class KNN implements IClassifier {
             } else {
                 throw new RuntimeException("\"weighted\" must be boolean.");
             }
+        } else if (paramName.equalsIgnoreCase("search")) {
+            try {
+                setSearch(Search.valueOf(paramValue.toUpperCase()));
+            } catch (IllegalArgumentException ex) {
+                throw new RuntimeException("\"search\" must be one of "
+                        + Arrays.toString(Search.values()) + ".");
+            }
+        } else if (paramName.equalsIgnoreCase("m")) {
+            setM(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("efConstruction")) {
+            setEfConstruction(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("efSearch")) {
+            setEfSearch(parseInt(paramName, paramValue));
         } else {
-            throw new IllegalArgumentException(
-                    "KNN: unknown parameter (valid: K; Weighted)");
+            throw new IllegalArgumentException("KNN: unknown parameter "
+                    + "(valid: K; Weighted; Search; M; EfConstruction; "
+                    + "EfSearch)");
+        }
+    }
+
+    private static int parseInt(String paramName, String paramValue) {
+        try {
+            return Integer.parseInt(paramValue);
+        } catch (NumberFormatException ex) {
+            throw new RuntimeException("\"" + paramName
+                    + "\" must be an integer.");
         }
     }
 
     @Override
     public String toString() {
         String formatString = "K Nearest Neighbour\n"
-                + "  - weighted : %s\n  - k : %d";
-        return String.format(formatString, weighted, k);
+                + "  - weighted : %s\n  - k : %d\n  - search : %s";
+        return String.format(formatString, weighted, k, search);
     }
 }
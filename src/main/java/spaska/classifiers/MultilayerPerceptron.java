@@ -0,0 +1,872 @@
+package spaska.classifiers;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import spaska.classifiers.util.DatasetService;
+import spaska.classifiers.util.Matrices;
+import spaska.classifiers.util.ParallelClassification;
+import spaska.data.Attribute.ValueType;
+import spaska.data.Dataset;
+import spaska.data.Instance;
+import spaska.data.NominalValue;
+import spaska.data.Value;
+
+/**
+ * A feed forward neural network with any number of hidden layers. The hidden
+ * nodes use the ReLU or the tanh activation, the output layer has a node for
+ * every class with the softmax activation and the network learns the cross
+ * entropy loss with mini-batches and Adam.
+ *
+ * <p>
+ * A numeric attribute is one input, standardized with the mean and the
+ * standard deviation of the training instances, and a nominal attribute is
+ * one input for every value of its domain with a 1 for the value of the
+ * instance. Unknown values are all 0. The training instances are encoded
+ * once with the codes of {@link DatasetService}, and every layer of a batch
+ * is computed with the blocked products of {@link Matrices}, so larger
+ * networks train in reasonable time. Batches of instances are classified in
+ * the same way.
+ * </p>
+ *
+ * <p>
+ * A built network can be saved with {@link #save(OutputStream)} and loaded
+ * with {@link #load(InputStream)} without the dataset it was built from.
+ * </p>
+ */
+public final class MultilayerPerceptron implements IClassifier {
+
+    /**
+     * The activations of the hidden nodes.
+     */
+    public enum Activation {
+        /** The rectified linear unit, max(0, x). */
+        RELU,
+        /** The hyperbolic tangent. */
+        TANH
+    }
+
+    private static final int DEFAULT_HIDDEN = 32;
+    private static final int DEFAULT_EPOCHS = 100;
+    private static final int DEFAULT_BATCH_SIZE = 32;
+    private static final double DEFAULT_LEARNING_RATE = 0.01;
+    // the decay rates of the moments of Adam and the term against division
+    // by zero
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double EPSILON = 1e-8;
+    // the rows that are classified together in a batch
+    private static final int BLOCK_ROWS = 64;
+    private static final int MAGIC = 0x4d4c5031; // "MLP1"
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Get the parameters for this classifier.
+     *
+     * @return the parameters for this classifier
+     */
+    public static Map<String, String> getParameters() {
+        Map<String, String> result = new HashMap<String, String>();
+        result.put("hidden", String.valueOf(DEFAULT_HIDDEN));
+        result.put("activation", Activation.RELU.name().toLowerCase());
+        result.put("epochs", String.valueOf(DEFAULT_EPOCHS));
+        result.put("batchSize", String.valueOf(DEFAULT_BATCH_SIZE));
+        result.put("learningRate", String.valueOf(DEFAULT_LEARNING_RATE));
+        result.put("seed", "1");
+        return result;
+    }
+
+    // the sizes of the hidden layers like the parameter, so copies of the
+    // classifier get them too (see Classifiers#copy)
+    private String hidden = String.valueOf(DEFAULT_HIDDEN);
+    private Activation activation = Activation.RELU;
+    private int epochs = DEFAULT_EPOCHS;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private double learningRate = DEFAULT_LEARNING_RATE;
+    private int seed = 1;
+
+    // the encoding of the inputs: the nonclass attributes, their first input,
+    // the codes of the values of the nominal ones and the mean and the scale
+    // of the numeric ones
+    private int[] attributes;
+    private int[] offsets;
+    private List<Map<Value, Integer>> domains;
+    private double[] means;
+    private double[] scales;
+    private Value[] classes;
+
+    // the number of nodes of every layer, the inputs first and the classes
+    // last, and the weights and the biases between every two layers
+    private int[] sizes;
+    private double[][] weights; // sizes[l] X sizes[l + 1], row by row
+    private double[][] biases;
+
+    @Override
+    public void buildClassifier(Dataset instances) {
+        DatasetService service = new DatasetService(instances);
+        int classIndex = service.classIndex();
+        if (service.getAttribute(classIndex).getType() != ValueType.Nominal) {
+            throw new IllegalArgumentException(
+                    "MultilayerPerceptron needs a nominal class.");
+        }
+        createEncoding(instances.getElements(), service);
+
+        // encode the instances with a known class once
+        List<Instance> data = instances.getElements();
+        int[] labels = new int[data.size()];
+        int rows = 0;
+        for (Instance instance : data) {
+            int label = service.getCode(classIndex, service.getClass(instance));
+            if (label >= 0) {
+                labels[rows++] = label;
+            }
+        }
+        double[] inputs = new double[rows * sizes[0]];
+        for (int i = 0, row = 0; i < data.size(); i++) {
+            Instance instance = data.get(i);
+            if (service.getCode(classIndex, service.getClass(instance)) >= 0) {
+                encode(instance.getVector(), service, inputs, row++);
+            }
+        }
+        Random random = new Random(seed);
+        initWeights(random);
+        if (rows > 0) {
+            train(inputs, labels, rows, random);
+        }
+    }
+
+    private void createEncoding(List<Instance> data, DatasetService service) {
+        int classIndex = service.classIndex();
+        int count = service.numberOfAttributes() - 1;
+        attributes = new int[count];
+        offsets = new int[count];
+        domains = new ArrayList<Map<Value, Integer>>(count);
+        means = new double[count];
+        scales = new double[count];
+        int inputs = 0;
+        for (int j = 0, a = 0; j < count + 1; j++) {
+            if (j == classIndex) {
+                continue;
+            }
+            attributes[a] = j;
+            offsets[a] = inputs;
+            if (service.getAttribute(j).getType() == ValueType.Nominal) {
+                // the codes of the values like the ones of the service
+                Map<Value, Integer> codes = new HashMap<Value, Integer>();
+                Set<Value> domain = service.getAttributeDomain(j);
+                for (Value value : domain) {
+                    codes.put(value, service.getCode(j, value));
+                }
+                domains.add(codes);
+                inputs += domain.size();
+            } else {
+                domains.add(null);
+                standardize(data, a);
+                inputs++;
+            }
+            a++;
+        }
+        Value[] classValues = new Value[service.numberOfClasses()];
+        for (int k = 0; k < classValues.length; k++) {
+            classValues[k] = service.getValueFromInt(classIndex, k);
+        }
+        classes = classValues;
+        int[] hiddenSizes = parseSizes(hidden);
+        sizes = new int[hiddenSizes.length + 2];
+        sizes[0] = inputs;
+        System.arraycopy(hiddenSizes, 0, sizes, 1, hiddenSizes.length);
+        sizes[sizes.length - 1] = classes.length;
+    }
+
+    // the mean and the inverse standard deviation of a numeric attribute
+    private void standardize(List<Instance> data, int a) {
+        double sum = 0;
+        double squares = 0;
+        int known = 0;
+        for (Instance instance : data) {
+            Value value = instance.getVector().get(attributes[a]);
+            if (value.getType() == ValueType.Numeric) {
+                double x = (Double) value.getValue();
+                sum += x;
+                squares += x * x;
+                known++;
+            }
+        }
+        means[a] = known == 0 ? 0 : sum / known;
+        double variance = known == 0 ? 0 : squares / known - means[a]
+                * means[a];
+        scales[a] = variance > 0 ? 1 / Math.sqrt(variance) : 1;
+    }
+
+    /*
+     * encode the values of an instance in a row of the inputs, with the codes
+     * of the service or with the codes of the encoding if there is no service
+     */
+    private void encode(List<Value> vector, DatasetService service,
+            double[] inputs, int row) {
+        int start = row * sizes[0];
+        Arrays.fill(inputs, start, start + sizes[0], 0);
+        for (int a = 0; a < attributes.length; a++) {
+            Value value = vector.get(attributes[a]);
+            Map<Value, Integer> codes = domains.get(a);
+            if (value.getType() == ValueType.Unknown) {
+                continue;
+            }
+            if (codes == null) {
+                inputs[start + offsets[a]] = ((Double) value.getValue() - means[a])
+                        * scales[a];
+                continue;
+            }
+            int code;
+            if (service != null) {
+                code = service.getCode(attributes[a], value);
+            } else {
+                Integer known = codes.get(value);
+                code = known == null ? -1 : known;
+            }
+            if (code >= 0) {
+                inputs[start + offsets[a] + code] = 1;
+            }
+        }
+    }
+
+    private void initWeights(Random random) {
+        int layers = sizes.length - 1;
+        weights = new double[layers][];
+        biases = new double[layers][];
+        for (int l = 0; l < layers; l++) {
+            weights[l] = new double[sizes[l] * sizes[l + 1]];
+            biases[l] = new double[sizes[l + 1]];
+            // He for ReLU and Xavier for tanh and the softmax
+            double scale = Math.sqrt((activation == Activation.RELU
+                    && l < layers - 1 ? 2.0 : 1.0) / Math.max(sizes[l], 1));
+            for (int i = 0; i < weights[l].length; i++) {
+                weights[l][i] = random.nextGaussian() * scale;
+            }
+        }
+    }
+
+    private void train(double[] inputs, int[] labels, int rows, Random random) {
+        int layers = sizes.length - 1;
+        int batch = Math.min(batchSize, rows);
+        double[][] nodes = createNodes(batch);
+        double[][] deltas = createNodes(batch);
+        double[][] weightGradients = new double[layers][];
+        double[][] biasGradients = new double[layers][];
+        double[][] weightMoments = new double[layers][];
+        double[][] weightSquares = new double[layers][];
+        double[][] biasMoments = new double[layers][];
+        double[][] biasSquares = new double[layers][];
+        for (int l = 0; l < layers; l++) {
+            weightGradients[l] = new double[weights[l].length];
+            biasGradients[l] = new double[biases[l].length];
+            weightMoments[l] = new double[weights[l].length];
+            weightSquares[l] = new double[weights[l].length];
+            biasMoments[l] = new double[biases[l].length];
+            biasSquares[l] = new double[biases[l].length];
+        }
+        int[] order = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            order[i] = i;
+        }
+        int classCount = sizes[layers];
+        int steps = 0;
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            shuffle(order, random);
+            for (int start = 0; start < rows; start += batch) {
+                int size = Math.min(batch, rows - start);
+                for (int i = 0; i < size; i++) {
+                    System.arraycopy(inputs, order[start + i] * sizes[0],
+                            nodes[0], i * sizes[0], sizes[0]);
+                }
+                forward(nodes, size);
+
+                // the gradient of the mean cross entropy in the output sums
+                double[] output = nodes[layers];
+                double[] delta = deltas[layers];
+                for (int i = 0; i < size; i++) {
+                    int label = labels[order[start + i]];
+                    for (int k = 0; k < classCount; k++) {
+                        int position = i * classCount + k;
+                        delta[position] = (output[position] - (k == label ? 1
+                                : 0)) / size;
+                    }
+                }
+                for (int l = layers - 1; l >= 0; l--) {
+                    Matrices.multiplyTransposedLeft(nodes[l], deltas[l + 1],
+                            weightGradients[l], sizes[l], size, sizes[l + 1]);
+                    sumColumns(deltas[l + 1], biasGradients[l], size,
+                            sizes[l + 1]);
+                    if (l > 0) {
+                        Matrices.multiplyTransposedRight(deltas[l + 1],
+                                weights[l], deltas[l], size, sizes[l + 1],
+                                sizes[l]);
+                        multiplyDerivative(nodes[l], deltas[l], size
+                                * sizes[l]);
+                    }
+                }
+                steps++;
+                for (int l = 0; l < layers; l++) {
+                    update(weights[l], weightGradients[l], weightMoments[l],
+                            weightSquares[l], steps);
+                    update(biases[l], biasGradients[l], biasMoments[l],
+                            biasSquares[l], steps);
+                }
+            }
+        }
+    }
+
+    // the node values of every layer for the given number of rows
+    private double[][] createNodes(int rows) {
+        double[][] result = new double[sizes.length][];
+        for (int l = 0; l < sizes.length; l++) {
+            result[l] = new double[rows * sizes[l]];
+        }
+        return result;
+    }
+
+    private static void shuffle(int[] order, Random random) {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int row = order[i];
+            order[i] = order[j];
+            order[j] = row;
+        }
+    }
+
+    private static void sumColumns(double[] matrix, double[] sums, int rows,
+            int columns) {
+        Arrays.fill(sums, 0);
+        for (int i = 0; i < rows; i++) {
+            int row = i * columns;
+            for (int j = 0; j < columns; j++) {
+                sums[j] += matrix[row + j];
+            }
+        }
+    }
+
+    // compute the nodes of every layer from the inputs in the first layer
+    private void forward(double[][] nodes, int rows) {
+        int layers = sizes.length - 1;
+        for (int l = 0; l < layers; l++) {
+            int columns = sizes[l + 1];
+            double[] next = nodes[l + 1];
+            Matrices.multiply(nodes[l], weights[l], next, rows, sizes[l],
+                    columns);
+            for (int i = 0; i < rows; i++) {
+                int row = i * columns;
+                for (int j = 0; j < columns; j++) {
+                    next[row + j] += biases[l][j];
+                }
+            }
+            if (l < layers - 1) {
+                activate(next, rows * columns);
+            } else {
+                softmax(next, rows, columns);
+            }
+        }
+    }
+
+    private void activate(double[] values, int count) {
+        if (activation == Activation.RELU) {
+            for (int i = 0; i < count; i++) {
+                values[i] = Math.max(values[i], 0);
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                values[i] = Math.tanh(values[i]);
+            }
+        }
+    }
+
+    // multiply the errors by the derivative of the activation in the nodes
+    private void multiplyDerivative(double[] values, double[] errors,
+            int count) {
+        if (activation == Activation.RELU) {
+            for (int i = 0; i < count; i++) {
+                errors[i] = values[i] > 0 ? errors[i] : 0;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                errors[i] *= 1 - values[i] * values[i];
+            }
+        }
+    }
+
+    private static void softmax(double[] values, int rows, int columns) {
+        for (int i = 0; i < rows; i++) {
+            int row = i * columns;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int j = 0; j < columns; j++) {
+                max = Math.max(max, values[row + j]);
+            }
+            double sum = 0;
+            for (int j = 0; j < columns; j++) {
+                values[row + j] = Math.exp(values[row + j] - max);
+                sum += values[row + j];
+            }
+            for (int j = 0; j < columns; j++) {
+                values[row + j] /= sum;
+            }
+        }
+    }
+
+    // a step of Adam for the given parameters
+    private void update(double[] parameters, double[] gradient,
+            double[] moments, double[] squares, int steps) {
+        double first = 1 - Math.pow(BETA1, steps);
+        double second = 1 - Math.pow(BETA2, steps);
+        for (int i = 0; i < parameters.length; i++) {
+            moments[i] = BETA1 * moments[i] + (1 - BETA1) * gradient[i];
+            squares[i] = BETA2 * squares[i] + (1 - BETA2) * gradient[i]
+                    * gradient[i];
+            parameters[i] -= learningRate * (moments[i] / first)
+                    / (Math.sqrt(squares[i] / second) + EPSILON);
+        }
+    }
+
+    // the class with the biggest output of a row
+    private Value getBestClass(double[] output, int row) {
+        int columns = classes.length;
+        if (columns == 0) {
+            return null;
+        }
+        int best = 0;
+        for (int k = 1; k < columns; k++) {
+            if (output[row * columns + k] > output[row * columns + best]) {
+                best = k;
+            }
+        }
+        return classes[best];
+    }
+
+    @Override
+    public Value classifyInstance(Instance instance) {
+        double[][] nodes = createNodes(1);
+        encode(instance.getVector(), null, nodes[0], 0);
+        forward(nodes, 1);
+        return getBestClass(nodes[sizes.length - 1], 0);
+    }
+
+    /**
+     * Classify many instances in parallel. Every chunk of instances is
+     * classified in blocks of rows that go through the layers together.
+     *
+     * @param instances
+     *            the instances to be classified
+     * @return the class/label of every instance
+     */
+    @Override
+    public List<Value> classifyBatch(final List<Instance> instances) {
+        final Value[] result = new Value[instances.size()];
+        ParallelClassification.runInChunks(result.length,
+                new ParallelClassification.RangeTask() {
+                    @Override
+                    public void run(int start, int end) {
+                        double[][] nodes = createNodes(Math.min(BLOCK_ROWS,
+                                end - start));
+                        for (int first = start; first < end; first += BLOCK_ROWS) {
+                            int rows = Math.min(BLOCK_ROWS, end - first);
+                            for (int i = 0; i < rows; i++) {
+                                encode(instances.get(first + i).getVector(),
+                                        null, nodes[0], i);
+                            }
+                            forward(nodes, rows);
+                            for (int i = 0; i < rows; i++) {
+                                result[first + i] = getBestClass(
+                                        nodes[sizes.length - 1], i);
+                            }
+                        }
+                    }
+                });
+        return Arrays.asList(result);
+    }
+
+    @Override
+    public List<Value> classifyAll(Dataset dataset) {
+        return classifyBatch(dataset.getElements());
+    }
+
+    /**
+     * Save the built network. The saved network can classify instances after
+     * it is loaded with {@link #load(InputStream)}, but it has none of the
+     * parameters of the training.
+     *
+     * @param out
+     *            the stream to write the network to, it is not closed
+     * @throws IOException
+     *             if the network cannot be written
+     */
+    public void save(OutputStream out) throws IOException {
+        if (weights == null) {
+            throw new IllegalStateException("The network is not built.");
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeUTF(activation.name());
+        writeInts(data, sizes);
+        writeInts(data, attributes);
+        writeInts(data, offsets);
+        for (int a = 0; a < attributes.length; a++) {
+            Map<Value, Integer> codes = domains.get(a);
+            data.writeBoolean(codes != null);
+            if (codes == null) {
+                data.writeDouble(means[a]);
+                data.writeDouble(scales[a]);
+            } else {
+                Value[] values = new Value[codes.size()];
+                for (Entry<Value, Integer> entry : codes.entrySet()) {
+                    values[entry.getValue()] = entry.getKey();
+                }
+                writeValues(data, values);
+            }
+        }
+        writeValues(data, classes);
+        for (int l = 0; l < weights.length; l++) {
+            writeDoubles(data, weights[l]);
+            writeDoubles(data, biases[l]);
+        }
+        data.flush();
+    }
+
+    /**
+     * Load a network that was saved with {@link #save(OutputStream)}.
+     *
+     * @param in
+     *            the stream to read the network from, it is not closed
+     * @return the network, ready to classify instances
+     * @throws IOException
+     *             if the network cannot be read
+     */
+    public static MultilayerPerceptron load(InputStream in)
+            throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION) {
+            throw new IOException("The stream has no saved network.");
+        }
+        MultilayerPerceptron result = new MultilayerPerceptron();
+        try {
+            result.activation = Activation.valueOf(data.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("The stream has no saved network.");
+        }
+        result.sizes = readInts(data);
+        result.setHidden(Arrays.copyOfRange(result.sizes, 1,
+                result.sizes.length - 1));
+        result.attributes = readInts(data);
+        result.offsets = readInts(data);
+        int count = result.attributes.length;
+        result.domains = new ArrayList<Map<Value, Integer>>(count);
+        result.means = new double[count];
+        result.scales = new double[count];
+        for (int a = 0; a < count; a++) {
+            if (data.readBoolean()) {
+                Value[] values = readValues(data);
+                Map<Value, Integer> codes = new HashMap<Value, Integer>();
+                for (int code = 0; code < values.length; code++) {
+                    codes.put(values[code], code);
+                }
+                result.domains.add(codes);
+            } else {
+                result.domains.add(null);
+                result.means[a] = data.readDouble();
+                result.scales[a] = data.readDouble();
+            }
+        }
+        result.classes = readValues(data);
+        int layers = result.sizes.length - 1;
+        result.weights = new double[layers][];
+        result.biases = new double[layers][];
+        for (int l = 0; l < layers; l++) {
+            result.weights[l] = readDoubles(data);
+            result.biases[l] = readDoubles(data);
+        }
+        return result;
+    }
+
+    private static void writeInts(DataOutputStream data, int[] values)
+            throws IOException {
+        data.writeInt(values.length);
+        for (int value : values) {
+            data.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream data) throws IOException {
+        int[] result = new int[data.readInt()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = data.readInt();
+        }
+        return result;
+    }
+
+    private static void writeDoubles(DataOutputStream data, double[] values)
+            throws IOException {
+        data.writeInt(values.length);
+        for (double value : values) {
+            data.writeDouble(value);
+        }
+    }
+
+    private static double[] readDoubles(DataInputStream data)
+            throws IOException {
+        double[] result = new double[data.readInt()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = data.readDouble();
+        }
+        return result;
+    }
+
+    private static void writeValues(DataOutputStream data, Value[] values)
+            throws IOException {
+        data.writeInt(values.length);
+        for (Value value : values) {
+            data.writeUTF(value.toString());
+        }
+    }
+
+    private static Value[] readValues(DataInputStream data)
+            throws IOException {
+        Value[] result = new Value[data.readInt()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new NominalValue(data.readUTF());
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of nodes of every hidden layer.
+     *
+     * @return the sizes of the hidden layers, from the inputs to the outputs
+     */
+    public int[] getHidden() {
+        return parseSizes(hidden);
+    }
+
+    /**
+     * Set the number of nodes of every hidden layer. The new value is used
+     * after the classifier is built again.
+     *
+     * @param hidden
+     *            the sizes of the hidden layers, from the inputs to the
+     *            outputs, or none for a network without hidden layers
+     */
+    public void setHidden(int... hidden) {
+        StringBuilder b = new StringBuilder();
+        for (int size : hidden) {
+            if (size < 1) {
+                throw new IllegalArgumentException(
+                        "\"hidden\" must be positive layer sizes.");
+            }
+            b.append(b.length() == 0 ? "" : ",").append(size);
+        }
+        this.hidden = b.toString();
+    }
+
+    /**
+     * Get the activation of the hidden nodes.
+     *
+     * @return the activation
+     */
+    public Activation getActivation() {
+        return activation;
+    }
+
+    /**
+     * Set the activation of the hidden nodes. The new value is used after the
+     * classifier is built again.
+     *
+     * @param activation
+     *            the new activation
+     */
+    public void setActivation(Activation activation) {
+        if (activation == null) {
+            throw new IllegalArgumentException(
+                    "\"activation\" must not be null.");
+        }
+        this.activation = activation;
+    }
+
+    /**
+     * Get the number of passes over the training instances.
+     *
+     * @return the number of epochs
+     */
+    public int getEpochs() {
+        return epochs;
+    }
+
+    /**
+     * Set the number of passes over the training instances. The new value is
+     * used after the classifier is built again.
+     *
+     * @param epochs
+     *            the new number of epochs, at least 1
+     */
+    public void setEpochs(int epochs) {
+        if (epochs < 1) {
+            throw new IllegalArgumentException("\"epochs\" must be positive.");
+        }
+        this.epochs = epochs;
+    }
+
+    /**
+     * Get the number of instances of a step of the training.
+     *
+     * @return the batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the number of instances of a step of the training. The new value
+     * is used after the classifier is built again.
+     *
+     * @param batchSize
+     *            the new batch size, at least 1
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException(
+                    "\"batchSize\" must be positive.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the step size of Adam.
+     *
+     * @return the learning rate
+     */
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    /**
+     * Set the step size of Adam. The new value is used after the classifier
+     * is built again.
+     *
+     * @param learningRate
+     *            the new learning rate, above 0
+     */
+    public void setLearningRate(double learningRate) {
+        if (!(learningRate > 0)) {
+            throw new IllegalArgumentException(
+                    "\"learningRate\" must be above 0.");
+        }
+        this.learningRate = learningRate;
+    }
+
+    /**
+     * Get the seed of the initial weights and of the order of the instances.
+     *
+     * @return the seed
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Set the seed of the initial weights and of the order of the instances.
+     * The new value is used after the classifier is built again.
+     *
+     * @param seed
+     *            the new seed
+     */
+    public void setSeed(int seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public void setParameters(Map<String, String> parameters) {
+        for (Entry<String, String> entry : parameters.entrySet()) {
+            setParameters(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void setParameters(String paramName, String paramValue) {
+        if (paramName.equalsIgnoreCase("hidden")) {
+            setHidden(parseSizes(paramValue));
+        } else if (paramName.equalsIgnoreCase("activation")) {
+            try {
+                setActivation(Activation.valueOf(paramValue.toUpperCase()));
+            } catch (IllegalArgumentException ex) {
+                throw new RuntimeException("\"activation\" must be one of "
+                        + Arrays.toString(Activation.values()) + ".");
+            }
+        } else if (paramName.equalsIgnoreCase("epochs")) {
+            setEpochs(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("batchSize")) {
+            setBatchSize(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("learningRate")) {
+            try {
+                setLearningRate(Double.parseDouble(paramValue));
+            } catch (NumberFormatException ex) {
+                throw new RuntimeException(
+                        "\"learningRate\" must be a number.");
+            }
+        } else if (paramName.equalsIgnoreCase("seed")) {
+            setSeed(parseInt(paramName, paramValue));
+        } else {
+            throw new IllegalArgumentException(
+                    "MultilayerPerceptron: unknown parameter "
+                            + "(valid: Hidden; Activation; Epochs; BatchSize; "
+                            + "LearningRate; Seed)");
+        }
+    }
+
+    // the sizes of the hidden layers separated by commas, like "64,32"
+    private static int[] parseSizes(String paramValue) {
+        String trimmed = paramValue.trim();
+        if (trimmed.length() == 0) {
+            return new int[0];
+        }
+        String[] parts = trimmed.split(",");
+        int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = parseInt("hidden", parts[i].trim());
+        }
+        return result;
+    }
+
+    private static int parseInt(String paramName, String paramValue) {
+        try {
+            return Integer.parseInt(paramValue);
+        } catch (NumberFormatException ex) {
+            throw new RuntimeException("\"" + paramName
+                    + "\" must be an integer.");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "MultilayerPerceptron";
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("=== Multilayer perceptron ===\n");
+        if (sizes != null) {
+            b.append("Layers: ");
+            for (int l = 0; l < sizes.length; l++) {
+                b.append(l == 0 ? "" : "-").append(sizes[l]);
+            }
+            b.append(String.format("\nActivation: %s\n", activation
+                    .name().toLowerCase()));
+        }
+        return b.toString();
+    }
+}
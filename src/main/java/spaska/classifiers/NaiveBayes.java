@@ -2,8 +2,11 @@ package spaska.classifiers;
 
 import static java.lang.Math.PI;
 import static java.lang.Math.exp;
+import static java.lang.Math.log;
 import static java.lang.Math.sqrt;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,11 +17,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import spaska.classifiers.util.DatasetService;
-import spaska.data.Attribute;
+import spaska.classifiers.util.ParallelClassification;
 import spaska.data.Attribute.ValueType;
+import spaska.data.ColumnStore;
 import spaska.data.Dataset;
 import spaska.data.Instance;
 import spaska.data.NumericValue;
+import spaska.data.SparseInstance;
 import spaska.data.Value;
 
 /**
@@ -80,6 +85,21 @@ public class NaiveBayes implements IClassifier {
 
     private MeanVariance[][] values;
     private DatasetService dataService;
+    // the mean and the variance of every attribute per class
+    private double[][] means;
+    private double[][] variances;
+    private boolean[] trained; // if the class had any instances
+    // the log density of a value is logNormalizer - inverseVariance * (value -
+    // mean)^2 with the inverse of twice the variance, both terms are 0 for an
+    // attribute without variance, whose density is taken as 1
+    private double[][] logNormalizers;
+    private double[][] inverseVariances;
+    private double[] logNormalizerSums; // of every class
+    // sparse datasets are scored from the defaults
+    private boolean sparse;
+    private Value[] defaults;
+    private double[][] defaultLogDensities;
+    private double[] defaultScores;
 
     @Override
     public void setParameters(Map<String, String> parameters) {
@@ -88,27 +108,189 @@ public class NaiveBayes implements IClassifier {
     @Override
     public void buildClassifier(Dataset instances) {
         dataService = new DatasetService(instances);
+        sparse = instances.isSparse();
+        if (sparse) {
+            buildSparse(instances);
+            return;
+        }
         int numberOfClasses = dataService.numberOfClasses();
         values = new MeanVariance[numberOfClasses][dataService
                 .numberOfAttributes() - 1];
 
+        // scan the dataset column by column
+        ColumnStore columns = instances.getColumns();
+        int rows = columns.getRowsCount();
         int classAttributeIndex = dataService.classIndex();
-        for (Attribute a : instances.getAttributes()) {
-            int attributeIndex = dataService.getAttributeIndex(a);
-            if (attributeIndex == dataService.classIndex()) {
+        int[] classCodes = columns.getNominalColumn(classAttributeIndex);
+        BitSet unknownClasses = columns.getUnknowns(classAttributeIndex);
+        int[] classIndices = new int[columns
+                .getDomainSize(classAttributeIndex)];
+        for (int code = 0; code < classIndices.length; code++) {
+            classIndices[code] = dataService.intValue(classAttributeIndex,
+                    columns.getNominalValue(classAttributeIndex, code));
+        }
+        for (int attributeIndex = 0; attributeIndex < columns
+                .getAttributesCount(); attributeIndex++) {
+            if (attributeIndex == classAttributeIndex) {
                 continue;
             }
-            for (Instance instance : instances.getElements()) {
-                Value clazz = dataService.getClass(instance);
-                int classIndex = dataService.intValue(classAttributeIndex,
-                        clazz);
+            BitSet unknowns = columns.getUnknowns(attributeIndex);
+            boolean numeric = columns.isNumeric(attributeIndex);
+            double[] numericColumn = numeric ? columns
+                    .getNumericColumn(attributeIndex) : null;
+            int[] nominalColumn = numeric ? null : columns
+                    .getNominalColumn(attributeIndex);
+            for (int row = 0; row < rows; row++) {
+                if (unknownClasses.get(row)) {
+                    continue;
+                }
+                int classIndex = classIndices[classCodes[row]];
                 MeanVariance meanVar = getMeanVar(classIndex, attributeIndex);
 
-                Value value = instance.getVector().get(attributeIndex);
-                double attributeValue = getDoubleValue(attributeIndex, value);
+                double attributeValue;
+                if (unknowns.get(row)) {
+                    attributeValue = 1.0D;
+                } else if (numeric) {
+                    attributeValue = numericColumn[row];
+                } else {
+                    attributeValue = nominalColumn[row] + 1;
+                }
                 meanVar.addValue(attributeValue);
             }
         }
+
+        int attributes = dataService.numberOfAttributes() - 1;
+        means = new double[numberOfClasses][attributes];
+        variances = new double[numberOfClasses][attributes];
+        trained = new boolean[numberOfClasses];
+        for (int classIndex = 0; classIndex < numberOfClasses; classIndex++) {
+            trained[classIndex] = values[classIndex][0] != null;
+            for (int attributeIndex = 0; trained[classIndex]
+                    && attributeIndex < attributes; attributeIndex++) {
+                means[classIndex][attributeIndex] = values[classIndex][attributeIndex]
+                        .getMean();
+                variances[classIndex][attributeIndex] = values[classIndex][attributeIndex]
+                        .getVariance();
+            }
+        }
+        values = null;
+        computeLogTerms();
+    }
+
+    /*
+     * Precompute the terms of the log densities from the means and the
+     * variances, so scoring an attribute is a subtraction and two
+     * multiplications without exp, log or sqrt.
+     */
+    private void computeLogTerms() {
+        int numberOfClasses = means.length;
+        int attributes = dataService.numberOfAttributes() - 1;
+        logNormalizers = new double[numberOfClasses][attributes];
+        inverseVariances = new double[numberOfClasses][attributes];
+        logNormalizerSums = new double[numberOfClasses];
+        for (int classIndex = 0; classIndex < numberOfClasses; classIndex++) {
+            for (int attributeIndex = 0; attributeIndex < attributes; attributeIndex++) {
+                double variance = variances[classIndex][attributeIndex];
+                if (variance == 0.0D) {
+                    continue;
+                }
+                logNormalizers[classIndex][attributeIndex] = -0.5
+                        * log(2 * PI * variance);
+                inverseVariances[classIndex][attributeIndex] = 1 / (2 * variance);
+                logNormalizerSums[classIndex] += logNormalizers[classIndex][attributeIndex];
+            }
+        }
+    }
+
+    private double logDensity(int classIndex, int attributeIndex, double x) {
+        double distance = x - means[classIndex][attributeIndex];
+        return logNormalizers[classIndex][attributeIndex]
+                - inverseVariances[classIndex][attributeIndex] * distance
+                * distance;
+    }
+
+    /*
+     * Builds the same statistics as the dense scan but only goes over the
+     * stored values. The default values are added in bulk as count * value.
+     * Like the dense statistics every mean and variance also includes the
+     * initial 0 of MeanVar.
+     */
+    private void buildSparse(Dataset instances) {
+        int numberOfClasses = dataService.numberOfClasses();
+        int attributes = dataService.numberOfAttributes() - 1;
+        int classAttributeIndex = dataService.classIndex();
+        List<Instance> elements = instances.getElements();
+        defaults = new Value[attributes];
+        double[] defaultValues = new double[attributes];
+        SparseInstance first = (SparseInstance) elements.get(0);
+        for (int attributeIndex = 0; attributeIndex < attributes; attributeIndex++) {
+            defaults[attributeIndex] = first.getDefault(attributeIndex);
+            defaultValues[attributeIndex] = getDoubleValue(attributeIndex,
+                    defaults[attributeIndex]);
+        }
+
+        int[] classCounts = new int[numberOfClasses];
+        int[][] storedCounts = new int[numberOfClasses][attributes];
+        double[][] sums = new double[numberOfClasses][attributes];
+        double[][] squareSums = new double[numberOfClasses][attributes];
+        for (Instance element : elements) {
+            SparseInstance instance = (SparseInstance) element;
+            Value classValue = instance.getVector().get(classAttributeIndex);
+            if (classValue.getType() == ValueType.Unknown) {
+                continue;
+            }
+            int classIndex = dataService.intValue(classAttributeIndex,
+                    classValue);
+            classCounts[classIndex]++;
+            for (int i = 0; i < instance.getNonDefaultCount(); i++) {
+                int attributeIndex = instance.getIndex(i);
+                if (attributeIndex >= attributes) {
+                    continue;
+                }
+                double value = getDoubleValue(attributeIndex,
+                        instance.getValueAt(i));
+                storedCounts[classIndex][attributeIndex]++;
+                sums[classIndex][attributeIndex] += value;
+                squareSums[classIndex][attributeIndex] += value * value;
+            }
+        }
+
+        means = new double[numberOfClasses][attributes];
+        variances = new double[numberOfClasses][attributes];
+        trained = new boolean[numberOfClasses];
+        for (int classIndex = 0; classIndex < numberOfClasses; classIndex++) {
+            int count = classCounts[classIndex];
+            trained[classIndex] = count > 0;
+            if (!trained[classIndex]) {
+                continue;
+            }
+            for (int attributeIndex = 0; attributeIndex < attributes; attributeIndex++) {
+                double defaultValue = defaultValues[attributeIndex];
+                int defaultCount = count
+                        - storedCounts[classIndex][attributeIndex];
+                double sum = sums[classIndex][attributeIndex] + defaultCount
+                        * defaultValue;
+                double squareSum = squareSums[classIndex][attributeIndex]
+                        + defaultCount * defaultValue * defaultValue;
+                double mean = sum / (count + 1);
+                double variance = Math.max(0, (squareSum - sum * mean) / count);
+                means[classIndex][attributeIndex] = mean;
+                variances[classIndex][attributeIndex] = variance;
+            }
+        }
+
+        computeLogTerms();
+        defaultLogDensities = new double[numberOfClasses][attributes];
+        defaultScores = new double[numberOfClasses];
+        for (int classIndex = 0; classIndex < numberOfClasses; classIndex++) {
+            for (int attributeIndex = 0; trained[classIndex]
+                    && attributeIndex < attributes; attributeIndex++) {
+                double logDensity = logDensity(classIndex, attributeIndex,
+                        defaultValues[attributeIndex]);
+                defaultLogDensities[classIndex][attributeIndex] = logDensity;
+                defaultScores[classIndex] += logDensity;
+            }
+        }
     }
 
     private MeanVariance getMeanVar(int classIndex, int attributeIndex) {
@@ -140,34 +322,49 @@ public class NaiveBayes implements IClassifier {
         return d * exp;
     }
 
+    /*
+     * Score every class with the sum of the log densities of the attribute
+     * values, so the scores do not underflow on datasets with many
+     * attributes. The values are converted once for all classes. The class
+     * priors are all the same, so they are left out. The terms are subtracted
+     * from the sum of the normalizers one attribute after the other, in the
+     * same order as in classifyRows, so both give the same scores to the last
+     * bit.
+     */
     @Override
     public Value classifyInstance(Instance instance) {
+        if (sparse) {
+            return classifySparse(instance);
+        }
 
-        double classProbability = 1.0D / values.length;
-        int maxClassIndex = -1;
-        double maxPosteriorNumerator = -Double.MAX_VALUE;
-
+        int attributes = means[0].length;
+        double[] values = new double[attributes];
         List<Value> vector = instance.getVector();
-        for (int classIndex = 0; classIndex < values.length; classIndex++) {
-            double posteriorNumerator = classProbability;
-            if (values[classIndex][0] == null) {
+        for (int attributeIndex = 0; attributeIndex < attributes; attributeIndex++) {
+            values[attributeIndex] = getDoubleValue(attributeIndex,
+                    vector.get(attributeIndex));
+        }
+
+        int maxClassIndex = -1;
+        double maxScore = Double.NEGATIVE_INFINITY;
+        for (int classIndex = 0; classIndex < means.length; classIndex++) {
+            if (!trained[classIndex]) {
                 continue;
             }
-            for (int attributeIndex = 0; attributeIndex < values[0].length; attributeIndex++) {
-                double mean = values[classIndex][attributeIndex].getMean();
-                double variance = values[classIndex][attributeIndex]
-                        .getVariance();
-                double value = getDoubleValue(attributeIndex,
-                        vector.get(attributeIndex));
-                double density = normalDensityF(mean, variance, value);
-                posteriorNumerator *= density;
+            double[] classMeans = means[classIndex];
+            double[] classInverseVariances = inverseVariances[classIndex];
+            double score = logNormalizerSums[classIndex];
+            for (int attributeIndex = 0; attributeIndex < attributes; attributeIndex++) {
+                double distance = values[attributeIndex]
+                        - classMeans[attributeIndex];
+                score -= classInverseVariances[attributeIndex] * distance
+                        * distance;
             }
-            if (Double.isNaN(posteriorNumerator)
-                    || Double.isInfinite(posteriorNumerator)) {
+            if (Double.isNaN(score)) {
                 LOG.warn("Ignoring class value as posterior probability is non a valid double value!");
             }
-            if (posteriorNumerator > maxPosteriorNumerator) {
-                maxPosteriorNumerator = posteriorNumerator;
+            if (score > maxScore || maxClassIndex == -1) {
+                maxScore = score;
                 maxClassIndex = classIndex;
             }
         }
@@ -176,6 +373,154 @@ public class NaiveBayes implements IClassifier {
         return value;
     }
 
+    /*
+     * Score every class from the score of an instance with only default
+     * values and correct it for the stored values of a sparse instance. The
+     * class priors are all the same, so they are left out.
+     */
+    private Value classifySparse(Instance instance) {
+        SparseInstance sparseInstance = instance instanceof SparseInstance ? (SparseInstance) instance
+                : null;
+        int attributes = defaults.length;
+        int maxClassIndex = -1;
+        double maxScore = Double.NEGATIVE_INFINITY;
+        for (int classIndex = 0; classIndex < means.length; classIndex++) {
+            if (!trained[classIndex]) {
+                continue;
+            }
+            double score;
+            if (sparseInstance != null) {
+                score = defaultScores[classIndex];
+                for (int i = 0; i < sparseInstance.getNonDefaultCount(); i++) {
+                    int attributeIndex = sparseInstance.getIndex(i);
+                    if (attributeIndex >= attributes) {
+                        continue;
+                    }
+                    double value = getDoubleValue(attributeIndex,
+                            sparseInstance.getValueAt(i));
+                    score += logDensity(classIndex, attributeIndex, value)
+                            - defaultLogDensities[classIndex][attributeIndex];
+                }
+            } else {
+                score = 0;
+                List<Value> vector = instance.getVector();
+                for (int attributeIndex = 0; attributeIndex < attributes; attributeIndex++) {
+                    double value = getDoubleValue(attributeIndex,
+                            vector.get(attributeIndex));
+                    score += logDensity(classIndex, attributeIndex, value);
+                }
+            }
+            if (score > maxScore || maxClassIndex == -1) {
+                maxScore = score;
+                maxClassIndex = classIndex;
+            }
+        }
+        return dataService.getValueFromInt(dataService.classIndex(),
+                maxClassIndex);
+    }
+
+    @Override
+    public List<Value> classifyBatch(List<Instance> instances) {
+        return ParallelClassification.classifyBatch(this, instances);
+    }
+
+    /**
+     * Classify all instances of a dataset. Dense datasets are scored column
+     * by column, so every attribute value is converted once and the densities
+     * of a class are computed in a loop over a contiguous array. The rows are
+     * split in ranges that are scored in parallel.
+     * 
+     * @param dataset
+     *            the dataset to be classified
+     * @return the class/label of every instance
+     */
+    @Override
+    public List<Value> classifyAll(Dataset dataset) {
+        if (sparse || dataset.isSparse()) {
+            return classifyBatch(dataset.getElements());
+        }
+        final ColumnStore columns = dataset.getColumns();
+        final Value[] result = new Value[columns.getRowsCount()];
+        final double[][] codeValues = new double[means[0].length][];
+        for (int attributeIndex = 0; attributeIndex < codeValues.length; attributeIndex++) {
+            if (!columns.isNumeric(attributeIndex)) {
+                codeValues[attributeIndex] = new double[columns
+                        .getDomainSize(attributeIndex)];
+                for (int code = 0; code < codeValues[attributeIndex].length; code++) {
+                    codeValues[attributeIndex][code] = getDoubleValue(
+                            attributeIndex,
+                            columns.getNominalValue(attributeIndex, code));
+                }
+            }
+        }
+        ParallelClassification.runInChunks(result.length,
+                new ParallelClassification.RangeTask() {
+                    @Override
+                    public void run(int start, int end) {
+                        classifyRows(columns, codeValues, start, end, result);
+                    }
+                });
+        return Arrays.asList(result);
+    }
+
+    /*
+     * the same sums as in classifyInstance, but computed for a range of rows
+     * one attribute at a time
+     */
+    private void classifyRows(ColumnStore columns, double[][] codeValues,
+            int start, int end, Value[] result) {
+        int rows = end - start;
+        double[] values = new double[rows];
+        double[][] scores = new double[means.length][rows];
+        for (int classIndex = 0; classIndex < means.length; classIndex++) {
+            Arrays.fill(scores[classIndex], logNormalizerSums[classIndex]);
+        }
+        for (int attributeIndex = 0; attributeIndex < codeValues.length; attributeIndex++) {
+            BitSet unknowns = columns.getUnknowns(attributeIndex);
+            if (columns.isNumeric(attributeIndex)) {
+                System.arraycopy(columns.getNumericColumn(attributeIndex),
+                        start, values, 0, rows);
+            } else {
+                int[] codes = columns.getNominalColumn(attributeIndex);
+                for (int row = 0; row < rows; row++) {
+                    int code = codes[start + row];
+                    // the unknown values are set below
+                    values[row] = code < 0 ? 1.0D
+                            : codeValues[attributeIndex][code];
+                }
+            }
+            for (int row = unknowns.nextSetBit(start); row >= 0 && row < end; row = unknowns
+                    .nextSetBit(row + 1)) {
+                values[row - start] = 1.0D;
+            }
+            for (int classIndex = 0; classIndex < means.length; classIndex++) {
+                if (!trained[classIndex]) {
+                    continue;
+                }
+                double mean = means[classIndex][attributeIndex];
+                double inverseVariance = inverseVariances[classIndex][attributeIndex];
+                double[] score = scores[classIndex];
+                for (int row = 0; row < rows; row++) {
+                    double distance = values[row] - mean;
+                    score[row] -= inverseVariance * distance * distance;
+                }
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            int maxClassIndex = -1;
+            double maxScore = Double.NEGATIVE_INFINITY;
+            for (int classIndex = 0; classIndex < means.length; classIndex++) {
+                if (trained[classIndex]
+                        && (scores[classIndex][row] > maxScore || maxClassIndex == -1)) {
+                    maxScore = scores[classIndex][row];
+                    maxClassIndex = classIndex;
+                }
+            }
+            result[start + row] = dataService.getValueFromInt(
+                    dataService.classIndex(), maxClassIndex);
+        }
+    }
+
     @Override
     public String getName() {
         return "Naive Bayes";
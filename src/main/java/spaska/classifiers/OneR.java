@@ -1,25 +1,33 @@
 package spaska.classifiers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
+import spaska.classifiers.util.BinnedColumns;
 import spaska.classifiers.util.Condition;
-import spaska.classifiers.util.ContinuousValueService;
 import spaska.classifiers.util.DatasetService;
 import spaska.classifiers.util.NominalInfoService;
+import spaska.classifiers.util.NumericSplit;
+import spaska.classifiers.util.ParallelClassification;
 import spaska.classifiers.util.Sign;
+import spaska.classifiers.util.SplitSearch;
 import spaska.classifiers.util.Trees;
 import spaska.data.Attribute;
 import spaska.data.Attribute.ValueType;
 import spaska.data.Dataset;
+import spaska.data.DatasetView;
 import spaska.data.Instance;
 import spaska.data.NominalValue;
 import spaska.data.Value;
 
 /**
  * A classifier that builds a one level tree which identifies what's the
- * attribute that distinguish the instances in the training set.
+ * attribute that distinguish the instances in the training set. The numeric
+ * splits are searched for like in {@link DecisionTree}.
  */
 public final class OneR implements IClassifier {
     /**
@@ -28,13 +36,19 @@ public final class OneR implements IClassifier {
      * @return the parameters for this classifier
      */
     public static Map<String, String> getParameters() {
-        return null;
+        Map<String, String> result = new HashMap<String, String>();
+        result.put("splits", "exact");
+        result.put("bins", String.valueOf(BinnedColumns.MAX_BINS));
+        return result;
     }
 
     private List<Condition> rules;
 
     private DatasetService datasetService;
 
+    private SplitSearch splits = SplitSearch.EXACT;
+    private int bins = BinnedColumns.MAX_BINS;
+
     /**
      * Default constructor.
      */
@@ -79,14 +93,15 @@ public final class OneR implements IClassifier {
     }
 
     // get children of the current node
-    private List<Condition> getConditions(List<Instance> list) {
+    private List<Condition> getConditions(DatasetView view) {
         List<Condition> children = new ArrayList<Condition>();
         boolean[] used = new boolean[datasetService.numberOfAttributes()];
         used[datasetService.classIndex()] = true;
         NominalInfoService infoService = new NominalInfoService(datasetService,
-                list, used);
-        ContinuousValueService continuousService = Trees.getBestNumeric(list,
-                infoService.getClassesEntropy(), datasetService);
+                view.getElements(), used);
+        NumericSplit continuousService = splits.createFinder(view,
+                datasetService, bins).getBestNumeric(
+                infoService.getClassesEntropy());
         if (infoService.isEmpty() && continuousService.isEmpty()) {
             return children;
         }
@@ -110,7 +125,7 @@ public final class OneR implements IClassifier {
     }
 
     private void buildRules(Dataset data) {
-        List<Condition> list = getConditions(data.getElements());
+        List<Condition> list = getConditions(new DatasetView(data));
         if (list.isEmpty()) {
             ZeroR z = new ZeroR();
             z.buildClassifier(data);
@@ -124,11 +139,12 @@ public final class OneR implements IClassifier {
             rules.add(eqCondition);
             rules.add(ineqCondition);
         } else {
-            List<List<Instance>> distribution = Trees.distribute(
-                    data.getElements(), list, datasetService);
+            List<DatasetView> distribution = Trees.distribute(
+                    new DatasetView(data), list, datasetService);
             int listCounter = 0;
             for (Condition c : list) {
-                List<Instance> currentList = distribution.get(listCounter);
+                List<Instance> currentList = distribution.get(listCounter)
+                        .getElements();
                 c.setEffect(majorityVote(currentList));
                 rules.add(c);
                 listCounter++;
@@ -163,6 +179,16 @@ public final class OneR implements IClassifier {
         return null;
     }
 
+    @Override
+    public List<Value> classifyBatch(List<Instance> instances) {
+        return ParallelClassification.classifyBatch(this, instances);
+    }
+
+    @Override
+    public List<Value> classifyAll(Dataset dataset) {
+        return classifyBatch(dataset.getElements());
+    }
+
     @Override
     public String getName() {
         return "OneR";
@@ -179,8 +205,77 @@ public final class OneR implements IClassifier {
         return b.toString();
     }
 
+    /**
+     * Get the way the numeric splits are searched for.
+     * 
+     * @return the numeric split search
+     */
+    public SplitSearch getSplits() {
+        return splits;
+    }
+
+    /**
+     * Set the way the numeric splits are searched for.
+     * 
+     * @param splits
+     *            the new numeric split search
+     */
+    public void setSplits(SplitSearch splits) {
+        if (splits == null) {
+            throw new IllegalArgumentException("\"splits\" must not be null.");
+        }
+        this.splits = splits;
+    }
+
+    /**
+     * Get the maximum number of bins of a numeric attribute for the histogram
+     * splits.
+     * 
+     * @return the maximum number of bins
+     */
+    public int getBins() {
+        return bins;
+    }
+
+    /**
+     * Set the maximum number of bins of a numeric attribute for the histogram
+     * splits.
+     * 
+     * @param bins
+     *            the new maximum number of bins, between 2 and 256
+     */
+    public void setBins(int bins) {
+        if (bins < 2 || bins > BinnedColumns.MAX_BINS) {
+            throw new IllegalArgumentException("\"bins\" must be between 2 and "
+                    + BinnedColumns.MAX_BINS + ".");
+        }
+        this.bins = bins;
+    }
+
     @Override
     public void setParameters(Map<String, String> parameters) {
-        // do nothing
+        for (Entry<String, String> entry : parameters.entrySet()) {
+            setParameters(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void setParameters(String paramName, String paramValue) {
+        if (paramName.equalsIgnoreCase("splits")) {
+            try {
+                setSplits(SplitSearch.valueOf(paramValue.toUpperCase()));
+            } catch (IllegalArgumentException ex) {
+                throw new RuntimeException("\"splits\" must be one of "
+                        + Arrays.toString(SplitSearch.values()) + ".");
+            }
+        } else if (paramName.equalsIgnoreCase("bins")) {
+            try {
+                setBins(Integer.parseInt(paramValue));
+            } catch (NumberFormatException ex) {
+                throw new RuntimeException("\"bins\" must be an integer.");
+            }
+        } else {
+            throw new IllegalArgumentException("OneR: unknown parameter "
+                    + "(valid: Splits; Bins)");
+        }
     }
 }
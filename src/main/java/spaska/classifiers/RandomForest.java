@@ -0,0 +1,450 @@
+package spaska.classifiers;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import spaska.classifiers.util.DatasetService;
+import spaska.classifiers.util.ParallelClassification;
+import spaska.classifiers.util.TaskPool;
+import spaska.data.Dataset;
+import spaska.data.DatasetView;
+import spaska.data.Instance;
+import spaska.data.Value;
+
+/**
+ * A random forest of {@link DecisionTree}s. Every tree is grown from its own
+ * bootstrap sample of the instances, a view with as many rows as the dataset
+ * drawn with replacement, and every node of a tree may only split on a few
+ * random attributes. The trees are grown in parallel and an instance is
+ * classified by the majority vote of the trees.
+ *
+ * <p>
+ * The instances that are not in the sample of a tree are out of its bag. The
+ * out of bag error is the part of the instances that are misclassified by the
+ * trees that did not see them, which estimates the error of the forest
+ * without a test set. The random numbers of every tree are drawn before the
+ * trees are grown, so the forest does not depend on the number of threads.
+ * </p>
+ *
+ * @see <a href="http://dx.doi.org/10.1023/A:1010933404324">Random Forests</a>
+ */
+public final class RandomForest implements IClassifier {
+
+    private static final int DEFAULT_TREES = 100;
+    private static final int THREADS = Runtime.getRuntime()
+            .availableProcessors();
+
+    /**
+     * Get the parameters for this classifier.
+     *
+     * @return the parameters for this classifier
+     */
+    public static Map<String, String> getParameters() {
+        Map<String, String> result = new HashMap<String, String>();
+        result.put("trees", String.valueOf(DEFAULT_TREES));
+        result.put("features", "0");
+        result.put("seed", "1");
+        result.put("threads", String.valueOf(THREADS));
+        result.put("minLeaf", "1");
+        result.put("maxDepth", "0");
+        return result;
+    }
+
+    private int trees = DEFAULT_TREES;
+    private int features = 0; // random attributes per node or 0 for log2
+    private int seed = 1;
+    private int threads = THREADS;
+    private int minLeaf = 1;
+    private int maxDepth = 0;
+
+    private DatasetService datasetService;
+    private DecisionTree[] forest;
+    private double outOfBagError = Double.NaN;
+
+    @Override
+    public void buildClassifier(final Dataset instances) {
+        datasetService = new DatasetService(instances);
+        if (datasetService.numberOfAttributes() < 2) {
+            throw new IllegalArgumentException(
+                    "RandomForest needs an attribute besides the class.");
+        }
+        int size = instances.getElements().size();
+        int nodeFeatures = features > 0 ? features : getDefaultFeatures();
+        Random random = new Random(seed);
+        final BitSet[] inBag = new BitSet[trees];
+        forest = new DecisionTree[trees];
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(trees);
+        for (int t = 0; t < trees; t++) {
+            final DecisionTree tree = new DecisionTree();
+            tree.setFeatures(nodeFeatures);
+            tree.setSeed(random.nextInt());
+            tree.setMinLeaf(minLeaf);
+            tree.setMaxDepth(maxDepth);
+            forest[t] = tree;
+            inBag[t] = new BitSet(size);
+            final DatasetView sample = new DatasetView(instances, bootstrap(
+                    size, random, inBag[t]));
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    tree.buildClassifier(instances, sample);
+                    return null;
+                }
+            });
+        }
+        TaskPool pool = new TaskPool(threads);
+        try {
+            List<Future<Void>> grown = new ArrayList<Future<Void>>(trees);
+            for (Callable<Void> task : tasks) {
+                grown.add(pool.fork(task));
+            }
+            for (Future<Void> tree : grown) {
+                pool.join(tree);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        outOfBagError = getOutOfBagError(instances.getElements(), inBag);
+    }
+
+    // the number of random attributes of a node like in Weka, log2(M) + 1
+    private int getDefaultFeatures() {
+        int attributes = datasetService.numberOfAttributes() - 1;
+        return (int) (Math.log(attributes) / Math.log(2)) + 1;
+    }
+
+    // draw the rows of a sample in ascending order and mark them in the bag
+    private static int[] bootstrap(int size, Random random, BitSet bag) {
+        int[] counts = new int[size];
+        for (int i = 0; i < size; i++) {
+            counts[random.nextInt(size)]++;
+        }
+        int[] rows = new int[size];
+        int position = 0;
+        for (int row = 0; row < size; row++) {
+            for (int k = 0; k < counts[row]; k++) {
+                rows[position++] = row;
+            }
+            if (counts[row] > 0) {
+                bag.set(row);
+            }
+        }
+        return rows;
+    }
+
+    private double getOutOfBagError(final List<Instance> instances,
+            final BitSet[] inBag) {
+        final int classIndex = datasetService.classIndex();
+        final boolean[] voted = new boolean[instances.size()];
+        final boolean[] wrong = new boolean[instances.size()];
+        ParallelClassification.runInChunks(instances.size(),
+                new ParallelClassification.RangeTask() {
+                    @Override
+                    public void run(int start, int end) {
+                        int[] votes = new int[datasetService
+                                .numberOfClasses()];
+                        for (int i = start; i < end; i++) {
+                            Instance instance = instances.get(i);
+                            for (int t = 0; t < forest.length; t++) {
+                                if (!inBag[t].get(i)) {
+                                    vote(votes, forest[t]
+                                            .classifyInstance(instance));
+                                }
+                            }
+                            int winner = getWinner(votes);
+                            if (winner >= 0) {
+                                voted[i] = true;
+                                wrong[i] = winner != datasetService.getCode(
+                                        classIndex,
+                                        datasetService.getClass(instance));
+                            }
+                        }
+                    }
+                });
+        int count = 0;
+        int errors = 0;
+        for (int i = 0; i < voted.length; i++) {
+            if (voted[i]) {
+                count++;
+                if (wrong[i]) {
+                    errors++;
+                }
+            }
+        }
+        return count == 0 ? Double.NaN : (double) errors / count;
+    }
+
+    private void vote(int[] votes, Value value) {
+        if (value != null) {
+            int code = datasetService.getCode(datasetService.classIndex(),
+                    value);
+            if (code >= 0) {
+                votes[code]++;
+            }
+        }
+    }
+
+    // the class with the most votes and clear the votes, -1 for no votes
+    private static int getWinner(int[] votes) {
+        int winner = -1;
+        int max = 0;
+        for (int c = 0; c < votes.length; c++) {
+            if (max < votes[c]) {
+                max = votes[c];
+                winner = c;
+            }
+            votes[c] = 0;
+        }
+        return winner;
+    }
+
+    @Override
+    public Value classifyInstance(Instance instance) {
+        int[] votes = new int[datasetService.numberOfClasses()];
+        for (DecisionTree tree : forest) {
+            vote(votes, tree.classifyInstance(instance));
+        }
+        return datasetService.getValueFromInt(datasetService.classIndex(),
+                getWinner(votes));
+    }
+
+    @Override
+    public List<Value> classifyBatch(List<Instance> instances) {
+        return ParallelClassification.classifyBatch(
+                new ParallelClassification.ScorerFactory() {
+                    @Override
+                    public ParallelClassification.Scorer createScorer() {
+                        final int[] votes = new int[datasetService
+                                .numberOfClasses()];
+                        return new ParallelClassification.Scorer() {
+                            @Override
+                            public Value classify(Instance instance) {
+                                for (DecisionTree tree : forest) {
+                                    vote(votes, tree.classifyInstance(instance));
+                                }
+                                return datasetService.getValueFromInt(
+                                        datasetService.classIndex(),
+                                        getWinner(votes));
+                            }
+                        };
+                    }
+                }, instances);
+    }
+
+    @Override
+    public List<Value> classifyAll(Dataset dataset) {
+        return classifyBatch(dataset.getElements());
+    }
+
+    /**
+     * Get the out of bag error of the built forest.
+     *
+     * @return the part of the instances that are misclassified by the trees
+     *         that were not grown from them or NaN if every instance is in
+     *         the bag of every tree
+     */
+    public double getOutOfBagError() {
+        return outOfBagError;
+    }
+
+    /**
+     * Get the number of trees.
+     *
+     * @return the number of trees
+     */
+    public int getTrees() {
+        return trees;
+    }
+
+    /**
+     * Set the number of trees. The new value is used after the classifier is
+     * built again.
+     *
+     * @param trees
+     *            the new number of trees, at least 1
+     */
+    public void setTrees(int trees) {
+        if (trees < 1) {
+            throw new IllegalArgumentException("\"trees\" must be positive.");
+        }
+        this.trees = trees;
+    }
+
+    /**
+     * Get the number of random attributes that a node may split on.
+     *
+     * @return the number of attributes or 0 for log2(M) + 1 of the M
+     *         attributes
+     */
+    public int getFeatures() {
+        return features;
+    }
+
+    /**
+     * Set the number of random attributes that a node may split on. The new
+     * value is used after the classifier is built again.
+     *
+     * @param features
+     *            the new number of attributes or 0 for log2(M) + 1 of the M
+     *            attributes
+     */
+    public void setFeatures(int features) {
+        if (features < 0) {
+            throw new IllegalArgumentException(
+                    "\"features\" must not be negative.");
+        }
+        this.features = features;
+    }
+
+    /**
+     * Get the seed of the samples and of the random attributes.
+     *
+     * @return the seed
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Set the seed of the samples and of the random attributes. The new value
+     * is used after the classifier is built again.
+     *
+     * @param seed
+     *            the new seed
+     */
+    public void setSeed(int seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Get the number of threads that grow the trees.
+     *
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the number of threads that grow the trees. The new value is used
+     * after the classifier is built again.
+     *
+     * @param threads
+     *            the new number of threads, at least 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "\"threads\" must be positive.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Get the minimum number of instances of a leaf of a tree.
+     *
+     * @return the minimum number of instances
+     */
+    public int getMinLeaf() {
+        return minLeaf;
+    }
+
+    /**
+     * Set the minimum number of instances of a leaf of a tree, see
+     * {@link DecisionTree#setMinLeaf(int)}. The new value is used after the
+     * classifier is built again.
+     *
+     * @param minLeaf
+     *            the new minimum number of instances, at least 1
+     */
+    public void setMinLeaf(int minLeaf) {
+        if (minLeaf < 1) {
+            throw new IllegalArgumentException(
+                    "\"minLeaf\" must be positive.");
+        }
+        this.minLeaf = minLeaf;
+    }
+
+    /**
+     * Get the maximum depth of the tests of a tree.
+     *
+     * @return the maximum depth or 0 if there is no limit
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Set the maximum depth of the tests of a tree, see
+     * {@link DecisionTree#setMaxDepth(int)}. The new value is used after the
+     * classifier is built again.
+     *
+     * @param maxDepth
+     *            the new maximum depth or 0 for no limit
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException(
+                    "\"maxDepth\" must not be negative.");
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public void setParameters(Map<String, String> parameters) {
+        for (Entry<String, String> entry : parameters.entrySet()) {
+            setParameters(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void setParameters(String paramName, String paramValue) {
+        if (paramName.equalsIgnoreCase("trees")) {
+            setTrees(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("features")) {
+            setFeatures(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("seed")) {
+            setSeed(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("threads")) {
+            setThreads(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("minLeaf")) {
+            setMinLeaf(parseInt(paramName, paramValue));
+        } else if (paramName.equalsIgnoreCase("maxDepth")) {
+            setMaxDepth(parseInt(paramName, paramValue));
+        } else {
+            throw new IllegalArgumentException("RandomForest: unknown parameter "
+                    + "(valid: Trees; Features; Seed; Threads; MinLeaf; "
+                    + "MaxDepth)");
+        }
+    }
+
+    private static int parseInt(String paramName, String paramValue) {
+        try {
+            return Integer.parseInt(paramValue);
+        } catch (NumberFormatException ex) {
+            throw new RuntimeException("\"" + paramName
+                    + "\" must be an integer.");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "RandomForest";
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("=== Random forest ===\n");
+        if (forest != null) {
+            b.append(String.format("Trees: %d\nOut of bag error: %f\n",
+                    forest.length, outOfBagError));
+        }
+        return b.toString();
+    }
+}
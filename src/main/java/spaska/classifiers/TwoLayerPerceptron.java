@@ -1,11 +1,18 @@
 package spaska.classifiers;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import spaska.classifiers.util.DatasetService;
+import spaska.classifiers.util.ParallelClassification;
+import spaska.classifiers.util.TaskPool;
 import spaska.data.Dataset;
 import spaska.data.Instance;
 import spaska.data.Value;
@@ -13,6 +20,28 @@ import spaska.data.Value;
 /**
  * Classifier that is based on neural two layer networks that learns with
  * backpropagation.
+ *
+ * <p>
+ * The inputs of the training instances are encoded once in a row major
+ * <code>double[]</code> and the weights of every layer are kept in one
+ * <code>double[]</code> with the weights from a node to the next layer next to
+ * each other. The passes add a node to all nodes of the next layer at once,
+ * so the epochs run over flat arrays in loops that the JIT can vectorize,
+ * without looking up values or creating objects.
+ * </p>
+ *
+ * <p>
+ * With a batch size of one and plain gradient descent the network learns
+ * online, one instance after the other in the order of the dataset. Bigger
+ * batches are drawn from a shuffled order in every epoch and the gradients of
+ * a batch are summed before the weights are updated. A big batch is summed in
+ * parts that can run in many threads, and the parts do not depend on the
+ * number of threads, so neither does the network. The updates
+ * of a batch can use momentum or Adam. A fold of the instances can be held
+ * out to stop the training when the error of the fold has not gone down for
+ * a number of epochs, and the network is set back to the weights of the
+ * epoch with the lowest error.
+ * </p>
  */
 public final class TwoLayerPerceptron implements IClassifier {
     private static final int DEFAULT_NUMBER_OF_NODES_IN_HIDDEN_LAYER = 2;
@@ -21,6 +50,29 @@ public final class TwoLayerPerceptron implements IClassifier {
     private static final int INITIAL_VALUE = 1;
     private static final int DEFAULT_NUMBER_OF_ITERATIONS = 500;
     private static final double DEFAULT_LEARNING_RATE = 0.1;
+    private static final double DEFAULT_MOMENTUM = 0.9;
+    private static final int VALIDATION_FOLDS = 5;
+    // a batch is summed in parts of at least this many rows, which can run in
+    // different threads
+    private static final int PART_ROWS = 32;
+    private static final int MAX_PARTS = 64;
+    // the decay rates of the moments of Adam and the term against division
+    // by zero
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+    private static final double EPSILON = 1e-8;
+
+    /**
+     * The rules to update the weights with the gradients of a batch.
+     */
+    public enum Optimizer {
+        /** Step along the gradient. */
+        SGD,
+        /** Step along a decaying sum of the gradients. */
+        MOMENTUM,
+        /** Step along the gradient scaled by its moments. */
+        ADAM
+    }
 
     /**
      * Get the parameters for this classifier.
@@ -32,6 +84,11 @@ public final class TwoLayerPerceptron implements IClassifier {
         params.put(EPOCHS_NAME, "500");
         params.put(LEARNING_RATE_NAME, "0.1");
         params.put(HIDDEN_NODES_NAME, HIDDEN_NODES_DEFAULT);
+        params.put(BATCH_SIZE_NAME, "1");
+        params.put(OPTIMIZER_NAME, Optimizer.SGD.name().toLowerCase());
+        params.put(MOMENTUM_NAME, String.valueOf(DEFAULT_MOMENTUM));
+        params.put(THREADS_NAME, "1");
+        params.put(EARLY_STOPPING_NAME, "0");
         return params;
     }
 
@@ -41,13 +98,29 @@ public final class TwoLayerPerceptron implements IClassifier {
     private double learningRate; // number between 0 and 1
     private int numAttributes; // number of attributes
     private int numClasses; // number of different classes
-    private double[][] bNet; // first matrix - output X inner
-    private double[][] eNet; // second matrix - inner X output
-    private double[] firstNodes; // input
+    private int numInputs; // number of nonclass attributes
+    private double[] bNet; // first matrix - input X inner, row by row
+    private double[] eNet; // second matrix - inner X output, row by row
     private double[] innerNodes; // hidden nodes layer
     private double[] classNodes; // output
     private double[] delta; // error in backpropagation
-    private List<Instance> data;
+    private double[] innerDelta; // error of the hidden nodes
+    // the encoded inputs of the training instances, row by row
+    private double[] inputs;
+    private int[] labels; // the class of every training instance
+    private int batchSize = 1;
+    private Optimizer optimizer = Optimizer.SGD;
+    private double momentum = DEFAULT_MOMENTUM;
+    private int threads = 1;
+    private int earlyStopping; // epochs without progress or 0
+    private int trainedEpochs;
+    // the steps of momentum or the first and second moments of Adam
+    private double[] bVelocity;
+    private double[] eVelocity;
+    private double[] bSquares;
+    private double[] eSquares;
+    private int steps; // the number of updates for Adam
+    private int seed;
     private Random randomObject;
     private DatasetService datasetService;
     private int[] nonclassIndices; // indices of nonclass attributes
@@ -65,6 +138,13 @@ public final class TwoLayerPerceptron implements IClassifier {
             "Number of nodes in hidden layer";
     private static final String HIDDEN_NODES_DEFAULT = 
             "(attributes + classes)/2";
+    private static final String BATCH_SIZE_NAME = "Batch size";
+    private static final String OPTIMIZER_NAME = 
+            "Optimizer (sgd, momentum or adam)";
+    private static final String MOMENTUM_NAME = "Momentum (between 0 and 1)";
+    private static final String THREADS_NAME = "Number of threads";
+    private static final String EARLY_STOPPING_NAME = 
+            "Epochs without progress before stopping (0 for none)";
 
     /**
      * Default constructor.
@@ -93,6 +173,7 @@ public final class TwoLayerPerceptron implements IClassifier {
     public TwoLayerPerceptron(int hiddenNodes, int epochs, double learningRate,
             int seed) {
         initParameters(hiddenNodes, epochs, learningRate);
+        this.seed = seed;
         this.randomObject = new Random(seed);
         this.calculateDefault = true;
     }
@@ -101,21 +182,42 @@ public final class TwoLayerPerceptron implements IClassifier {
 
     // Initializers ------------------------------------------------
     private void initNets() {
-        firstNodes = new double[numAttributes];
         innerNodes = new double[hiddenNodes];
         classNodes = new double[numClasses];
         delta = new double[numClasses];
-        bNet = new double[numAttributes][hiddenNodes];
-        eNet = new double[hiddenNodes][numClasses];
-        for (int i = 0; i < bNet.length; i++) {
-            for (int j = 0; j < bNet[0].length; j++) {
-                bNet[i][j] = randomWeight();
+        innerDelta = new double[hiddenNodes];
+        bNet = new double[numInputs * hiddenNodes];
+        eNet = new double[hiddenNodes * numClasses];
+        // the weights are drawn like for a row per attribute, the row of the
+        // class attribute is not used
+        for (int i = 0; i < numAttributes; i++) {
+            for (int j = 0; j < hiddenNodes; j++) {
+                double weight = randomWeight();
+                if (i < numInputs) {
+                    bNet[i * hiddenNodes + j] = weight;
+                }
             }
         }
         for (int i = 0; i < eNet.length; i++) {
-            for (int j = 0; j < eNet[0].length; j++) {
-                eNet[i][j] = randomWeight();
-            }
+            eNet[i] = randomWeight();
+        }
+    }
+
+    // encode the inputs and the classes of the training instances once
+    private void encode(List<Instance> data) {
+        inputs = new double[data.size() * numInputs];
+        labels = new int[data.size()];
+        for (int r = 0; r < data.size(); r++) {
+            encode(data.get(r), inputs, r * numInputs);
+            labels[r] = (int) getDoubleValue(data.get(r),
+                    datasetService.classIndex());
+        }
+    }
+
+    // encode the inputs of an instance at the given offset
+    private void encode(Instance instance, double[] target, int offset) {
+        for (int i = 0; i < numInputs; i++) {
+            target[offset + i] = getDoubleValue(instance, nonclassIndices[i]);
         }
     }
 
@@ -197,6 +299,137 @@ public final class TwoLayerPerceptron implements IClassifier {
         return this.learningRate;
     }
 
+    /**
+     * Set the number of instances whose gradients are summed before the
+     * weights are updated.
+     * 
+     * @param size
+     *            the new batch size, 1 for online learning
+     */
+    public void setBatchSize(int size) {
+        if (size <= 0) {
+            this.batchSize = 1;
+        } else {
+            this.batchSize = size;
+        }
+    }
+
+    /**
+     * Get the number of instances whose gradients are summed before the
+     * weights are updated.
+     * 
+     * @return the batch size
+     */
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * Set the rule to update the weights with the gradients of a batch.
+     * 
+     * @param optimizer
+     *            the new update rule
+     */
+    public void setOptimizer(Optimizer optimizer) {
+        if (optimizer == null) {
+            this.optimizer = Optimizer.SGD;
+        } else {
+            this.optimizer = optimizer;
+        }
+    }
+
+    /**
+     * Get the rule to update the weights with the gradients of a batch.
+     * 
+     * @return the update rule
+     */
+    public Optimizer getOptimizer() {
+        return this.optimizer;
+    }
+
+    /**
+     * Set the part of the last step that is added to the next one with
+     * {@link Optimizer#MOMENTUM}.
+     * 
+     * @param momentum
+     *            the new momentum
+     */
+    public void setMomentum(double momentum) {
+        if (momentum < 0 || momentum >= 1) {
+            this.momentum = DEFAULT_MOMENTUM;
+        } else {
+            this.momentum = momentum;
+        }
+    }
+
+    /**
+     * Get the part of the last step that is added to the next one with
+     * {@link Optimizer#MOMENTUM}.
+     * 
+     * @return the momentum
+     */
+    public double getMomentum() {
+        return this.momentum;
+    }
+
+    /**
+     * Set the number of threads that sum the gradients of a batch.
+     * 
+     * @param number
+     *            the new number of threads
+     */
+    public void setThreads(int number) {
+        if (number <= 0) {
+            this.threads = 1;
+        } else {
+            this.threads = number;
+        }
+    }
+
+    /**
+     * Get the number of threads that sum the gradients of a batch.
+     * 
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Set the number of epochs without a lower error of the held out
+     * instances after which the training stops.
+     * 
+     * @param epochs
+     *            the new number of epochs or 0 to train for all epochs on all
+     *            instances
+     */
+    public void setEarlyStopping(int epochs) {
+        if (epochs < 0) {
+            this.earlyStopping = 0;
+        } else {
+            this.earlyStopping = epochs;
+        }
+    }
+
+    /**
+     * Get the number of epochs without a lower error of the held out
+     * instances after which the training stops.
+     * 
+     * @return the number of epochs or 0 if no instances are held out
+     */
+    public int getEarlyStopping() {
+        return this.earlyStopping;
+    }
+
+    /**
+     * Get the number of epochs of the last training.
+     * 
+     * @return the number of epochs that were run
+     */
+    public int getTrainedEpochs() {
+        return this.trainedEpochs;
+    }
+
     private double randomWeight() {
         int sign = randomObject.nextInt(2) > 0 ? 1 : -1;
         return randomObject.nextDouble() * DEFAULT_INTERVAL_LENGTH * sign;
@@ -223,50 +456,65 @@ public final class TwoLayerPerceptron implements IClassifier {
         return result;
     }
 
-    // forward pass in the network
-    private void propagateForward(Instance instance) {
-        double sum;
-        for (int i = 0; i < nonclassIndices.length; i++) {
-            firstNodes[i] = getDoubleValue(instance, nonclassIndices[i]);
-        }
+    // forward pass for the inputs at the given offset, the node values are
+    // given so it can run in many threads
+    private void propagateForward(double[] input, int offset, double[] inner,
+            double[] output) {
         for (int i = 0; i < hiddenNodes; i++) {
-            innerNodes[i] = 0;
-            sum = 0;
-            for (int j = 0; j < nonclassIndices.length; j++) {
-                sum += firstNodes[j] * bNet[j][i];
+            inner[i] = 0;
+        }
+        for (int j = 0; j < numInputs; j++) {
+            double value = input[offset + j];
+            int weights = j * hiddenNodes;
+            for (int i = 0; i < hiddenNodes; i++) {
+                inner[i] += value * bNet[weights + i];
             }
-            innerNodes[i] = aFunc(sum);
+        }
+        for (int i = 0; i < hiddenNodes; i++) {
+            inner[i] = aFunc(inner[i]);
         }
         for (int i = 0; i < numClasses; i++) {
-            classNodes[i] = 0;
-            sum = 0;
-            for (int j = 0; j < hiddenNodes; j++) {
-                sum += innerNodes[j] * eNet[j][i];
+            output[i] = 0;
+        }
+        for (int j = 0; j < hiddenNodes; j++) {
+            double value = inner[j];
+            int weights = j * numClasses;
+            for (int i = 0; i < numClasses; i++) {
+                output[i] += value * eNet[weights + i];
             }
-            classNodes[i] = aFunc(sum);
+        }
+        for (int i = 0; i < numClasses; i++) {
+            output[i] = aFunc(output[i]);
         }
     }
 
-    private void propagateBackward(Instance instance) {
+    private void propagateBackward(double[] input, int offset, int label) {
         double t = INITIAL_VALUE;
         for (int j = 0; j < numClasses; j++) {
-            t = target(j, getDoubleValue(instance, 
-                    datasetService.classIndex()));
+            t = target(j, label);
             delta[j] = derivative(classNodes[j]) * (t - classNodes[j]);
-            for (int i = 0; i < hiddenNodes; i++) {
-                eNet[i][j] += delta[j] * innerNodes[i] * learningRate;
+        }
+        for (int i = 0; i < hiddenNodes; i++) {
+            double value = innerNodes[i];
+            int weights = i * numClasses;
+            for (int j = 0; j < numClasses; j++) {
+                eNet[weights + j] += delta[j] * value * learningRate;
             }
         }
-        double deltaJ, sum;
+        double sum;
         for (int j = 0; j < hiddenNodes; j++) {
-            deltaJ = derivative(innerNodes[j]);
+            int weights = j * numClasses;
             sum = 0;
             for (int k = 0; k < numClasses; k++) {
-                sum += delta[k] * eNet[j][k];
+                sum += delta[k] * eNet[weights + k];
             }
-            deltaJ *= sum;
-            for (int i = 0; i < nonclassIndices.length; i++) {
-                bNet[i][j] += deltaJ * firstNodes[i] * learningRate;
+            innerDelta[j] = derivative(innerNodes[j]) * sum;
+        }
+        for (int i = 0; i < numInputs; i++) {
+            double value = input[offset + i];
+            int weights = i * hiddenNodes;
+            for (int j = 0; j < hiddenNodes; j++) {
+                bNet[weights + j] += innerDelta[j] * value * learningRate;
             }
         }
     }
@@ -296,13 +544,191 @@ public final class TwoLayerPerceptron implements IClassifier {
     }
 
     // training with a preset number of epochs
-    private void train() {
+    private void train(Dataset instances, TaskPool pool) {
+        BitSet held = new BitSet(labels.length);
+        if (earlyStopping > 0) {
+            for (int row : instances.getFoldPlan(VALIDATION_FOLDS, seed)
+                    .getTestRows(0)) {
+                held.set(row);
+            }
+        }
+        int[] order = new int[labels.length - held.cardinality()];
+        int[] validation = new int[held.cardinality()];
+        for (int i = 0, t = 0, v = 0; i < labels.length; i++) {
+            if (held.get(i)) {
+                validation[v++] = i;
+            } else {
+                order[t++] = i;
+            }
+        }
+        boolean online = batchSize == 1 && optimizer == Optimizer.SGD;
+        Gradient[] gradients = new Gradient[getParts(Math.min(batchSize,
+                order.length))];
+        for (int i = 0; i < gradients.length; i++) {
+            gradients[i] = new Gradient();
+        }
+        initSteps();
+        double[] bBest = null;
+        double[] eBest = null;
+        double bestError = Double.POSITIVE_INFINITY;
+        int bestEpoch = 0;
+        trainedEpochs = 0;
         for (int i = 0; i < numEpochs; i++) {
-            for (int j = 0; j < data.size(); j++) {
-                propagateForward(data.get(j));
-                propagateBackward(data.get(j));
+            if (online) {
+                for (int j = 0; j < order.length; j++) {
+                    int offset = order[j] * numInputs;
+                    propagateForward(inputs, offset, innerNodes, classNodes);
+                    propagateBackward(inputs, offset, labels[order[j]]);
+                }
+            } else {
+                shuffle(order);
+                for (int start = 0; start < order.length; start += batchSize) {
+                    int end = Math.min(start + batchSize, order.length);
+                    sumGradients(gradients, order, start, end, pool);
+                    update(gradients[0], end - start);
+                }
             }
+            trainedEpochs++;
+            if (validation.length > 0) {
+                double error = getError(validation);
+                if (error < bestError) {
+                    bestError = error;
+                    bestEpoch = i;
+                    bBest = copy(bNet, bBest);
+                    eBest = copy(eNet, eBest);
+                } else if (i - bestEpoch >= earlyStopping) {
+                    break;
+                }
+            }
+        }
+        if (bBest != null) {
+            bNet = bBest;
+            eNet = eBest;
+        }
+    }
+
+    private void initSteps() {
+        steps = 0;
+        bVelocity = null;
+        eVelocity = null;
+        bSquares = null;
+        eSquares = null;
+        if (optimizer != Optimizer.SGD) {
+            bVelocity = new double[bNet.length];
+            eVelocity = new double[eNet.length];
         }
+        if (optimizer == Optimizer.ADAM) {
+            bSquares = new double[bNet.length];
+            eSquares = new double[eNet.length];
+        }
+    }
+
+    private void shuffle(int[] order) {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = randomObject.nextInt(i + 1);
+            int row = order[i];
+            order[i] = order[j];
+            order[j] = row;
+        }
+    }
+
+    private static double[] copy(double[] source, double[] target) {
+        if (target == null) {
+            return source.clone();
+        }
+        System.arraycopy(source, 0, target, 0, source.length);
+        return target;
+    }
+
+    // the number of parts of a batch of the given size
+    private static int getParts(int size) {
+        return Math.max(1, Math.min(MAX_PARTS, size / PART_ROWS));
+    }
+
+    // sum the gradients of a batch in the first gradient, every gradient sums
+    // a part of the batch in a task of the pool and the parts are added in
+    // order
+    private void sumGradients(final Gradient[] gradients, final int[] order,
+            int start, int end, TaskPool pool) {
+        int parts = getParts(end - start);
+        if (parts == 1) {
+            gradients[0].clear();
+            for (int j = start; j < end; j++) {
+                gradients[0].add(order[j]);
+            }
+            return;
+        }
+        List<Future<Void>> forked = new ArrayList<Future<Void>>(parts);
+        for (int p = 0; p < parts; p++) {
+            final Gradient gradient = gradients[p];
+            final int from = start + p * (end - start) / parts;
+            final int to = start + (p + 1) * (end - start) / parts;
+            forked.add(pool.fork(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    gradient.clear();
+                    for (int j = from; j < to; j++) {
+                        gradient.add(order[j]);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> part : forked) {
+            pool.join(part);
+        }
+        for (int p = 1; p < parts; p++) {
+            gradients[0].add(gradients[p]);
+        }
+    }
+
+    // update the weights with the summed gradients of a batch
+    private void update(Gradient gradient, int size) {
+        steps++;
+        update(bNet, gradient.bGradient, bVelocity, bSquares, size);
+        update(eNet, gradient.eGradient, eVelocity, eSquares, size);
+    }
+
+    private void update(double[] weights, double[] gradient,
+            double[] velocity, double[] squares, int size) {
+        double rate = learningRate / size;
+        switch (optimizer) {
+        case MOMENTUM:
+            for (int i = 0; i < weights.length; i++) {
+                velocity[i] = momentum * velocity[i] + rate * gradient[i];
+                weights[i] += velocity[i];
+            }
+            break;
+        case ADAM:
+            double first = 1 - Math.pow(BETA1, steps);
+            double second = 1 - Math.pow(BETA2, steps);
+            for (int i = 0; i < weights.length; i++) {
+                double mean = gradient[i] / size;
+                velocity[i] = BETA1 * velocity[i] + (1 - BETA1) * mean;
+                squares[i] = BETA2 * squares[i] + (1 - BETA2) * mean * mean;
+                weights[i] += learningRate * (velocity[i] / first)
+                        / (Math.sqrt(squares[i] / second) + EPSILON);
+            }
+            break;
+        default:
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] += rate * gradient[i];
+            }
+            break;
+        }
+    }
+
+    // the mean squared error of the outputs for the given rows
+    private double getError(int[] rows) {
+        double sum = 0;
+        for (int row : rows) {
+            propagateForward(inputs, row * numInputs, innerNodes, classNodes);
+            for (int k = 0; k < numClasses; k++) {
+                double error = target(k, labels[row]) - classNodes[k];
+                sum += error * error;
+            }
+        }
+        return sum / rows.length;
     }
 
     // max number in a double array
@@ -328,31 +754,85 @@ public final class TwoLayerPerceptron implements IClassifier {
         }
 
         this.datasetService = new DatasetService(instances);
-        this.data = instances.getElements();
         this.numAttributes = datasetService.numberOfAttributes();
         this.numClasses = datasetService.numberOfClasses();
         if (calculateDefault) {
             this.hiddenNodes = (numAttributes + numClasses) / 2;
         }
-        this.nonclassIndices = new int[numAttributes - 1];
+        this.numInputs = numAttributes - 1;
+        this.nonclassIndices = new int[numInputs];
         int j = 0;
         for (int i = 0; i < numAttributes; i++) {
             if (i != datasetService.classIndex()) {
                 nonclassIndices[j++] = i;
             }
         }
+        // every building draws the same weights, so does a copy of this
+        randomObject = new Random(seed);
         initNets();
-        train();
+        encode(instances.getElements());
+        TaskPool pool = new TaskPool(threads);
+        try {
+            train(instances, pool);
+        } finally {
+            pool.shutdown();
+            inputs = null;
+            labels = null;
+            bVelocity = null;
+            eVelocity = null;
+            bSquares = null;
+            eSquares = null;
+        }
     }
 
     @Override
     public Value classifyInstance(Instance instance) {
-        propagateForward(instance);
-        int intValue = max(classNodes);
+        return classify(instance, new double[numAttributes],
+                new double[hiddenNodes], new double[numClasses]);
+    }
+
+    private Value classify(Instance instance, double[] first, double[] inner,
+            double[] output) {
+        encode(instance, first, 0);
+        propagateForward(first, 0, inner, output);
+        int intValue = max(output);
         return datasetService.getValueFromInt(datasetService.classIndex(),
                 intValue);
     }
 
+    /**
+     * Classify many instances in parallel. Every chunk of instances reuses
+     * the values of the nodes.
+     * 
+     * @param instances
+     *            the instances to be classified
+     * @return the class/label of every instance
+     */
+    @Override
+    public List<Value> classifyBatch(List<Instance> instances) {
+        return ParallelClassification.classifyBatch(
+                new ParallelClassification.ScorerFactory() {
+                    @Override
+                    public ParallelClassification.Scorer createScorer() {
+                        final double[] first = new double[numAttributes];
+                        final double[] inner = new double[hiddenNodes];
+                        final double[] output = new double[numClasses];
+                        return new ParallelClassification.Scorer() {
+                            @Override
+                            public Value classify(Instance instance) {
+                                return TwoLayerPerceptron.this.classify(
+                                        instance, first, inner, output);
+                            }
+                        };
+                    }
+                }, instances);
+    }
+
+    @Override
+    public List<Value> classifyAll(Dataset dataset) {
+        return classifyBatch(dataset.getElements());
+    }
+
     @Override
     public String getName() {
         return "TwoLayerPerceptron";
@@ -382,6 +862,46 @@ public final class TwoLayerPerceptron implements IClassifier {
             }
             return;
         }
+        if (paramName.equalsIgnoreCase(BATCH_SIZE_NAME)) {
+            try {
+                setBatchSize(Integer.parseInt(paramValue));
+            } catch (Exception e) {
+                setBatchSize(1);
+            }
+            return;
+        }
+        if (paramName.equalsIgnoreCase(OPTIMIZER_NAME)) {
+            try {
+                setOptimizer(Optimizer.valueOf(paramValue.toUpperCase()));
+            } catch (Exception e) {
+                setOptimizer(Optimizer.SGD);
+            }
+            return;
+        }
+        if (paramName.equalsIgnoreCase(MOMENTUM_NAME)) {
+            try {
+                setMomentum(Double.parseDouble(paramValue));
+            } catch (Exception e) {
+                setMomentum(DEFAULT_MOMENTUM);
+            }
+            return;
+        }
+        if (paramName.equalsIgnoreCase(THREADS_NAME)) {
+            try {
+                setThreads(Integer.parseInt(paramValue));
+            } catch (Exception e) {
+                setThreads(1);
+            }
+            return;
+        }
+        if (paramName.equalsIgnoreCase(EARLY_STOPPING_NAME)) {
+            try {
+                setEarlyStopping(Integer.parseInt(paramValue));
+            } catch (Exception e) {
+                setEarlyStopping(0);
+            }
+            return;
+        }
         if (paramName.equalsIgnoreCase(HIDDEN_NODES_NAME)) {
             if (paramValue.equalsIgnoreCase(HIDDEN_NODES_DEFAULT)) {
                 calculateDefault = true;
@@ -401,8 +921,65 @@ public final class TwoLayerPerceptron implements IClassifier {
     public String toString() {
         String formatString = "Two Layer Perceptron \n  "
                 + "- epochs : %d\n  - learning rate : %.3f\n"
-                + "  - hidden nodes : %d\n";
-        return String
-                .format(formatString, numEpochs, learningRate, hiddenNodes);
+                + "  - hidden nodes : %d\n  - batch size : %d\n"
+                + "  - optimizer : %s\n  - trained epochs : %d\n";
+        return String.format(formatString, numEpochs, learningRate,
+                hiddenNodes, batchSize, optimizer, trainedEpochs);
+    }
+
+    /**
+     * The summed gradients of the weights for a part of a batch, with its own
+     * node values so the parts can be summed in many threads.
+     */
+    private final class Gradient {
+        private final double[] inner = new double[hiddenNodes];
+        private final double[] output = new double[numClasses];
+        private final double[] outputDelta = new double[numClasses];
+        private final double[] hiddenDelta = new double[hiddenNodes];
+        private final double[] bGradient = new double[bNet.length];
+        private final double[] eGradient = new double[eNet.length];
+
+        void clear() {
+            Arrays.fill(bGradient, 0);
+            Arrays.fill(eGradient, 0);
+        }
+
+        // add the gradients of a training row, the direction in which the
+        // squared error goes down
+        void add(int row) {
+            int offset = row * numInputs;
+            propagateForward(inputs, offset, inner, output);
+            for (int j = 0; j < numClasses; j++) {
+                outputDelta[j] = derivative(output[j])
+                        * (target(j, labels[row]) - output[j]);
+            }
+            double sum;
+            for (int j = 0; j < hiddenNodes; j++) {
+                double value = inner[j];
+                int weights = j * numClasses;
+                sum = 0;
+                for (int k = 0; k < numClasses; k++) {
+                    eGradient[weights + k] += outputDelta[k] * value;
+                    sum += outputDelta[k] * eNet[weights + k];
+                }
+                hiddenDelta[j] = derivative(value) * sum;
+            }
+            for (int i = 0; i < numInputs; i++) {
+                double value = inputs[offset + i];
+                int weights = i * hiddenNodes;
+                for (int j = 0; j < hiddenNodes; j++) {
+                    bGradient[weights + j] += hiddenDelta[j] * value;
+                }
+            }
+        }
+
+        void add(Gradient other) {
+            for (int i = 0; i < bGradient.length; i++) {
+                bGradient[i] += other.bGradient[i];
+            }
+            for (int i = 0; i < eGradient.length; i++) {
+                eGradient[i] += other.eGradient[i];
+            }
+        }
     }
 }
@@ -1,6 +1,9 @@
 package spaska.classifiers;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import spaska.data.Dataset;
@@ -52,6 +55,17 @@ public final class ZeroR implements IClassifier {
         return commonValue;
     }
 
+    @Override
+    public List<Value> classifyBatch(List<Instance> instances) {
+        return new ArrayList<Value>(Collections.nCopies(instances.size(),
+                commonValue));
+    }
+
+    @Override
+    public List<Value> classifyAll(Dataset dataset) {
+        return classifyBatch(dataset.getElements());
+    }
+
     @Override
     public String getName() {
         return "ZeroR";
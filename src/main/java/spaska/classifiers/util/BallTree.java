@@ -0,0 +1,149 @@
+package spaska.classifiers.util;
+
+/**
+ * A ball tree over the embedded rows. Every node keeps the centroid of its
+ * rows and the radius of the ball around it, so the distance to the centroid
+ * minus the radius is a lower bound for the distance to the rows. Unlike a k-d
+ * tree the bound does not get worse with the number of coordinates as fast, so
+ * it is used for many or nominal attributes.
+ */
+public final class BallTree extends TreeIndex {
+
+    private final Node root;
+
+    /**
+     * Build the tree.
+     *
+     * @param distance
+     *            the distance and the embedding of the rows
+     * @param rows
+     *            the complete rows to index
+     */
+    public BallTree(InstanceDistance distance, int[] rows) {
+        super(distance, rows);
+        root = size() == 0 ? null : build(0, size(), new double[size()]);
+    }
+
+    private Node build(int start, int end, double[] keys) {
+        Node node = new Node(start, end, dimensions());
+        for (int i = start; i < end; i++) {
+            for (int d = 0; d < dimensions(); d++) {
+                node.center[d] += coordinate(i, d);
+            }
+        }
+        for (int d = 0; d < dimensions(); d++) {
+            node.center[d] /= end - start;
+        }
+        int farthest = start;
+        double radius = 0;
+        for (int i = start; i < end; i++) {
+            double dst = squaredDistance(i, node.center);
+            if (dst > radius) {
+                radius = dst;
+                farthest = i;
+            }
+        }
+        node.radius = Math.sqrt(radius);
+        if (end - start <= LEAF_SIZE || radius == 0) {
+            return node;
+        }
+        // split along the line between the farthest row from the center and
+        // the farthest row from that one
+        double[] a = new double[dimensions()];
+        for (int d = 0; d < dimensions(); d++) {
+            a[d] = coordinate(farthest, d);
+        }
+        int other = farthest;
+        double max = -1;
+        for (int i = start; i < end; i++) {
+            double dst = squaredDistance(i, a);
+            if (dst > max) {
+                max = dst;
+                other = i;
+            }
+        }
+        double[] direction = new double[dimensions()];
+        for (int d = 0; d < dimensions(); d++) {
+            direction[d] = coordinate(other, d) - a[d];
+        }
+        for (int i = start; i < end; i++) {
+            double projection = 0;
+            for (int d = 0; d < dimensions(); d++) {
+                projection += coordinate(i, d) * direction[d];
+            }
+            keys[i] = projection;
+        }
+        int middle = (start + end) >>> 1;
+        select(start, end, middle, keys);
+        node.left = build(start, middle, keys);
+        node.right = build(middle, end, keys);
+        return node;
+    }
+
+    private double squaredDistance(int position, double[] point) {
+        double distance = 0;
+        for (int d = 0; d < dimensions(); d++) {
+            double dst = coordinate(position, d) - point[d];
+            distance += dst * dst;
+        }
+        return distance;
+    }
+
+    @Override
+    public void search(InstanceDistance.Query query, NeighbourHeap heap) {
+        if (root != null) {
+            search(root, query, bound(root, query), heap);
+        }
+    }
+
+    private void search(Node node, InstanceDistance.Query query,
+            double bound, NeighbourHeap heap) {
+        if (canSkip(bound, heap)) {
+            return;
+        }
+        if (node.left == null) {
+            scan(query, node.start, node.end, heap);
+            return;
+        }
+        double leftBound = bound(node.left, query);
+        double rightBound = bound(node.right, query);
+        if (leftBound <= rightBound) {
+            search(node.left, query, leftBound, heap);
+            search(node.right, query, rightBound, heap);
+        } else {
+            search(node.right, query, rightBound, heap);
+            search(node.left, query, leftBound, heap);
+        }
+    }
+
+    /* the squared distance from the query to the ball of the node */
+    private double bound(Node node, InstanceDistance.Query query) {
+        double squared = 0;
+        for (int d = 0; d < dimensions(); d++) {
+            if (!query.isSkipped(d)) {
+                double dst = query.coordinate(d) - node.center[d];
+                squared += dst * dst;
+            }
+        }
+        double gap = Math.max(0, Math.sqrt(squared) - node.radius);
+        return gap * gap + query.getConstant();
+    }
+
+    /**
+     * A node that covers a range of the rows.
+     */
+    private static final class Node {
+        private final int start;
+        private final int end;
+        private final double[] center;
+        private double radius;
+        private Node left;
+        private Node right;
+
+        Node(int start, int end, int dimensions) {
+            this.start = start;
+            this.end = end;
+            this.center = new double[dimensions];
+        }
+    }
+}
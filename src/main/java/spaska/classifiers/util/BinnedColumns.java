@@ -0,0 +1,421 @@
+package spaska.classifiers.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import spaska.data.Attribute.ValueType;
+import spaska.data.DatasetView;
+import spaska.data.Value;
+
+/**
+ * The class histograms of the numeric attributes of a tree node. Every numeric
+ * attribute is cut in at most 256 quantile bins once for the root of a tree
+ * and the bin of every row is kept in a <code>byte[]</code>. A node counts its
+ * rows by bin and class, so the best split of an attribute is found by going
+ * once over its bins instead of over its sorted rows. The histograms of the
+ * biggest child of a node are the histograms of the node minus the ones of
+ * the other children, so only the smaller children are counted.
+ *
+ * <p>
+ * Only the thresholds between two bins are tried, so the split can be a
+ * little worse than the one of {@link SortedColumns}. An attribute with no
+ * more different values than bins gets a bin for every value and the same
+ * thresholds as the exact search. The cut points are taken from a sample of at
+ * most {@value #MAX_SAMPLE} rows, so creating the bins is linear in the number
+ * of rows too.
+ * </p>
+ */
+public final class BinnedColumns extends SplitFinder {
+
+    /**
+     * The maximum number of bins of an attribute.
+     */
+    public static final int MAX_BINS = 256;
+
+    private static final int MAX_SAMPLE = 1 << 16;
+
+    private final DatasetService datasetService;
+    private final int[] attributes; // the numeric attributes
+    private final int classes; // the number of classes
+    // the bin of every row of the root for every attribute, the rows with an
+    // unknown value and the smallest and biggest value in every bin
+    private final byte[][] bins;
+    private final BitSet[] unknown;
+    private final double[][] minimums;
+    private final double[][] maximums;
+    // the class of every row of the root, the rows with an unknown class are
+    // counted in an extra column
+    private final int[] rootClasses;
+    // the row of the root for every row of the node
+    private final int[] roots;
+    // the number of rows of every bin and class for every attribute
+    private final int[][] histograms;
+
+    /**
+     * Cut the numeric attributes of the rows of the root of a tree in bins.
+     *
+     * @param view
+     *            the rows of the root
+     * @param datasetService
+     *            the data service for the rows
+     * @param maxBins
+     *            the maximum number of bins of an attribute, at most
+     *            {@value #MAX_BINS}
+     */
+    public BinnedColumns(DatasetView view, DatasetService datasetService,
+            int maxBins) {
+        if (maxBins < 2 || maxBins > MAX_BINS) {
+            throw new IllegalArgumentException("The bins must be between 2 and "
+                    + MAX_BINS);
+        }
+        this.datasetService = datasetService;
+        this.attributes = datasetService.getNumericIndices();
+        this.classes = datasetService.numberOfClasses();
+        int size = view.size();
+        int classIndex = datasetService.classIndex();
+        this.rootClasses = new int[size];
+        this.roots = new int[size];
+        this.bins = new byte[attributes.length][size];
+        this.unknown = new BitSet[attributes.length];
+        this.minimums = new double[attributes.length][];
+        this.maximums = new double[attributes.length][];
+        double[][] values = new double[attributes.length][size];
+        for (int i = 0; i < size; i++) {
+            roots[i] = i;
+            int code = datasetService.getCode(classIndex,
+                    datasetService.getClass(view.get(i)));
+            rootClasses[i] = code < 0 ? classes : code;
+            for (int j = 0; j < attributes.length; j++) {
+                Value value = view.get(i).getVector().get(attributes[j]);
+                values[j][i] = value.getType() == ValueType.Unknown ? Double.NaN
+                        : (Double) value.getValue();
+            }
+        }
+        for (int j = 0; j < attributes.length; j++) {
+            cut(j, values[j], maxBins);
+        }
+        this.histograms = new int[attributes.length][];
+        for (int j = 0; j < attributes.length; j++) {
+            histograms[j] = new int[minimums[j].length * (classes + 1)];
+        }
+        count(histograms, roots, null);
+    }
+
+    private BinnedColumns(BinnedColumns parent, int[] positions) {
+        this.datasetService = parent.datasetService;
+        this.attributes = parent.attributes;
+        this.classes = parent.classes;
+        this.bins = parent.bins;
+        this.unknown = parent.unknown;
+        this.minimums = parent.minimums;
+        this.maximums = parent.maximums;
+        this.rootClasses = parent.rootClasses;
+        this.roots = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            roots[i] = parent.roots[positions[i]];
+        }
+        this.histograms = parent.emptyHistograms();
+    }
+
+    private int[][] emptyHistograms() {
+        int[][] result = new int[attributes.length][];
+        for (int j = 0; j < attributes.length; j++) {
+            result[j] = new int[histograms[j].length];
+        }
+        return result;
+    }
+
+    /**
+     * Choose the cut points of the values of a numeric attribute. An attribute
+     * with no more different values than bins gets a bin for every value,
+     * otherwise the bins hold about the same number of values of a sample of
+     * at most {@value #MAX_SAMPLE} values. A value <code>v</code> is in the
+     * first bin <code>b</code> with <code>v &lt;= cuts[b]</code> and in the
+     * last bin if it is bigger than every cut point.
+     *
+     * @param values
+     *            the values of the attribute, unknown values are NaN
+     * @param maxBins
+     *            the maximum number of bins
+     * @return the biggest value of every bin but the last one, in ascending
+     *         order
+     */
+    public static double[] getCutPoints(double[] values, int maxBins) {
+        int known = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (!Double.isNaN(values[i])) {
+                known++;
+            }
+        }
+        // an evenly spaced sample of the known values
+        int sampleSize = Math.min(known, MAX_SAMPLE);
+        double[] sample = new double[sampleSize];
+        int position = 0;
+        for (int i = 0, seen = 0; i < values.length && position < sampleSize; i++) {
+            if (!Double.isNaN(values[i])) {
+                if ((long) seen * sampleSize / known == position) {
+                    sample[position++] = values[i];
+                }
+                seen++;
+            }
+        }
+        Arrays.sort(sample);
+        int distinct = 0;
+        for (int i = 0; i < sampleSize; i++) {
+            if (i == 0 || sample[i] != sample[i - 1]) {
+                sample[distinct++] = sample[i];
+            }
+        }
+        if (distinct <= maxBins) {
+            return Arrays.copyOf(sample, Math.max(distinct - 1, 0));
+        }
+        double[] cuts = new double[maxBins - 1];
+        int count = 0;
+        for (int b = 1; b < maxBins; b++) {
+            double cut = sample[(int) ((long) b * distinct / maxBins) - 1];
+            if (count == 0 || cut > cuts[count - 1]) {
+                cuts[count++] = cut;
+            }
+        }
+        return Arrays.copyOf(cuts, count);
+    }
+
+    /* choose the cut points of an attribute and put every row in its bin */
+    private void cut(int j, double[] values, int maxBins) {
+        unknown[j] = new BitSet(values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (Double.isNaN(values[i])) {
+                unknown[j].set(i);
+            }
+        }
+        // the biggest value of every bin but the last one
+        double[] upper = getCutPoints(values, maxBins);
+        int binsCount = upper.length + 1;
+        minimums[j] = new double[binsCount];
+        maximums[j] = new double[binsCount];
+        Arrays.fill(minimums[j], Double.POSITIVE_INFINITY);
+        Arrays.fill(maximums[j], Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < values.length; i++) {
+            if (!Double.isNaN(values[i])) {
+                int bin = Arrays.binarySearch(upper, values[i]);
+                if (bin < 0) {
+                    bin = -bin - 1;
+                }
+                bins[j][i] = (byte) bin;
+                minimums[j][bin] = Math.min(minimums[j][bin], values[i]);
+                maximums[j][bin] = Math.max(maximums[j][bin], values[i]);
+            }
+        }
+    }
+
+    /*
+     * add the given rows of the root to the histograms, every row the given
+     * number of times or once if there are no times
+     */
+    private void count(int[][] target, int[] rows, int[] times) {
+        for (int j = 0; j < attributes.length; j++) {
+            int[] histogram = target[j];
+            byte[] codes = bins[j];
+            BitSet unknownRows = unknown[j];
+            for (int i = 0; i < rows.length; i++) {
+                int root = rows[i];
+                if (!unknownRows.get(root)) {
+                    histogram[(codes[root] & 0xff) * (classes + 1)
+                            + rootClasses[root]] += times == null ? 1
+                            : times[i];
+                }
+            }
+        }
+    }
+
+    @Override
+    public int numberOfAttributes() {
+        return attributes.length;
+    }
+
+    @Override
+    public int getAttributeIndex(int attribute) {
+        return attributes[attribute];
+    }
+
+    /*
+     * go over the bins like ContinuousValueService goes over the values, the
+     * first threshold is always tried and the one after the last bin never
+     */
+    @Override
+    public NumericSplit getSplit(int j, double classesEntropy) {
+        int[] histogram = histograms[j];
+        int binsCount = minimums[j].length;
+        int[][] distribution = new int[2][classes];
+        int total = 0;
+        for (int b = 0; b < binsCount; b++) {
+            if (histogram[b * (classes + 1) + classes] > 0) {
+                // unknown classes cannot be split
+                return new Split();
+            }
+            for (int c = 0; c < classes; c++) {
+                distribution[1][c] += histogram[b * (classes + 1) + c];
+                total += histogram[b * (classes + 1) + c];
+            }
+        }
+        double minEntropy = Double.NaN;
+        int splitBin = -1;
+        int numBefore = 0;
+        int bestBefore = 0;
+        for (int b = 0; b < binsCount; b++) {
+            int inBin = 0;
+            for (int c = 0; c < classes; c++) {
+                int count = histogram[b * (classes + 1) + c];
+                distribution[0][c] += count;
+                distribution[1][c] -= count;
+                inBin += count;
+            }
+            if (inBin == 0) {
+                continue;
+            }
+            numBefore += inBin;
+            int numAfter = total - numBefore;
+            if (splitBin >= 0 && numAfter == 0) {
+                break;
+            }
+            double average = Information.average(
+                    new double[] {
+                            Information.entropy(distribution[0], numBefore),
+                            Information.entropy(distribution[1], numAfter) },
+                    new int[] { numBefore, numAfter }, total);
+            if (splitBin < 0 || minEntropy > average) {
+                minEntropy = average;
+                splitBin = b;
+                bestBefore = numBefore;
+            }
+        }
+        if (splitBin < 0) {
+            return new Split();
+        }
+        int next = splitBin + 1;
+        while (next < binsCount && isEmpty(histogram, next)) {
+            next++;
+        }
+        double splitValue = next < binsCount ? (maximums[j][splitBin] + minimums[j][next]) / 2
+                : maximums[j][splitBin];
+        double gainRatio = (classesEntropy - minEntropy)
+                / Information.entropy(
+                        new int[] { bestBefore, total - bestBefore }, total);
+        return new Split(attributes[j], splitValue, gainRatio);
+    }
+
+    private boolean isEmpty(int[] histogram, int bin) {
+        for (int c = 0; c <= classes; c++) {
+            if (histogram[bin * (classes + 1) + c] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public List<SplitFinder> split(List<int[]> positions) {
+        List<BinnedColumns> children = new ArrayList<BinnedColumns>();
+        int biggest = 0;
+        for (int[] childPositions : positions) {
+            children.add(new BinnedColumns(this, childPositions));
+            if (childPositions.length > positions.get(biggest).length) {
+                biggest = children.size() - 1;
+            }
+        }
+        if (children.isEmpty()) {
+            return new ArrayList<SplitFinder>();
+        }
+        for (int c = 0; c < children.size(); c++) {
+            if (c != biggest) {
+                count(children.get(c).histograms, children.get(c).roots, null);
+            }
+        }
+        // the children together have the rows of this node, the ones that go
+        // to many children more than once and the ones that go nowhere none
+        int[] reached = new int[roots.length];
+        for (int[] childPositions : positions) {
+            for (int position : childPositions) {
+                reached[position]++;
+            }
+        }
+        int extra = 0;
+        for (int i = 0; i < reached.length; i++) {
+            if (reached[i] != 1) {
+                extra++;
+            }
+        }
+        int[] extraRows = new int[extra];
+        int[] extraTimes = new int[extra];
+        extra = 0;
+        for (int i = 0; i < reached.length; i++) {
+            if (reached[i] != 1) {
+                extraRows[extra] = roots[i];
+                extraTimes[extra++] = reached[i] - 1;
+            }
+        }
+        // so the biggest child is this node minus the other children plus
+        // the rows that are counted more than once
+        int[][] target = children.get(biggest).histograms;
+        for (int j = 0; j < attributes.length; j++) {
+            System.arraycopy(histograms[j], 0, target[j], 0,
+                    histograms[j].length);
+            for (int c = 0; c < children.size(); c++) {
+                if (c != biggest) {
+                    int[] other = children.get(c).histograms[j];
+                    for (int k = 0; k < other.length; k++) {
+                        target[j][k] -= other[k];
+                    }
+                }
+            }
+        }
+        count(target, extraRows, extraTimes);
+        return new ArrayList<SplitFinder>(children);
+    }
+
+    /**
+     * A split between two bins.
+     */
+    private static final class Split implements NumericSplit {
+        private final boolean empty;
+        private final int attributeIndex;
+        private final double splitValue;
+        private final double gainRatio;
+
+        Split() {
+            this.empty = true;
+            this.attributeIndex = -1;
+            this.splitValue = 0;
+            this.gainRatio = 0;
+        }
+
+        Split(int attributeIndex, double splitValue, double gainRatio) {
+            this.empty = false;
+            this.attributeIndex = attributeIndex;
+            this.splitValue = splitValue;
+            this.gainRatio = gainRatio;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return empty;
+        }
+
+        @Override
+        public int getAttributeIndex() {
+            return attributeIndex;
+        }
+
+        @Override
+        public double getSplitValue() {
+            return splitValue;
+        }
+
+        @Override
+        public double getGainRatio() {
+            return gainRatio;
+        }
+    }
+}
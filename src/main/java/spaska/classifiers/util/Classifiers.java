@@ -0,0 +1,67 @@
+package spaska.classifiers.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import spaska.classifiers.IClassifier;
+
+/**
+ * Utilities for working with many instances of a classifier.
+ */
+public final class Classifiers {
+
+    private Classifiers() {
+    }
+
+    /**
+     * Create an unbuilt copy of a classifier with the same parameters, so the
+     * copy can be built on other data in another thread. The copy is created
+     * with the default constructor of the classifier and gets the values of
+     * all fields of primitive, string and enum types, which is where the
+     * classifiers keep their parameters. All other fields, like the built
+     * model or a random generator, are left as the constructor made them, so
+     * nothing mutable is shared with the original.
+     *
+     * @param classifier
+     *            the classifier to be copied
+     * @return a new classifier with the same parameters
+     * @throws IllegalArgumentException
+     *             if the classifier has no default constructor
+     */
+    public static IClassifier copy(IClassifier classifier) {
+        IClassifier copy;
+        try {
+            copy = classifier.getClass().newInstance();
+        } catch (InstantiationException e) {
+            throw new IllegalArgumentException("Cannot copy "
+                    + classifier.getClass().getName(), e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot copy "
+                    + classifier.getClass().getName(), e);
+        }
+        for (Class<?> type = classifier.getClass(); type != Object.class; type = type
+                .getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (isParameter(field)) {
+                    field.setAccessible(true);
+                    try {
+                        field.set(copy, field.get(classifier));
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalArgumentException("Cannot copy "
+                                + field, e);
+                    }
+                }
+            }
+        }
+        return copy;
+    }
+
+    private static boolean isParameter(Field field) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)) {
+            return false;
+        }
+        Class<?> type = field.getType();
+        return type.isPrimitive() || type == String.class || type.isEnum();
+    }
+}
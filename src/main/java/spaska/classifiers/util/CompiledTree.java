@@ -0,0 +1,179 @@
+package spaska.classifiers.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import spaska.data.Attribute.ValueType;
+import spaska.data.Value;
+
+/**
+ * A tree of {@link Condition}s lowered to flat arrays for classification. The
+ * nodes are numbered in breadth first order and every node keeps the index of
+ * the attribute it tests, the threshold of a numeric test, the offset of its
+ * children in a table of children and the class code of a leaf. Classifying
+ * an instance is a loop over these arrays that does not look up attributes or
+ * create objects.
+ *
+ * <p>
+ * The tree is the one built by {@link spaska.classifiers.DecisionTree}: the
+ * children of a node either test a numeric attribute with (&lt;= value ;
+ * &gt; value) or a nominal attribute with one child for every value of its
+ * domain. The conditions are on the children, a child is a leaf when its
+ * condition has an effect. An instance with an unknown value for a test gets
+ * the majority class of the test, an instance with a nominal value that no
+ * child tests gets <code>null</code>, like with the tree itself.
+ * </p>
+ */
+public final class CompiledTree {
+
+    private static final int LEAF = -1;
+    private static final int NONE = -1;
+
+    private final DatasetService datasetService;
+    private final int classIndex;
+    // the tested attribute or LEAF, for every node
+    private final int[] features;
+    private final boolean[] nominal;
+    private final double[] thresholds;
+    // the offset of the children in the table of children
+    private final int[] firstChild;
+    // the class code of a leaf or the majority class of a test, NONE for null
+    private final int[] classes;
+    // the child for every branch of a test or NONE
+    private final int[] children;
+
+    /**
+     * Lower a tree to flat arrays.
+     *
+     * @param root
+     *            the root of the tree, its children are the first tests
+     * @param datasetService
+     *            the data service of the dataset that the tree was built from
+     */
+    public CompiledTree(Node root, DatasetService datasetService) {
+        this.datasetService = datasetService;
+        this.classIndex = datasetService.classIndex();
+        List<Node> nodes = new ArrayList<Node>();
+        nodes.add(root);
+        int branches = 0;
+        for (int n = 0; n < nodes.size(); n++) {
+            Node node = nodes.get(n);
+            if (!isLeaf(node)) {
+                branches += getBranches(node);
+                nodes.addAll(node.getChildren());
+            }
+        }
+        int size = nodes.size();
+        features = new int[size];
+        nominal = new boolean[size];
+        thresholds = new double[size];
+        firstChild = new int[size];
+        classes = new int[size];
+        children = new int[branches];
+        Arrays.fill(children, NONE);
+        int nextNode = 1;
+        int nextBranch = 0;
+        for (int n = 0; n < size; n++) {
+            Node node = nodes.get(n);
+            if (isLeaf(node)) {
+                features[n] = LEAF;
+                classes[n] = NONE;
+                if (node.getValue() instanceof Condition) {
+                    classes[n] = getClassCode(getCondition(node).getEffect());
+                }
+                continue;
+            }
+            List<Node> nodeChildren = node.getChildren();
+            Condition first = getCondition(nodeChildren.get(0));
+            features[n] = datasetService.getAttributeIndex(first
+                    .getAttribute());
+            nominal[n] = first.getSign() == Sign.EQ;
+            classes[n] = getClassCode(first.getMajorityClass());
+            firstChild[n] = nextBranch;
+            for (int k = 0; k < nodeChildren.size(); k++) {
+                Condition condition = getCondition(nodeChildren.get(k));
+                int branch;
+                if (nominal[n]) {
+                    branch = datasetService.getCode(features[n],
+                            condition.getValue());
+                } else {
+                    thresholds[n] = (Double) condition.getValue().getValue();
+                    branch = condition.getSign() == Sign.LTE ? 0 : 1;
+                }
+                if (branch >= 0) {
+                    children[nextBranch + branch] = nextNode;
+                }
+                nextNode++;
+            }
+            nextBranch += getBranches(node);
+        }
+    }
+
+    private static Condition getCondition(Node node) {
+        return (Condition) node.getValue();
+    }
+
+    // a node without children is a leaf too, even without an effect
+    private static boolean isLeaf(Node node) {
+        return node.getChildren().isEmpty()
+                || node.getValue() instanceof Condition
+                && getCondition(node).getEffect() != null;
+    }
+
+    // the number of branches of a test
+    private int getBranches(Node node) {
+        Condition first = getCondition(node.getChildren().get(0));
+        if (first.getSign() == Sign.EQ) {
+            return datasetService.getAttributeDomain(
+                    datasetService.getAttributeIndex(first.getAttribute()))
+                    .size();
+        }
+        return 2;
+    }
+
+    private int getClassCode(Value value) {
+        return value == null ? NONE : datasetService.getCode(classIndex, value);
+    }
+
+    /**
+     * Get the number of nodes of the tree, including the root.
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+        return features.length;
+    }
+
+    /**
+     * Classify the values of an instance.
+     *
+     * @param vector
+     *            the values of the instance
+     * @return the class of the leaf that the instance reaches
+     */
+    public Value classify(List<Value> vector) {
+        int n = 0;
+        while (features[n] != LEAF) {
+            Value value = vector.get(features[n]);
+            if (value.getType() == ValueType.Unknown) {
+                break;
+            }
+            int branch;
+            if (nominal[n]) {
+                branch = datasetService.getCode(features[n], value);
+                if (branch < 0) {
+                    return null;
+                }
+            } else {
+                branch = (Double) value.getValue() <= thresholds[n] ? 0 : 1;
+            }
+            int child = children[firstChild[n] + branch];
+            if (child == NONE) {
+                return null;
+            }
+            n = child;
+        }
+        return datasetService.getValueFromInt(classIndex, classes[n]);
+    }
+}
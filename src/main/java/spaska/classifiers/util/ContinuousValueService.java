@@ -15,7 +15,7 @@ import spaska.data.Value;
  * will determine the point of splitting the instances into two groups that best
  * represent their classes.
  */
-public final class ContinuousValueService {
+public final class ContinuousValueService implements NumericSplit {
 
     /**
      * Compare 2 instances according to a numeric attribute.
@@ -53,7 +53,8 @@ public final class ContinuousValueService {
     }
 
     private DatasetService datasetService;
-    private List<Instance> instances;
+    private double[] values; // the sorted values of the attribute
+    private int[] classes; // the class codes in the order of the values
     private int attributeIndex; // sorting attribute
     private int[][] distribution;
     private int globalSplitIndex;
@@ -89,10 +90,55 @@ public final class ContinuousValueService {
         this.isCalculated = false;
         this.datasetService = datasetService;
         this.comparator = new InstanceComparator(attributeIndex);
+        List<Instance> sorted = null;
         if (datasetService != null && isContinuous(attributeIndex)) {
-            this.instances = sortInstances(instances, attributeIndex);
+            sorted = sortInstances(instances, attributeIndex);
+        }
+        this.knownValueStart = getFirstIndexOfKnownValue(sorted);
+        this.values = new double[sorted.size()];
+        this.classes = new int[sorted.size()];
+        for (int i = 0; i < values.length; i++) {
+            Instance instance = sorted.get(i);
+            Value value = instance.getVector().get(attributeIndex);
+            values[i] = value.getType() == ValueType.Unknown ? Double.NaN
+                    : (Double) value.getValue();
+            classes[i] = datasetService.getCode(datasetService.classIndex(),
+                    datasetService.getClass(instance));
         }
-        this.knownValueStart = getFirstIndexOfKnownValue();
+        this.isEmpty = false;
+    }
+
+    /**
+     * Constructs a new service over the values of the attribute that are
+     * already sorted, so the instances do not have to be sorted again for
+     * every node of a tree.
+     * 
+     * @param datasetService
+     *            the dataservice that will be used
+     * @param attributeIndex
+     *            the attribute of the values
+     * @param classesEntropy
+     *            the entropy class
+     * @param values
+     *            the values in ascending order after the unknown ones, the
+     *            array is not copied
+     * @param classes
+     *            the class code of the instance of every value or -1 if it is
+     *            not known, the array is not copied
+     * @param knownValueStart
+     *            the number of unknown values
+     * @see SortedColumns
+     */
+    public ContinuousValueService(DatasetService datasetService,
+            int attributeIndex, double classesEntropy, double[] values,
+            int[] classes, int knownValueStart) {
+        this.attributeIndex = attributeIndex;
+        this.classesEntropy = classesEntropy;
+        this.isCalculated = false;
+        this.datasetService = datasetService;
+        this.values = values;
+        this.classes = classes;
+        this.knownValueStart = knownValueStart;
         this.isEmpty = false;
     }
 
@@ -122,10 +168,11 @@ public final class ContinuousValueService {
 
     // when instances are sorted, unknown values become first in the list
     // therefore the first known value index should be set for a start
-    private int getFirstIndexOfKnownValue() {
+    private int getFirstIndexOfKnownValue(List<Instance> sorted) {
         int index = 0;
-        while (index < instances.size()
-                && getValueAtIndex(index).getType() == ValueType.Unknown) {
+        while (index < sorted.size()
+                && sorted.get(index).getVector().get(attributeIndex)
+                        .getType() == ValueType.Unknown) {
             index++;
         }
         return index;
@@ -134,19 +181,19 @@ public final class ContinuousValueService {
     private int initDistribution() {
         distribution = new int[2][datasetService.numberOfClasses()];
         int start = knownValueStart;
-        if (start >= instances.size()) {
-            return instances.size() - 1;
+        if (start >= values.length) {
+            return values.length - 1;
         }
         double leftsideValue = getContinuousValue(start);
         int splitIndex = start, k = start + 1;
-        while (k < instances.size() && leftsideValue == getContinuousValue(k)) {
+        while (k < values.length && leftsideValue == getContinuousValue(k)) {
             k++;
         }
         splitIndex = k - 1;
         for (int i = start; i <= splitIndex; i++) {
             distribution[0][getClassIntValue(i)]++;
         }
-        for (int i = splitIndex + 1; i < instances.size(); i++) {
+        for (int i = splitIndex + 1; i < values.length; i++) {
             distribution[1][getClassIntValue(i)]++;
         }
         return splitIndex;
@@ -167,9 +214,9 @@ public final class ContinuousValueService {
                 numBefore, numAfter }, numBefore + numAfter);
         minEntropy = currentAverage;
         globalSplitIndex = splitIndex;
-        while (k < instances.size()) {
+        while (k < values.length) {
             leftsideValue = getContinuousValue(k);
-            while (k < instances.size()
+            while (k < values.length
                     && leftsideValue == getContinuousValue(k)) {
                 splitIndex++;
                 k++;
@@ -177,7 +224,7 @@ public final class ContinuousValueService {
                 distribution[0][ind]++;
                 distribution[1][ind]--;
             }
-            if (k >= instances.size()) {
+            if (k >= values.length) {
                 break;
             }
             numBefore = getNumBeforeSplitPoint(splitIndex);
@@ -202,22 +249,16 @@ public final class ContinuousValueService {
 
     // number of instances with known value after split index
     private int getNumAfterSplitPoint(int splitIndex) {
-        return instances.size() - splitIndex - 1;
-    }
-
-    private Value getValueAtIndex(int i) {
-        return instances.get(i).getVector().get(attributeIndex);
+        return values.length - splitIndex - 1;
     }
 
     // i - index of the instance
     private double getContinuousValue(int i) {
-        return (Double) instances.get(i).getVector().get(attributeIndex)
-                .getValue();
+        return values[i];
     }
 
     private int getClassIntValue(int i) {
-        return datasetService.intValue(datasetService.classIndex(),
-                datasetService.getClass(instances.get(i)));
+        return classes[i];
     }
 
     /**
@@ -257,11 +298,11 @@ public final class ContinuousValueService {
         if (!assertCalculation()) {
             return 0;
         }
-        if (globalSplitIndex + 1 < instances.size()) {
+        if (globalSplitIndex + 1 < values.length) {
             return (getContinuousValue(globalSplitIndex) 
                     + getContinuousValue(globalSplitIndex + 1)) / 2;
         } else {
-            return getContinuousValue(instances.size() - 1);
+            return getContinuousValue(values.length - 1);
         }
     }
 
@@ -8,6 +8,7 @@ import spaska.data.Attribute;
 import spaska.data.Attribute.ValueType;
 import spaska.data.Dataset;
 import spaska.data.Instance;
+import spaska.data.NominalValue;
 import spaska.data.Value;
 
 /**
@@ -20,6 +21,8 @@ public final class DatasetService {
 
     // attribute i -> <value : int> pairs
     private Map<Value, Integer>[] intValues;
+    // attribute i -> int -> value
+    private Value[][] codeValues;
 
     private int[] nominalIndices;
     private int[] numericIndices;
@@ -44,13 +47,15 @@ public final class DatasetService {
         int numericEnd = n - 1;
         int[] indices = new int[n];
         intValues = getNewHashMapArray(n);
+        codeValues = new Value[n][];
         for (int i = 0; i < n; i++) {
             intValues[i] = new HashMap<Value, Integer>();
+            codeValues[i] = new Value[0];
             if (getAttribute(i).getType() == ValueType.Nominal) {
-                int k = 0;
-                for (Value val : getAttributeDomain(i)) {
-                    intValues[i].put(val, k);
-                    k++;
+                Set<Value> domain = getAttributeDomain(i);
+                codeValues[i] = domain.toArray(new Value[domain.size()]);
+                for (int k = 0; k < codeValues[i].length; k++) {
+                    intValues[i].put(codeValues[i][k], k);
                 }
                 indices[nominalEnd++] = i;
             } else {
@@ -137,6 +142,8 @@ public final class DatasetService {
 
     /**
      * Get the attribute index - integer representation of the given value.
+     * Values that come from the domain of the attribute are looked up by their
+     * code without hashing.
      * 
      * @param i
      *            the index for the int value.
@@ -144,9 +151,38 @@ public final class DatasetService {
      *            the value
      * @return the attribute index based ont he specified intValue index and
      *         value
+     * @see NominalValue#getCode()
      */
     public int intValue(int i, Value val) {
-        return intValues[i].get(val);
+        int code = getCode(i, val);
+        if (code < 0) {
+            // a value outside of the domain is not in the map and fails here
+            return intValues[i].get(val);
+        }
+        return code;
+    }
+
+    /**
+     * Get the integer representation of the given value like
+     * {@link #intValue(int, Value)}, but without failing for values that are
+     * not in the domain of the attribute.
+     * 
+     * @param i
+     *            the index of the attribute
+     * @param val
+     *            the value
+     * @return the integer representation of the value or -1 if it has none
+     */
+    public int getCode(int i, Value val) {
+        if (val instanceof NominalValue) {
+            int code = ((NominalValue) val).getCode();
+            Value[] values = codeValues[i];
+            if (code >= 0 && code < values.length && values[code] == val) {
+                return code;
+            }
+        }
+        Integer code = intValues[i].get(val);
+        return code == null ? -1 : code;
     }
 
     /**
@@ -159,15 +195,11 @@ public final class DatasetService {
      * @return the value of the attribute.
      */
     public Value getValueFromInt(int attributeIndex, int intValue) {
-        Value result = null;
-        for (Map.Entry<Value, Integer> entry : intValues[attributeIndex]
-                .entrySet()) {
-            if (entry.getValue() == intValue) {
-                result = entry.getKey();
-                break;
-            }
+        Value[] values = codeValues[attributeIndex];
+        if (intValue < 0 || intValue >= values.length) {
+            return null;
         }
-        return result;
+        return values[intValue];
     }
 
     /**
@@ -0,0 +1,427 @@
+package spaska.classifiers.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * An approximate nearest neighbour index that is a hierarchical navigable
+ * small world graph. Every row is a node on the bottom layer of the graph and
+ * on a random number of layers above it, where every layer has exponentially
+ * less nodes. The search walks greedily over the upper layers to a near node
+ * and then keeps the <code>efSearch</code> nearest nodes it has seen while
+ * walking over the bottom layer.
+ *
+ * <p>
+ * Unlike the trees the graph can miss some of the nearest rows. Bigger values
+ * of <code>m</code>, <code>efConstruction</code> and <code>efSearch</code>
+ * miss less rows, but make the building or the search slower. The rows that
+ * are found are offered with their exact distance.
+ * </p>
+ *
+ * @see <a href="http://arxiv.org/abs/1603.09320">Efficient and robust
+ *      approximate nearest neighbor search using Hierarchical Navigable Small
+ *      World graphs</a>
+ */
+public final class HNSWGraph implements NeighbourIndex {
+
+    private final InstanceDistance distance;
+    private final int dimensions;
+    private final int[] rows;
+    private final double[] points;
+    private final int m;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final Random random;
+    // the neighbours and the number of neighbours of every node on every
+    // layer it is on
+    private final int[][][] links;
+    private final int[][] linkCounts;
+    private int entryPoint = -1;
+    private int topLevel = -1;
+    // set while the graph is searched by other threads
+    private volatile int efSearch;
+
+    /**
+     * Build the graph.
+     *
+     * @param distance
+     *            the distance and the embedding of the rows
+     * @param rows
+     *            the complete rows to index
+     * @param m
+     *            the number of neighbours of a node on a layer, the nodes on
+     *            the bottom layer have up to twice as many
+     * @param efConstruction
+     *            the number of candidates for the neighbours of a new node
+     * @param efSearch
+     *            the number of candidates for the nearest rows to a query
+     * @param random
+     *            the random generator for the layers of the nodes
+     */
+    public HNSWGraph(InstanceDistance distance, int[] rows, int m,
+            int efConstruction, int efSearch, Random random) {
+        if (m < 2) {
+            throw new IllegalArgumentException("m must be at least 2");
+        }
+        this.distance = distance;
+        this.dimensions = distance.getDimensions();
+        this.rows = rows.clone();
+        this.points = new double[rows.length * dimensions];
+        this.m = m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelFactor = 1 / Math.log(m);
+        this.random = random;
+        this.links = new int[rows.length][][];
+        this.linkCounts = new int[rows.length][];
+        setEfSearch(efSearch);
+        for (int i = 0; i < rows.length; i++) {
+            distance.embed(rows[i], points, i * dimensions);
+        }
+        for (int i = 0; i < rows.length; i++) {
+            insert(i);
+        }
+    }
+
+    /**
+     * Get the number of candidates for the nearest rows to a query.
+     *
+     * @return the efSearch of the graph
+     */
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    /**
+     * Set the number of candidates for the nearest rows to a query. At least
+     * as many candidates as the number of wanted rows are always kept. The
+     * searches that start after the call use the new value.
+     *
+     * @param efSearch
+     *            the new efSearch
+     */
+    public void setEfSearch(int efSearch) {
+        if (efSearch < 1) {
+            throw new IllegalArgumentException("efSearch must be positive");
+        }
+        this.efSearch = efSearch;
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    private void insert(int node) {
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelFactor);
+        links[node] = new int[level + 1][];
+        linkCounts[node] = new int[level + 1];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxLinks(l) + 1];
+        }
+        if (entryPoint < 0) {
+            entryPoint = node;
+            topLevel = level;
+            return;
+        }
+        Target target = new Target(points, node * dimensions, null, 0);
+        int entry = entryPoint;
+        for (int l = topLevel; l > level; l--) {
+            entry = greedy(target, entry, l);
+        }
+        Candidates entries = new Candidates(entry, target.to(entry));
+        for (int l = Math.min(level, topLevel); l >= 0; l--) {
+            Candidates found = searchLayer(target, entries, efConstruction,
+                    l);
+            int[] selected = selectNeighbours(found.nodes, found.distances,
+                    found.size, m);
+            System.arraycopy(selected, 0, links[node][l], 0, selected.length);
+            linkCounts[node][l] = selected.length;
+            for (int neighbour : selected) {
+                link(neighbour, node, l);
+            }
+            entries = found;
+        }
+        if (level > topLevel) {
+            entryPoint = node;
+            topLevel = level;
+        }
+    }
+
+    /* add a link from a node and drop the worst links if it has too many */
+    private void link(int from, int to, int level) {
+        int[] neighbours = links[from][level];
+        int count = linkCounts[from][level];
+        neighbours[count++] = to;
+        if (count <= maxLinks(level)) {
+            linkCounts[from][level] = count;
+            return;
+        }
+        Target target = new Target(points, from * dimensions, null, 0);
+        Candidates candidates = new Candidates(count);
+        for (int i = 0; i < count; i++) {
+            candidates.add(neighbours[i], target.to(neighbours[i]));
+        }
+        candidates.sort();
+        int[] selected = selectNeighbours(candidates.nodes,
+                candidates.distances, count, maxLinks(level));
+        System.arraycopy(selected, 0, neighbours, 0, selected.length);
+        linkCounts[from][level] = selected.length;
+    }
+
+    /*
+     * choose up to max of the sorted candidates, a candidate is skipped when
+     * it is nearer to a chosen one than to the node, so the links go in
+     * different directions, and the skipped ones fill the remaining links
+     */
+    private int[] selectNeighbours(int[] candidates, double[] distances,
+            int count, int max) {
+        int[] selected = new int[Math.min(count, max)];
+        int size = 0;
+        boolean[] skipped = new boolean[count];
+        for (int i = 0; i < count && size < selected.length; i++) {
+            Target candidate = new Target(points, candidates[i] * dimensions,
+                    null, 0);
+            for (int j = 0; j < size; j++) {
+                if (candidate.to(selected[j]) < distances[i]) {
+                    skipped[i] = true;
+                    break;
+                }
+            }
+            if (!skipped[i]) {
+                selected[size++] = candidates[i];
+            }
+        }
+        for (int i = 0; i < count && size < selected.length; i++) {
+            if (skipped[i]) {
+                selected[size++] = candidates[i];
+            }
+        }
+        return selected;
+    }
+
+    /* walk to the nearest neighbour until there is no nearer one */
+    private int greedy(Target target, int entry, int level) {
+        int current = entry;
+        double best = target.to(current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbours = links[current][level];
+            for (int i = 0; i < linkCounts[current][level]; i++) {
+                double dst = target.to(neighbours[i]);
+                if (dst < best) {
+                    best = dst;
+                    current = neighbours[i];
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /* find the ef nearest nodes of a layer, sorted by their distance */
+    private Candidates searchLayer(Target target, Candidates entries, int ef,
+            int level) {
+        BitSet visited = new BitSet(rows.length);
+        Heap candidates = new Heap(false);
+        Heap found = new Heap(true);
+        for (int i = 0; i < entries.size; i++) {
+            visited.set(entries.nodes[i]);
+            candidates.push(entries.distances[i], entries.nodes[i]);
+            found.push(entries.distances[i], entries.nodes[i]);
+            if (found.size > ef) {
+                found.pop();
+            }
+        }
+        while (candidates.size > 0) {
+            if (candidates.peek() > found.peek() && found.size >= ef) {
+                break;
+            }
+            int current = candidates.pop();
+            int[] neighbours = links[current][level];
+            for (int i = 0; i < linkCounts[current][level]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                double dst = target.to(neighbour);
+                if (found.size < ef || dst < found.peek()) {
+                    candidates.push(dst, neighbour);
+                    found.push(dst, neighbour);
+                    if (found.size > ef) {
+                        found.pop();
+                    }
+                }
+            }
+        }
+        Candidates result = new Candidates(found.size);
+        result.size = found.size;
+        for (int i = found.size - 1; i >= 0; i--) {
+            result.distances[i] = found.peek();
+            result.nodes[i] = found.pop();
+        }
+        return result;
+    }
+
+    @Override
+    public void search(InstanceDistance.Query query, NeighbourHeap heap) {
+        if (entryPoint < 0) {
+            return;
+        }
+        double[] point = new double[dimensions];
+        // only the unknown query values skip coordinates and add a constant
+        boolean[] skipped = query.getConstant() > 0 ? new boolean[dimensions]
+                : null;
+        for (int d = 0; d < dimensions; d++) {
+            point[d] = query.coordinate(d);
+            if (skipped != null) {
+                skipped[d] = query.isSkipped(d);
+            }
+        }
+        Target target = new Target(point, 0, skipped, query.getConstant());
+        int entry = entryPoint;
+        for (int l = topLevel; l > 0; l--) {
+            entry = greedy(target, entry, l);
+        }
+        Candidates found = searchLayer(target,
+                new Candidates(entry, target.to(entry)),
+                Math.max(efSearch, heap.capacity()), 0);
+        for (int i = 0; i < found.size; i++) {
+            int row = rows[found.nodes[i]];
+            heap.offer(Math.sqrt(distance.distance(query, row)), row);
+        }
+    }
+
+    /**
+     * A point that the squared distances to the nodes are measured from.
+     */
+    private final class Target {
+        private final double[] point;
+        private final int offset;
+        private final boolean[] skipped;
+        private final double constant;
+
+        Target(double[] point, int offset, boolean[] skipped, double constant) {
+            this.point = point;
+            this.offset = offset;
+            this.skipped = skipped;
+            this.constant = constant;
+        }
+
+        double to(int node) {
+            double result = constant;
+            int start = node * dimensions;
+            for (int d = 0; d < dimensions; d++) {
+                if (skipped == null || !skipped[d]) {
+                    double dst = point[offset + d] - points[start + d];
+                    result += dst * dst;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A list of nodes with their distances.
+     */
+    private static final class Candidates {
+        private final int[] nodes;
+        private final double[] distances;
+        private int size;
+
+        Candidates(int capacity) {
+            nodes = new int[capacity];
+            distances = new double[capacity];
+        }
+
+        Candidates(int node, double distance) {
+            this(1);
+            add(node, distance);
+        }
+
+        void add(int node, double distance) {
+            nodes[size] = node;
+            distances[size] = distance;
+            size++;
+        }
+
+        /* sort by the distance */
+        void sort() {
+            Heap heap = new Heap(true);
+            for (int i = 0; i < size; i++) {
+                heap.push(distances[i], nodes[i]);
+            }
+            for (int i = size - 1; i >= 0; i--) {
+                distances[i] = heap.peek();
+                nodes[i] = heap.pop();
+            }
+        }
+    }
+
+    /**
+     * A binary heap of nodes by their distances, with the nearest or the
+     * farthest node on the top.
+     */
+    private static final class Heap {
+        private final boolean farthestFirst;
+        private double[] distances = new double[16];
+        private int[] nodes = new int[16];
+        private int size;
+
+        Heap(boolean farthestFirst) {
+            this.farthestFirst = farthestFirst;
+        }
+
+        double peek() {
+            return distances[0];
+        }
+
+        void push(double distance, int node) {
+            if (size == nodes.length) {
+                distances = Arrays.copyOf(distances, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!above(distance, distances[parent])) {
+                    break;
+                }
+                distances[i] = distances[parent];
+                nodes[i] = nodes[parent];
+                i = parent;
+            }
+            distances[i] = distance;
+            nodes[i] = node;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            double distance = distances[size];
+            int node = nodes[size];
+            int i = 0;
+            while (2 * i + 1 < size) {
+                int child = 2 * i + 1;
+                if (child + 1 < size
+                        && above(distances[child + 1], distances[child])) {
+                    child++;
+                }
+                if (!above(distances[child], distance)) {
+                    break;
+                }
+                distances[i] = distances[child];
+                nodes[i] = nodes[child];
+                i = child;
+            }
+            distances[i] = distance;
+            nodes[i] = node;
+            return top;
+        }
+
+        private boolean above(double distance, double other) {
+            return farthestFirst ? distance > other : distance < other;
+        }
+    }
+}
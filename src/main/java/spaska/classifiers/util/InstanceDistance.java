@@ -0,0 +1,282 @@
+package spaska.classifiers.util;
+
+import java.util.BitSet;
+import java.util.List;
+
+import spaska.data.Attribute.ValueType;
+import spaska.data.ColumnStore;
+import spaska.data.Value;
+
+/**
+ * The distance between instances that is used by nearest neighbour search.
+ * Numeric attributes add the squared difference of the values, nominal ones
+ * add 1 if the values differ and an unknown value adds 1 unless both values are
+ * unknown. The class attribute and attributes of other types are ignored.
+ *
+ * <p>
+ * For the indices the instances are also embedded in a euclidean space where
+ * every numeric attribute is a coordinate and every nominal attribute is a one
+ * hot block of coordinates with length 1/&radic;2, so two different values are
+ * at a squared distance of 1. The embedding is only used to compute lower
+ * bounds, the exact distance is always computed from the columns.
+ * </p>
+ */
+public final class InstanceDistance {
+
+    private static final double ONE_HOT = Math.sqrt(0.5);
+
+    private final ColumnStore store;
+    private final int[] attributes; // the attributes that add to the distance
+    private final boolean[] numeric;
+    private final int[] offsets; // the first coordinate of every attribute
+    private final int dimensions;
+    // the columns of the measured attributes
+    private final double[][] numericColumns;
+    private final int[][] nominalColumns;
+    private final BitSet[] unknowns;
+
+    /**
+     * Construct the distance over the rows of a store.
+     *
+     * @param store
+     *            the train instances by columns
+     * @param classIndex
+     *            the index of the class attribute
+     * @param types
+     *            the type of every attribute
+     */
+    public InstanceDistance(ColumnStore store, int classIndex,
+            ValueType[] types) {
+        this.store = store;
+        int count = 0;
+        for (int i = 0; i < types.length; i++) {
+            if (i != classIndex && isMeasured(types[i])) {
+                count++;
+            }
+        }
+        attributes = new int[count];
+        numeric = new boolean[count];
+        offsets = new int[count];
+        int j = 0;
+        int offset = 0;
+        for (int i = 0; i < types.length; i++) {
+            if (i != classIndex && isMeasured(types[i])) {
+                attributes[j] = i;
+                numeric[j] = types[i] == ValueType.Numeric;
+                offsets[j] = offset;
+                offset += numeric[j] ? 1 : store.getDomainSize(i);
+                j++;
+            }
+        }
+        dimensions = offset;
+        numericColumns = new double[count][];
+        nominalColumns = new int[count][];
+        unknowns = new BitSet[count];
+        for (j = 0; j < count; j++) {
+            if (numeric[j]) {
+                numericColumns[j] = store.getNumericColumn(attributes[j]);
+            } else {
+                nominalColumns[j] = store.getNominalColumn(attributes[j]);
+            }
+            unknowns[j] = store.getUnknowns(attributes[j]);
+        }
+    }
+
+    private static boolean isMeasured(ValueType type) {
+        return type == ValueType.Numeric || type == ValueType.Nominal;
+    }
+
+    /**
+     * Get the number of rows in the underlying store.
+     *
+     * @return the number of rows
+     */
+    public int getRowsCount() {
+        return store.getRowsCount();
+    }
+
+    /**
+     * Get the number of coordinates in the embedding.
+     *
+     * @return the number of coordinates in the embedding
+     */
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Checks if all attributes that add to the distance are numeric.
+     *
+     * @return true if there are only numeric attributes
+     */
+    public boolean isNumeric() {
+        for (boolean isNumeric : numeric) {
+            if (!isNumeric) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a row has no unknown values. Only complete rows can be
+     * embedded.
+     *
+     * @param row
+     *            the row
+     * @return true if the row has no unknown values
+     */
+    public boolean isComplete(int row) {
+        for (BitSet unknown : unknowns) {
+            if (unknown.get(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the coordinates of a complete row.
+     *
+     * @param row
+     *            the row
+     * @param point
+     *            the array for the coordinates
+     * @param start
+     *            the position of the first coordinate in the array
+     */
+    public void embed(int row, double[] point, int start) {
+        for (int j = 0; j < attributes.length; j++) {
+            if (numeric[j]) {
+                point[start + offsets[j]] = numericColumns[j][row];
+            } else {
+                for (int c = offsets[j]; c < end(j); c++) {
+                    point[start + c] = 0;
+                }
+                point[start + offsets[j] + nominalColumns[j][row]] = ONE_HOT;
+            }
+        }
+    }
+
+    /**
+     * Prepare the values of a query instance.
+     *
+     * @param vector
+     *            the values of the query instance
+     * @return the query
+     */
+    public Query query(List<Value> vector) {
+        Query query = new Query(attributes.length, dimensions);
+        for (int j = 0; j < attributes.length; j++) {
+            int attribute = attributes[j];
+            Value value = vector.get(attribute);
+            if (value.getType() == ValueType.Unknown) {
+                query.unknown.set(j);
+                query.constant += 1;
+                for (int c = offsets[j]; c < end(j); c++) {
+                    query.skipped[c] = true;
+                }
+            } else if (numeric[j]) {
+                query.values[j] = (Double) value.getValue();
+                query.point[offsets[j]] = query.values[j];
+            } else {
+                int code = store.getCode(attribute, value);
+                query.codes[j] = code;
+                if (code >= 0) {
+                    query.point[offsets[j] + code] = ONE_HOT;
+                }
+            }
+        }
+        return query;
+    }
+
+    private int end(int j) {
+        return j + 1 < offsets.length ? offsets[j + 1] : dimensions;
+    }
+
+    /**
+     * Compute the squared distance between a query and a row. The terms are
+     * added in the order of the attributes, so the result is the same as
+     * adding them column by column over all rows.
+     *
+     * @param query
+     *            the query
+     * @param row
+     *            the row
+     * @return the squared distance
+     */
+    public double distance(Query query, int row) {
+        double distance = 0;
+        for (int j = 0; j < attributes.length; j++) {
+            boolean rowUnknown = unknowns[j].get(row);
+            if (query.unknown.get(j)) {
+                if (!rowUnknown) {
+                    distance += 1;
+                }
+            } else if (numeric[j]) {
+                if (rowUnknown) {
+                    distance += 1;
+                } else {
+                    double dst = query.values[j] - numericColumns[j][row];
+                    distance += dst * dst;
+                }
+            } else if (rowUnknown || nominalColumns[j][row] != query.codes[j]) {
+                distance += 1;
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * A query instance prepared for the distance computations.
+     */
+    public static final class Query {
+        private final double[] values;
+        private final int[] codes;
+        private final BitSet unknown;
+        private final double[] point;
+        private final boolean[] skipped;
+        private double constant;
+
+        private Query(int attributes, int dimensions) {
+            values = new double[attributes];
+            codes = new int[attributes];
+            unknown = new BitSet(attributes);
+            point = new double[dimensions];
+            skipped = new boolean[dimensions];
+        }
+
+        /**
+         * Get a coordinate of the query in the embedding.
+         *
+         * @param dimension
+         *            the coordinate
+         * @return the value of the coordinate
+         */
+        public double coordinate(int dimension) {
+            return point[dimension];
+        }
+
+        /**
+         * Checks if a coordinate should be left out of the bounds, because the
+         * query value of its attribute is unknown.
+         *
+         * @param dimension
+         *            the coordinate
+         * @return true if the coordinate is left out
+         */
+        public boolean isSkipped(int dimension) {
+            return skipped[dimension];
+        }
+
+        /**
+         * Get the squared distance that the unknown query values add to every
+         * complete row.
+         *
+         * @return the squared distance from the unknown query values
+         */
+        public double getConstant() {
+            return constant;
+        }
+    }
+}
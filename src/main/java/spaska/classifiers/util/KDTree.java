@@ -0,0 +1,128 @@
+package spaska.classifiers.util;
+
+/**
+ * A k-d tree over the embedded rows. Every node splits its rows at the median
+ * of the coordinate with the biggest spread and keeps the bounding box of its
+ * rows, so the distance to the box is a lower bound for the distance to the
+ * rows. This works well for a small number of numeric attributes.
+ */
+public final class KDTree extends TreeIndex {
+
+    private final Node root;
+
+    /**
+     * Build the tree.
+     *
+     * @param distance
+     *            the distance and the embedding of the rows
+     * @param rows
+     *            the complete rows to index
+     */
+    public KDTree(InstanceDistance distance, int[] rows) {
+        super(distance, rows);
+        root = size() == 0 ? null : build(0, size(), new double[size()]);
+    }
+
+    private Node build(int start, int end, double[] keys) {
+        Node node = new Node(start, end, dimensions());
+        for (int d = 0; d < dimensions(); d++) {
+            node.min[d] = Double.POSITIVE_INFINITY;
+            node.max[d] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i = start; i < end; i++) {
+            for (int d = 0; d < dimensions(); d++) {
+                double value = coordinate(i, d);
+                node.min[d] = Math.min(node.min[d], value);
+                node.max[d] = Math.max(node.max[d], value);
+            }
+        }
+        if (end - start <= LEAF_SIZE) {
+            return node;
+        }
+        int split = -1;
+        double spread = 0;
+        for (int d = 0; d < dimensions(); d++) {
+            if (node.max[d] - node.min[d] > spread) {
+                spread = node.max[d] - node.min[d];
+                split = d;
+            }
+        }
+        if (split < 0) {
+            // all rows are at the same point
+            return node;
+        }
+        for (int i = start; i < end; i++) {
+            keys[i] = coordinate(i, split);
+        }
+        int middle = (start + end) >>> 1;
+        select(start, end, middle, keys);
+        node.left = build(start, middle, keys);
+        node.right = build(middle, end, keys);
+        return node;
+    }
+
+    @Override
+    public void search(InstanceDistance.Query query, NeighbourHeap heap) {
+        if (root != null) {
+            search(root, query, bound(root, query), heap);
+        }
+    }
+
+    private void search(Node node, InstanceDistance.Query query,
+            double bound, NeighbourHeap heap) {
+        if (canSkip(bound, heap)) {
+            return;
+        }
+        if (node.left == null) {
+            scan(query, node.start, node.end, heap);
+            return;
+        }
+        double leftBound = bound(node.left, query);
+        double rightBound = bound(node.right, query);
+        if (leftBound <= rightBound) {
+            search(node.left, query, leftBound, heap);
+            search(node.right, query, rightBound, heap);
+        } else {
+            search(node.right, query, rightBound, heap);
+            search(node.left, query, leftBound, heap);
+        }
+    }
+
+    /* the squared distance from the query to the box of the node */
+    private double bound(Node node, InstanceDistance.Query query) {
+        double bound = query.getConstant();
+        for (int d = 0; d < dimensions(); d++) {
+            if (query.isSkipped(d)) {
+                continue;
+            }
+            double value = query.coordinate(d);
+            double dst = 0;
+            if (value < node.min[d]) {
+                dst = node.min[d] - value;
+            } else if (value > node.max[d]) {
+                dst = value - node.max[d];
+            }
+            bound += dst * dst;
+        }
+        return bound;
+    }
+
+    /**
+     * A node that covers a range of the rows.
+     */
+    private static final class Node {
+        private final int start;
+        private final int end;
+        private final double[] min;
+        private final double[] max;
+        private Node left;
+        private Node right;
+
+        Node(int start, int end, int dimensions) {
+            this.start = start;
+            this.end = end;
+            this.min = new double[dimensions];
+            this.max = new double[dimensions];
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package spaska.classifiers.util;
+
+import java.util.Arrays;
+
+/**
+ * Products of dense matrices that are kept row by row in a
+ * <code>double[]</code>. The loops go over the matrices in blocks that fit in
+ * the cache. The innermost loop adds a row of one matrix to a row of the
+ * result, or takes the dot product of two rows when the right matrix is
+ * transposed, so it runs over contiguous memory and can be vectorized by the
+ * JIT. The sums of every element are added in the same order as in the plain
+ * triple loop, so the results do not depend on the blocks.
+ */
+public final class Matrices {
+
+    private static final int BLOCK = 64;
+
+    private Matrices() {
+    }
+
+    /**
+     * Multiply two matrices, <code>c = a * b</code>.
+     *
+     * @param a
+     *            the left matrix, rows X inner
+     * @param b
+     *            the right matrix, inner X columns
+     * @param c
+     *            the result, rows X columns, overwritten
+     * @param rows
+     *            the number of rows of a and c
+     * @param inner
+     *            the number of columns of a and rows of b
+     * @param columns
+     *            the number of columns of b and c
+     */
+    public static void multiply(double[] a, double[] b, double[] c, int rows,
+            int inner, int columns) {
+        Arrays.fill(c, 0, rows * columns, 0);
+        for (int i0 = 0; i0 < rows; i0 += BLOCK) {
+            int i1 = Math.min(i0 + BLOCK, rows);
+            for (int k0 = 0; k0 < inner; k0 += BLOCK) {
+                int k1 = Math.min(k0 + BLOCK, inner);
+                for (int j0 = 0; j0 < columns; j0 += BLOCK) {
+                    int j1 = Math.min(j0 + BLOCK, columns);
+                    for (int i = i0; i < i1; i++) {
+                        int row = i * columns;
+                        for (int k = k0; k < k1; k++) {
+                            double value = a[i * inner + k];
+                            int other = k * columns;
+                            for (int j = j0; j < j1; j++) {
+                                c[row + j] += value * b[other + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiply the transposed left matrix by the right one,
+     * <code>c = transpose(a) * b</code>.
+     *
+     * @param a
+     *            the left matrix, inner X rows
+     * @param b
+     *            the right matrix, inner X columns
+     * @param c
+     *            the result, rows X columns, overwritten
+     * @param rows
+     *            the number of columns of a and rows of c
+     * @param inner
+     *            the number of rows of a and b
+     * @param columns
+     *            the number of columns of b and c
+     */
+    public static void multiplyTransposedLeft(double[] a, double[] b,
+            double[] c, int rows, int inner, int columns) {
+        Arrays.fill(c, 0, rows * columns, 0);
+        for (int i0 = 0; i0 < rows; i0 += BLOCK) {
+            int i1 = Math.min(i0 + BLOCK, rows);
+            for (int k0 = 0; k0 < inner; k0 += BLOCK) {
+                int k1 = Math.min(k0 + BLOCK, inner);
+                for (int j0 = 0; j0 < columns; j0 += BLOCK) {
+                    int j1 = Math.min(j0 + BLOCK, columns);
+                    for (int i = i0; i < i1; i++) {
+                        int row = i * columns;
+                        for (int k = k0; k < k1; k++) {
+                            double value = a[k * rows + i];
+                            int other = k * columns;
+                            for (int j = j0; j < j1; j++) {
+                                c[row + j] += value * b[other + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiply the left matrix by the transposed right one,
+     * <code>c = a * transpose(b)</code>.
+     *
+     * @param a
+     *            the left matrix, rows X inner
+     * @param b
+     *            the right matrix, columns X inner
+     * @param c
+     *            the result, rows X columns, overwritten
+     * @param rows
+     *            the number of rows of a and c
+     * @param inner
+     *            the number of columns of a and b
+     * @param columns
+     *            the number of rows of b and columns of c
+     */
+    public static void multiplyTransposedRight(double[] a, double[] b,
+            double[] c, int rows, int inner, int columns) {
+        for (int i0 = 0; i0 < rows; i0 += BLOCK) {
+            int i1 = Math.min(i0 + BLOCK, rows);
+            for (int j0 = 0; j0 < columns; j0 += BLOCK) {
+                int j1 = Math.min(j0 + BLOCK, columns);
+                for (int i = i0; i < i1; i++) {
+                    int row = i * inner;
+                    for (int j = j0; j < j1; j++) {
+                        int other = j * inner;
+                        double sum = 0;
+                        for (int k = 0; k < inner; k++) {
+                            sum += a[row + k] * b[other + k];
+                        }
+                        c[i * columns + j] = sum;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package spaska.classifiers.util;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the k nearest rows found so far. Rows are ordered by their distance
+ * and rows at the same distance by their index, so the result does not depend
+ * on the order in which the rows are offered and is the same as the result of
+ * a scan over all rows that keeps the first of equally distant rows.
+ */
+public final class NeighbourHeap {
+
+    private final double[] distances;
+    private final int[] rows;
+    private int size;
+
+    /**
+     * Construct an empty heap.
+     *
+     * @param k
+     *            the number of rows to keep
+     */
+    public NeighbourHeap(int k) {
+        distances = new double[k];
+        rows = new int[k];
+    }
+
+    /**
+     * Get the number of rows to keep.
+     *
+     * @return the k of the heap
+     */
+    public int capacity() {
+        return rows.length;
+    }
+
+    /**
+     * Checks if the heap has k rows.
+     *
+     * @return true if the heap has k rows
+     */
+    public boolean isFull() {
+        return size == rows.length;
+    }
+
+    /**
+     * Get the distance of the farthest kept row.
+     *
+     * @return the distance of the farthest kept row or positive infinity if
+     *         the heap is not full
+     */
+    public double worstDistance() {
+        return isFull() && size > 0 ? distances[0] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Offer a row to the heap.
+     *
+     * @param distance
+     *            the distance of the row
+     * @param row
+     *            the index of the row
+     */
+    public void offer(double distance, int row) {
+        if (size < rows.length) {
+            distances[size] = distance;
+            rows[size] = row;
+            siftUp(size++);
+        } else if (size > 0 && before(distance, row, distances[0], rows[0])) {
+            distances[0] = distance;
+            rows[0] = row;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Get the kept rows in ascending order of their index.
+     *
+     * @return the kept rows
+     */
+    public int[] sortedRows() {
+        int[] result = Arrays.copyOf(rows, size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static boolean before(double distance, int row,
+            double otherDistance, int otherRow) {
+        return distance < otherDistance
+                || (distance == otherDistance && row < otherRow);
+    }
+
+    private void siftUp(int index) {
+        int i = index;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!before(distances[parent], rows[parent], distances[i], rows[i])) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        int i = index;
+        while (true) {
+            int largest = i;
+            for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                if (before(distances[largest], rows[largest], distances[child],
+                        rows[child])) {
+                    largest = child;
+                }
+            }
+            if (largest == i) {
+                return;
+            }
+            swap(i, largest);
+            i = largest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        double distance = distances[i];
+        distances[i] = distances[j];
+        distances[j] = distance;
+        int row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+    }
+}
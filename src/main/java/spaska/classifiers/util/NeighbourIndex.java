@@ -0,0 +1,19 @@
+package spaska.classifiers.util;
+
+/**
+ * An index over the complete rows of an {@link InstanceDistance} that finds
+ * the nearest rows to a query without computing the distance to every row.
+ */
+public interface NeighbourIndex {
+
+    /**
+     * Offer the nearest indexed rows to a query to the heap. Rows that cannot
+     * be nearer than the rows already in the heap are skipped.
+     *
+     * @param query
+     *            the query
+     * @param heap
+     *            the heap that collects the nearest rows
+     */
+    void search(InstanceDistance.Query query, NeighbourHeap heap);
+}
@@ -61,6 +61,13 @@ public final class Node {
         children.add(node);
     }
 
+    /**
+     * Removes all children of this node, for example when a tree is pruned.
+     */
+    public void removeChildren() {
+        children.clear();
+    }
+
     /**
      * Get the value behind this node.
      * 
@@ -0,0 +1,36 @@
+package spaska.classifiers.util;
+
+/**
+ * The best binary split of the instances of a tree node on a numeric
+ * attribute, of the form (&lt;= value ; &gt; value).
+ */
+public interface NumericSplit {
+
+    /**
+     * Checks if there is no split.
+     *
+     * @return true if no numeric attribute can split the instances
+     */
+    boolean isEmpty();
+
+    /**
+     * Get the attribute index with which the instances will be split.
+     *
+     * @return the index of the attribute on which the instances will be split
+     */
+    int getAttributeIndex();
+
+    /**
+     * Get the value on which the instances will be split.
+     *
+     * @return the biggest value that goes to the first side of the split
+     */
+    double getSplitValue();
+
+    /**
+     * Get the gain ratio for the information from this split.
+     *
+     * @return the gain ratio for the information from this split
+     */
+    double getGainRatio();
+}
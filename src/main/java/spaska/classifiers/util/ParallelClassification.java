@@ -0,0 +1,221 @@
+package spaska.classifiers.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import spaska.classifiers.IClassifier;
+import spaska.data.Instance;
+import spaska.data.Value;
+
+/**
+ * Classifies many instances on all processors with one built classifier. The
+ * instances are split in chunks and every chunk is classified by its own
+ * {@link Scorer}, so a classifier can keep the buffers that it needs for a
+ * single instance in the scorer and reuse them for the whole chunk. Classifiers
+ * that work on the columns of a dataset can split its rows in the same way with
+ * {@link #runInChunks(int, RangeTask)}.
+ *
+ * <p>
+ * The chunks run on a pool of daemon threads that is shared by all
+ * classifiers. A batch that is classified from a thread of the pool, for
+ * example by a classifier that is evaluated in parallel, runs on the calling
+ * thread, so the pool cannot wait for itself.
+ * </p>
+ */
+public final class ParallelClassification {
+
+    private static final int MIN_CHUNK_SIZE = 256;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int THREADS = Runtime.getRuntime()
+            .availableProcessors();
+    private static final ThreadLocal<Boolean> IN_POOL = new ThreadLocal<Boolean>();
+    private static ExecutorService pool;
+
+    /**
+     * Classifies the instances of a chunk, one after the other. A scorer is
+     * used by a single thread.
+     */
+    public interface Scorer {
+        /**
+         * Classify an instance.
+         *
+         * @param instance
+         *            the instance to be classified
+         * @return the class/label of the instance
+         */
+        Value classify(Instance instance);
+    }
+
+    /**
+     * Creates a new scorer for every chunk.
+     */
+    public interface ScorerFactory {
+        /**
+         * Create a scorer for a chunk of instances.
+         *
+         * @return a new scorer
+         */
+        Scorer createScorer();
+    }
+
+    /**
+     * Works on a range of rows. Classifiers that score whole columns of a
+     * dataset at once split the rows in ranges with
+     * {@link ParallelClassification#runInChunks(int, RangeTask)}.
+     */
+    public interface RangeTask {
+        /**
+         * Work on the rows from start to end.
+         *
+         * @param start
+         *            the first row
+         * @param end
+         *            the row after the last one
+         */
+        void run(int start, int end);
+    }
+
+    private ParallelClassification() {
+    }
+
+    /**
+     * Classify instances with {@link IClassifier#classifyInstance(Instance)}
+     * in parallel. The classifier must be safe to use from many threads.
+     *
+     * @param classifier
+     *            the built classifier
+     * @param instances
+     *            the instances to be classified
+     * @return the class/label of every instance in the same order
+     */
+    public static List<Value> classifyBatch(final IClassifier classifier,
+            List<Instance> instances) {
+        return classifyBatch(new ScorerFactory() {
+            @Override
+            public Scorer createScorer() {
+                return new Scorer() {
+                    @Override
+                    public Value classify(Instance instance) {
+                        return classifier.classifyInstance(instance);
+                    }
+                };
+            }
+        }, instances);
+    }
+
+    /**
+     * Classify instances in parallel with scorers from a factory.
+     *
+     * @param factory
+     *            the factory for the scorers of the chunks
+     * @param instances
+     *            the instances to be classified
+     * @return the class/label of every instance in the same order
+     */
+    public static List<Value> classifyBatch(final ScorerFactory factory,
+            final List<Instance> instances) {
+        final Value[] result = new Value[instances.size()];
+        runInChunks(result.length, new RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                Scorer scorer = factory.createScorer();
+                for (int i = start; i < end; i++) {
+                    result[i] = scorer.classify(instances.get(i));
+                }
+            }
+        });
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Split rows in ranges and work on them in parallel. Small numbers of rows
+     * are worked on in the calling thread as a single range.
+     *
+     * @param rows
+     *            the number of rows
+     * @param task
+     *            the work for a range of rows
+     */
+    public static void runInChunks(int rows, RangeTask task) {
+        int chunks = Math.min(THREADS * CHUNKS_PER_THREAD, rows
+                / MIN_CHUNK_SIZE);
+        if (chunks <= 1 || THREADS == 1 || IN_POOL.get() != null) {
+            task.run(0, rows);
+            return;
+        }
+        List<Future<Void>> parts = new ArrayList<Future<Void>>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            int start = (int) ((long) rows * i / chunks);
+            int end = (int) ((long) rows * (i + 1) / chunks);
+            parts.add(getPool().submit(new Chunk(task, start, end)));
+        }
+        try {
+            for (Future<Void> part : parts) {
+                part.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("The classification was interrupted",
+                    e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            for (Future<Void> part : parts) {
+                part.cancel(true);
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+                private int count;
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            IN_POOL.set(Boolean.TRUE);
+                            runnable.run();
+                        }
+                    }, "spaska-classification-" + (++count));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * Runs a task on a range of rows.
+     */
+    private static final class Chunk implements Callable<Void> {
+        private final RangeTask task;
+        private final int start;
+        private final int end;
+
+        Chunk(RangeTask task, int start, int end) {
+            this.task = task;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Void call() {
+            task.run(start, end);
+            return null;
+        }
+    }
+}
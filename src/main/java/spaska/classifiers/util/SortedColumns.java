@@ -0,0 +1,251 @@
+package spaska.classifiers.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import spaska.data.Attribute.ValueType;
+import spaska.data.DatasetView;
+import spaska.data.Value;
+
+/**
+ * The rows of a tree node in the order of every numeric attribute. The values
+ * of the numeric attributes are sorted once for the root of a tree and the
+ * rows of a child node are taken from the sorted rows of its parent with a
+ * stable partition, like in SLIQ and SPRINT. So finding the best numeric split
+ * of a node is linear in its number of rows instead of sorting them again for
+ * every attribute.
+ *
+ * <p>
+ * In every order the rows with an unknown value come first, in the order of
+ * the node, and the rows with known values follow in ascending order, which is
+ * what {@link ContinuousValueService} expects.
+ * </p>
+ *
+ * <p>
+ * A node gives its sorted rows up when it is {@link #split(List) split}, so
+ * only the nodes that are still to be grown keep sorted rows. Their rows are
+ * disjoint, except for the rows with unknown values that go to every child, so
+ * the sorted rows of a whole tree take about as much memory as the ones of its
+ * root, whatever the depth of the tree.
+ * </p>
+ *
+ * @see <a href="http://www.vldb.org/conf/1996/P544.PDF">SPRINT: A Scalable
+ *      Parallel Classifier for Data Mining</a>
+ */
+public final class SortedColumns extends SplitFinder {
+
+    private final DatasetService datasetService;
+    private final int[] attributes; // the numeric attributes
+    // the value of every numeric attribute and the class code of every row of
+    // the root, unknown values are NaN and unknown classes -1
+    private final double[][] values;
+    private final int[] classes;
+    // the row of the root for every row of the node
+    private int[] roots;
+    // the rows of the node in the order of every numeric attribute and the
+    // number of rows with an unknown value that start every order, null
+    // after the node is split
+    private int[][] orders;
+    private int[] unknownCounts;
+
+    /**
+     * Sort the rows of the root of a tree.
+     *
+     * @param view
+     *            the rows of the root
+     * @param datasetService
+     *            the data service for the rows
+     */
+    public SortedColumns(DatasetView view, DatasetService datasetService) {
+        this.datasetService = datasetService;
+        this.attributes = datasetService.getNumericIndices();
+        int size = view.size();
+        int classIndex = datasetService.classIndex();
+        this.values = new double[attributes.length][size];
+        this.classes = new int[size];
+        this.roots = new int[size];
+        this.orders = new int[attributes.length][];
+        this.unknownCounts = new int[attributes.length];
+        for (int i = 0; i < size; i++) {
+            roots[i] = i;
+            classes[i] = datasetService.getCode(classIndex,
+                    datasetService.getClass(view.get(i)));
+            for (int j = 0; j < attributes.length; j++) {
+                Value value = view.get(i).getVector().get(attributes[j]);
+                values[j][i] = value.getType() == ValueType.Unknown ? Double.NaN
+                        : (Double) value.getValue();
+            }
+        }
+        for (int j = 0; j < attributes.length; j++) {
+            orders[j] = sort(values[j]);
+            while (unknownCounts[j] < size
+                    && Double.isNaN(values[j][orders[j][unknownCounts[j]]])) {
+                unknownCounts[j]++;
+            }
+        }
+    }
+
+    /*
+     * the rows of a child from the rows of its parent, rows is the row of the
+     * child for every row of the parent, -1 for the ones it does not get, and
+     * is filled with -1 again afterwards
+     */
+    private SortedColumns(SortedColumns parent, int[] positions, int[] rows) {
+        this.datasetService = parent.datasetService;
+        this.attributes = parent.attributes;
+        this.values = parent.values;
+        this.classes = parent.classes;
+        this.roots = new int[positions.length];
+        this.orders = new int[attributes.length][positions.length];
+        this.unknownCounts = new int[attributes.length];
+        for (int i = 0; i < positions.length; i++) {
+            rows[positions[i]] = i;
+            roots[i] = parent.roots[positions[i]];
+        }
+        for (int j = 0; j < attributes.length; j++) {
+            int[] order = parent.orders[j];
+            int count = 0;
+            for (int k = 0; k < order.length; k++) {
+                int row = rows[order[k]];
+                if (row >= 0) {
+                    if (k < parent.unknownCounts[j]) {
+                        unknownCounts[j]++;
+                    }
+                    orders[j][count++] = row;
+                }
+            }
+        }
+        for (int position : positions) {
+            rows[position] = -1;
+        }
+    }
+
+    /*
+     * the rows sorted by their value with a stable merge sort, the unknown
+     * values first
+     */
+    private static int[] sort(double[] keys) {
+        int[] rows = new int[keys.length];
+        int[] buffer = new int[keys.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int start = 0; start < rows.length; start += 2 * width) {
+                int middle = Math.min(start + width, rows.length);
+                int end = Math.min(start + 2 * width, rows.length);
+                int left = start;
+                int right = middle;
+                for (int k = start; k < end; k++) {
+                    if (left < middle
+                            && (right >= end || !before(keys[rows[right]],
+                                    keys[rows[left]]))) {
+                        buffer[k] = rows[left++];
+                    } else {
+                        buffer[k] = rows[right++];
+                    }
+                }
+            }
+            int[] swap = rows;
+            rows = buffer;
+            buffer = swap;
+        }
+        return rows;
+    }
+
+    private static boolean before(double first, double second) {
+        if (Double.isNaN(first)) {
+            return !Double.isNaN(second);
+        }
+        return !Double.isNaN(second) && Double.compare(first, second) < 0;
+    }
+
+    /**
+     * Get the number of rows of the node.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        checkNotSplit();
+        return roots.length;
+    }
+
+    private void checkNotSplit() {
+        if (orders == null) {
+            throw new IllegalStateException(
+                    "The rows of the node were given to its children.");
+        }
+    }
+
+    private int[] createRows() {
+        int[] rows = new int[roots.length];
+        Arrays.fill(rows, -1);
+        return rows;
+    }
+
+    /**
+     * Take some of the rows of this node for a child node, keeping them in the
+     * order of every attribute. This node keeps its rows.
+     *
+     * @param positions
+     *            the rows of this node that the child gets, in the order of
+     *            the child, every row at most once
+     * @return the sorted rows of the child
+     */
+    public SortedColumns select(int[] positions) {
+        checkNotSplit();
+        return new SortedColumns(this, positions, createRows());
+    }
+
+    /**
+     * Create the sorted rows of the children of the node. This node gives its
+     * sorted rows up after that and cannot be used any more.
+     *
+     * @param positions
+     *            the rows of this node that every child gets
+     * @return the sorted rows of every child
+     */
+    @Override
+    public List<SplitFinder> split(List<int[]> positions) {
+        checkNotSplit();
+        int[] rows = createRows();
+        List<SplitFinder> children = new ArrayList<SplitFinder>();
+        for (int[] childPositions : positions) {
+            children.add(new SortedColumns(this, childPositions, rows));
+        }
+        roots = null;
+        orders = null;
+        unknownCounts = null;
+        return children;
+    }
+
+    @Override
+    public int numberOfAttributes() {
+        return attributes.length;
+    }
+
+    @Override
+    public int getAttributeIndex(int attribute) {
+        return attributes[attribute];
+    }
+
+    @Override
+    public ContinuousValueService getSplit(int j, double classesEntropy) {
+        checkNotSplit();
+        int[] order = orders[j];
+        double[] sortedValues = new double[order.length];
+        int[] sortedClasses = new int[order.length];
+        for (int k = 0; k < order.length; k++) {
+            int root = roots[order[k]];
+            sortedValues[k] = values[j][root];
+            sortedClasses[k] = classes[root];
+        }
+        ContinuousValueService service = new ContinuousValueService(
+                datasetService, attributes[j], classesEntropy, sortedValues,
+                sortedClasses, unknownCounts[j]);
+        // the service calculates the split when it is asked for the first time
+        service.getGainRatio();
+        return service;
+    }
+}
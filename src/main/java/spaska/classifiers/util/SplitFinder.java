@@ -0,0 +1,118 @@
+package spaska.classifiers.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the best numeric split of the instances of a tree node. A finder is
+ * created for the root of a tree and the finders of the child nodes are
+ * derived from the finder of their parent, so the work that is done once for
+ * the root, like sorting or binning the values, is shared by the whole tree.
+ *
+ * <p>
+ * The finders only search the splits of single attributes, the best of them
+ * is chosen here for all finders by {@link #getBest(List)}.
+ * </p>
+ *
+ * @see SplitSearch
+ */
+public abstract class SplitFinder {
+
+    /**
+     * Get the best split on a numeric attribute.
+     *
+     * @param classesEntropy
+     *            the entropy of the classes of the instances of the node
+     * @return the best split, which is empty if no attribute splits the
+     *         instances
+     */
+    public NumericSplit getBestNumeric(double classesEntropy) {
+        return getBestNumeric(classesEntropy, null);
+    }
+
+    /**
+     * Get the best split on some of the numeric attributes.
+     *
+     * @param classesEntropy
+     *            the entropy of the classes of the instances of the node
+     * @param candidates
+     *            the attributes that may be split on, by their index in the
+     *            dataset, or null for all attributes
+     * @return the best split, which is empty if none of the attributes splits
+     *         the instances
+     */
+    public NumericSplit getBestNumeric(double classesEntropy,
+            boolean[] candidates) {
+        List<NumericSplit> splits = new ArrayList<NumericSplit>();
+        for (int j = 0; j < numberOfAttributes(); j++) {
+            if (candidates == null || candidates[getAttributeIndex(j)]) {
+                splits.add(getSplit(j, classesEntropy));
+            }
+        }
+        return getBest(splits);
+    }
+
+    /**
+     * Get the split with the biggest gain ratio, the first one of the splits
+     * with the same gain ratio.
+     *
+     * @param splits
+     *            the splits of the attributes
+     * @return the best split, which is empty if none of the splits has a gain
+     *         ratio above 0
+     */
+    public static NumericSplit getBest(List<NumericSplit> splits) {
+        NumericSplit best = ContinuousValueService.createEmptyService();
+        double max = 0;
+        for (NumericSplit current : splits) {
+            if (max < current.getGainRatio()) {
+                max = current.getGainRatio();
+                best = current;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Get the number of numeric attributes that are searched for a split.
+     *
+     * @return the number of numeric attributes
+     */
+    public abstract int numberOfAttributes();
+
+    /**
+     * Get the index in the dataset of one of the numeric attributes.
+     *
+     * @param attribute
+     *            the position of the attribute among the numeric attributes
+     * @return the index of the attribute in the dataset
+     */
+    public abstract int getAttributeIndex(int attribute);
+
+    /**
+     * Get the best split on one of the numeric attributes. The split is
+     * calculated before it is returned, so it can be read from another
+     * thread. The splits of different attributes can be searched for in
+     * parallel.
+     *
+     * @param attribute
+     *            the position of the attribute among the numeric attributes
+     * @param classesEntropy
+     *            the entropy of the classes of the instances of the node
+     * @return the best split on the attribute, which is empty if the
+     *         attribute does not split the instances
+     */
+    public abstract NumericSplit getSplit(int attribute, double classesEntropy);
+
+    /**
+     * Create the finders of the children of the node. This finder is not used
+     * after it is split, so it may give up its memory to its children.
+     *
+     * @param positions
+     *            the rows of this node that every child gets, in the order of
+     *            the child, as given by
+     *            {@link Trees#distribute(spaska.data.DatasetView, List, DatasetService, List)}
+     * @return the finder of every child
+     */
+    public abstract List<SplitFinder> split(List<int[]> positions);
+}
@@ -0,0 +1,45 @@
+package spaska.classifiers.util;
+
+import spaska.data.DatasetView;
+
+/**
+ * The ways to search for the best split of a tree node on a numeric attribute.
+ */
+public enum SplitSearch {
+    /**
+     * Try every threshold between two different values, see
+     * {@link SortedColumns}.
+     */
+    EXACT {
+        @Override
+        public SplitFinder createFinder(DatasetView view,
+                DatasetService datasetService, int bins) {
+            return new SortedColumns(view, datasetService);
+        }
+    },
+    /**
+     * Try only the thresholds between the quantile bins of every attribute,
+     * see {@link BinnedColumns}.
+     */
+    HISTOGRAM {
+        @Override
+        public SplitFinder createFinder(DatasetView view,
+                DatasetService datasetService, int bins) {
+            return new BinnedColumns(view, datasetService, bins);
+        }
+    };
+
+    /**
+     * Create the finder for the root of a tree.
+     *
+     * @param view
+     *            the instances of the root
+     * @param datasetService
+     *            the data service for the instances
+     * @param bins
+     *            the maximum number of bins of a histogram
+     * @return the finder for the root
+     */
+    public abstract SplitFinder createFinder(DatasetView view,
+            DatasetService datasetService, int bins);
+}
@@ -0,0 +1,111 @@
+package spaska.classifiers.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of threads for tasks that fork other tasks and wait for them, like
+ * the subtrees of a tree. A task that is joined before a thread of the pool
+ * has started it is taken back from the queue and run by the joining thread,
+ * so a thread never waits for a task that is still queued and the pool cannot
+ * wait for itself, even with a single thread.
+ *
+ * <p>
+ * A pool with one thread or less has no threads at all, its tasks are run
+ * when they are joined.
+ * </p>
+ */
+public final class TaskPool {
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Constructs a new pool.
+     *
+     * @param threads
+     *            the number of threads of the pool
+     */
+    public TaskPool(int threads) {
+        if (threads <= 1) {
+            executor = null;
+        } else {
+            executor = new ThreadPoolExecutor(threads, threads, 0L,
+                    TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        private int count;
+
+                        @Override
+                        public synchronized Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable,
+                                    "spaska-tasks-" + (++count));
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Start a task in the pool.
+     *
+     * @param <T>
+     *            the type of the result of the task
+     * @param task
+     *            the task
+     * @return the future result of the task, to be given to
+     *         {@link #join(Future)}
+     */
+    public <T> Future<T> fork(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<T>(task);
+        if (executor != null) {
+            executor.execute(future);
+        }
+        return future;
+    }
+
+    /**
+     * Wait for a task and get its result. A task that has not started yet is
+     * run by the calling thread.
+     *
+     * @param <T>
+     *            the type of the result of the task
+     * @param future
+     *            the future result of a task forked in this pool
+     * @return the result of the task
+     */
+    public <T> T join(Future<T> future) {
+        if (executor == null || executor.remove((Runnable) future)) {
+            ((Runnable) future).run();
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("The task was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Stop the threads of the pool. The tasks that are not joined yet are
+     * cancelled.
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
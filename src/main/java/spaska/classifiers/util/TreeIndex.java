@@ -0,0 +1,125 @@
+package spaska.classifiers.util;
+
+/**
+ * A base class for the tree indices. Every node of a tree covers a range of
+ * the indexed rows, so the rows and their coordinates are kept in flat arrays
+ * that are reordered while the tree is built.
+ */
+abstract class TreeIndex implements NeighbourIndex {
+
+    /**
+     * The maximum number of rows in a leaf.
+     */
+    static final int LEAF_SIZE = 16;
+
+    private static final double EPSILON = 1e-9;
+
+    private final InstanceDistance distance;
+    private final int dimensions;
+    private final int[] rows;
+    private final double[] points;
+
+    /**
+     * Embed the given rows.
+     *
+     * @param distance
+     *            the distance and the embedding of the rows
+     * @param rows
+     *            the complete rows to index
+     */
+    TreeIndex(InstanceDistance distance, int[] rows) {
+        this.distance = distance;
+        this.dimensions = distance.getDimensions();
+        this.rows = rows.clone();
+        this.points = new double[rows.length * dimensions];
+        for (int i = 0; i < rows.length; i++) {
+            distance.embed(rows[i], points, i * dimensions);
+        }
+    }
+
+    final int size() {
+        return rows.length;
+    }
+
+    final int dimensions() {
+        return dimensions;
+    }
+
+    final double coordinate(int position, int dimension) {
+        return points[position * dimensions + dimension];
+    }
+
+    /**
+     * Offer all rows in a range of positions to the heap.
+     */
+    final void scan(InstanceDistance.Query query, int start, int end,
+            NeighbourHeap heap) {
+        for (int i = start; i < end; i++) {
+            heap.offer(Math.sqrt(distance.distance(query, rows[i])), rows[i]);
+        }
+    }
+
+    /**
+     * Checks if a node with the given lower bound of the squared distance can
+     * be skipped. The bound is loosened a little, so rounding errors in the
+     * embedding cannot skip a row that is as near as the farthest kept row.
+     */
+    static boolean canSkip(double squaredBound, NeighbourHeap heap) {
+        double bound = Math.sqrt(Math.max(0, squaredBound));
+        return bound - EPSILON * (1 + bound) > heap.worstDistance();
+    }
+
+    /**
+     * Reorder a range of positions so the position k has the k-th smallest
+     * key, the positions before it smaller or equal keys and the positions
+     * after it bigger or equal keys.
+     *
+     * @param keys
+     *            the key of every position, reordered together with the rows
+     */
+    final void select(int start, int end, int k, double[] keys) {
+        int left = start;
+        int right = end - 1;
+        while (left < right) {
+            double pivot = keys[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i, j, keys);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j, double[] keys) {
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        int row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+        int a = i * dimensions;
+        int b = j * dimensions;
+        for (int d = 0; d < dimensions; d++) {
+            double value = points[a + d];
+            points[a + d] = points[b + d];
+            points[b + d] = value;
+        }
+    }
+}
@@ -5,7 +5,7 @@ import java.util.List;
 
 import spaska.data.Attribute;
 import spaska.data.Attribute.ValueType;
-import spaska.data.Instance;
+import spaska.data.DatasetView;
 import spaska.data.NumericValue;
 import spaska.data.Value;
 
@@ -16,12 +16,19 @@ import spaska.data.Value;
  * 
  */
 public final class Trees {
+    private static final int UNKNOWN = -1;
+    private static final int NONE = -2;
+
     private Trees() {
 
     }
 
     /**
-     * Distribute instances according to the condition they satisfy.
+     * Distribute instances according to the condition they satisfy. The
+     * instances are not copied, every condition gets a view over the rows
+     * that satisfy it. Rows with an unknown value for the attribute go to all
+     * conditions with their weight multiplied by the part of the known rows
+     * that reach the condition.
      * 
      * @param instances
      *            the instances to distribute
@@ -32,13 +39,61 @@ public final class Trees {
      * @return the distribution of the instances according to the given
      *         parameters
      */
-    public static List<List<Instance>> distribute(List<Instance> instances,
+    public static List<DatasetView> distribute(DatasetView instances,
             List<Condition> conditions, DatasetService datasetService) {
-        List<List<Instance>> result = new ArrayList<List<Instance>>();
-        List<Instance> unknown = new ArrayList<Instance>();
-        for (int i = 0; i < conditions.size(); i++) {
-            result.add(new ArrayList<Instance>());
-        }
+        return distribute(instances, conditions, datasetService, null);
+    }
+
+    /**
+     * Distribute instances according to the condition they satisfy and keep
+     * where the rows of every condition come from.
+     * 
+     * @param instances
+     *            the instances to distribute
+     * @param conditions
+     *            the conditions on which to distribute the instances
+     * @param datasetService
+     *            the data service for these instances
+     * @param positions
+     *            a list that gets the positions in the given instances of the
+     *            rows of every condition or null
+     * @return the distribution of the instances according to the given
+     *         parameters
+     * @see SortedColumns#select(int[])
+     */
+    public static List<DatasetView> distribute(DatasetView instances,
+            List<Condition> conditions, DatasetService datasetService,
+            List<int[]> positions) {
+        return distribute(instances, conditions, datasetService, positions,
+                true);
+    }
+
+    /**
+     * Distribute instances like {@link #distribute(DatasetView, List,
+     * DatasetService)}, but weight the rows with an unknown value by the
+     * reach that the conditions already have, for example to send held out
+     * instances down a grown tree. The reach of the conditions is not
+     * changed.
+     * 
+     * @param instances
+     *            the instances to distribute
+     * @param conditions
+     *            the conditions of a grown tree on which to distribute the
+     *            instances
+     * @param datasetService
+     *            the data service for these instances
+     * @return the distribution of the instances according to the given
+     *         parameters
+     */
+    public static List<DatasetView> route(DatasetView instances,
+            List<Condition> conditions, DatasetService datasetService) {
+        return distribute(instances, conditions, datasetService, null, false);
+    }
+
+    private static List<DatasetView> distribute(DatasetView instances,
+            List<Condition> conditions, DatasetService datasetService,
+            List<int[]> positions, boolean setReach) {
+        List<DatasetView> result = new ArrayList<DatasetView>();
         if (conditions.isEmpty()) {
             return result;
         }
@@ -46,71 +101,55 @@ public final class Trees {
         Condition first = conditions.get(0);
         int attributeIndex = datasetService.getAttributeIndex(first
                 .getAttribute());
+        // the condition of every row, UNKNOWN or NONE
+        int[] branches = new int[instances.size()];
+        int[] counts = new int[conditions.size()];
         int totalKnown = 0;
+        int unknown = 0;
         // distribute instances to relevant conditions
-        for (Instance instance : instances) {
-            int listCounter = 0;
-            Value current = instance.getVector().get(attributeIndex);
-            for (Condition c : conditions) {
-                if (current.getType() == ValueType.Unknown) {
-                    unknown.add(instance);
-                    break;
-                }
-                if (c.ifTrue(current)) {
-                    result.get(listCounter).add(instance);
+        for (int i = 0; i < branches.length; i++) {
+            Value current = instances.get(i).getVector().get(attributeIndex);
+            branches[i] = NONE;
+            if (current.getType() == ValueType.Unknown) {
+                branches[i] = UNKNOWN;
+                unknown++;
+                continue;
+            }
+            for (int c = 0; c < conditions.size(); c++) {
+                if (conditions.get(c).ifTrue(current)) {
+                    branches[i] = c;
+                    counts[c]++;
                     totalKnown++;
                     break;
                 }
-                listCounter++;
             }
         }
         // set portion of instances reaching a condition
-        int listCounter = 0;
-        for (Condition c : conditions) {
-            c.setReach(((double) result.get(listCounter).size()) / totalKnown);
-            listCounter++;
+        for (int c = 0; setReach && c < conditions.size(); c++) {
+            conditions.get(c).setReach(((double) counts[c]) / totalKnown);
         }
-        // handle unknown
-        for (Instance instance : unknown) {
-            int counter = 0;
-            for (Condition c : conditions) {
-                Instance copy = (Instance) instance.clone();
-                copy.setWeight(copy.getWeight() * c.getReach());
-                result.get(counter).add(copy);
-                counter++;
+        for (int c = 0; c < conditions.size(); c++) {
+            int[] rows = new int[counts[c] + unknown];
+            double[] weights = new double[rows.length];
+            int known = 0;
+            int position = counts[c];
+            double reach = conditions.get(c).getReach();
+            for (int i = 0; i < branches.length; i++) {
+                if (branches[i] == c) {
+                    rows[known] = i;
+                    weights[known++] = instances.getWeight(i);
+                } else if (branches[i] == UNKNOWN) {
+                    // handle unknown
+                    rows[position] = i;
+                    weights[position++] = instances.getWeight(i) * reach;
+                }
             }
-        }
-        return result;
-    }
-
-    /**
-     * Get a service for the best numeric attribute to split on.
-     * 
-     * @param list
-     *            the list to split
-     * @param classesEntropy
-     *            the classes entropy
-     * @param datasetService
-     *            the data service for the instances
-     * @return the service for the best numeric attribute to split on
-     */
-    public static ContinuousValueService getBestNumeric(List<Instance> list,
-            double classesEntropy, DatasetService datasetService) {
-        int[] numericIndices = datasetService.getNumericIndices();
-        ContinuousValueService best = ContinuousValueService
-                .createEmptyService();
-        ContinuousValueService currentService;
-        double max = 0, currentRatio;
-        for (int i = 0; i < numericIndices.length; i++) {
-            currentService = new ContinuousValueService(datasetService, list,
-                    numericIndices[i], classesEntropy);
-            currentRatio = currentService.getGainRatio();
-            if (max < currentRatio) {
-                max = currentRatio;
-                best = currentService;
+            result.add(instances.select(rows, weights));
+            if (positions != null) {
+                positions.add(rows);
             }
         }
-        return best;
+        return result;
     }
 
     /**
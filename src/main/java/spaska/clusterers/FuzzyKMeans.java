@@ -5,11 +5,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import spaska.classifiers.util.DatasetService;
+import spaska.data.ColumnStore;
 import spaska.data.Dataset;
 import spaska.data.Instance;
-import spaska.data.NominalValue;
-import spaska.data.NumericValue;
-import spaska.data.Value;
 import spaska.statistics.ClustererStatistics;
 
 /**
@@ -43,6 +41,7 @@ public class FuzzyKMeans implements IClusterer {
     private double[][] newMembershipFunction;
     private double[][] centers;
     private DatasetService service;
+    private ColumnStore columns;
 
     /**
      * Constructor for FuzzyKMeans algorithm.
@@ -196,14 +195,13 @@ public class FuzzyKMeans implements IClusterer {
         for (int instanceIndex = 0; instanceIndex < numberOfInstances; instanceIndex++) {
             double allClusterDistance = 0.0;
             for (int clusterIndex = 0; clusterIndex < numberOfClusters; clusterIndex++) {
-                allClusterDistance += distance(instances.get(instanceIndex),
+                allClusterDistance += distance(instanceIndex,
                         centers[clusterIndex]);
             }
 
             for (int clusterIndex = 0; clusterIndex < numberOfClusters; clusterIndex++) {
-                double currentClusterDistance = distance(
-                        instances.get(instanceIndex), centers[clusterIndex])
-                        * numberOfClusters;
+                double currentClusterDistance = distance(instanceIndex,
+                        centers[clusterIndex]) * numberOfClusters;
                 double delimiter = Math.pow(currentClusterDistance
                         / allClusterDistance, 2.0D / (fuzzifier - 1));
 
@@ -219,7 +217,7 @@ public class FuzzyKMeans implements IClusterer {
     /*
      * Computes the Euclidean distance from given instance to given center
      */
-    private double distance(Instance instance, double[] center) {
+    private double distance(int instanceIndex, double[] center) {
         double sum = 0.0;
         for (int attributeIndex = 0; attributeIndex < center.length; attributeIndex++) {
 
@@ -227,12 +225,11 @@ public class FuzzyKMeans implements IClusterer {
                 continue;
             }
 
-            Value attribute = instance.getVector().get(attributeIndex);
             double attributeValue = 0;
-            if (attribute instanceof NumericValue) {
-                attributeValue = ((NumericValue) attribute).getValue();
-            } else if (attribute instanceof NominalValue) {
-                attributeValue = service.intValue(attributeIndex, attribute);
+            if (columns.isNumeric(attributeIndex)) {
+                // unknown numeric values are kept as 0 in the columns
+                attributeValue = columns.getNumericColumn(attributeIndex)[instanceIndex];
+            } else if (!columns.isUnknown(instanceIndex, attributeIndex)) {
                 continue;
             }
 
@@ -255,18 +252,22 @@ public class FuzzyKMeans implements IClusterer {
                     continue;
                 }
 
+                // scan the contiguous column of the attribute
+                boolean numeric = columns.isNumeric(attributeIndex);
+                double[] numericColumn = numeric ? columns
+                        .getNumericColumn(attributeIndex) : null;
+                int[] nominalColumn = numeric ? null : columns
+                        .getNominalColumn(attributeIndex);
                 for (int instanceIndex = 0; instanceIndex < numberOfInstances; instanceIndex++) {
-                    Value attribute = instances.get(instanceIndex).getVector()
-                            .get(attributeIndex);
-                    double attributeValue = 0;
-                    if (attribute instanceof NumericValue) {
-                        attributeValue = ((NumericValue) attribute).getValue();
-                    } else if (attribute instanceof NominalValue) {
-                        attributeValue = service.intValue(attributeIndex,
-                                attribute);
-                    } else {
+                    if (columns.isUnknown(instanceIndex, attributeIndex)) {
                         continue;
                     }
+                    double attributeValue;
+                    if (numeric) {
+                        attributeValue = numericColumn[instanceIndex];
+                    } else {
+                        attributeValue = nominalColumn[instanceIndex];
+                    }
 
                     sum += Math.pow(
                             membershipFunction[clusterIndex][instanceIndex],
@@ -295,6 +296,7 @@ public class FuzzyKMeans implements IClusterer {
         membershipFunction = new double[numberOfClusters][numberOfInstances];
         newMembershipFunction = new double[numberOfClusters][numberOfInstances];
         service = new DatasetService(dataInstances);
+        columns = dataInstances.getColumns();
         numberOfAttributes = service.numberOfAttributes();
         centers = new double[numberOfClusters][numberOfAttributes];
 
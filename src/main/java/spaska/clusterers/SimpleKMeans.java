@@ -1,6 +1,6 @@
 package spaska.clusterers;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -13,11 +13,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import spaska.classifiers.util.DatasetService;
+import spaska.data.ColumnStore;
 import spaska.data.Dataset;
 import spaska.data.Instance;
-import spaska.data.NominalValue;
-import spaska.data.NumericValue;
-import spaska.data.Value;
 import spaska.statistics.ClustererStatistics;
 
 /**
@@ -58,6 +56,8 @@ public final class SimpleKMeans implements IClusterer {
     private Dataset data;
     private ClustererStatistics algorithmResult;
     private int iterations = maxIterations;
+    private ColumnStore columns;
+    private int classIndex;
 
     /**
      * Default constructor.
@@ -93,74 +93,64 @@ public final class SimpleKMeans implements IClusterer {
                 index = randInd % instances.size();
             }
 
-            clusters[i].center = instances.get(index);
+            clusters[i].center = index;
         }
     }
 
     @Override
     public void clusterize(Dataset sourceData) {
         this.data = sourceData;
+        this.columns = sourceData.getColumns();
+        this.classIndex = sourceData.getClassIndex();
         iterations = maxIterations;
         long startTime = System.currentTimeMillis();
         initCenters(sourceData);
         boolean isAllIterations = true;
 
         List<Instance> instances = sourceData.getElements();
+        int rows = columns.getRowsCount();
         while (iterations-- > 0) {
             if (Thread.interrupted()) {
                 return;
             }
             for (int i = 0; i < clusters.length; i++) {
-                clusters[i].previousInstances.clear();
-                clusters[i].previousInstances.addAll(clusters[i].instances);
-                clusters[i].instances.clear();
+                clusters[i].swapInstances();
             }
 
-            for (int i = 0; i < instances.size(); i++) {
-                assignToCluster(instances.get(i), sourceData);
+            for (int row = 0; row < rows; row++) {
+                assignToCluster(row);
             }
 
             // recalculate cluster centers
             for (int i = 0; i < clusters.length; i++) {
                 double bestDistance = Double.MAX_VALUE;
-                Instance bestInstance = null;
+                int bestInstance = -1;
 
-                List<Instance> currentClusterInstances = clusters[i].instances;
-                Instance currentClusterCenter = clusters[i].center;
-
-                for (int j = 0; j < currentClusterInstances.size(); j++) {
-                    Instance currentInstance = currentClusterInstances.get(j);
-                    if (currentInstance.equals(currentClusterCenter)) {
+                Cluster cluster = clusters[i];
+                for (int j = 0; j < cluster.size; j++) {
+                    int currentInstance = cluster.instances[j];
+                    if (currentInstance == cluster.center) {
                         continue;
                     }
 
-                    double dist = getDistanceAll(currentInstance,
-                            currentClusterInstances, sourceData);
-                    // System.out.println(dist);
+                    double dist = getDistanceAll(currentInstance, cluster);
                     if (dist < bestDistance) {
-                        // System.out.println("if " + dist);
                         bestDistance = dist;
                         bestInstance = currentInstance;
                     }
                 }
-                if (bestInstance != null) {
-                    clusters[i].center = bestInstance;
-                    clusters[i].centroidDistance = bestDistance;
+                if (bestInstance >= 0) {
+                    cluster.center = bestInstance;
+                    cluster.centroidDistance = bestDistance;
                 }
             }
 
             // check if previous instances are the same as current instances in
-            // every cluster
+            // every cluster, rows are assigned in order so the lists are
+            // sorted
             boolean isStabilized = true;
             for (int i = 0; i < clusters.length; i++) {
-                List<Instance> previousIntances = clusters[i].previousInstances;
-                List<Instance> currentIntances = clusters[i].instances;
-                if (previousIntances.size() != currentIntances.size()) {
-                    isStabilized = false;
-                    break;
-                }
-                if (!previousIntances.containsAll(currentIntances)
-                        || !currentIntances.containsAll(previousIntances)) {
+                if (!clusters[i].isStabilized()) {
                     isStabilized = false;
                     break;
                 }
@@ -177,17 +167,17 @@ public final class SimpleKMeans implements IClusterer {
         }
         int[] res = new int[clusters.length];
         for (int i = 0; i < clusters.length; i++) {
-            res[i] = clusters[i].instances.size();
+            res[i] = clusters[i].size;
         }
-        
+
         Map<Instance, Integer> clusteredInstances = new HashMap<Instance, Integer>();
         for (int i = 0; i < clusters.length; i++) {
-        	List<Instance> clusterInstances = clusters[i].instances;
-        	for (int j = 0; j < clusterInstances.size(); j++) {
-        		clusteredInstances.put(clusterInstances.get(j), i);
-        	}
+            for (int j = 0; j < clusters[i].size; j++) {
+                clusteredInstances.put(instances.get(clusters[i].instances[j]),
+                        i);
+            }
         }
-        
+
         algorithmResult = new ClustererStatistics(res);
         algorithmResult.setTestTime(System.currentTimeMillis() - startTime);
         algorithmResult.setClusteredInstances(clusteredInstances);
@@ -196,22 +186,21 @@ public final class SimpleKMeans implements IClusterer {
         algorithmResult.setAlgorithmName("Simple K-Means");
     }
 
-    private double getDistanceAll(Instance instance,
-            List<Instance> allInstances, Dataset distanceData) {
+    private double getDistanceAll(int row, Cluster cluster) {
         double dist = 0;
-        for (Instance currentInstance : allInstances) {
-            dist += getDistance(instance, currentInstance, distanceData);
+        for (int j = 0; j < cluster.size; j++) {
+            dist += getDistance(row, cluster.instances[j]);
         }
         return dist;
     }
 
-    private void assignToCluster(Instance instance, Dataset assignData) {
+    private void assignToCluster(int row) {
         int assignedClusterIndex = -1;
         double minLen = Double.MAX_VALUE;
 
         // find nearest cluster center
         for (int i = 0; i < clusters.length; i++) {
-            double currentDistance = getDistance(i, instance, assignData);
+            double currentDistance = getDistance(clusters[i].center, row);
             if (currentDistance < minLen) {
                 minLen = currentDistance;
                 assignedClusterIndex = i;
@@ -219,71 +208,29 @@ public final class SimpleKMeans implements IClusterer {
         }
 
         // add to cluster
-        clusters[assignedClusterIndex].instances.add(instance);
+        clusters[assignedClusterIndex].add(row);
         clusters[assignedClusterIndex].centroidDistance += minLen;
     }
 
-    private double getDistance(int centerInstanceIndex, Instance instance,
-            Dataset distanceData) {
-        Instance center = clusters[centerInstanceIndex].center;
-        return getDistance(center, instance, distanceData);
-    }
-
-    private double getDistance(Instance center, Instance instance,
-            Dataset distanceData) {
-        // List<Attribute> attributes = data.getAttributes();
-        List<Value> centerAttributes = center.getVector();
-        List<Value> instanceAttributes = instance.getVector();
+    private double getDistance(int center, int row) {
         double distance = 0;
-        for (int i = 0; i < centerAttributes.size(); i++) {
-            if (distanceData.getClassIndex() == i) {
+        for (int i = 0; i < columns.getAttributesCount(); i++) {
+            if (classIndex == i || columns.isUnknown(center, i)) {
                 continue;
             }
 
-            Value centerValue = centerAttributes.get(i);
-            Value instanceValue = instanceAttributes.get(i);
-            // distance += distanceBetweenValues(centerValue, instanceValue,
-            // centerValue.getType());
-
-            if (centerValue.getClass().equals(NumericValue.class)) {
-                double centerValDouble = ((NumericValue) centerValue)
-                        .getValue();
-                double instanceValDouble = ((NumericValue) instanceValue)
-                        .getValue();
-
-                // // normalize them
-                // Set<Value> domain = data.getDomain(attributes.get(i));
-                // double min = Double.MAX_VALUE;
-                // double max = Double.MIN_VALUE;
-                // for (Value value : domain) {
-                // double d = ((NumericValue)value).getValue();
-                // if (d > max) {
-                // max = d;
-                // continue;
-                // }
-                // if (d < min) {
-                // min = d;
-                // continue;
-                // }
-                // }
-
-                // double normalizedCenterDoubleValue =
-                // normalizeDoubleValue(centerValDouble, min, max);
-                // double normalizedInstanceDoubleValue =
-                // normalizeDoubleValue(instanceValDouble, min, max);
-                double normalizedCenterDoubleValue = centerValDouble; // normalizeDoubleValue(centerValDouble,
-                                                                      // min,
-                                                                      // max);
-                double normalizedInstanceDoubleValue = instanceValDouble; // normalizeDoubleValue(instanceValDouble,
-                                                                          // min,
-                                                                          // max);
-                distance += Math.pow(normalizedCenterDoubleValue
-                        - normalizedInstanceDoubleValue, 2);
-
-            } else if (centerValue.getClass().equals(NominalValue.class)
-            // add 1 if same, 0 if different
-                    && centerValue.getValue().equals(instanceValue.getValue())) {
-                distance += 1;
+            if (columns.isNumeric(i)) {
+                if (columns.isUnknown(row, i)) {
+                    continue;
+                }
+                double[] column = columns.getNumericColumn(i);
+                distance += Math.pow(column[center] - column[row], 2);
+            } else {
+                // add 1 if same, 0 if different
+                int[] column = columns.getNominalColumn(i);
+                if (column[center] == column[row]) {
+                    distance += 1;
+                }
             }
         }
         return distance;
@@ -305,14 +252,46 @@ public final class SimpleKMeans implements IClusterer {
     }
 
     /**
-     * This class represents a cluster in KMeans.
+     * This class represents a cluster in KMeans. The instances in the cluster
+     * are kept as rows of the dataset columns.
      */
     private static class Cluster {
-        private Instance center = new Instance(null);
-        private List<Instance> instances = new ArrayList<Instance>();
-        private List<Instance> previousInstances = new ArrayList<Instance>();
+        private int center = -1;
+        private int[] instances = new int[0];
+        private int size;
+        private int[] previousInstances = new int[0];
+        private int previousSize;
         @SuppressWarnings("unused")
         private double centroidDistance;
+
+        void add(int row) {
+            if (size == instances.length) {
+                instances = Arrays.copyOf(instances,
+                        Math.max(2 * instances.length, 1));
+            }
+            instances[size++] = row;
+        }
+
+        // remember the current instances and start over
+        void swapInstances() {
+            int[] tmp = previousInstances;
+            previousInstances = instances;
+            previousSize = size;
+            instances = tmp;
+            size = 0;
+        }
+
+        boolean isStabilized() {
+            if (previousSize != size) {
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                if (previousInstances[i] != instances[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 
     @Override
@@ -1,5 +1,6 @@
 package spaska.clusterers;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -45,7 +46,7 @@ public final class ZeroClusterer implements IClusterer {
                 return;
             }
 
-            List<Value> list = e.getVector();
+            List<Value> list = new ArrayList<Value>(e.getVector());
             list.add(new NominalValue("0"));
             Instance element = new Instance(list);
             clusteredData.addElement(element);
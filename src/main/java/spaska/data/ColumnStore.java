@@ -0,0 +1,591 @@
+package spaska.data;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import spaska.data.Attribute.ValueType;
+import edu.umd.cs.findbugs.annotations.SuppressWarnings;
+
+/**
+ * A column oriented storage for the values of a {@link Dataset}.
+ *
+ * <p>
+ * Every numeric attribute is kept in a <code>double[]</code>, every other
+ * attribute in an <code>int[]</code> of codes into the attribute domain and the
+ * unknown values of an attribute are marked in a {@link BitSet}. Algorithms
+ * that scan the whole table can work directly on these arrays instead of going
+ * through the boxed {@link Value} objects of every {@link Instance}.
+ * </p>
+ *
+ * <p>
+ * Nominal codes are given in the iteration order of the attribute domain, i.e.
+ * the same way {@link spaska.classifiers.util.DatasetService} numbers them.
+ * Values that are not part of the declared domain get the next free code when
+ * they are first stored.
+ * </p>
+ */
+public final class ColumnStore {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Attribute[] attributes;
+    private double[][] numeric;
+    private int[][] codes;
+    private BitSet[] unknown;
+    private List<List<Value>> domainValues;
+    private List<Map<Value, Integer>> domainCodes;
+    private int rows;
+    private int capacity;
+
+    /**
+     * Constructs an empty store for the attributes and the domains of the given
+     * dataset.
+     *
+     * @param dataset
+     *            the dataset from which to take the meta data
+     */
+    public ColumnStore(Dataset dataset) {
+        this(dataset, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty store for the attributes and the domains of the given
+     * dataset that can hold the given number of rows without growing.
+     *
+     * @param dataset
+     *            the dataset from which to take the meta data
+     * @param initialCapacity
+     *            the number of rows to reserve space for
+     */
+    public ColumnStore(Dataset dataset, int initialCapacity) {
+        List<Attribute> attributeList = dataset.getAttributes();
+        int n = attributeList.size();
+        attributes = attributeList.toArray(new Attribute[n]);
+        capacity = Math.max(initialCapacity, 1);
+        numeric = new double[n][];
+        codes = new int[n][];
+        unknown = new BitSet[n];
+        domainValues = new ArrayList<List<Value>>(n);
+        domainCodes = new ArrayList<Map<Value, Integer>>(n);
+        for (int i = 0; i < n; i++) {
+            unknown[i] = new BitSet();
+            List<Value> values = new ArrayList<Value>();
+            Map<Value, Integer> valueCodes = new HashMap<Value, Integer>();
+            if (isNumeric(i)) {
+                numeric[i] = new double[capacity];
+            } else {
+                codes[i] = new int[capacity];
+                Set<Value> domain = dataset.getDomain(attributes[i]);
+                if (domain != null) {
+                    for (Value v : domain) {
+                        valueCodes.put(v, values.size());
+                        values.add(v);
+                    }
+                }
+            }
+            domainValues.add(values);
+            domainCodes.add(valueCodes);
+        }
+    }
+
+    /**
+     * Build a store that holds all instances of the given dataset.
+     *
+     * @param dataset
+     *            the dataset that will be copied into columns
+     * @return a new store with one row for every instance of the dataset
+     */
+    public static ColumnStore of(Dataset dataset) {
+        List<Instance> instances = dataset.getElements();
+        ColumnStore store = new ColumnStore(dataset, instances.size());
+        for (Instance instance : instances) {
+            store.addRow(instance.getVector());
+        }
+        return store;
+    }
+
+    /**
+     * Get the number of rows in the store.
+     *
+     * @return the number of rows in the store
+     */
+    public int getRowsCount() {
+        return rows;
+    }
+
+    /**
+     * Get the number of columns(attributes) in the store.
+     *
+     * @return the number of columns in the store
+     */
+    public int getAttributesCount() {
+        return attributes.length;
+    }
+
+    /**
+     * Checks if the column on the given index keeps numeric values.
+     *
+     * @param attributeIndex
+     *            the index of the attribute
+     * @return true if the column is a <code>double[]</code> and false if it is
+     *         an <code>int[]</code> of nominal codes
+     */
+    public boolean isNumeric(int attributeIndex) {
+        return attributes[attributeIndex].getType() == ValueType.Numeric;
+    }
+
+    /**
+     * Append a row to the store.
+     *
+     * @param values
+     *            the attribute values of the row
+     * @return the index of the new row
+     */
+    public int addRow(List<Value> values) {
+        ensureCapacity(rows + 1);
+        int row = rows++;
+        if (values instanceof RowVector
+                && ((RowVector) values).size() == attributes.length) {
+            RowVector source = (RowVector) values;
+            copyRow(source.store, source.row, row);
+        } else {
+            int n = Math.min(values.size(), attributes.length);
+            for (int i = 0; i < n; i++) {
+                set(row, i, values.get(i));
+            }
+            for (int i = n; i < attributes.length; i++) {
+                setUnknown(row, i);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Append a row without values to the store. Every cell of the new row must
+     * be set through {@link #setDouble(int, int, double)},
+     * {@link #setCode(int, int, int)} or {@link #setUnknown(int, int)} before
+     * it is read.
+     * 
+     * @return the index of the new row
+     */
+    public int appendRow() {
+        return appendRows(1);
+    }
+
+    /**
+     * Append rows without values to the store. The backing columns have room
+     * for the rows after this call, so they can be filled in bulk through
+     * {@link #getNumericColumn(int)}, {@link #getNominalColumn(int)} and
+     * {@link #getUnknowns(int)}.
+     * 
+     * @param count
+     *            the number of rows to append
+     * @return the index of the first new row
+     * @see #appendRow()
+     */
+    public int appendRows(int count) {
+        ensureCapacity(rows + count);
+        int first = rows;
+        rows += count;
+        return first;
+    }
+
+    private void copyRow(ColumnStore source, int sourceRow, int row) {
+        for (int i = 0; i < attributes.length; i++) {
+            if (source.unknown[i].get(sourceRow)) {
+                setUnknown(row, i);
+            } else if (source.isNumeric(i) != isNumeric(i)) {
+                set(row, i, source.getValue(sourceRow, i));
+            } else if (isNumeric(i)) {
+                numeric[i][row] = source.numeric[i][sourceRow];
+                unknown[i].clear(row);
+            } else {
+                codes[i][row] = intern(i,
+                        source.getNominalValue(i, source.codes[i][sourceRow]));
+                unknown[i].clear(row);
+            }
+        }
+    }
+
+    /**
+     * Mark the value of a cell as unknown.
+     * 
+     * @param row
+     *            the row index
+     * @param attributeIndex
+     *            the attribute(column) index
+     */
+    public void setUnknown(int row, int attributeIndex) {
+        unknown[attributeIndex].set(row);
+        if (isNumeric(attributeIndex)) {
+            numeric[attributeIndex][row] = 0;
+        } else {
+            codes[attributeIndex][row] = -1;
+        }
+    }
+
+    /**
+     * Set the value of a numeric cell without boxing it.
+     * 
+     * @param row
+     *            the row index
+     * @param attributeIndex
+     *            the index of a numeric attribute
+     * @param value
+     *            the new value
+     */
+    public void setDouble(int row, int attributeIndex, double value) {
+        numeric[attributeIndex][row] = value;
+        unknown[attributeIndex].clear(row);
+    }
+
+    /**
+     * Set the value of a nominal cell by its code.
+     * 
+     * @param row
+     *            the row index
+     * @param attributeIndex
+     *            the index of a nominal attribute
+     * @param code
+     *            the code of the new value
+     * @see #intern(int, Value)
+     */
+    public void setCode(int row, int attributeIndex, int code) {
+        codes[attributeIndex][row] = code;
+        unknown[attributeIndex].clear(row);
+    }
+
+    /**
+     * Set the value of a single cell in the store.
+     *
+     * @param row
+     *            the row index
+     * @param attributeIndex
+     *            the attribute(column) index
+     * @param value
+     *            the new value
+     */
+    public void set(int row, int attributeIndex, Value value) {
+        checkRow(row);
+        if (value == null || value.getType() == ValueType.Unknown) {
+            setUnknown(row, attributeIndex);
+            return;
+        }
+        if (isNumeric(attributeIndex)) {
+            if (value.getType() != ValueType.Numeric) {
+                throw new IllegalArgumentException("Value " + value
+                        + " is not numeric but "
+                        + attributes[attributeIndex] + " is!");
+            }
+            numeric[attributeIndex][row] = ((NumericValue) value).getValue();
+        } else {
+            codes[attributeIndex][row] = intern(attributeIndex, value);
+        }
+        unknown[attributeIndex].clear(row);
+    }
+
+    /**
+     * Get the value of a single cell in the store.
+     *
+     * @param row
+     *            the row index
+     * @param attributeIndex
+     *            the attribute(column) index
+     * @return the value in the cell
+     */
+    public Value getValue(int row, int attributeIndex) {
+        checkRow(row);
+        if (unknown[attributeIndex].get(row)) {
+            return UnknownValue.getInstance();
+        }
+        if (isNumeric(attributeIndex)) {
+            return new NumericValue(numeric[attributeIndex][row]);
+        }
+        return getNominalValue(attributeIndex, codes[attributeIndex][row]);
+    }
+
+    /**
+     * Checks if the value of a cell is unknown.
+     *
+     * @param row
+     *            the row index
+     * @param attributeIndex
+     *            the attribute(column) index
+     * @return true if the value in the cell is unknown
+     */
+    public boolean isUnknown(int row, int attributeIndex) {
+        return unknown[attributeIndex].get(row);
+    }
+
+    /**
+     * Get the numeric column for an attribute. The array is the backing storage
+     * of the store and may be longer than {@link #getRowsCount()}. It must not
+     * be modified.
+     *
+     * @param attributeIndex
+     *            the index of a numeric attribute
+     * @return the values of the attribute, unknown values are 0
+     */
+    @SuppressWarnings(value = "EI_EXPOSE_REP", justification = "Scans need the backing array")
+    public double[] getNumericColumn(int attributeIndex) {
+        if (!isNumeric(attributeIndex)) {
+            throw new IllegalArgumentException(attributes[attributeIndex]
+                    + " is not numeric!");
+        }
+        return numeric[attributeIndex];
+    }
+
+    /**
+     * Get the nominal codes column for an attribute. The array is the backing
+     * storage of the store and may be longer than {@link #getRowsCount()}. It
+     * must not be modified.
+     *
+     * @param attributeIndex
+     *            the index of a nominal attribute
+     * @return the codes of the attribute values, unknown values are -1
+     */
+    @SuppressWarnings(value = "EI_EXPOSE_REP", justification = "Scans need the backing array")
+    public int[] getNominalColumn(int attributeIndex) {
+        if (isNumeric(attributeIndex)) {
+            throw new IllegalArgumentException(attributes[attributeIndex]
+                    + " is numeric!");
+        }
+        return codes[attributeIndex];
+    }
+
+    /**
+     * Get the set of rows which have an unknown value for the attribute. The
+     * set is the backing storage of the store and must not be modified.
+     *
+     * @param attributeIndex
+     *            the index of the attribute
+     * @return the rows with unknown values
+     */
+    @SuppressWarnings(value = "EI_EXPOSE_REP", justification = "Scans need the backing set")
+    public BitSet getUnknowns(int attributeIndex) {
+        return unknown[attributeIndex];
+    }
+
+    /**
+     * Get the code of a nominal value.
+     *
+     * @param attributeIndex
+     *            the index of the attribute
+     * @param value
+     *            the value
+     * @return the code of the value or -1 if the value was never stored for
+     *         this attribute
+     */
+    public int getCode(int attributeIndex, Value value) {
+        int hint = codeOf(attributeIndex, value);
+        if (hint >= 0) {
+            return hint;
+        }
+        Integer code = domainCodes.get(attributeIndex).get(value);
+        if (code == null) {
+            return -1;
+        }
+        return code;
+    }
+
+    /**
+     * Get the nominal value behind a code.
+     *
+     * @param attributeIndex
+     *            the index of the attribute
+     * @param code
+     *            the code of the value
+     * @return the value for the code
+     */
+    public Value getNominalValue(int attributeIndex, int code) {
+        return domainValues.get(attributeIndex).get(code);
+    }
+
+    /**
+     * Get the number of different codes for a nominal attribute.
+     *
+     * @param attributeIndex
+     *            the index of the attribute
+     * @return the number of codes in use for the attribute
+     */
+    public int getDomainSize(int attributeIndex) {
+        return domainValues.get(attributeIndex).size();
+    }
+
+    /**
+     * Get a view of a row as a list of values. Setting values in the view
+     * writes them through to the store.
+     *
+     * @param row
+     *            the row index
+     * @return a view of the row
+     */
+    public List<Value> getRow(int row) {
+        checkRow(row);
+        return new RowVector(this, row);
+    }
+
+    /**
+     * Shrink the columns to the number of rows in the store.
+     */
+    public void trim() {
+        if (rows == capacity || rows == 0) {
+            return;
+        }
+        resize(rows);
+    }
+
+    /**
+     * Get the code of a nominal value and give it the next free code if the
+     * value was never stored for this attribute.
+     * 
+     * @param attributeIndex
+     *            the index of the attribute
+     * @param value
+     *            the value
+     * @return the code of the value
+     */
+    public int intern(int attributeIndex, Value value) {
+        int hint = codeOf(attributeIndex, value);
+        if (hint >= 0) {
+            return hint;
+        }
+        Map<Value, Integer> valueCodes = domainCodes.get(attributeIndex);
+        Integer code = valueCodes.get(value);
+        if (code == null) {
+            List<Value> values = domainValues.get(attributeIndex);
+            code = values.size();
+            values.add(value);
+            valueCodes.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * Append all rows of another store with the same attributes. The codes of
+     * nominal values are translated to the codes of this store and values
+     * that are new to this store get the next free codes in the order of the
+     * other store.
+     * 
+     * @param other
+     *            the store whose rows to append
+     */
+    public void append(ColumnStore other) {
+        if (other.attributes.length != attributes.length) {
+            throw new IllegalArgumentException("Cannot append "
+                    + other.attributes.length + " columns to "
+                    + attributes.length);
+        }
+        ensureCapacity(rows + other.rows);
+        for (int i = 0; i < attributes.length; i++) {
+            if (isNumeric(i) != other.isNumeric(i)) {
+                throw new IllegalArgumentException("Column " + i
+                        + " has a different type");
+            }
+            if (isNumeric(i)) {
+                System.arraycopy(other.numeric[i], 0, numeric[i], rows,
+                        other.rows);
+            } else {
+                List<Value> otherValues = other.domainValues.get(i);
+                int[] remap = new int[otherValues.size()];
+                for (int code = 0; code < remap.length; code++) {
+                    remap[code] = intern(i, otherValues.get(code));
+                }
+                int[] source = other.codes[i];
+                int[] target = codes[i];
+                for (int row = 0; row < other.rows; row++) {
+                    int code = source[row];
+                    target[rows + row] = code < 0 ? code : remap[code];
+                }
+            }
+            BitSet otherUnknown = other.unknown[i];
+            unknown[i].clear(rows, rows + other.rows);
+            for (int row = otherUnknown.nextSetBit(0); row >= 0
+                    && row < other.rows; row = otherUnknown
+                    .nextSetBit(row + 1)) {
+                unknown[i].set(rows + row);
+            }
+        }
+        rows += other.rows;
+    }
+
+    /*
+     * the codes of the store start with the domain of the attribute in
+     * iteration order, so the domain values already know their code
+     */
+    private int codeOf(int attributeIndex, Value value) {
+        if (value instanceof NominalValue) {
+            int code = ((NominalValue) value).getCode();
+            List<Value> values = domainValues.get(attributeIndex);
+            if (code >= 0 && code < values.size() && values.get(code) == value) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureCapacity(int wanted) {
+        if (wanted > capacity) {
+            resize(Math.max(wanted, capacity * 2));
+        }
+    }
+
+    private void resize(int newCapacity) {
+        for (int i = 0; i < attributes.length; i++) {
+            if (numeric[i] != null) {
+                double[] column = new double[newCapacity];
+                System.arraycopy(numeric[i], 0, column, 0, rows);
+                numeric[i] = column;
+            } else {
+                int[] column = new int[newCapacity];
+                System.arraycopy(codes[i], 0, column, 0, rows);
+                codes[i] = column;
+            }
+        }
+        capacity = newCapacity;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", rows: "
+                    + rows);
+        }
+    }
+
+    /**
+     * A list view over a single row of the store.
+     */
+    private static final class RowVector extends AbstractList<Value>
+            implements RandomAccess {
+        private final ColumnStore store;
+        private final int row;
+
+        RowVector(ColumnStore store, int row) {
+            this.store = store;
+            this.row = row;
+        }
+
+        @Override
+        public Value get(int index) {
+            return store.getValue(row, index);
+        }
+
+        @Override
+        public Value set(int index, Value element) {
+            Value old = store.getValue(row, index);
+            store.set(row, index, element);
+            return old;
+        }
+
+        @Override
+        public int size() {
+            return store.attributes.length;
+        }
+    }
+}
@@ -2,12 +2,10 @@ package spaska.data;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
 import java.util.Vector;
 
@@ -28,6 +26,9 @@ public final class Dataset {
     private List<Instance> instances;
     private Map<Attribute, Set<Value>> attributeDomains;
     private int classIndex;
+    private ColumnStore columns;
+    private Map<Long, FoldPlan> foldPlans;
+    private DatasetView source;
 
     /**
      * Constructs a new dataset with the given name and attributes.
@@ -159,6 +160,7 @@ public final class Dataset {
         for (Attribute attribute : newAttributes) {
             this.attributes.add(attribute);
         }
+        columns = null;
     }
 
     /**
@@ -191,6 +193,7 @@ public final class Dataset {
      */
     public void addAttributeDomain(Attribute a, Set<Value> domain) {
         attributeDomains.put(a, domain);
+        columns = null;
     }
 
     /**
@@ -201,6 +204,98 @@ public final class Dataset {
      */
     public void addElement(Instance e) {
         instances.add(e);
+        columns = null;
+        foldPlans = null;
+    }
+
+    /**
+     * Get the values of all instances in a column oriented form.
+     * 
+     * <p>
+     * The columns are built on the first call and kept until the instances or
+     * the attributes of the dataset change through this class. Values changed
+     * in place through {@link Instance#getVector()} are only reflected if the
+     * dataset was {@link #compact() compacted}.
+     * </p>
+     * 
+     * <p>
+     * The columns are built under the lock of the dataset, so the threads of
+     * a crossvalidation, a forest or a boosting that share a dataset all get
+     * the same columns, built once.
+     * </p>
+     * 
+     * @return the columns of this dataset, one row per instance in the order of
+     *         {@link #getElements()}
+     */
+    public synchronized ColumnStore getColumns() {
+        if (columns == null) {
+            columns = ColumnStore.of(this);
+        }
+        return columns;
+    }
+
+    /**
+     * Switch the dataset to the columnar storage mode. The values of every
+     * instance are moved into a {@link ColumnStore} and the instances are left
+     * with a view over their row, so no {@link Value} objects are kept per
+     * instance anymore. Instance vectors can still be read and set, but
+     * values can no longer be added or removed from them. Sparse datasets are
+     * left as they are.
+     */
+    public void compact() {
+        if (isSparse()) {
+            return;
+        }
+        ColumnStore store = ColumnStore.of(this);
+        store.trim();
+        for (int i = 0; i < instances.size(); i++) {
+            instances.get(i).setVector(store.getRow(i));
+        }
+        columns = store;
+    }
+
+    /**
+     * Checks if all instances of the dataset are {@link SparseInstance sparse}.
+     * Algorithms that can skip the default values should do so for sparse
+     * datasets instead of going through {@link #getColumns()}.
+     * 
+     * @return true if the dataset has instances and all of them are sparse
+     */
+    public boolean isSparse() {
+        if (instances.isEmpty()) {
+            return false;
+        }
+        for (Instance instance : instances) {
+            if (!(instance instanceof SparseInstance)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replace the instances of the dataset with the rows of the given columns.
+     * The dataset is left in the columnar storage mode, every instance being a
+     * view over its row.
+     * 
+     * @param store
+     *            the columns with the attributes of this dataset
+     * @see #compact()
+     */
+    public void setColumns(ColumnStore store) {
+        if (store.getAttributesCount() != attributes.size()) {
+            throw new IllegalArgumentException("The columns have "
+                    + store.getAttributesCount() + " attributes instead of "
+                    + attributes.size());
+        }
+        List<Instance> rows = new ArrayList<Instance>(store.getRowsCount());
+        for (int i = 0; i < store.getRowsCount(); i++) {
+            rows.add(new Instance(store.getRow(i)));
+        }
+        instances = rows;
+        columns = store;
+        foldPlans = null;
+        source = null;
     }
 
     @Override
@@ -236,6 +331,7 @@ public final class Dataset {
      */
     public void setClassIndex(int classIndex) {
         this.classIndex = classIndex;
+        foldPlans = null;
     }
 
     /**
@@ -248,13 +344,27 @@ public final class Dataset {
     }
 
     /**
-     * Merge the given datasets into one big dataset.
+     * Merge the given datasets into one big dataset. Datasets that are all
+     * {@link DatasetView views} over the same dataset are merged into a read
+     * only view over their rows, without copying the instances.
      * 
      * @param datasets
      *            the datasets that need to be merged
      * @return the merged dataset
      */
     public static Dataset merge(Dataset[] datasets) {
+        DatasetView[] views = new DatasetView[datasets.length];
+        for (int i = 0; i < datasets.length; i++) {
+            views[i] = datasets[i].source;
+            if (views[i] == null
+                    || views[i].getDataset() != views[0].getDataset()) {
+                views = null;
+                break;
+            }
+        }
+        if (views != null) {
+            return DatasetView.concat(views).toDataset();
+        }
         Dataset result = datasets[0].createCopyWithoutInstances();
         List<Instance> resultList = new ArrayList<Instance>();
         for (int i = 0; i < datasets.length; i++) {
@@ -272,6 +382,9 @@ public final class Dataset {
      */
     public void setInstances(List<Instance> instances) {
         this.instances = instances;
+        columns = null;
+        foldPlans = null;
+        source = null;
     }
 
     /**
@@ -285,63 +398,70 @@ public final class Dataset {
      * @return an array of sub dataset with the wanted sizes.
      */
     public Dataset[] getSubDataSets(int[] datasetCounts, int seed) {
-        Random rand = new Random(seed);
-        Dataset copy = this.createCopy();
+        FoldPlan plan = getFoldPlan(datasetCounts.length, seed);
         Dataset[] datasets = new Dataset[datasetCounts.length];
         for (int i = 0; i < datasets.length; i++) {
             datasets[i] = createCopyWithoutInstances();
-        }
-        Comparator<Instance> c = new Comparator<Instance>() {
-
-            @Override
-            public int compare(Instance o1, Instance o2) {
-                return o1.getVector().get(classIndex)
-                        .compareTo(o2.getVector().get(classIndex));
+            for (int row : plan.getTestRows(i)) {
+                datasets[i].addElement(instances.get(row));
+                datasetCounts[i]--;
             }
-
-        };
-        Collections.sort(copy.instances, c);
-
-        // randomize equal groups of classes
-        List<Instance> copyInstances = copy.instances;
-        int instancesSize = copyInstances.size();
-        Value previousClassValue = copyInstances.get(instancesSize - 1)
-                .getVector().get(classIndex);
-        int previousClassValueIndex = instancesSize - 1;
-        while (instancesSize-- > 0) {
-            Value currentValue = copyInstances.get(instancesSize).getVector()
-                    .get(classIndex);
-            if (!currentValue.equals(previousClassValue)) {
-                List<Instance> instancesSubList = copyInstances.subList(
-                        instancesSize, previousClassValueIndex);
-                Collections.shuffle(instancesSubList, rand);
-                previousClassValueIndex = instancesSize;
-            }
-        }
-
-        int cnt = 0;
-        List<Instance> allElements = copy.getElements();
-        int cycles = allElements.size();
-        while (cycles-- > 0) {
-            int ind = cnt++ % datasetCounts.length;
-            datasets[ind].addElement(allElements.get(cycles));
-            datasetCounts[ind]--;
         }
         return datasets;
     }
 
-    private Dataset createCopy() {
-        Dataset result = new Dataset();
-        result.name = name;
-        result.attributes = Collections.unmodifiableList(this.attributes);
+    /**
+     * Get the stratified split of the instances in folds for the given seed.
+     * The split is the same as the one of
+     * {@link #getSubDataSets(int[], int)}, but the folds are only indices of
+     * the instances. The split is cached until the instances or the class
+     * index of the dataset change, so crossvalidations of many classifiers
+     * with the same seed share it.
+     * 
+     * @param folds
+     *            the number of folds
+     * @param seed
+     *            the seed to be used for the random object that will randomize
+     *            the instances of every class
+     * @return the split of the instances in folds
+     */
+    public synchronized FoldPlan getFoldPlan(int folds, int seed) {
+        if (foldPlans == null) {
+            foldPlans = new HashMap<Long, FoldPlan>();
+        }
+        Long key = ((long) folds << 32) | (seed & 0xffffffffL);
+        FoldPlan plan = foldPlans.get(key);
+        if (plan == null) {
+            plan = new FoldPlan(this, folds, seed);
+            foldPlans.put(key, plan);
+        }
+        return plan;
+    }
 
-        result.instances.addAll(instances);
-        result.attributeDomains = Collections
-                .unmodifiableMap(this.attributeDomains);
-        result.classIndex = classIndex;
+    /**
+     * Create a read only dataset over the instances of a view.
+     * 
+     * @param view
+     *            a view over the instances of this dataset
+     * @return a dataset with the same meta data over the instances of the
+     *         view
+     */
+    Dataset view(DatasetView view) {
+        Dataset result = createCopyWithoutInstances();
+        result.instances = view.getElements();
+        result.source = view;
         return result;
     }
 
+    /**
+     * Get the view that this dataset was created from.
+     * 
+     * @return the view behind a read only dataset or null
+     */
+    DatasetView getSource() {
+        return source;
+    }
+
     private Dataset createCopyWithoutInstances() {
         Dataset result = new Dataset();
         result.name = name;
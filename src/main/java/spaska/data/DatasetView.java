@@ -0,0 +1,269 @@
+package spaska.data;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Some of the instances of a dataset, given by their row indices. A view does
+ * not copy the instances, so splitting a dataset or taking a subset of it only
+ * costs an <code>int[]</code> of the row indices.
+ *
+ * <p>
+ * A view over a dataset that is itself a view refers to the rows of the
+ * underlying dataset, so views of views do not get slower. A view can also
+ * give every row its own weight instead of the weight of the instance, for
+ * example when an instance goes down more than one branch of a tree.
+ * </p>
+ */
+public final class DatasetView {
+
+    private final Dataset dataset;
+    private final int[] rows;
+    private final double[] weights;
+
+    /**
+     * Constructs a view over all instances of a dataset.
+     *
+     * @param dataset
+     *            the dataset
+     */
+    public DatasetView(Dataset dataset) {
+        this(dataset, allRows(dataset.getElements().size()));
+    }
+
+    /**
+     * Constructs a view over some of the instances of a dataset.
+     *
+     * @param dataset
+     *            the dataset
+     * @param rows
+     *            the indices of the instances in the dataset, the array is not
+     *            copied
+     */
+    public DatasetView(Dataset dataset, int[] rows) {
+        this(dataset, rows, null);
+    }
+
+    /**
+     * Constructs a view over some of the instances of a dataset with a weight
+     * for every row.
+     *
+     * @param dataset
+     *            the dataset
+     * @param rows
+     *            the indices of the instances in the dataset, the array is not
+     *            copied
+     * @param weights
+     *            the weight of every row or null for the weights of the
+     *            instances, the array is not copied
+     */
+    public DatasetView(Dataset dataset, int[] rows, double[] weights) {
+        if (weights != null && weights.length != rows.length) {
+            throw new IllegalArgumentException("There are " + weights.length
+                    + " weights for " + rows.length + " rows");
+        }
+        DatasetView source = dataset.getSource();
+        if (source == null) {
+            this.dataset = dataset;
+            this.rows = rows;
+        } else {
+            this.dataset = source.dataset;
+            this.rows = new int[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                this.rows[i] = source.rows[rows[i]];
+            }
+        }
+        this.weights = weights;
+    }
+
+    private static int[] allRows(int count) {
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    /**
+     * Get the dataset with the instances of this view.
+     *
+     * @return the dataset that the rows refer to
+     */
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * Get the number of rows in this view.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * Get the index of a row in the dataset.
+     *
+     * @param position
+     *            the position of the row in this view
+     * @return the index of the row in the dataset
+     */
+    public int getRow(int position) {
+        return rows[position];
+    }
+
+    /**
+     * Get the indices of all rows in the dataset.
+     *
+     * @return the indices of the rows in the order of this view
+     */
+    public int[] getRows() {
+        return rows.clone();
+    }
+
+    /**
+     * Get the instance of a row.
+     *
+     * @param position
+     *            the position of the row in this view
+     * @return the instance of the row
+     */
+    public Instance get(int position) {
+        return dataset.getElements().get(rows[position]);
+    }
+
+    /**
+     * Get the weight of a row.
+     *
+     * @param position
+     *            the position of the row in this view
+     * @return the weight of the row in this view or the weight of its instance
+     */
+    public double getWeight(int position) {
+        return weights == null ? get(position).getWeight() : weights[position];
+    }
+
+    /**
+     * Create a view over some of the rows of this view.
+     *
+     * @param positions
+     *            the positions of the rows in this view
+     * @param newWeights
+     *            the weight of every selected row or null for the weights of
+     *            the instances
+     * @return a view over the selected rows of the dataset
+     */
+    public DatasetView select(int[] positions, double[] newWeights) {
+        int[] selected = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            selected[i] = rows[positions[i]];
+        }
+        return new DatasetView(dataset, selected, newWeights);
+    }
+
+    /**
+     * Create a view over some of the rows of this view that keeps their
+     * weights in this view.
+     *
+     * @param positions
+     *            the positions of the rows in this view
+     * @return a view over the selected rows of the dataset
+     */
+    public DatasetView select(int[] positions) {
+        double[] newWeights = null;
+        if (weights != null) {
+            newWeights = new double[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                newWeights[i] = weights[positions[i]];
+            }
+        }
+        return select(positions, newWeights);
+    }
+
+    /**
+     * Get the instances of this view.
+     *
+     * @return a read only list over the instances of the rows
+     */
+    public List<Instance> getElements() {
+        return new Rows(dataset.getElements(), rows);
+    }
+
+    /**
+     * Create a dataset over the instances of this view. The dataset has the
+     * meta data of the underlying dataset and can be given to anything that
+     * needs a {@link Dataset}, but instances cannot be added to it.
+     *
+     * <p>
+     * The instances of the dataset have their own weights, not the weights of
+     * the rows of this view, so a weighted view has to be used as it is where
+     * the weights matter, for example with {@link #select(int[])}.
+     * </p>
+     *
+     * @return a read only dataset over the instances of this view
+     */
+    public Dataset toDataset() {
+        return dataset.view(this);
+    }
+
+    /**
+     * Concatenate views over the same dataset.
+     *
+     * @param views
+     *            the views to be concatenated
+     * @return a view over the rows of all views one after the other
+     * @throws IllegalArgumentException
+     *             if the views are over different datasets
+     */
+    public static DatasetView concat(DatasetView... views) {
+        int size = 0;
+        boolean weighted = false;
+        for (DatasetView view : views) {
+            if (view.dataset != views[0].dataset) {
+                throw new IllegalArgumentException(
+                        "The views are over different datasets");
+            }
+            size += view.rows.length;
+            weighted |= view.weights != null;
+        }
+        int[] rows = new int[size];
+        double[] weights = weighted ? new double[size] : null;
+        int position = 0;
+        for (DatasetView view : views) {
+            System.arraycopy(view.rows, 0, rows, position, view.rows.length);
+            if (weighted) {
+                for (int i = 0; i < view.rows.length; i++) {
+                    weights[position + i] = view.getWeight(i);
+                }
+            }
+            position += view.rows.length;
+        }
+        return new DatasetView(views[0].dataset, rows, weights);
+    }
+
+    /**
+     * A read only list of some of the elements of another list.
+     */
+    private static final class Rows extends AbstractList<Instance> implements
+            RandomAccess {
+        private final List<Instance> instances;
+        private final int[] rows;
+
+        Rows(List<Instance> instances, int[] rows) {
+            this.instances = instances;
+            this.rows = rows;
+        }
+
+        @Override
+        public Instance get(int index) {
+            return instances.get(rows[index]);
+        }
+
+        @Override
+        public int size() {
+            return rows.length;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package spaska.data;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Vector;
+import java.util.Set;
 
 import spaska.data.Attribute.ValueType;
 
@@ -38,7 +41,7 @@ public final class Factory {
      * @return the newly created instance
      */
     public static Instance createElement(Object[] vector) {
-        List<Value> values = new Vector<Value>();
+        List<Value> values = new ArrayList<Value>(vector.length);
         for (Object value : vector) {
             values.add(createValue(value));
         }
@@ -57,25 +60,12 @@ public final class Factory {
      */
     public static List<Value> createElementData(String[] strValues,
             Dataset dataset) {
-        List<Value> element = new Vector<Value>();
         List<Attribute> attributes = dataset.getAttributes();
+        List<Value> element = new ArrayList<Value>(attributes.size());
         int i = 0;
         for (Attribute a : attributes) {
             if (i < strValues.length) {
-                if (a.getType().equals(ValueType.Numeric)) {
-                    try {
-                        Double val = Double.parseDouble(strValues[i]);
-                        element.add(new NumericValue(val));
-                    } catch (java.lang.NumberFormatException e) {
-                        element.add(UnknownValue.getInstance());
-                    }
-                } else {
-                    if ((strValues[i].trim()).equals("?")) {
-                        element.add(UnknownValue.getInstance());
-                    } else {
-                        element.add(new NominalValue(strValues[i].trim()));
-                    }
-                }
+                element.add(createValue(strValues[i], a));
             } else {
                 element.add(UnknownValue.getInstance());
             }
@@ -83,4 +73,52 @@ public final class Factory {
         }
         return element;
     }
+
+    /**
+     * Convert a string value of an attribute to a data {@link Value} object.
+     * 
+     * @param strValue
+     *            the string value to be converted
+     * @param attribute
+     *            the attribute of the value
+     * @return the value or {@link UnknownValue} if the string is "?" or is not
+     *         a number for a numeric attribute
+     */
+    public static Value createValue(String strValue, Attribute attribute) {
+        if (attribute.getType().equals(ValueType.Numeric)) {
+            try {
+                return new NumericValue(Double.parseDouble(strValue));
+            } catch (java.lang.NumberFormatException e) {
+                return UnknownValue.getInstance();
+            }
+        }
+        String trimmed = strValue.trim();
+        if (trimmed.equals("?")) {
+            return UnknownValue.getInstance();
+        }
+        return new NominalValue(trimmed);
+    }
+
+    /**
+     * Create the domain of a nominal attribute from its values. The nominal
+     * values in the domain are new objects that know their position in the
+     * domain, so lookups of these exact objects do not need to hash them. The
+     * domain iterates in the order of the given values.
+     * 
+     * @param values
+     *            the values of the domain in the order they should be iterated
+     * @return a new domain with the values
+     * @see NominalValue#getCode()
+     */
+    public static Set<Value> createNominalDomain(Collection<Value> values) {
+        Set<Value> domain = new LinkedHashSet<Value>();
+        for (Value value : values) {
+            if (value.getType() == ValueType.Nominal) {
+                domain.add(new NominalValue(value.toString(), domain.size()));
+            } else {
+                domain.add(value);
+            }
+        }
+        return domain;
+    }
 }
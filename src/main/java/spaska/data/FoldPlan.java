@@ -0,0 +1,195 @@
+package spaska.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A stratified split of the rows of a dataset in folds. The rows are sorted by
+ * their class, the rows of every class are shuffled with the seed and then the
+ * rows are dealt to the folds one after the other, so every fold gets about
+ * the same share of every class.
+ *
+ * <p>
+ * Only the row indices of the folds are kept. The train and test sides of a
+ * fold are {@link DatasetView views} over the instances of the split dataset,
+ * nothing is copied for them. The plans are created and cached by
+ * {@link Dataset#getFoldPlan(int, int)}, so a plan is computed once for every
+ * dataset, number of folds and seed, no matter how many classifiers are
+ * evaluated on it.
+ * </p>
+ */
+public final class FoldPlan {
+
+    private final Dataset dataset;
+    private final int seed;
+    private final int[][] folds;
+
+    /**
+     * Split the rows of a dataset in the same way as
+     * {@link Dataset#getSubDataSets(int[], int)}.
+     *
+     * @param dataset
+     *            the dataset to be split
+     * @param folds
+     *            the number of folds
+     * @param seed
+     *            the seed for shuffling the rows of every class
+     */
+    FoldPlan(Dataset dataset, int folds, int seed) {
+        if (folds < 1) {
+            throw new IllegalArgumentException("Invalid number of folds: "
+                    + folds);
+        }
+        this.dataset = dataset;
+        this.seed = seed;
+        final List<Instance> instances = dataset.getElements();
+        final int classIndex = dataset.getClassIndex();
+        int rowsCount = instances.size();
+        List<Integer> order = new ArrayList<Integer>(rowsCount);
+        for (int i = 0; i < rowsCount; i++) {
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return instances.get(o1).getVector().get(classIndex)
+                        .compareTo(instances.get(o2).getVector()
+                                .get(classIndex));
+            }
+        });
+
+        // randomize equal groups of classes
+        Random rand = new Random(seed);
+        if (rowsCount > 0) {
+            Value previousClassValue = classOf(instances,
+                    order.get(rowsCount - 1), classIndex);
+            int previousClassValueIndex = rowsCount - 1;
+            for (int i = rowsCount - 1; i >= 0; i--) {
+                if (!classOf(instances, order.get(i), classIndex).equals(
+                        previousClassValue)) {
+                    Collections.shuffle(
+                            order.subList(i, previousClassValueIndex), rand);
+                    previousClassValueIndex = i;
+                }
+            }
+        }
+
+        this.folds = new int[folds][];
+        for (int f = 0; f < folds; f++) {
+            this.folds[f] = new int[rowsCount / folds
+                    + (f < rowsCount % folds ? 1 : 0)];
+        }
+        for (int cnt = 0; cnt < rowsCount; cnt++) {
+            this.folds[cnt % folds][cnt / folds] = order.get(rowsCount - 1
+                    - cnt);
+        }
+    }
+
+    private static Value classOf(List<Instance> instances, int row,
+            int classIndex) {
+        return instances.get(row).getVector().get(classIndex);
+    }
+
+    /**
+     * Get the number of folds.
+     *
+     * @return the number of folds
+     */
+    public int getFoldsCount() {
+        return folds.length;
+    }
+
+    /**
+     * Get the seed that the rows were shuffled with.
+     *
+     * @return the seed of the plan
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the rows of a fold.
+     *
+     * @param fold
+     *            the index of the fold
+     * @return the indices of the rows of the fold in the split dataset
+     */
+    public int[] getTestRows(int fold) {
+        return folds[fold].clone();
+    }
+
+    /**
+     * Get the rows of all folds but one, fold after fold.
+     *
+     * @param fold
+     *            the index of the fold that is left out
+     * @return the indices of the rows of the other folds in the split dataset
+     */
+    public int[] getTrainRows(int fold) {
+        int size = 0;
+        for (int f = 0; f < folds.length; f++) {
+            if (f != fold) {
+                size += folds[f].length;
+            }
+        }
+        int[] rows = new int[size];
+        int position = 0;
+        for (int f = 0; f < folds.length; f++) {
+            if (f != fold) {
+                System.arraycopy(folds[f], 0, rows, position, folds[f].length);
+                position += folds[f].length;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Get a view over the rows of a fold.
+     *
+     * @param fold
+     *            the index of the fold
+     * @return a view over the rows of the fold
+     */
+    public DatasetView getTestView(int fold) {
+        return new DatasetView(dataset, folds[fold]);
+    }
+
+    /**
+     * Get a view over the rows of all folds but one.
+     *
+     * @param fold
+     *            the index of the fold that is left out
+     * @return a view over the rows of the other folds
+     */
+    public DatasetView getTrainView(int fold) {
+        return new DatasetView(dataset, getTrainRows(fold));
+    }
+
+    /**
+     * Get the instances of a fold.
+     *
+     * @param fold
+     *            the index of the fold
+     * @return a read only dataset over the instances of the fold
+     */
+    public Dataset getTestSet(int fold) {
+        return getTestView(fold).toDataset();
+    }
+
+    /**
+     * Get the instances of all folds but one. The instances are in the same
+     * order as the ones of the merged {@link #getTestSet(int) test sets} of
+     * the other folds.
+     *
+     * @param fold
+     *            the index of the fold that is left out
+     * @return a read only dataset over the instances of the other folds
+     */
+    public Dataset getTrainSet(int fold) {
+        return getTrainView(fold).toDataset();
+    }
+}
@@ -64,15 +64,27 @@ public class Instance implements Cloneable {
         this.weight = weight;
     }
 
+    /**
+     * Create a deep copy of the attribute values for a cloned instance.
+     * 
+     * @return a copy of the attribute values with every value cloned
+     * @throws CloneNotSupportedException
+     *             if a value cannot be cloned
+     */
+    protected List<Value> cloneVector() throws CloneNotSupportedException {
+        List<Value> copy = new ArrayList<Value>(vector.size());
+        for (Value v : vector) {
+            copy.add((Value) v.clone());
+        }
+        return copy;
+    }
+
     @Override
     public Object clone() {
         Instance cloned;
         try {
             cloned = (Instance) super.clone();
-            cloned.vector = new ArrayList<Value>();
-            for (Value v : vector) {
-                cloned.vector.add((Value) v.clone());
-            }
+            cloned.vector = cloneVector();
             return cloned;
         } catch (CloneNotSupportedException e) {
             throw new InternalError(
@@ -12,6 +12,7 @@ import spaska.data.Attribute.ValueType;
 public final class NominalValue extends Value {
 
     private String value;
+    private int code = -1;
 
     /**
      * Construct a new nominal value for a string value.
@@ -23,6 +24,21 @@ public final class NominalValue extends Value {
         this.value = value;
     }
 
+    /**
+     * Construct a nominal value that is a member of an attribute domain.
+     * 
+     * @param value
+     *            the string value for this nominal value
+     * @param code
+     *            the position of the value in the iteration order of the
+     *            domain
+     * @see Factory#createNominalDomain(java.util.Collection)
+     */
+    NominalValue(String value, int code) {
+        this.value = value;
+        this.code = code;
+    }
+
     @Override
     public ValueType getType() {
         return ValueType.Nominal;
@@ -33,6 +49,18 @@ public final class NominalValue extends Value {
         return value;
     }
 
+    /**
+     * Get the position of this value in the iteration order of the domain it
+     * was created for. Values that were not created as part of a domain have
+     * no code. The code is only a hint, users must check that the value for
+     * the code in their domain is this same object.
+     * 
+     * @return the code of the value or -1 if it has none
+     */
+    public int getCode() {
+        return code;
+    }
+
     @Override
     public Object clone() {
         try {
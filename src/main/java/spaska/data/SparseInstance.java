@@ -0,0 +1,190 @@
+package spaska.data;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An instance that keeps only the values that differ from the default values
+ * of the attributes. This is the representation of the rows of sparse ARFF
+ * files, where most of the values are 0.
+ *
+ * <p>
+ * The vector of the instance still has a value for every attribute, but
+ * algorithms that can skip the default values should go over the stored
+ * values with {@link #getNonDefaultCount()}, {@link #getIndex(int)} and
+ * {@link #getValueAt(int)}. The stored values are ordered by the attribute
+ * index.
+ * </p>
+ */
+public class SparseInstance extends Instance {
+
+    private SparseVector sparse;
+
+    /**
+     * Construct a sparse instance.
+     *
+     * @param indices
+     *            the attribute indices of the stored values in ascending order
+     * @param values
+     *            the stored values
+     * @param defaults
+     *            the value of every attribute that is not stored, usually
+     *            shared between all instances of a dataset
+     */
+    public SparseInstance(int[] indices, Value[] values, Value[] defaults) {
+        this(new SparseVector(indices.clone(), values.clone(), indices.length,
+                defaults));
+    }
+
+    private SparseInstance(SparseVector sparse) {
+        super(sparse);
+        this.sparse = sparse;
+    }
+
+    /**
+     * Get the number of stored values.
+     *
+     * @return the number of values that differ from the defaults
+     */
+    public int getNonDefaultCount() {
+        return sparse.count;
+    }
+
+    /**
+     * Get the attribute index of a stored value.
+     *
+     * @param position
+     *            the position of the value between the stored values
+     * @return the index of the attribute of the value
+     */
+    public int getIndex(int position) {
+        return sparse.indices[position];
+    }
+
+    /**
+     * Get a stored value.
+     *
+     * @param position
+     *            the position of the value between the stored values
+     * @return the value
+     */
+    public Value getValueAt(int position) {
+        return sparse.values[position];
+    }
+
+    /**
+     * Get the value that an attribute has when it is not stored.
+     *
+     * @param attributeIndex
+     *            the index of the attribute
+     * @return the default value of the attribute
+     */
+    public Value getDefault(int attributeIndex) {
+        return sparse.defaults[attributeIndex];
+    }
+
+    /**
+     * Set the attribute values for this instance. Only the values that differ
+     * from the defaults are kept.
+     *
+     * @param vector
+     *            the new attribute values for this instance
+     */
+    @Override
+    public void setVector(List<Value> vector) {
+        if (vector instanceof SparseVector) {
+            sparse = (SparseVector) vector;
+        } else {
+            SparseVector copy = new SparseVector(new int[0], new Value[0], 0,
+                    sparse.defaults);
+            for (int i = 0; i < vector.size(); i++) {
+                copy.set(i, vector.get(i));
+            }
+            sparse = copy;
+        }
+        super.setVector(sparse);
+    }
+
+    @Override
+    protected List<Value> cloneVector() throws CloneNotSupportedException {
+        Value[] values = new Value[sparse.count];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (Value) sparse.values[i].clone();
+        }
+        return new SparseVector(Arrays.copyOf(sparse.indices, sparse.count),
+                values, values.length, sparse.defaults);
+    }
+
+    @Override
+    public Object clone() {
+        SparseInstance cloned = (SparseInstance) super.clone();
+        cloned.sparse = (SparseVector) cloned.getVector();
+        return cloned;
+    }
+
+    /**
+     * A list view over the stored values that gives the default value for the
+     * attributes that are not stored.
+     */
+    private static final class SparseVector extends AbstractList<Value>
+            implements RandomAccess {
+        private int[] indices;
+        private Value[] values;
+        private int count;
+        private final Value[] defaults;
+
+        SparseVector(int[] indices, Value[] values, int count, Value[] defaults) {
+            this.indices = indices;
+            this.values = values;
+            this.count = count;
+            this.defaults = defaults;
+        }
+
+        @Override
+        public Value get(int index) {
+            int position = Arrays.binarySearch(indices, 0, count, index);
+            if (position >= 0) {
+                return values[position];
+            }
+            return defaults[index];
+        }
+
+        @Override
+        public Value set(int index, Value element) {
+            if (index < 0 || index >= defaults.length) {
+                throw new IndexOutOfBoundsException("Index: " + index
+                        + ", size: " + defaults.length);
+            }
+            int position = Arrays.binarySearch(indices, 0, count, index);
+            if (position >= 0) {
+                Value old = values[position];
+                values[position] = element;
+                return old;
+            }
+            if (element.equals(defaults[index])) {
+                return defaults[index];
+            }
+            int insert = -position - 1;
+            if (count == indices.length) {
+                int capacity = Math.max(4, count * 2);
+                indices = Arrays.copyOf(indices, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            System.arraycopy(indices, insert, indices, insert + 1, count
+                    - insert);
+            System.arraycopy(values, insert, values, insert + 1, count
+                    - insert);
+            indices[insert] = index;
+            values[insert] = element;
+            count++;
+            return defaults[index];
+        }
+
+        @Override
+        public int size() {
+            return defaults.length;
+        }
+    }
+}
@@ -27,6 +27,9 @@ public abstract class Value implements Cloneable, Comparable<Value> {
 
     @Override
     public final boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (o == null || !(o instanceof Value)) {
             return false;
         }
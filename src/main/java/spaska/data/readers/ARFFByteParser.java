@@ -0,0 +1,358 @@
+package spaska.data.readers;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import spaska.data.ColumnStore;
+import spaska.data.NominalValue;
+
+/**
+ * Parses the rows of the <code>@data</code> section of an ARFF file from raw
+ * bytes directly into a {@link ColumnStore}. Numbers are parsed from the bytes
+ * and nominal values are looked up by their bytes, so no strings or
+ * {@link spaska.data.Value} objects are created for the common case.
+ *
+ * <p>
+ * The values are interpreted the same way as in
+ * {@link spaska.data.Factory#createElementData(String[], spaska.data.Dataset)}
+ * : numbers that cannot be parsed and nominal values equal to "?" are unknown
+ * and missing values at the end of a row are unknown.
+ * </p>
+ */
+final class ARFFByteParser {
+
+    private static final int MAX_TOKEN = 64;
+    private static final int MAX_MANTISSA_DIGITS = 18;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_EXACT_EXPONENT = 22;
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_EXPONENT + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final ColumnStore store;
+    private final ByteTable[] nominals;
+    private byte[] token = new byte[MAX_TOKEN];
+    private int tokenLength;
+    private int pushback = -1;
+
+    /**
+     * Construct a parser that appends rows to the given store.
+     *
+     * @param store
+     *            the store for the parsed rows
+     */
+    ARFFByteParser(ColumnStore store) {
+        this.store = store;
+        this.nominals = new ByteTable[store.getAttributesCount()];
+        for (int i = 0; i < nominals.length; i++) {
+            if (!store.isNumeric(i)) {
+                nominals[i] = new ByteTable();
+                for (int code = 0; code < store.getDomainSize(i); code++) {
+                    byte[] key = store.getNominalValue(i, code).toString()
+                            .getBytes();
+                    nominals[i].put(key, key.length, code);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parse all rows of a source.
+     *
+     * @param source
+     *            the source positioned at the start of a row
+     * @return the number of parsed rows
+     * @throws IOException
+     *             if the source cannot be read
+     */
+    int parse(MappedByteSource source) throws IOException {
+        int count = 0;
+        while (parseRow(source)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Parse the next row of a source. Empty lines and comments are skipped.
+     *
+     * @param source
+     *            the source positioned at the start of a line
+     * @return false if there are no more rows in the source
+     * @throws IOException
+     *             if the source cannot be read
+     */
+    boolean parseRow(MappedByteSource source) throws IOException {
+        if (!skipToRow(source)) {
+            return false;
+        }
+        int row = store.appendRow();
+        int terminator = ',';
+        for (int a = 0; a < nominals.length; a++) {
+            if (terminator != ',') {
+                store.setUnknown(row, a);
+                continue;
+            }
+            terminator = readToken(source);
+            if (store.isNumeric(a)) {
+                setNumeric(row, a);
+            } else {
+                setNominal(row, a);
+            }
+        }
+        if (terminator == ',') {
+            skipLine(source);
+        }
+        return true;
+    }
+
+    private boolean skipToRow(MappedByteSource source) throws IOException {
+        int c = source.read();
+        while (c != -1) {
+            if (c == '%') {
+                skipLine(source);
+            } else if (c == '{') {
+                throw new IOException("Sparse rows are not supported, "
+                        + "use the ARFFInputReader for sparse files");
+            } else if (c > ' ') {
+                pushback = c;
+                return true;
+            }
+            c = source.read();
+        }
+        return false;
+    }
+
+    private static void skipLine(MappedByteSource source) throws IOException {
+        int c = source.read();
+        while (c != -1 && c != '\n') {
+            c = source.read();
+        }
+    }
+
+    private int next(MappedByteSource source) throws IOException {
+        if (pushback != -1) {
+            int c = pushback;
+            pushback = -1;
+            return c;
+        }
+        return source.read();
+    }
+
+    /**
+     * Read the next value of a row into the token buffer. Whitespace around
+     * the value is dropped.
+     *
+     * @return the byte that ended the value: ',', '\n' or -1
+     */
+    private int readToken(MappedByteSource source) throws IOException {
+        tokenLength = 0;
+        int c = next(source);
+        while (c != -1 && c != ',' && c != '\n') {
+            if (c > ' ' || tokenLength > 0) {
+                if (tokenLength == token.length) {
+                    token = Arrays.copyOf(token, token.length * 2);
+                }
+                token[tokenLength++] = (byte) c;
+            }
+            c = next(source);
+        }
+        while (tokenLength > 0 && (token[tokenLength - 1] & 0xff) <= ' ') {
+            tokenLength--;
+        }
+        return c;
+    }
+
+    private void setNominal(int row, int attributeIndex) {
+        if (tokenLength == 1 && token[0] == '?') {
+            store.setUnknown(row, attributeIndex);
+            return;
+        }
+        ByteTable table = nominals[attributeIndex];
+        int code = table.get(token, tokenLength);
+        if (code == -1) {
+            code = store.intern(attributeIndex, new NominalValue(new String(
+                    token, 0, tokenLength)));
+            table.put(Arrays.copyOf(token, tokenLength), tokenLength, code);
+        }
+        store.setCode(row, attributeIndex, code);
+    }
+
+    private void setNumeric(int row, int attributeIndex) {
+        double value = parseDouble();
+        if (Double.isNaN(value)) {
+            try {
+                value = Double.parseDouble(new String(token, 0, tokenLength));
+            } catch (NumberFormatException e) {
+                store.setUnknown(row, attributeIndex);
+                return;
+            }
+        }
+        store.setDouble(row, attributeIndex, value);
+    }
+
+    /**
+     * Parse the token as a decimal number. Only numbers that can be computed
+     * exactly from a mantissa below 2^53 and a power of ten up to 10^22 are
+     * handled, which covers the numbers found in practice.
+     *
+     * @return the number or NaN if the token should be parsed by
+     *         {@link Double#parseDouble(String)}
+     */
+    private double parseDouble() {
+        int i = 0;
+        boolean negative = false;
+        if (i < tokenLength && (token[i] == '-' || token[i] == '+')) {
+            negative = token[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < tokenLength; i++) {
+            byte b = token[i];
+            if (b >= '0' && b <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && b == '0') {
+                    if (seenPoint) {
+                        exponent--;
+                    }
+                    continue;
+                }
+                if (++digits > MAX_MANTISSA_DIGITS) {
+                    return Double.NaN;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (seenPoint) {
+                    exponent--;
+                }
+            } else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) {
+            return Double.NaN;
+        }
+        if (i < tokenLength) {
+            if (token[i] != 'e' && token[i] != 'E') {
+                return Double.NaN;
+            }
+            i++;
+            boolean negativeExponent = false;
+            if (i < tokenLength && (token[i] == '-' || token[i] == '+')) {
+                negativeExponent = token[i] == '-';
+                i++;
+            }
+            if (i == tokenLength) {
+                return Double.NaN;
+            }
+            int explicit = 0;
+            for (; i < tokenLength; i++) {
+                byte b = token[i];
+                if (b < '0' || b > '9' || explicit > 1000) {
+                    return Double.NaN;
+                }
+                explicit = explicit * 10 + (b - '0');
+            }
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+        if (mantissa > MAX_EXACT_MANTISSA) {
+            return Double.NaN;
+        }
+        double value = mantissa;
+        if (mantissa != 0) {
+            if (exponent > MAX_EXACT_EXPONENT
+                    || exponent < -MAX_EXACT_EXPONENT) {
+                return Double.NaN;
+            }
+            if (exponent > 0) {
+                value *= POWERS_OF_TEN[exponent];
+            } else if (exponent < 0) {
+                value /= POWERS_OF_TEN[-exponent];
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * An open addressing hash table from byte strings to nominal codes.
+     */
+    private static final class ByteTable {
+        private byte[][] keys = new byte[16][];
+        private int[] values = new int[16];
+        private int size;
+
+        int get(byte[] key, int length) {
+            int mask = keys.length - 1;
+            int slot = hash(key, length) & mask;
+            while (keys[slot] != null) {
+                if (matches(keys[slot], key, length)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        void put(byte[] key, int length, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key, length) & mask;
+            while (keys[slot] != null) {
+                if (matches(keys[slot], key, length)) {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = length == key.length ? key : Arrays.copyOf(key,
+                    length);
+            values[slot] = value;
+            size++;
+        }
+
+        private void grow() {
+            byte[][] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    put(oldKeys[i], oldKeys[i].length, oldValues[i]);
+                }
+            }
+        }
+
+        private static boolean matches(byte[] stored, byte[] key, int length) {
+            if (stored.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (stored[i] != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(byte[] key, int length) {
+            int h = 0;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + key[i];
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
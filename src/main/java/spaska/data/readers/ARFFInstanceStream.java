@@ -0,0 +1,353 @@
+package spaska.data.readers;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import spaska.data.Attribute;
+import spaska.data.Attribute.ValueType;
+import spaska.data.Dataset;
+import spaska.data.Factory;
+import spaska.data.Instance;
+import spaska.data.NumericValue;
+import spaska.data.SparseInstance;
+import spaska.data.UnknownValue;
+import spaska.data.Value;
+
+/**
+ * Reads the instances of an ARFF file in batches without keeping the whole
+ * file in memory.
+ *
+ * <p>
+ * The header of the file is read when the stream is opened and is available as
+ * an empty dataset through {@link #getHeader()}. After that every call to
+ * {@link #next()} parses at most {@link #getBatchSize()} rows of the
+ * <code>@data</code> section, so only the current batch is kept in memory. This
+ * lets incremental algorithms go over files that are bigger than the heap.
+ * Validators are not applied to the streamed instances as most of them need
+ * the whole dataset.
+ * </p>
+ *
+ * <pre>
+ * ARFFInstanceStream stream = new ARFFInstanceStream(file);
+ * try {
+ *     while (stream.hasNext()) {
+ *         for (Instance instance : stream.next()) {
+ *             ...
+ *         }
+ *     }
+ * } finally {
+ *     stream.close();
+ * }
+ * </pre>
+ *
+ * @see ARFFInputReader
+ */
+public final class ARFFInstanceStream implements Iterator<List<Instance>>,
+        Closeable {
+
+    /**
+     * The number of instances in a batch if none is given.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private static final String TAG_RELATION = "@relation";
+    private static final String TAG_ATTRIBUT = "@attribute";
+    private static final String TAG_DATA = "@data";
+
+    private BufferedReader input;
+    private Dataset header;
+    private int batchSize;
+    private List<Instance> nextBatch;
+    private Value[] sparseDefaults;
+    private NominalInterner interner;
+
+    /**
+     * Opens a stream over the given file with the default batch size.
+     *
+     * @param file
+     *            the ARFF file
+     * @throws IOException
+     *             if the file cannot be opened or its header cannot be read
+     */
+    public ARFFInstanceStream(File file) throws IOException {
+        this(file, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Opens a stream over the given file.
+     *
+     * @param file
+     *            the ARFF file
+     * @param batchSize
+     *            the maximum number of instances in a batch
+     * @throws IOException
+     *             if the file cannot be opened or its header cannot be read
+     */
+    public ARFFInstanceStream(File file, int batchSize) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size: "
+                    + batchSize);
+        }
+        this.batchSize = batchSize;
+        this.input = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file)));
+        this.header = new Dataset();
+        try {
+            readHeader();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        header.setClassIndex(header.getAttributesCount() - 1);
+    }
+
+    /**
+     * Get the dataset described by the header of the file. The dataset has the
+     * relation name, the attributes and their domains but no instances.
+     *
+     * @return the header of the file
+     */
+    public Dataset getHeader() {
+        return header;
+    }
+
+    /**
+     * Get the maximum number of instances in a batch.
+     *
+     * @return the maximum number of instances in a batch
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    private void readHeader() throws IOException {
+        List<Value> defaults = new ArrayList<Value>();
+        String line = null;
+        while ((line = input.readLine()) != null) {
+            if (handleHeaderLine(header, defaults, line)) {
+                break;
+            }
+        }
+        sparseDefaults = defaults.toArray(new Value[defaults.size()]);
+        interner = new NominalInterner(header);
+    }
+
+    /**
+     * Handle a single line of the header of an ARFF file.
+     *
+     * @param dataset
+     *            the dataset that is described by the header
+     * @param defaults
+     *            the list to which to add the default values of the attributes
+     *            for sparse rows or null if they are not needed
+     * @param line
+     *            the header line
+     * @return true if the line starts the <code>@data</code> section
+     */
+    static boolean handleHeaderLine(Dataset dataset, List<Value> defaults,
+            String line) {
+        String lower = line.toLowerCase();
+        if (lower.startsWith(TAG_RELATION)) {
+            dataset.setName(line.split("\\s")[1]);
+        } else if (lower.startsWith(TAG_ATTRIBUT)) {
+            Value sparseDefault = handleAttribute(dataset, line);
+            if (defaults != null) {
+                defaults.add(sparseDefault);
+            }
+        } else if (lower.startsWith(TAG_DATA)) {
+            return true;
+        }
+        return false;
+    }
+
+    private static ValueType getValueType(String type) {
+        if (type.startsWith("real") || type.startsWith("numeric")) {
+            return ValueType.Numeric;
+        } else if (type.startsWith("{") || type.startsWith("text")) {
+            return ValueType.Nominal;
+        }
+        return ValueType.Unknown;
+    }
+
+    /**
+     * Add the attribute declared on an <code>@attribute</code> line to the
+     * dataset together with its domain.
+     *
+     * @param dataset
+     *            the dataset to which to add the attribute
+     * @param line
+     *            the attribute line
+     * @return the value of the attribute when it is missing from a sparse
+     *         row: 0 for numeric attributes and the first declared value for
+     *         nominal ones
+     */
+    static Value handleAttribute(Dataset dataset, String line) {
+        String[] token = line.split("\\s+");
+        String name = "Unknown";
+        ValueType type = ValueType.Unknown;
+
+        if (token.length > 0) {
+            name = token[1];
+        }
+        if (token.length > 1) {
+            type = getValueType(token[2].toLowerCase());
+        }
+        Attribute attr = new Attribute(name, type);
+        dataset.addAttribute(attr);
+        Value sparseDefault = UnknownValue.getInstance();
+        if (type == ValueType.Numeric) {
+            sparseDefault = new NumericValue(0.0);
+        }
+
+        if (token.length > 2 && type == ValueType.Nominal) {
+            Set<Value> values = new HashSet<Value>();
+            int start = line.indexOf("{");
+            int end = line.indexOf("}", start + 1);
+            String[] domains = line.substring(start + 1, end).split(",");
+
+            for (String str : domains) {
+                values.add(Factory.createValue(str.trim()));
+            }
+            // keep the iteration order of the hash set, the codes of the
+            // values depend on it
+            Set<Value> domain = Factory.createNominalDomain(values);
+            dataset.addAttributeDomain(attr, domain);
+            Value first = Factory.createValue(domains[0].trim());
+            for (Value value : domain) {
+                if (value.equals(first)) {
+                    sparseDefault = value;
+                }
+            }
+        }
+        return sparseDefault;
+    }
+
+    /**
+     * Parse a single line of the <code>@data</code> section. Sparse rows like
+     * <code>{1 X, 3 Y}</code> are parsed into a {@link SparseInstance}.
+     *
+     * @param interner
+     *            the interner for the values of the attributes of the file
+     * @param defaults
+     *            the values of the attributes that are missing from sparse
+     *            rows
+     * @param line
+     *            the line to parse
+     * @return the parsed instance or null if the line is empty or a comment
+     */
+    static Instance parseInstance(NominalInterner interner, Value[] defaults,
+            String line) {
+        String trim = line.trim();
+        if (trim.equals("") || trim.startsWith("%")) {
+            return null;
+        }
+        if (trim.startsWith("{")) {
+            return parseSparseInstance(interner, defaults, trim);
+        }
+        String[] strValues = line.split(",");
+        return new Instance(interner.createElementData(strValues));
+    }
+
+    private static Instance parseSparseInstance(NominalInterner interner,
+            Value[] defaults, String line) {
+        int end = line.indexOf('}');
+        if (end < 0) {
+            throw new IllegalArgumentException("Unterminated sparse row: "
+                    + line);
+        }
+        String[] entries = line.substring(1, end).split(",");
+        int[] indices = new int[entries.length];
+        Value[] values = new Value[entries.length];
+        int count = 0;
+        boolean sorted = true;
+        for (String entry : entries) {
+            String trimmed = entry.trim();
+            if (trimmed.length() == 0) {
+                continue;
+            }
+            String[] pair = trimmed.split("\\s+", 2);
+            if (pair.length < 2) {
+                throw new IllegalArgumentException("Invalid sparse value: "
+                        + trimmed);
+            }
+            int index = Integer.parseInt(pair[0]);
+            indices[count] = index;
+            values[count] = interner.createValue(index, pair[1]);
+            sorted &= count == 0 || indices[count - 1] < index;
+            count++;
+        }
+        if (!sorted) {
+            SparseInstance instance = new SparseInstance(new int[0],
+                    new Value[0], defaults);
+            for (int i = 0; i < count; i++) {
+                instance.getVector().set(indices[i], values[i]);
+            }
+            return instance;
+        }
+        return new SparseInstance(Arrays.copyOf(indices, count),
+                Arrays.copyOf(values, count), defaults);
+    }
+
+    private List<Instance> readBatch() throws IOException {
+        List<Instance> batch = new ArrayList<Instance>();
+        if (input == null) {
+            return batch;
+        }
+        String line = null;
+        while (batch.size() < batchSize && (line = input.readLine()) != null) {
+            Instance instance = parseInstance(interner, sparseDefaults, line);
+            if (instance != null) {
+                batch.add(instance);
+            }
+        }
+        return batch;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextBatch == null) {
+            try {
+                nextBatch = readBatch();
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read the data of "
+                        + header.getName(), e);
+            }
+        }
+        return !nextBatch.isEmpty();
+    }
+
+    @Override
+    public List<Instance> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<Instance> result = nextBatch;
+        nextBatch = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException(
+                "Instances cannot be removed from an ARFF stream!");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (input != null) {
+            input.close();
+            input = null;
+        }
+    }
+}
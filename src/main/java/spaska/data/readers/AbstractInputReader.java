@@ -19,6 +19,10 @@ public abstract class AbstractInputReader implements InputReader {
      * The resulting dataset from reading the input.
      */
     private Dataset dataset;
+    /**
+     * If the resulting dataset should be switched to the columnar storage mode.
+     */
+    private boolean columnar;
 
     protected AbstractInputReader() {
         setValidators(new LinkedList<Validator>());
@@ -38,6 +42,28 @@ public abstract class AbstractInputReader implements InputReader {
         return validators;
     }
 
+    /**
+     * Checks if the datasets built by this reader are compacted into columns.
+     * 
+     * @return true if the datasets are compacted into columns
+     * @see Dataset#compact()
+     */
+    public final boolean isColumnar() {
+        return columnar;
+    }
+
+    /**
+     * Set if the datasets built by this reader should be compacted into
+     * columns. This cuts the memory needed for big datasets by a lot.
+     * 
+     * @param columnar
+     *            true if the datasets should be compacted into columns
+     * @see Dataset#compact()
+     */
+    public final void setColumnar(boolean columnar) {
+        this.columnar = columnar;
+    }
+
     protected Dataset getDataset() {
         return dataset;
     }
@@ -0,0 +1,204 @@
+package spaska.data.readers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+import spaska.data.Attribute;
+import spaska.data.ColumnStore;
+import spaska.data.Dataset;
+import spaska.data.Value;
+
+/**
+ * Saves datasets in the binary format that is read by
+ * {@link BinaryInputReader}. A dataset that was read from a text file and
+ * preprocessed can be saved once and then loaded again much faster.
+ *
+ * <pre>
+ * Dataset dataset = new ARFFInputReader(arff).buildDataset();
+ * new BinaryDatasetWriter(new File(&quot;data.spaska&quot;)).write(dataset);
+ * </pre>
+ *
+ * @see BinaryInputReader
+ */
+public class BinaryDatasetWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private File file;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * Constructs a writer that will write to the provided file .
+     *
+     * @param file
+     *            the file to which to write the data
+     */
+    public BinaryDatasetWriter(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Write a dataset to the file of this writer. The file is overwritten if
+     * it exists.
+     *
+     * @param dataset
+     *            the dataset to write
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void write(Dataset dataset) throws IOException {
+        ColumnStore store = dataset.getColumns();
+        byte[] header = writeHeader(dataset, store);
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            output.setLength(0);
+            FileChannel channel = output.getChannel();
+            buffer.clear();
+            buffer.putInt(BinaryInputReader.MAGIC);
+            buffer.putInt(BinaryInputReader.VERSION);
+            buffer.putInt(header.length);
+            flush(channel);
+            channel.write(ByteBuffer.wrap(header));
+            int rows = store.getRowsCount();
+            for (int i = 0; i < store.getAttributesCount(); i++) {
+                pad(channel);
+                if (store.isNumeric(i)) {
+                    writeNumeric(channel, store.getNumericColumn(i), rows);
+                } else {
+                    writeCodes(channel, store.getNominalColumn(i), rows);
+                }
+                pad(channel);
+                writeUnknowns(channel, store.getUnknowns(i), rows);
+            }
+            pad(channel);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static byte[] writeHeader(Dataset dataset, ColumnStore store)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeBoolean(dataset.getName() != null);
+        if (dataset.getName() != null) {
+            header.writeUTF(dataset.getName());
+        }
+        List<Attribute> attributes = dataset.getAttributes();
+        header.writeInt(attributes.size());
+        for (int i = 0; i < attributes.size(); i++) {
+            Attribute attribute = attributes.get(i);
+            header.writeUTF(attribute.getName());
+            header.writeUTF(attribute.getType().name());
+            Set<Value> domain = dataset.getDomain(attribute);
+            if (domain == null) {
+                header.writeInt(-1);
+            } else {
+                header.writeInt(domain.size());
+                for (Value value : domain) {
+                    writeValue(header, value);
+                }
+            }
+            if (store.isNumeric(i)) {
+                header.writeInt(0);
+            } else {
+                header.writeInt(store.getDomainSize(i));
+                for (int code = 0; code < store.getDomainSize(i); code++) {
+                    writeValue(header, store.getNominalValue(i, code));
+                }
+            }
+        }
+        header.writeInt(dataset.getClassIndex());
+        header.writeInt(store.getRowsCount());
+        header.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeValue(DataOutput output, Value value)
+            throws IOException {
+        output.writeUTF(value.getType().name());
+        switch (value.getType()) {
+        case Numeric:
+            output.writeDouble((Double) value.getValue());
+            break;
+        case Nominal:
+            output.writeUTF(value.getValue().toString());
+            break;
+        default:
+            break;
+        }
+    }
+
+    private void writeNumeric(FileChannel channel, double[] column, int rows)
+            throws IOException {
+        buffer.clear();
+        for (int row = 0; row < rows; row++) {
+            if (buffer.remaining() < Double.SIZE / Byte.SIZE) {
+                flush(channel);
+            }
+            buffer.putDouble(column[row]);
+        }
+        flush(channel);
+    }
+
+    private void writeCodes(FileChannel channel, int[] column, int rows)
+            throws IOException {
+        buffer.clear();
+        for (int row = 0; row < rows; row++) {
+            if (buffer.remaining() < Integer.SIZE / Byte.SIZE) {
+                flush(channel);
+            }
+            buffer.putInt(column[row]);
+        }
+        flush(channel);
+    }
+
+    private void writeUnknowns(FileChannel channel, BitSet unknowns, int rows)
+            throws IOException {
+        buffer.clear();
+        int count = 0;
+        for (int row = unknowns.nextSetBit(0); row >= 0 && row < rows; row = unknowns
+                .nextSetBit(row + 1)) {
+            count++;
+        }
+        buffer.putInt(count);
+        for (int row = unknowns.nextSetBit(0); row >= 0 && row < rows; row = unknowns
+                .nextSetBit(row + 1)) {
+            if (buffer.remaining() < Integer.SIZE / Byte.SIZE) {
+                flush(channel);
+            }
+            buffer.putInt(row);
+        }
+        flush(channel);
+    }
+
+    private void pad(FileChannel channel) throws IOException {
+        long position = channel.position();
+        long aligned = BinaryInputReader.align(position);
+        if (aligned > position) {
+            buffer.clear();
+            buffer.put(new byte[(int) (aligned - position)]);
+            flush(channel);
+        }
+    }
+
+    /**
+     * Write the buffer to the channel and clear it for the next values.
+     */
+    private void flush(FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,228 @@
+package spaska.data.readers;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import spaska.data.Attribute;
+import spaska.data.Attribute.ValueType;
+import spaska.data.ColumnStore;
+import spaska.data.Dataset;
+import spaska.data.Factory;
+import spaska.data.NominalValue;
+import spaska.data.NumericValue;
+import spaska.data.UnknownValue;
+import spaska.data.Value;
+
+/**
+ * An input reader for datasets saved by {@link BinaryDatasetWriter}. The
+ * binary format keeps the columns of the dataset as they are in memory, so a
+ * preprocessed dataset can be loaded again without parsing any text.
+ *
+ * <p>
+ * The file starts with a magic number, the format version and the length of
+ * the header. The header has the name of the dataset, the attributes with
+ * their domains and the codes of the nominal values, the class index and the
+ * number of rows. After the header come the column blocks, each one starting
+ * on a multiple of 8 bytes. The block of a numeric column has a double for
+ * every row and the block of a nominal column has the code of the value for
+ * every row. The values block of every column is followed by a block with the
+ * number of unknown values and their rows. The column blocks are memory
+ * mapped and copied in bulk into the columns of the dataset.
+ * </p>
+ *
+ * @see BinaryDatasetWriter
+ */
+public class BinaryInputReader extends AbstractInputReader {
+
+    /**
+     * The extension of the binary dataset files.
+     */
+    public static final String EXTENSION = "spaska";
+
+    static final int MAGIC = 0x5350534B;
+    static final int VERSION = 1;
+    static final int BLOCK_ALIGNMENT = 8;
+    static final int PREAMBLE_SIZE = 12;
+
+    private File file;
+
+    /**
+     * Constructs a reader that will read from the provided file path.
+     *
+     * @param file
+     *            the file path from which to read the data
+     */
+    public BinaryInputReader(String file) {
+        this(new File(file));
+    }
+
+    /**
+     * Constructs a reader that will read from the provided file .
+     *
+     * @param file
+     *            the file from which to read the data
+     */
+    public BinaryInputReader(File file) {
+        this.file = file;
+        setColumnar(true);
+    }
+
+    @Override
+    public Dataset buildDataset() {
+        setDataset(new Dataset());
+        RandomAccessFile input = null;
+
+        try {
+            input = new RandomAccessFile(file, "r");
+            setDataset(read(input));
+            for (Validator v : getValidators()) {
+                v.setDataset(getDataset());
+            }
+            for (Validator v : getValidators()) {
+                v.validate();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return getDataset();
+    }
+
+    private static Dataset read(RandomAccessFile input) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a binary dataset file");
+        }
+        int version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary dataset version: "
+                    + version);
+        }
+        byte[] headerBytes = new byte[input.readInt()];
+        input.readFully(headerBytes);
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(
+                headerBytes));
+
+        Dataset dataset = new Dataset();
+        if (header.readBoolean()) {
+            dataset.setName(header.readUTF());
+        }
+        int attributesCount = header.readInt();
+        Value[][] codeValues = new Value[attributesCount][];
+        for (int i = 0; i < attributesCount; i++) {
+            Attribute attribute = new Attribute(header.readUTF(),
+                    ValueType.valueOf(header.readUTF()));
+            dataset.addAttribute(attribute);
+            int domainSize = header.readInt();
+            if (domainSize >= 0) {
+                List<Value> domain = new ArrayList<Value>(domainSize);
+                for (int j = 0; j < domainSize; j++) {
+                    domain.add(readValue(header));
+                }
+                dataset.addAttributeDomain(attribute,
+                        Factory.createNominalDomain(domain));
+            }
+            codeValues[i] = new Value[header.readInt()];
+            for (int j = 0; j < codeValues[i].length; j++) {
+                codeValues[i][j] = readValue(header);
+            }
+        }
+        int classIndex = header.readInt();
+        int rows = header.readInt();
+
+        ColumnStore store = new ColumnStore(dataset, rows);
+        store.appendRows(rows);
+        FileChannel channel = input.getChannel();
+        long offset = align(PREAMBLE_SIZE + headerBytes.length);
+        for (int i = 0; i < attributesCount; i++) {
+            offset = readColumn(channel, offset, store, i, codeValues[i], rows);
+            offset = readUnknowns(channel, offset, store.getUnknowns(i));
+        }
+        dataset.setColumns(store);
+        dataset.setClassIndex(classIndex);
+        return dataset;
+    }
+
+    private static long readColumn(FileChannel channel, long offset,
+            ColumnStore store, int attributeIndex, Value[] codeValues, int rows)
+            throws IOException {
+        if (store.isNumeric(attributeIndex)) {
+            long size = (long) rows * (Double.SIZE / Byte.SIZE);
+            map(channel, offset, size).asDoubleBuffer().get(
+                    store.getNumericColumn(attributeIndex), 0, rows);
+            return align(offset + size);
+        }
+        long size = (long) rows * (Integer.SIZE / Byte.SIZE);
+        int[] column = store.getNominalColumn(attributeIndex);
+        map(channel, offset, size).asIntBuffer().get(column, 0, rows);
+
+        int[] remap = new int[codeValues.length];
+        boolean identity = true;
+        for (int code = 0; code < remap.length; code++) {
+            remap[code] = store.intern(attributeIndex, codeValues[code]);
+            identity &= remap[code] == code;
+        }
+        if (!identity) {
+            for (int row = 0; row < rows; row++) {
+                if (column[row] >= 0) {
+                    column[row] = remap[column[row]];
+                }
+            }
+        }
+        return align(offset + size);
+    }
+
+    private static long readUnknowns(FileChannel channel, long offset,
+            BitSet unknowns) throws IOException {
+        int count = map(channel, offset, Integer.SIZE / Byte.SIZE).getInt();
+        long size = (long) (count + 1) * (Integer.SIZE / Byte.SIZE);
+        if (count > 0) {
+            MappedByteBuffer block = map(channel, offset, size);
+            block.getInt();
+            for (int i = 0; i < count; i++) {
+                unknowns.set(block.getInt());
+            }
+        }
+        return align(offset + size);
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long offset,
+            long size) throws IOException {
+        if (offset + size > channel.size()) {
+            throw new IOException("Truncated binary dataset file");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+    }
+
+    static long align(long offset) {
+        long rest = offset % BLOCK_ALIGNMENT;
+        return rest == 0 ? offset : offset + BLOCK_ALIGNMENT - rest;
+    }
+
+    static Value readValue(DataInput input) throws IOException {
+        ValueType type = ValueType.valueOf(input.readUTF());
+        switch (type) {
+        case Numeric:
+            return new NumericValue(input.readDouble());
+        case Nominal:
+            return new NominalValue(input.readUTF());
+        default:
+            return UnknownValue.getInstance();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package spaska.data.readers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import spaska.data.ColumnStore;
+import spaska.data.Dataset;
+
+/**
+ * An input reader for ARFF files that maps the file in memory and parses the
+ * data section from the raw bytes straight into columns. This avoids the line
+ * strings, the splitting and the boxed values of {@link ARFFInputReader}, so
+ * it is a lot faster for big files. The resulting dataset is always in the
+ * columnar storage mode.
+ *
+ * <p>
+ * The rows of the data section are independent, so with
+ * {@link #setThreads(int)} the section is split into ranges on line
+ * boundaries that are parsed in parallel into separate stores. The stores are
+ * merged back in the order of the ranges, so the rows and the codes of the
+ * nominal values are the same as with a single thread.
+ * </p>
+ *
+ * @see ARFFInputReader
+ * @see Dataset#getColumns()
+ */
+public class MappedARFFInputReader extends AbstractInputReader {
+
+    /**
+     * The minimum size in bytes of a range that is parsed by a single task.
+     */
+    static final long DEFAULT_MIN_CHUNK_SIZE = 1L << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int SCAN_BUFFER_SIZE = 4096;
+
+    private File file;
+    private int threads = 1;
+    private long minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+
+    /**
+     * Constructs a reader that will read from the provided file path.
+     *
+     * @param file
+     *            the file path from which to read the data
+     */
+    public MappedARFFInputReader(String file) {
+        this(new File(file));
+    }
+
+    /**
+     * Constructs a reader that will read from the provided file .
+     *
+     * @param file
+     *            the file from which to read the data
+     */
+    public MappedARFFInputReader(File file) {
+        this.file = file;
+        setColumnar(true);
+    }
+
+    @Override
+    public Dataset buildDataset() {
+        setDataset(new Dataset());
+        MappedByteSource source = null;
+
+        try {
+            source = new MappedByteSource(file);
+            Dataset header = readHeader(source);
+            ColumnStore store;
+            if (threads > 1
+                    && source.end() - source.position() > minChunkSize) {
+                store = parseParallel(header, source.getChannel(),
+                        source.position(), source.end());
+            } else {
+                store = new ColumnStore(header);
+                new ARFFByteParser(store).parse(source);
+            }
+            store.trim();
+            header.setColumns(store);
+            setDataset(header);
+            for (Validator v : getValidators()) {
+                v.setDataset(getDataset());
+            }
+            for (Validator v : getValidators()) {
+                v.validate();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (source != null) {
+                try {
+                    source.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        getDataset().setClassIndex(getDataset().getAttributesCount() - 1);
+        return getDataset();
+    }
+
+    /**
+     * Read the header of the file up to and including the <code>@data</code>
+     * line.
+     *
+     * @param source
+     *            the source positioned at the start of the file
+     * @return a dataset with the attributes of the file and no instances
+     * @throws IOException
+     *             if the source cannot be read
+     */
+    static Dataset readHeader(MappedByteSource source) throws IOException {
+        Dataset header = new Dataset();
+        String line = null;
+        while ((line = source.readLine()) != null) {
+            if (ARFFInstanceStream.handleHeaderLine(header, null, line)) {
+                break;
+            }
+        }
+        return header;
+    }
+
+    /**
+     * Get the number of threads that parse the data section.
+     *
+     * @return the number of threads that parse the data section
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the number of threads that parse the data section. Files with a
+     * data section smaller than a megabyte are always parsed by the calling
+     * thread.
+     *
+     * @param threads
+     *            the number of threads, 1 parses the data on the calling
+     *            thread
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads: "
+                    + threads);
+        }
+        this.threads = threads;
+    }
+
+    void setMinChunkSize(long minChunkSize) {
+        this.minChunkSize = minChunkSize;
+    }
+
+    private ColumnStore parseParallel(Dataset header, FileChannel channel,
+            long start, long end) throws IOException, InterruptedException,
+            ExecutionException {
+        long chunks = Math.min((long) threads * CHUNKS_PER_THREAD,
+                Math.max(1, (end - start) / minChunkSize));
+        long[] bounds = splitLines(channel, start, end, (int) chunks);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ColumnStore>> parts = new ArrayList<Future<ColumnStore>>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                parts.add(pool.submit(new ChunkParser(header, channel,
+                        bounds[i], bounds[i + 1])));
+            }
+            List<ColumnStore> stores = new ArrayList<ColumnStore>();
+            int rows = 0;
+            for (Future<ColumnStore> part : parts) {
+                ColumnStore store = part.get();
+                rows += store.getRowsCount();
+                stores.add(store);
+            }
+            ColumnStore result = new ColumnStore(header, rows);
+            for (ColumnStore store : stores) {
+                result.append(store);
+            }
+            return result;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Split a range of a file into chunks that start at the beginning of a
+     * line.
+     *
+     * @return the bounds of the chunks, chunk i is from bounds[i] to
+     *         bounds[i + 1]
+     */
+    static long[] splitLines(FileChannel channel, long start, long end,
+            int chunks) throws IOException {
+        long[] bounds = new long[chunks + 1];
+        bounds[0] = start;
+        bounds[chunks] = end;
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        for (int i = 1; i < chunks; i++) {
+            long position = start + (end - start) * i / chunks;
+            if (position <= bounds[i - 1]) {
+                bounds[i] = bounds[i - 1];
+            } else {
+                bounds[i] = nextLine(channel, buffer, position - 1, end);
+            }
+        }
+        return bounds;
+    }
+
+    private static long nextLine(FileChannel channel, ByteBuffer buffer,
+            long from, long end) throws IOException {
+        long position = from;
+        while (position < end) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read && position + i < end; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return end;
+    }
+
+    /**
+     * Parses a range of the data section into a new store.
+     */
+    private static final class ChunkParser implements Callable<ColumnStore> {
+        private final Dataset header;
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        ChunkParser(Dataset header, FileChannel channel, long start, long end) {
+            this.header = header;
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public ColumnStore call() throws IOException {
+            ColumnStore store = new ColumnStore(header);
+            if (end > start) {
+                new ARFFByteParser(store).parse(new MappedByteSource(channel,
+                        start, end));
+            }
+            return store;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package spaska.data.readers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a range of a file byte by byte through memory mapped windows. The
+ * bytes are read directly from the page cache, so no intermediate buffers or
+ * strings are created while reading.
+ */
+final class MappedByteSource implements Closeable {
+
+    /**
+     * The size of a single mapped window.
+     */
+    static final long WINDOW_SIZE = 1L << 26;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long windowStart;
+    private long end;
+
+    /**
+     * Map the whole file.
+     *
+     * @param file
+     *            the file to read
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    MappedByteSource(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        try {
+            this.end = channel.size();
+            map(0);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Map a range of an already opened channel. The channel is not closed
+     * together with the source.
+     *
+     * @param channel
+     *            the channel to read from
+     * @param start
+     *            the position of the first byte to read
+     * @param end
+     *            the position after the last byte to read
+     * @throws IOException
+     *             if the range cannot be mapped
+     */
+    MappedByteSource(FileChannel channel, long start, long end)
+            throws IOException {
+        this.channel = channel;
+        this.end = end;
+        map(start);
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        long size = Math.min(WINDOW_SIZE, end - start);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+    }
+
+    /**
+     * Read the next byte.
+     *
+     * @return the next byte as an unsigned value or -1 at the end of the range
+     * @throws IOException
+     *             if the next window cannot be mapped
+     */
+    int read() throws IOException {
+        if (!buffer.hasRemaining()) {
+            long next = windowStart + buffer.limit();
+            if (next >= end) {
+                return -1;
+            }
+            map(next);
+        }
+        return buffer.get() & 0xff;
+    }
+
+    /**
+     * Get the position of the next byte in the file.
+     *
+     * @return the position of the next byte in the file
+     */
+    long position() {
+        return windowStart + buffer.position();
+    }
+
+    /**
+     * Get the position after the last byte of the range.
+     *
+     * @return the end of the range
+     */
+    long end() {
+        return end;
+    }
+
+    /**
+     * Get the channel of the source.
+     *
+     * @return the channel from which the bytes are read
+     */
+    FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Read a line of text in the default charset. A line ends on '\n' or
+     * '\r', so "\r\n" gives an additional empty line.
+     *
+     * @return the line without the terminator or null at the end of the range
+     * @throws IOException
+     *             if the next window cannot be mapped
+     */
+    String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        while (c != -1 && c != '\n' && c != '\r') {
+            line.write(c);
+            c = read();
+        }
+        return line.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+}
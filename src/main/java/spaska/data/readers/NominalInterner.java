@@ -0,0 +1,95 @@
+package spaska.data.readers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import spaska.data.Attribute;
+import spaska.data.Attribute.ValueType;
+import spaska.data.Dataset;
+import spaska.data.Factory;
+import spaska.data.UnknownValue;
+import spaska.data.Value;
+
+/**
+ * Converts string values to data {@link Value} objects like
+ * {@link Factory#createValue(String, Attribute)}, but gives back the same
+ * object for every occurrence of a nominal value of an attribute. Values from
+ * the domain of the attribute are given back as the domain objects, so they
+ * carry their codes.
+ */
+final class NominalInterner {
+
+    private final List<Attribute> attributes;
+    private final List<Map<String, Value>> nominals;
+
+    /**
+     * Construct an interner for the attributes and domains of a dataset.
+     *
+     * @param dataset
+     *            the dataset with the attributes
+     */
+    NominalInterner(Dataset dataset) {
+        this.attributes = dataset.getAttributes();
+        this.nominals = new ArrayList<Map<String, Value>>(attributes.size());
+        for (Attribute attribute : attributes) {
+            Map<String, Value> values = new HashMap<String, Value>();
+            Set<Value> domain = dataset.getDomain(attribute);
+            if (domain != null) {
+                for (Value value : domain) {
+                    values.put(value.toString(), value);
+                }
+            }
+            nominals.add(values);
+        }
+    }
+
+    /**
+     * Convert a string value of an attribute to a data {@link Value} object.
+     *
+     * @param attributeIndex
+     *            the index of the attribute
+     * @param strValue
+     *            the string value
+     * @return the value
+     */
+    Value createValue(int attributeIndex, String strValue) {
+        Attribute attribute = attributes.get(attributeIndex);
+        if (attribute.getType().equals(ValueType.Numeric)) {
+            return Factory.createValue(strValue, attribute);
+        }
+        String trimmed = strValue.trim();
+        if (trimmed.equals("?")) {
+            return UnknownValue.getInstance();
+        }
+        Map<String, Value> values = nominals.get(attributeIndex);
+        Value value = values.get(trimmed);
+        if (value == null) {
+            value = Factory.createValue(trimmed, attribute);
+            values.put(trimmed, value);
+        }
+        return value;
+    }
+
+    /**
+     * Convert the string values of a row to data {@link Value} objects.
+     * Missing values at the end of the row are unknown.
+     *
+     * @param strValues
+     *            the string values of the row
+     * @return the values of the row
+     */
+    List<Value> createElementData(String[] strValues) {
+        List<Value> element = new ArrayList<Value>(attributes.size());
+        for (int i = 0; i < attributes.size(); i++) {
+            if (i < strValues.length) {
+                element.add(createValue(i, strValues[i]));
+            } else {
+                element.add(UnknownValue.getInstance());
+            }
+        }
+        return element;
+    }
+}
@@ -7,6 +7,7 @@ import java.util.Vector;
 
 import spaska.data.Dataset;
 import spaska.data.readers.ARFFInputReader;
+import spaska.data.readers.BinaryInputReader;
 import spaska.data.readers.InputReader;
 import spaska.data.readers.NormalizeValidator;
 import spaska.data.readers.Validator;
@@ -59,6 +60,8 @@ public abstract class Engine {
         } else {
             if (file.getName().endsWith(ARFF)) {
                 reader = new ARFFInputReader(file);
+            } else if (file.getName().endsWith(BinaryInputReader.EXTENSION)) {
+                reader = new BinaryInputReader(file);
             }
         }
     }
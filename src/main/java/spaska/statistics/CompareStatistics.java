@@ -91,6 +91,24 @@ public final class CompareStatistics extends Statistics {
         setModified(true);
     }
 
+    /**
+     * Get the precisions of the first classifier.
+     * 
+     * @return the precision for every seed of the first classifier
+     */
+    public double[] getFirstSamplePopulation() {
+        return firstSamplePopulation.clone();
+    }
+
+    /**
+     * Get the precisions of the second classifier.
+     * 
+     * @return the precision for every seed of the second classifier
+     */
+    public double[] getSecondSamplePopulation() {
+        return secondSamplePopulation.clone();
+    }
+
     private void appendPrecisions(double[] sample, long[] times,
             StringBuilder result) {
         result.append("Tests data [Presision -> Test Time]:\n");
@@ -0,0 +1,58 @@
+package spaska.analysis;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import spaska.classifiers.DecisionTree;
+import spaska.classifiers.IClassifier;
+import spaska.classifiers.KNN;
+import spaska.classifiers.MultilayerPerceptron;
+import spaska.classifiers.NaiveBayes;
+import spaska.classifiers.OneR;
+import spaska.classifiers.TwoLayerPerceptron;
+import spaska.data.Dataset;
+import spaska.statistics.ClassifierStatistics;
+import spaska.test.DataSetResources;
+
+public class CrossValidationTest {
+
+    private static ClassifierStatistics crossValidate(IClassifier classifier,
+            Dataset dataset, int threads) {
+        CrossValidation validation = new CrossValidation(10, dataset,
+                classifier);
+        validation.setSeed(3);
+        validation.setThreads(threads);
+        return validation.analyze(dataset);
+    }
+
+    @Test
+    public void shouldGiveTheSameResultsWithManyThreads() throws Exception {
+        for (String name : new String[] { "iris", "vote", "soybean" }) {
+            Dataset dataset = DataSetResources.getDataSet(name);
+            KNN knn = new KNN();
+            knn.setK(5);
+            // the copies of the folds must get the layers too
+            MultilayerPerceptron network = new MultilayerPerceptron();
+            network.setHidden(8, 4);
+            network.setEpochs(20);
+            // the copies of the folds must draw the weights of the original
+            TwoLayerPerceptron perceptron = new TwoLayerPerceptron(3, 30, 0.1,
+                    100);
+            for (IClassifier classifier : new IClassifier[] { knn,
+                    new NaiveBayes(), new DecisionTree(), new OneR(), network,
+                    perceptron }) {
+                ClassifierStatistics expected = crossValidate(classifier,
+                        dataset, 1);
+                ClassifierStatistics actual = crossValidate(classifier,
+                        dataset, 4);
+                String message = name + " " + classifier.getName();
+                assertThat(message, actual.getPrecisions(),
+                        is(expected.getPrecisions()));
+                assertThat(message, actual.getRecalls(),
+                        is(expected.getRecalls()));
+            }
+        }
+    }
+}
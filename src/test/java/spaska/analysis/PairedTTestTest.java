@@ -1,12 +1,19 @@
 package spaska.analysis;
 
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import spaska.classifiers.DecisionTree;
+import spaska.classifiers.IClassifier;
 import spaska.classifiers.KNN;
+import spaska.classifiers.NaiveBayes;
+import spaska.classifiers.TwoLayerPerceptron;
 import spaska.data.Dataset;
+import spaska.statistics.CompareStatistics;
 import spaska.test.DataSetResources;
 
 public class PairedTTestTest {
@@ -26,4 +33,40 @@ public class PairedTTestTest {
         LOG.info(ptt.analyze(dataSet).toString());
     }
 
+    @Test
+    public void shouldGetTheSameSamplesWithManyThreads() throws Exception {
+        Dataset dataSet = DataSetResources.getDataSet("iris");
+        CompareStatistics sequential = compare(dataSet, 1, new NaiveBayes(),
+                new DecisionTree());
+        CompareStatistics parallel = compare(dataSet, 4, new NaiveBayes(),
+                new DecisionTree());
+        assertThat(parallel.getFirstSamplePopulation(),
+                equalTo(sequential.getFirstSamplePopulation()));
+        assertThat(parallel.getSecondSamplePopulation(),
+                equalTo(sequential.getSecondSamplePopulation()));
+    }
+
+    @Test
+    public void shouldGetTheSameSamplesOfAPerceptronWithManyThreads()
+            throws Exception {
+        Dataset dataSet = DataSetResources.getDataSet("iris");
+        CompareStatistics sequential = compare(dataSet, 1,
+                new TwoLayerPerceptron(3, 30, 0.1, 100), new NaiveBayes());
+        CompareStatistics parallel = compare(dataSet, 4,
+                new TwoLayerPerceptron(3, 30, 0.1, 100), new NaiveBayes());
+        assertThat(parallel.getFirstSamplePopulation(),
+                equalTo(sequential.getFirstSamplePopulation()));
+        assertThat(parallel.getSecondSamplePopulation(),
+                equalTo(sequential.getSecondSamplePopulation()));
+    }
+
+    private static CompareStatistics compare(Dataset dataSet, int threads,
+            IClassifier classifier1, IClassifier classifier2)
+            throws Exception {
+        PairedTTest ptt = new PairedTTest();
+        ptt.setThreads(threads);
+        ptt.setClassifier1(classifier1);
+        ptt.setClassifier2(classifier2);
+        return ptt.analyze(dataSet);
+    }
 }
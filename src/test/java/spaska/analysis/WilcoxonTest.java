@@ -1,10 +1,17 @@
 package spaska.analysis;
 
+import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
 import org.junit.Test;
 
+import spaska.classifiers.NaiveBayes;
+import spaska.classifiers.TwoLayerPerceptron;
+import spaska.data.Dataset;
+import spaska.statistics.CompareStatistics;
+import spaska.test.DataSetResources;
+
 public class WilcoxonTest {
     @Test
     public void shouldWorkProperlyWithExampleData() {
@@ -14,4 +21,25 @@ public class WilcoxonTest {
 
         assertThat(wil.shouldRejectNull(z1, z2), is(true));
     }
+
+    @Test
+    public void shouldGetTheSameSamplesOfAPerceptronWithManyThreads()
+            throws Exception {
+        Dataset dataSet = DataSetResources.getDataSet("iris");
+        CompareStatistics sequential = compare(dataSet, 1);
+        CompareStatistics parallel = compare(dataSet, 4);
+        assertThat(parallel.getFirstSamplePopulation(),
+                equalTo(sequential.getFirstSamplePopulation()));
+        assertThat(parallel.getSecondSamplePopulation(),
+                equalTo(sequential.getSecondSamplePopulation()));
+    }
+
+    private static CompareStatistics compare(Dataset dataSet, int threads)
+            throws Exception {
+        Wilcoxon wil = new Wilcoxon();
+        wil.setThreads(threads);
+        wil.setClassifier1(new TwoLayerPerceptron(3, 30, 0.1, 100));
+        wil.setClassifier2(new NaiveBayes());
+        return wil.analyze(dataSet);
+    }
 }
@@ -1,9 +1,18 @@
 package spaska.classifiers;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import spaska.data.Dataset;
+import spaska.data.DatasetView;
 import spaska.test.ClassifierTestBase;
+import spaska.test.DataSetResources;
 
 public class DecisionTreeTest extends ClassifierTestBase {
     private static final Logger LOG = LoggerFactory
@@ -25,4 +34,71 @@ public class DecisionTreeTest extends ClassifierTestBase {
     protected IClassifier getClassifier() {
         return new DecisionTree();
     }
+
+    @Test
+    public void shouldGrowTheSameTreeWithManyThreads() throws Exception {
+        for (String name : new String[] { "glass", "soybean" }) {
+            Dataset dataset = DataSetResources.getDataSet(name);
+            // enough rows for the nodes to be grown in parallel
+            int size = dataset.getElements().size();
+            int[] rows = new int[size * 5];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = i % size;
+            }
+            Dataset big = new DatasetView(dataset, rows).toDataset();
+            DecisionTree sequential = new DecisionTree();
+            sequential.buildClassifier(big);
+            DecisionTree parallel = new DecisionTree();
+            parallel.setThreads(4);
+            parallel.buildClassifier(big);
+
+            assertThat(parallel.toString(), is(sequential.toString()));
+        }
+    }
+
+    private static int countNodes(DecisionTree tree) {
+        return tree.toString().split("\n").length - 1;
+    }
+
+    @Test
+    public void shouldEstimateTheErrorsLikeC45() {
+        // U(0, 6) = 0.206 and U(1, 16) = 0.157 for a confidence of 0.25
+        assertThat(DecisionTree.getPessimisticErrors(6, 0, 0.25),
+                closeTo(6 * 0.206, 0.01));
+        assertThat(DecisionTree.getPessimisticErrors(16, 1, 0.25) + 1,
+                closeTo(16 * 0.157, 0.05));
+    }
+
+    @Test
+    public void shouldPruneTheTree() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("soybean");
+        DecisionTree full = new DecisionTree();
+        full.buildClassifier(dataset);
+        for (DecisionTree.Pruning pruning : new DecisionTree.Pruning[] {
+                DecisionTree.Pruning.PESSIMISTIC,
+                DecisionTree.Pruning.REDUCED_ERROR }) {
+            DecisionTree pruned = new DecisionTree();
+            pruned.setPruning(pruning);
+            pruned.buildClassifier(dataset);
+
+            assertThat(countNodes(pruned), lessThan(countNodes(full)));
+        }
+    }
+
+    @Test
+    public void shouldStopGrowingTheTree() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("soybean");
+        DecisionTree full = new DecisionTree();
+        full.buildClassifier(dataset);
+        DecisionTree shallow = new DecisionTree();
+        shallow.setMaxDepth(1);
+        shallow.buildClassifier(dataset);
+        DecisionTree big = new DecisionTree();
+        big.setMinLeaf(10);
+        big.buildClassifier(dataset);
+
+        // only the tests of the root are not indented
+        assertThat(shallow.toString().contains("|"), is(false));
+        assertThat(countNodes(big), lessThan(countNodes(full)));
+    }
 }
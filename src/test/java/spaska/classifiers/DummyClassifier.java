@@ -1,5 +1,6 @@
 package spaska.classifiers;
 
+import java.util.List;
 import java.util.Map;
 
 import spaska.data.Dataset;
@@ -28,6 +29,16 @@ public class DummyClassifier implements IClassifier {
         return null;
     }
 
+    @Override
+    public List<Value> classifyBatch(List<Instance> instances) {
+        return null;
+    }
+
+    @Override
+    public List<Value> classifyAll(Dataset dataset) {
+        return null;
+    }
+
     @Override
     public String getName() {
         return null;
@@ -0,0 +1,107 @@
+package spaska.classifiers;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import spaska.data.Attribute.ValueType;
+import spaska.data.Dataset;
+import spaska.data.FoldPlan;
+import spaska.data.Instance;
+import spaska.data.Value;
+import spaska.test.ClassifierTestBase;
+import spaska.test.DataSetResources;
+
+public class GradientBoostedTreesTest extends ClassifierTestBase {
+    private static final Logger LOG = LoggerFactory
+            .getLogger(GradientBoostedTreesTest.class);
+
+    @Override
+    protected Logger getLogger() {
+        return LOG;
+    }
+
+    @Override
+    protected TestDescriptor getDescriptor() {
+        return new TestDescriptor().iris(0.92, 0.91)
+                .vote(0.95, 0.96)
+                .soybean(0.96, 0.96);
+    }
+
+    @Override
+    protected IClassifier getClassifier() {
+        return new GradientBoostedTrees();
+    }
+
+    @Test
+    public void shouldBoostTheSameTreesWithManyThreads() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("vote");
+        GradientBoostedTrees sequential = new GradientBoostedTrees();
+        sequential.setThreads(1);
+        sequential.setSubsample(0.8);
+        sequential.buildClassifier(dataset);
+        GradientBoostedTrees parallel = new GradientBoostedTrees();
+        parallel.setThreads(4);
+        parallel.setSubsample(0.8);
+        parallel.buildClassifier(dataset);
+
+        assertThat(parallel.getRounds(), is(sequential.getRounds()));
+        assertThat(parallel.getValidationLoss(),
+                is(sequential.getValidationLoss()));
+        for (Instance instance : dataset.getElements()) {
+            assertThat(parallel.classifyInstance(instance),
+                    is(sequential.classifyInstance(instance)));
+        }
+    }
+
+    @Test
+    public void shouldStopWhenTheHeldOutLossGoesUp() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("iris");
+        GradientBoostedTrees boosted = new GradientBoostedTrees();
+        boosted.setTrees(1000);
+        boosted.buildClassifier(dataset);
+
+        assertThat(boosted.getRounds(), greaterThan(0));
+        assertThat(boosted.getRounds(), lessThan(1000));
+        assertThat(boosted.getValidationLoss(), lessThan(0.3));
+    }
+
+    @Test
+    public void shouldLearnANumericClass() throws Exception {
+        // the petal length of the iris from the other attributes
+        Dataset dataset = DataSetResources.getDataSet("iris");
+        dataset.setClassIndex(2);
+        assertThat(dataset.getAttributes().get(2).getType(),
+                is(ValueType.Numeric));
+        FoldPlan plan = dataset.getFoldPlan(5, 1);
+        GradientBoostedTrees boosted = new GradientBoostedTrees();
+        boosted.buildClassifier(plan.getTrainSet(0));
+
+        double mean = 0;
+        for (Instance instance : plan.getTrainSet(0).getElements()) {
+            mean += getClass(instance);
+        }
+        mean /= plan.getTrainSet(0).getElements().size();
+        double errors = 0;
+        double variance = 0;
+        for (Instance instance : plan.getTestSet(0).getElements()) {
+            Value value = boosted.classifyInstance(instance);
+            assertThat(value.getType(), is(ValueType.Numeric));
+            double error = (Double) value.getValue() - getClass(instance);
+            errors += error * error;
+            variance += (getClass(instance) - mean)
+                    * (getClass(instance) - mean);
+        }
+        // the model explains most of the variance of the held out lengths
+        assertThat(errors / variance, lessThan(0.05));
+    }
+
+    private static double getClass(Instance instance) {
+        return (Double) instance.getVector().get(2).getValue();
+    }
+}
@@ -1,9 +1,17 @@
 package spaska.classifiers;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import spaska.data.Dataset;
+import spaska.data.Instance;
+import spaska.data.Value;
 import spaska.test.ClassifierTestBase;
+import spaska.test.DataSetResources;
 
 public class KNNTest extends ClassifierTestBase {
     private static final Logger LOG = LoggerFactory.getLogger(KNNTest.class);
@@ -27,4 +35,80 @@ public class KNNTest extends ClassifierTestBase {
         return knn;
     }
 
+    @Test
+    public void shouldClassifySparseInstancesLikeDenseOnes() throws Exception {
+        Dataset dense = DataSetResources.getDataSet("sparse-dense");
+        Dataset sparse = DataSetResources.getDataSet("sparse");
+        IClassifier denseClassifier = getClassifier();
+        denseClassifier.buildClassifier(dense);
+        IClassifier sparseClassifier = getClassifier();
+        sparseClassifier.buildClassifier(sparse);
+        for (int i = 0; i < dense.getElements().size(); i++) {
+            Value expected = denseClassifier.classifyInstance(dense
+                    .getElements().get(i));
+            assertThat(sparseClassifier.classifyInstance(sparse.getElements()
+                    .get(i)), is(expected));
+        }
+    }
+
+    @Test
+    public void shouldFindTheSameNeighboursWithTheTrees() throws Exception {
+        for (String name : new String[] { "iris", "vote", "soybean", "glass" }) {
+            Dataset dataset = DataSetResources.getDataSet(name);
+            KNN brute = (KNN) getClassifier();
+            brute.setSearch(KNN.Search.BRUTE);
+            brute.buildClassifier(dataset);
+            for (KNN.Search search : new KNN.Search[] { KNN.Search.KDTREE,
+                    KNN.Search.BALLTREE }) {
+                KNN indexed = (KNN) getClassifier();
+                indexed.setSearch(search);
+                indexed.buildClassifier(dataset);
+                for (Instance instance : dataset.getElements()) {
+                    assertThat(name + " " + search,
+                            indexed.classifyInstance(instance),
+                            is(brute.classifyInstance(instance)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldFindMostNeighboursWithTheGraph() throws Exception {
+        for (String name : new String[] { "iris", "vote", "soybean", "glass" }) {
+            Dataset dataset = DataSetResources.getDataSet(name);
+            KNN knn = (KNN) getClassifier();
+            knn.setSearch(KNN.Search.HNSW);
+            knn.setM(4);
+            knn.setEfConstruction(16);
+            knn.setEfSearch(16);
+            knn.buildClassifier(dataset);
+            double recall = knn.getRecall(dataset.getElements());
+            LOG.info("Recall of the HNSW search on {}: {}", name, recall);
+            assertThat(name, recall > 0.9, is(true));
+            knn.setSearch(KNN.Search.BALLTREE);
+            knn.buildClassifier(dataset);
+            assertThat(name, knn.getRecall(dataset.getElements()), is(1.0));
+        }
+    }
+
+    @Test
+    public void shouldUseANewEfSearchWithoutBuildingAgain() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("glass");
+        KNN knn = (KNN) getClassifier();
+        knn.setSearch(KNN.Search.HNSW);
+        knn.setM(2);
+        knn.setEfConstruction(2);
+        knn.setEfSearch(1);
+        knn.buildClassifier(dataset);
+        double recall = knn.getRecall(dataset.getElements());
+        knn.setEfSearch(dataset.getElements().size());
+        assertThat(knn.getRecall(dataset.getElements()) > recall, is(true));
+        knn.setEfSearch(1);
+        assertThat(knn.getRecall(dataset.getElements()), is(recall));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectAnInvalidEfSearch() {
+        new KNN().setEfSearch(0);
+    }
 }
@@ -0,0 +1,70 @@
+package spaska.classifiers;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import spaska.data.Dataset;
+import spaska.data.Instance;
+import spaska.test.ClassifierTestBase;
+import spaska.test.DataSetResources;
+
+public class MultilayerPerceptronTest extends ClassifierTestBase {
+    private static final Logger LOG = LoggerFactory
+            .getLogger(MultilayerPerceptronTest.class);
+
+    @Override
+    protected Logger getLogger() {
+        return LOG;
+    }
+
+    @Override
+    protected TestDescriptor getDescriptor() {
+        return new TestDescriptor().iris(0.94, 0.94)
+                .vote(0.94, 0.94)
+                .soybean(0.95, 0.95);
+    }
+
+    @Override
+    protected IClassifier getClassifier() {
+        return new MultilayerPerceptron();
+    }
+
+    @Test
+    public void shouldClassifyTheSameAfterLoading() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("soybean");
+        MultilayerPerceptron network = new MultilayerPerceptron();
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("hidden", "16,8");
+        parameters.put("activation", "tanh");
+        parameters.put("epochs", "20");
+        network.setParameters(parameters);
+        network.buildClassifier(dataset);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        network.save(out);
+        MultilayerPerceptron loaded = MultilayerPerceptron
+                .load(new ByteArrayInputStream(out.toByteArray()));
+
+        assertThat(loaded.toString(), is(network.toString()));
+        for (Instance instance : dataset.getElements()) {
+            assertThat(loaded.classifyInstance(instance),
+                    is(network.classifyInstance(instance)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectEmptyLayers() {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("hidden", "32,0");
+        new MultilayerPerceptron().setParameters(parameters);
+    }
+}
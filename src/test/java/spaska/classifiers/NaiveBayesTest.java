@@ -1,14 +1,29 @@
 package spaska.classifiers;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import spaska.data.Attribute;
+import spaska.data.Attribute.ValueType;
+import spaska.data.Dataset;
+import spaska.data.Instance;
+import spaska.data.NominalValue;
+import spaska.data.NumericValue;
+import spaska.data.Value;
 import spaska.test.ClassifierTestBase;
+import spaska.test.DataSetResources;
 
 public class NaiveBayesTest extends ClassifierTestBase {
     private static final Logger LOG = LoggerFactory
@@ -42,4 +57,77 @@ public class NaiveBayesTest extends ClassifierTestBase {
         double normalDensityF = NaiveBayes.normalDensityF(5.855, 0, 6);
         assertThat(Double.isNaN(normalDensityF), is(false));
     }
+
+    @Test
+    public void shouldClassifySparseInstancesLikeDenseOnes() throws Exception {
+        Dataset dense = DataSetResources.getDataSet("sparse-dense");
+        Dataset sparse = DataSetResources.getDataSet("sparse");
+        IClassifier denseClassifier = getClassifier();
+        denseClassifier.buildClassifier(dense);
+        IClassifier sparseClassifier = getClassifier();
+        sparseClassifier.buildClassifier(sparse);
+        for (int i = 0; i < dense.getElements().size(); i++) {
+            Value expected = denseClassifier.classifyInstance(dense
+                    .getElements().get(i));
+            assertThat(sparseClassifier.classifyInstance(sparse.getElements()
+                    .get(i)), is(expected));
+        }
+    }
+
+    @Test
+    public void shouldNotUnderflowOnManyAttributes() throws Exception {
+        // the product of the densities of so many attributes is 0 for every
+        // class, but the classes differ a little in every attribute
+        int attributes = 2000;
+        Attribute[] header = new Attribute[attributes + 1];
+        for (int i = 0; i < attributes; i++) {
+            header[i] = new Attribute("a" + i, ValueType.Numeric);
+        }
+        header[attributes] = new Attribute("class", ValueType.Nominal);
+        Dataset dataset = new Dataset("wide", header);
+        Value[] classes = { new NominalValue("a"), new NominalValue("b") };
+        Set<Value> domain = new LinkedHashSet<Value>();
+        for (Value value : classes) {
+            domain.add(value);
+        }
+        dataset.addAttributeDomain(header[attributes], domain);
+        Random random = new Random(1);
+        for (int row = 0; row < 100; row++) {
+            List<Value> vector = new ArrayList<Value>();
+            for (int i = 0; i < attributes; i++) {
+                vector.add(new NumericValue(random.nextGaussian() + row % 2
+                        * 0.5));
+            }
+            vector.add(classes[row % 2]);
+            dataset.addElement(new Instance(vector));
+        }
+
+        NaiveBayes classifier = new NaiveBayes();
+        classifier.buildClassifier(dataset);
+        List<Value> all = classifier.classifyAll(dataset);
+        int correct = 0;
+        for (int row = 0; row < 100; row++) {
+            Instance instance = dataset.getElements().get(row);
+            Value value = classifier.classifyInstance(instance);
+            assertThat(all.get(row), is(value));
+            if (value.equals(classes[row % 2])) {
+                correct++;
+            }
+        }
+        assertThat(correct, greaterThan(95));
+    }
+
+    @Test
+    public void shouldClassifyAllLikeOneByOne() throws Exception {
+        for (String name : new String[] { "iris", "vote", "soybean", "glass" }) {
+            Dataset dataset = DataSetResources.getDataSet(name);
+            NaiveBayes classifier = new NaiveBayes();
+            classifier.buildClassifier(dataset);
+            List<Value> all = classifier.classifyAll(dataset);
+            for (int row = 0; row < all.size(); row++) {
+                assertThat(name + " " + row, all.get(row), is(classifier
+                        .classifyInstance(dataset.getElements().get(row))));
+            }
+        }
+    }
 }
@@ -0,0 +1,95 @@
+package spaska.classifiers;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import spaska.data.Attribute;
+import spaska.data.Attribute.ValueType;
+import spaska.data.Dataset;
+import spaska.data.Instance;
+import spaska.data.NominalValue;
+import spaska.data.Value;
+import spaska.test.ClassifierTestBase;
+import spaska.test.DataSetResources;
+
+public class RandomForestTest extends ClassifierTestBase {
+    private static final Logger LOG = LoggerFactory
+            .getLogger(RandomForestTest.class);
+
+    @Override
+    protected Logger getLogger() {
+        return LOG;
+    }
+
+    @Override
+    protected TestDescriptor getDescriptor() {
+        return new TestDescriptor().iris(0.95, 0.95)
+                .vote(0.95, 0.95)
+                .soybean(0.71, 0.67);
+    }
+
+    @Override
+    protected IClassifier getClassifier() {
+        RandomForest forest = new RandomForest();
+        forest.setTrees(30);
+        return forest;
+    }
+
+    @Test
+    public void shouldGrowTheSameForestWithManyThreads() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("vote");
+        RandomForest sequential = new RandomForest();
+        sequential.setTrees(20);
+        sequential.setThreads(1);
+        sequential.buildClassifier(dataset);
+        RandomForest parallel = new RandomForest();
+        parallel.setTrees(20);
+        parallel.setThreads(4);
+        parallel.buildClassifier(dataset);
+
+        assertThat(parallel.getOutOfBagError(),
+                is(sequential.getOutOfBagError()));
+        for (Instance instance : dataset.getElements()) {
+            assertThat(parallel.classifyInstance(instance),
+                    is(sequential.classifyInstance(instance)));
+        }
+    }
+
+    @Test
+    public void shouldEstimateTheErrorOutOfBag() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("iris");
+        RandomForest forest = new RandomForest();
+        forest.setTrees(50);
+        forest.buildClassifier(dataset);
+
+        assertThat(forest.getOutOfBagError(), greaterThan(0.0));
+        assertThat(forest.getOutOfBagError(), lessThan(0.1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectADatasetWithoutAttributes() throws Exception {
+        // the class is the only attribute
+        Attribute classAttribute = new Attribute("class", ValueType.Nominal);
+        Dataset dataset = new Dataset("classes",
+                new Attribute[] { classAttribute });
+        Set<Value> domain = new LinkedHashSet<Value>();
+        domain.add(new NominalValue("a"));
+        dataset.addAttributeDomain(classAttribute, domain);
+        List<Value> vector = new ArrayList<Value>();
+        vector.add(new NominalValue("a"));
+        dataset.addElement(new Instance(vector));
+
+        new RandomForest().buildClassifier(dataset);
+    }
+}
@@ -1,9 +1,19 @@
 package spaska.classifiers;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import spaska.classifiers.TwoLayerPerceptron.Optimizer;
+import spaska.data.Dataset;
+import spaska.data.Instance;
 import spaska.test.ClassifierTestBase;
+import spaska.test.DataSetResources;
 
 public class TwoLayerPerceptronTest extends ClassifierTestBase {
     private static final Logger LOG = LoggerFactory
@@ -25,4 +35,47 @@ public class TwoLayerPerceptronTest extends ClassifierTestBase {
     protected IClassifier getClassifier() {
         return new TwoLayerPerceptron();
     }
+
+    @Test
+    public void shouldLearnTheSameNetworkWithManyThreads() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("vote");
+        TwoLayerPerceptron sequential = new TwoLayerPerceptron();
+        sequential.setBatchSize(128);
+        sequential.setOptimizer(Optimizer.MOMENTUM);
+        sequential.setNumberOfEpochs(50);
+        sequential.buildClassifier(dataset);
+        TwoLayerPerceptron parallel = new TwoLayerPerceptron();
+        parallel.setBatchSize(128);
+        parallel.setOptimizer(Optimizer.MOMENTUM);
+        parallel.setNumberOfEpochs(50);
+        parallel.setThreads(4);
+        parallel.buildClassifier(dataset);
+
+        for (Instance instance : dataset.getElements()) {
+            assertThat(parallel.classifyInstance(instance),
+                    is(sequential.classifyInstance(instance)));
+        }
+    }
+
+    @Test
+    public void shouldStopWhenTheHeldOutErrorGoesUp() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("iris");
+        TwoLayerPerceptron perceptron = new TwoLayerPerceptron();
+        perceptron.setBatchSize(16);
+        perceptron.setOptimizer(Optimizer.ADAM);
+        perceptron.setLearningRate(0.01);
+        perceptron.setEarlyStopping(20);
+        perceptron.buildClassifier(dataset);
+
+        assertThat(perceptron.getTrainedEpochs(), greaterThan(20));
+        assertThat(perceptron.getTrainedEpochs(), lessThan(500));
+        int correct = 0;
+        for (Instance instance : dataset.getElements()) {
+            if (perceptron.classifyInstance(instance).equals(
+                    dataset.getClassValue(instance))) {
+                correct++;
+            }
+        }
+        assertThat(correct, greaterThan(135));
+    }
 }
@@ -1,5 +1,6 @@
 package spaska.classifiers.subpackage;
 
+import java.util.List;
 import java.util.Map;
 
 import spaska.classifiers.IClassifier;
@@ -28,6 +29,16 @@ public class DummyClassifierSubPackage implements IClassifier{
         return null;
     }
 
+    @Override
+    public List<Value> classifyBatch(List<Instance> instances) {
+        return null;
+    }
+
+    @Override
+    public List<Value> classifyAll(Dataset dataset) {
+        return null;
+    }
+
     @Override
     public String getName() {
         return null;
@@ -0,0 +1,106 @@
+package spaska.classifiers.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import spaska.data.Dataset;
+import spaska.data.DatasetView;
+import spaska.data.UnknownValue;
+import spaska.test.DataSetResources;
+
+public class BinnedColumnsTest {
+
+    private static Dataset getGlassWithUnknowns() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("glass");
+        // every seventh row misses a value
+        for (int i = 0; i < dataset.getElements().size(); i += 7) {
+            dataset.getElements().get(i).getVector()
+                    .set(i % 9, UnknownValue.getInstance());
+        }
+        return dataset;
+    }
+
+    @Test
+    public void shouldFindTheExactSplitsWithABinForEveryValue()
+            throws Exception {
+        Dataset dataset = getGlassWithUnknowns();
+        DatasetService service = new DatasetService(dataset);
+        DatasetView root = new DatasetView(dataset);
+        assertSameSplits(root, new SortedColumns(root, service),
+                new BinnedColumns(root, service, BinnedColumns.MAX_BINS),
+                service, 4);
+    }
+
+    @Test
+    public void shouldSubtractTheSiblingsLikeCounting() throws Exception {
+        Dataset dataset = getGlassWithUnknowns();
+        DatasetService service = new DatasetService(dataset);
+        DatasetView root = new DatasetView(dataset);
+        BinnedColumns columns = new BinnedColumns(root, service, 8);
+        double entropy = getEntropy(root, service);
+        NumericSplit split = columns.getBestNumeric(entropy);
+
+        List<int[]> positions = new ArrayList<int[]>();
+        List<DatasetView> children = Trees.distribute(root, Trees
+                .getNumericConditions(split.getAttributeIndex(),
+                        split.getSplitValue(), null, service), service,
+                positions);
+        // the smaller child is counted with its sibling, but subtracted from
+        // the root alone
+        int smaller = children.get(0).size() < children.get(1).size() ? 0 : 1;
+        NumericSplit counted = columns.split(positions).get(smaller)
+                .getBestNumeric(getEntropy(children.get(smaller), service));
+        NumericSplit subtracted = columns
+                .split(Collections.singletonList(positions.get(smaller)))
+                .get(0)
+                .getBestNumeric(getEntropy(children.get(smaller), service));
+
+        assertThat(subtracted.isEmpty(), is(false));
+        assertThat(subtracted.getAttributeIndex(),
+                is(counted.getAttributeIndex()));
+        assertThat(subtracted.getSplitValue(), is(counted.getSplitValue()));
+        assertThat(subtracted.getGainRatio(), is(counted.getGainRatio()));
+    }
+
+    private static double getEntropy(DatasetView view, DatasetService service) {
+        return new NominalInfoService(service, view.getElements(),
+                new boolean[service.numberOfAttributes()])
+                .getClassesEntropy();
+    }
+
+    private static void assertSameSplits(DatasetView view,
+            SplitFinder exact, SplitFinder binned, DatasetService service,
+            int depth) {
+        double entropy = getEntropy(view, service);
+        NumericSplit expected = exact.getBestNumeric(entropy);
+        NumericSplit actual = binned.getBestNumeric(entropy);
+        assertThat(actual.isEmpty(), is(expected.isEmpty()));
+        if (expected.isEmpty() || depth == 0) {
+            return;
+        }
+        assertThat(actual.getAttributeIndex(),
+                is(expected.getAttributeIndex()));
+        assertThat(actual.getSplitValue(), is(expected.getSplitValue()));
+        assertThat(actual.getGainRatio(), is(expected.getGainRatio()));
+
+        List<int[]> positions = new ArrayList<int[]>();
+        List<DatasetView> children = Trees.distribute(view, Trees
+                .getNumericConditions(expected.getAttributeIndex(),
+                        expected.getSplitValue(), null, service), service,
+                positions);
+        List<SplitFinder> exactChildren = exact.split(positions);
+        List<SplitFinder> binnedChildren = binned.split(positions);
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i).size() > 0) {
+                assertSameSplits(children.get(i), exactChildren.get(i),
+                        binnedChildren.get(i), service, depth - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package spaska.classifiers.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import spaska.data.Attribute.ValueType;
+import spaska.data.Dataset;
+import spaska.data.Instance;
+import spaska.data.UnknownValue;
+import spaska.data.Value;
+import spaska.test.DataSetResources;
+
+public class CompiledTreeTest {
+
+    // add the tests of an attribute to a node, every child is a leaf with
+    // one of the classes
+    private static void addTests(Node node, List<Condition> conditions,
+            DatasetService service) {
+        int k = 0;
+        for (Condition condition : conditions) {
+            condition.setEffect(service.getValueFromInt(service.classIndex(),
+                    k++ % service.numberOfClasses()));
+            node.addChild(new Node(condition));
+        }
+    }
+
+    // the old recursive classification over the nodes
+    private static Value classify(List<Value> vector, Node node,
+            DatasetService service) {
+        if (node.getValue() instanceof Condition
+                && ((Condition) node.getValue()).getEffect() != null) {
+            return ((Condition) node.getValue()).getEffect();
+        }
+        for (Node current : node.getChildren()) {
+            Condition c = (Condition) current.getValue();
+            Value aValue = vector.get(service.getAttributeIndex(c
+                    .getAttribute()));
+            if (aValue.getType() == ValueType.Unknown) {
+                return c.getMajorityClass();
+            }
+            if (c.ifTrue(aValue)) {
+                return classify(vector, current, service);
+            }
+        }
+        return null;
+    }
+
+    private static void assertSameClasses(Node root, Dataset dataset,
+            DatasetService service) {
+        CompiledTree compiled = new CompiledTree(root, service);
+        for (Instance instance : dataset.getElements()) {
+            assertThat(compiled.classify(instance.getVector()),
+                    is(classify(instance.getVector(), root, service)));
+        }
+    }
+
+    @Test
+    public void shouldClassifyLikeANumericTree() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("iris");
+        for (int i = 0; i < dataset.getElements().size(); i += 5) {
+            dataset.getElements().get(i).getVector()
+                    .set(i % 4, UnknownValue.getInstance());
+        }
+        DatasetService service = new DatasetService(dataset);
+        Value majority = service.getValueFromInt(service.classIndex(), 1);
+        Node root = new Node(new Object());
+        addTests(root, Trees.getNumericConditions(2, 2.45, majority, service),
+                service);
+        Node right = root.getChildren().get(1);
+        ((Condition) right.getValue()).setEffect(null);
+        addTests(right, Trees.getNumericConditions(3, 1.75, majority, service),
+                service);
+
+        assertThat(new CompiledTree(root, service).size(), is(5));
+        assertSameClasses(root, dataset, service);
+    }
+
+    @Test
+    public void shouldClassifyLikeANominalTree() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("soybean");
+        DatasetService service = new DatasetService(dataset);
+        Value majority = service.getValueFromInt(service.classIndex(), 0);
+        Node root = new Node(new Object());
+        addTests(root, Trees.getNominalConditions(0, majority, service),
+                service);
+        Node first = root.getChildren().get(0);
+        ((Condition) first.getValue()).setEffect(null);
+        addTests(first, Trees.getNominalConditions(1, null, service), service);
+
+        assertSameClasses(root, dataset, service);
+    }
+}
@@ -1,11 +1,15 @@
 package spaska.classifiers.util;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import org.junit.Test;
 
+import spaska.data.Dataset;
+import spaska.data.Instance;
 import spaska.data.NominalValue;
+import spaska.data.Value;
 import spaska.test.DataSetResources;
 
 public class DatasetServiceTest {
@@ -19,4 +23,33 @@ public class DatasetServiceTest {
         assertThat(nv.equals(nv1), is(true));
         assertThat(s.classIndex(), is(4));
     }
+
+    @Test
+    public void shouldMapCodesAndValuesBothWays() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("vote");
+        DatasetService s = new DatasetService(dataset);
+        for (int i = 0; i < s.numberOfAttributes(); i++) {
+            int code = 0;
+            for (Value value : s.getAttributeDomain(i)) {
+                assertThat(s.intValue(i, value), is(code));
+                assertThat(s.intValue(i, new NominalValue(value.toString())),
+                        is(code));
+                assertThat(s.getValueFromInt(i, code), is(value));
+                code++;
+            }
+            assertThat(s.getValueFromInt(i, code), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void shouldInternTheNominalValuesOfTheInstances() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("vote");
+        DatasetService s = new DatasetService(dataset);
+        int classIndex = s.classIndex();
+        for (Instance instance : dataset.getElements()) {
+            Value value = instance.getVector().get(classIndex);
+            assertThat(value == s.getValueFromInt(classIndex,
+                    s.intValue(classIndex, value)), is(true));
+        }
+    }
 }
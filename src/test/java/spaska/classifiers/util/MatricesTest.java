@@ -0,0 +1,82 @@
+package spaska.classifiers.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MatricesTest {
+
+    // bigger than a block in every direction and not a multiple of it
+    private static final int ROWS = 70;
+    private static final int INNER = 131;
+    private static final int COLUMNS = 67;
+
+    private static double[] random(int size, Random random) {
+        double[] result = new double[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = random.nextGaussian();
+        }
+        return result;
+    }
+
+    private static double[] naive(double[] a, double[] b, int rows, int inner,
+            int columns) {
+        double[] result = new double[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                double sum = 0;
+                for (int k = 0; k < inner; k++) {
+                    sum += a[i * inner + k] * b[k * columns + j];
+                }
+                result[i * columns + j] = sum;
+            }
+        }
+        return result;
+    }
+
+    private static double[] transpose(double[] a, int rows, int columns) {
+        double[] result = new double[rows * columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                result[j * rows + i] = a[i * columns + j];
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void shouldMultiplyLikeTheTripleLoop() {
+        Random random = new Random(1);
+        double[] a = random(ROWS * INNER, random);
+        double[] b = random(INNER * COLUMNS, random);
+        // the old values of the result do not matter
+        double[] c = random(ROWS * COLUMNS, random);
+        Matrices.multiply(a, b, c, ROWS, INNER, COLUMNS);
+        assertThat(c, is(naive(a, b, ROWS, INNER, COLUMNS)));
+    }
+
+    @Test
+    public void shouldMultiplyTheTransposedLeftMatrix() {
+        Random random = new Random(2);
+        double[] a = random(ROWS * INNER, random);
+        double[] b = random(INNER * COLUMNS, random);
+        double[] c = random(ROWS * COLUMNS, random);
+        Matrices.multiplyTransposedLeft(transpose(a, ROWS, INNER), b, c, ROWS,
+                INNER, COLUMNS);
+        assertThat(c, is(naive(a, b, ROWS, INNER, COLUMNS)));
+    }
+
+    @Test
+    public void shouldMultiplyTheTransposedRightMatrix() {
+        Random random = new Random(3);
+        double[] a = random(ROWS * INNER, random);
+        double[] b = random(INNER * COLUMNS, random);
+        double[] c = random(ROWS * COLUMNS, random);
+        Matrices.multiplyTransposedRight(a, transpose(b, INNER, COLUMNS), c,
+                ROWS, INNER, COLUMNS);
+        assertThat(c, is(naive(a, b, ROWS, INNER, COLUMNS)));
+    }
+}
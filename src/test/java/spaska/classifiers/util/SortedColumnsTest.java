@@ -0,0 +1,98 @@
+package spaska.classifiers.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import spaska.data.Dataset;
+import spaska.data.DatasetView;
+import spaska.data.Instance;
+import spaska.data.UnknownValue;
+import spaska.test.DataSetResources;
+
+public class SortedColumnsTest {
+
+    @Test
+    public void shouldFindTheSameSplitsAsSorting() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("glass");
+        // every seventh row misses a value
+        for (int i = 0; i < dataset.getElements().size(); i += 7) {
+            dataset.getElements().get(i).getVector()
+                    .set(i % 9, UnknownValue.getInstance());
+        }
+        DatasetService service = new DatasetService(dataset);
+        DatasetView root = new DatasetView(dataset);
+        assertSameSplits(root, new SortedColumns(root, service), service, 4);
+    }
+
+    // the best split with the instances sorted again for every attribute
+    private static NumericSplit getBestBySorting(List<Instance> list,
+            double classesEntropy, DatasetService service) {
+        List<NumericSplit> splits = new ArrayList<NumericSplit>();
+        for (int attributeIndex : service.getNumericIndices()) {
+            splits.add(new ContinuousValueService(service, list,
+                    attributeIndex, classesEntropy));
+        }
+        return SplitFinder.getBest(splits);
+    }
+
+    private static void assertSameSplits(DatasetView view,
+            SortedColumns columns, DatasetService service, int depth) {
+        double entropy = new NominalInfoService(service, view.getElements(),
+                new boolean[service.numberOfAttributes()])
+                .getClassesEntropy();
+        NumericSplit expected = getBestBySorting(view.getElements(), entropy,
+                service);
+        NumericSplit actual = columns.getBestNumeric(entropy);
+        assertThat(actual.isEmpty(), is(expected.isEmpty()));
+        if (expected.isEmpty() || depth == 0) {
+            return;
+        }
+        assertThat(actual.getAttributeIndex(),
+                is(expected.getAttributeIndex()));
+        assertThat(actual.getSplitValue(), is(expected.getSplitValue()));
+        assertThat(actual.getGainRatio(), is(expected.getGainRatio()));
+
+        List<int[]> positions = new ArrayList<int[]>();
+        List<DatasetView> children = Trees.distribute(view, Trees
+                .getNumericConditions(expected.getAttributeIndex(),
+                        expected.getSplitValue(), null, service), service,
+                positions);
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i).size() > 0) {
+                assertSameSplits(children.get(i),
+                        columns.select(positions.get(i)), service, depth - 1);
+            }
+        }
+    }
+
+    @Test
+    public void shouldGiveTheRowsToTheChildren() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("iris");
+        DatasetService service = new DatasetService(dataset);
+        DatasetView root = new DatasetView(dataset);
+        SortedColumns columns = new SortedColumns(root, service);
+        List<int[]> positions = new ArrayList<int[]>();
+        Trees.distribute(root, Trees.getNumericConditions(2, 2.5, null,
+                service), service, positions);
+        SortedColumns selected = columns.select(positions.get(1));
+
+        List<SplitFinder> children = columns.split(positions);
+
+        assertThat(((SortedColumns) children.get(1)).size(),
+                is(selected.size()));
+        assertThat(children.get(1).getSplit(0, 1).getSplitValue(),
+                is(selected.getSplit(0, 1).getSplitValue()));
+        try {
+            columns.getSplit(0, 1);
+            fail("A split node must not be searched.");
+        } catch (IllegalStateException e) {
+            // the rows are released
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package spaska.classifiers.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TaskPoolTest {
+
+    private static final class Sum implements Callable<Integer> {
+        private final TaskPool pool;
+        private final int from;
+        private final int to;
+
+        Sum(TaskPool pool, int from, int to) {
+            this.pool = pool;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Integer call() {
+            if (to - from <= 4) {
+                int sum = 0;
+                for (int i = from; i < to; i++) {
+                    sum += i;
+                }
+                return sum;
+            }
+            int middle = (from + to) / 2;
+            Future<Integer> left = pool.fork(new Sum(pool, from, middle));
+            Future<Integer> right = pool.fork(new Sum(pool, middle, to));
+            return pool.join(left) + pool.join(right);
+        }
+    }
+
+    @Test
+    public void shouldJoinNestedTasksWithAnyNumberOfThreads() {
+        for (int threads = 1; threads <= 3; threads++) {
+            TaskPool pool = new TaskPool(threads);
+            try {
+                assertThat(pool.join(pool.fork(new Sum(pool, 0, 1000))),
+                        is(499500));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
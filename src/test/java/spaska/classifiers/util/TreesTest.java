@@ -0,0 +1,41 @@
+package spaska.classifiers.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import spaska.data.Dataset;
+import spaska.data.DatasetView;
+import spaska.data.UnknownValue;
+import spaska.test.DataSetResources;
+
+public class TreesTest {
+
+    @Test
+    public void shouldRouteWithTheReachOfTheGrownConditions()
+            throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("iris");
+        for (int i = 0; i < 5; i++) {
+            dataset.getElements().get(i).getVector()
+                    .set(2, UnknownValue.getInstance());
+        }
+        DatasetService service = new DatasetService(dataset);
+        List<Condition> conditions = Trees.getNumericConditions(2, 2.5, null,
+                service);
+        Trees.distribute(new DatasetView(dataset), conditions, service);
+        double reach = conditions.get(0).getReach();
+
+        // none of the routed rows has a known value to learn a reach from
+        List<DatasetView> parts = Trees.route(new DatasetView(dataset,
+                new int[] { 0, 1, 2, 3, 4 }), conditions, service);
+
+        assertThat(conditions.get(0).getReach(), is(reach));
+        assertThat(parts.get(0).size(), is(5));
+        assertThat(parts.get(0).getWeight(0), is(reach));
+        assertThat(parts.get(1).getWeight(0),
+                is(conditions.get(1).getReach()));
+    }
+}
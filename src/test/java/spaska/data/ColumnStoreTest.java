@@ -0,0 +1,60 @@
+package spaska.data;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import spaska.test.DataSetResources;
+
+public class ColumnStoreTest {
+
+    @Test
+    public void shouldKeepTheValuesOfEveryInstance() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("soybean");
+        ColumnStore store = ColumnStore.of(dataset);
+        List<Instance> instances = dataset.getElements();
+        assertThat(store.getRowsCount(), is(instances.size()));
+        for (int row = 0; row < instances.size(); row++) {
+            assertThat(store.getRow(row), is(instances.get(row).getVector()));
+        }
+    }
+
+    @Test
+    public void shouldKeepTheValuesWhenCompacted() throws Exception {
+        Dataset expected = DataSetResources.getDataSet("iris");
+        Dataset compacted = DataSetResources.getDataSet("iris");
+        compacted.compact();
+        for (int i = 0; i < expected.getElements().size(); i++) {
+            assertThat(compacted.getElements().get(i).getVector(),
+                    is(expected.getElements().get(i).getVector()));
+        }
+    }
+
+    @Test
+    public void shouldWriteThroughTheRowView() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("iris");
+        dataset.compact();
+        List<Value> vector = dataset.getElements().get(0).getVector();
+        vector.set(0, new NumericValue(42));
+        vector.set(1, UnknownValue.getInstance());
+
+        ColumnStore store = dataset.getColumns();
+        assertThat(store.getNumericColumn(0)[0], is(42.0));
+        assertThat(store.isUnknown(0, 1), is(true));
+        assertThat(vector.get(1).getType(), is(Attribute.ValueType.Unknown));
+    }
+
+    @Test
+    public void shouldCodeNominalValuesInDomainOrder() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("vote");
+        ColumnStore store = dataset.getColumns();
+        int classIndex = dataset.getClassIndex();
+        int code = 0;
+        for (Value v : dataset.getAllClassNamesSet()) {
+            assertThat(store.getCode(classIndex, v), is(code++));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package spaska.data;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import spaska.test.DataSetResources;
+
+public class DatasetViewTest {
+
+    @Test
+    public void shouldReferToTheRowsOfTheUnderlyingDataset() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("iris");
+        Dataset subset = new DatasetView(dataset, new int[] { 10, 20, 30, 40 })
+                .toDataset();
+        DatasetView view = new DatasetView(subset, new int[] { 3, 1 });
+
+        assertThat(view.getDataset(), sameInstance(dataset));
+        assertThat(view.getRow(0), is(40));
+        assertThat(view.getRow(1), is(20));
+        assertThat(view.get(0), sameInstance(dataset.getElements().get(40)));
+        assertThat(subset.getAttributes(), is(dataset.getAttributes()));
+    }
+
+    @Test
+    public void shouldMergeViewsWithoutCopying() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("vote");
+        Dataset[] parts = new Dataset[] {
+                new DatasetView(dataset, new int[] { 5, 6 }).toDataset(),
+                new DatasetView(dataset, new int[] { 1 }).toDataset() };
+
+        Dataset merged = Dataset.merge(parts);
+
+        List<Instance> expected = new ArrayList<Instance>();
+        expected.add(dataset.getElements().get(5));
+        expected.add(dataset.getElements().get(6));
+        expected.add(dataset.getElements().get(1));
+        assertThat(merged.getElements(), is(expected));
+        assertThat(new DatasetView(merged).getDataset(), sameInstance(dataset));
+    }
+
+    @Test
+    public void shouldKeepTheWeightsOfTheSelectedRows() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("iris");
+        DatasetView view = new DatasetView(dataset).select(
+                new int[] { 7, 8 }, new double[] { 0.5, 0.25 });
+
+        assertThat(view.getWeight(1), is(0.25));
+        assertThat(view.select(new int[] { 1, 0 }).getWeight(0), is(0.25));
+        assertThat(view.select(new int[] { 1 }, null).getWeight(0),
+                is(dataset.getElements().get(8).getWeight()));
+    }
+}
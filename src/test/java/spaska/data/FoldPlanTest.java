@@ -0,0 +1,57 @@
+package spaska.data;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import spaska.test.DataSetResources;
+
+public class FoldPlanTest {
+
+    @Test
+    public void shouldSplitLikeTheSubDatasets() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("soybean");
+        FoldPlan plan = dataset.getFoldPlan(10, 7);
+        Dataset[] subsets = dataset.getSubDataSets(new int[10], 7);
+        for (int fold = 0; fold < 10; fold++) {
+            assertThat(plan.getTestSet(fold).getElements(),
+                    is(subsets[fold].getElements()));
+        }
+    }
+
+    @Test
+    public void shouldTrainOnTheOtherFoldsInOrder() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("iris");
+        FoldPlan plan = dataset.getFoldPlan(4, 1);
+        int rows = 0;
+        for (int fold = 0; fold < 4; fold++) {
+            List<Instance> expected = new ArrayList<Instance>();
+            for (int other = 0; other < 4; other++) {
+                if (other != fold) {
+                    expected.addAll(plan.getTestSet(other).getElements());
+                }
+            }
+            assertThat(plan.getTrainSet(fold).getElements(), is(expected));
+            rows += plan.getTestRows(fold).length;
+        }
+        assertThat(rows, is(dataset.getElements().size()));
+    }
+
+    @Test
+    public void shouldCacheThePlanUntilTheInstancesChange() throws Exception {
+        Dataset dataset = DataSetResources.getDataSet("iris");
+        FoldPlan plan = dataset.getFoldPlan(10, 1);
+        assertThat(dataset.getFoldPlan(10, 1), sameInstance(plan));
+        assertThat(dataset.getFoldPlan(10, 2), not(sameInstance(plan)));
+        assertThat(dataset.getFoldPlan(5, 1), not(sameInstance(plan)));
+
+        dataset.addElement(dataset.getElements().get(0));
+        assertThat(dataset.getFoldPlan(10, 1), not(sameInstance(plan)));
+    }
+}
@@ -0,0 +1,67 @@
+package spaska.data.readers;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import spaska.data.Dataset;
+import spaska.data.Instance;
+import spaska.data.SparseInstance;
+import spaska.test.DataSetResources;
+
+public class ARFFInstanceStreamTest {
+
+    private static File getFile(String name) throws Exception {
+        return new File(ARFFInstanceStreamTest.class.getResource(
+                "/data/" + name + ".arff").toURI());
+    }
+
+    @Test
+    public void shouldReadTheSameInstancesAsTheReaderInBatches()
+            throws Exception {
+        Dataset expected = DataSetResources.getDataSet("soybean");
+        ARFFInstanceStream stream = new ARFFInstanceStream(getFile("soybean"),
+                100);
+        List<Instance> streamed = new ArrayList<Instance>();
+        try {
+            assertThat(stream.getHeader().getAttributes(),
+                    is(expected.getAttributes()));
+            assertThat(stream.getHeader().getElements().isEmpty(), is(true));
+            while (stream.hasNext()) {
+                List<Instance> batch = stream.next();
+                assertThat(batch.size(), lessThanOrEqualTo(100));
+                streamed.addAll(batch);
+            }
+        } finally {
+            stream.close();
+        }
+        assertThat(streamed.size(), is(expected.getElements().size()));
+        for (int i = 0; i < streamed.size(); i++) {
+            assertThat(streamed.get(i).getVector(), is(expected.getElements()
+                    .get(i).getVector()));
+        }
+    }
+
+    @Test
+    public void shouldReadSparseRowsIntoSparseInstances() throws Exception {
+        Dataset expected = DataSetResources.getDataSet("sparse-dense");
+        Dataset sparse = DataSetResources.getDataSet("sparse");
+        assertThat(sparse.isSparse(), is(true));
+        assertThat(sparse.getElements().size(), is(expected.getElements()
+                .size()));
+        for (int i = 0; i < expected.getElements().size(); i++) {
+            SparseInstance instance = (SparseInstance) sparse.getElements()
+                    .get(i);
+            assertThat(instance.getVector(), is(expected.getElements().get(i)
+                    .getVector()));
+            assertThat(instance.getNonDefaultCount(),
+                    lessThanOrEqualTo(instance.getVector().size()));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package spaska.data.readers;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import spaska.data.Dataset;
+import spaska.test.DataSetResources;
+
+public class BinaryInputReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private void assertReadsBackTheSameDataset(String name) throws Exception {
+        Dataset expected = DataSetResources.getDataSet(name);
+        File file = folder.newFile(name + "." + BinaryInputReader.EXTENSION);
+        new BinaryDatasetWriter(file).write(expected);
+
+        Dataset read = new BinaryInputReader(file).buildDataset();
+        assertThat(read.getName(), is(expected.getName()));
+        assertThat(read.getAttributes(), is(expected.getAttributes()));
+        assertThat(read.getClassIndex(), is(expected.getClassIndex()));
+        for (int i = 0; i < expected.getAttributes().size(); i++) {
+            assertThat(read.getDomain(read.getAttributes().get(i)),
+                    is(expected.getDomain(expected.getAttributes().get(i))));
+        }
+        assertThat(read.getElements().size(), is(expected.getElements()
+                .size()));
+        for (int i = 0; i < expected.getElements().size(); i++) {
+            assertThat(read.getElements().get(i).getVector(), is(expected
+                    .getElements().get(i).getVector()));
+        }
+    }
+
+    @Test
+    public void shouldReadBackNominalDatasets() throws Exception {
+        assertReadsBackTheSameDataset("soybean");
+        assertReadsBackTheSameDataset("vote");
+    }
+
+    @Test
+    public void shouldReadBackNumericDatasets() throws Exception {
+        assertReadsBackTheSameDataset("iris");
+        assertReadsBackTheSameDataset("glass");
+    }
+}
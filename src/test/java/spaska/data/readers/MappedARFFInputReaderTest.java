@@ -0,0 +1,61 @@
+package spaska.data.readers;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import spaska.data.Dataset;
+import spaska.test.DataSetResources;
+
+public class MappedARFFInputReaderTest {
+
+    private static File getFile(String name) throws Exception {
+        return new File(MappedARFFInputReaderTest.class.getResource(
+                "/data/" + name + ".arff").toURI());
+    }
+
+    private static void assertSameAsReader(String name) throws Exception {
+        assertSameAsReader(name, new MappedARFFInputReader(getFile(name)));
+    }
+
+    private static void assertSameAsReader(String name,
+            MappedARFFInputReader reader) throws Exception {
+        Dataset expected = DataSetResources.getDataSet(name);
+        Dataset mapped = reader.buildDataset();
+        assertThat(mapped.getName(), is(expected.getName()));
+        assertThat(mapped.getAttributes(), is(expected.getAttributes()));
+        assertThat(mapped.getClassIndex(), is(expected.getClassIndex()));
+        assertThat(mapped.getElements().size(), is(expected.getElements()
+                .size()));
+        for (int i = 0; i < expected.getElements().size(); i++) {
+            assertThat(mapped.getElements().get(i).getVector(), is(expected
+                    .getElements().get(i).getVector()));
+        }
+    }
+
+    @Test
+    public void shouldReadNominalDatasetsLikeTheReader() throws Exception {
+        assertSameAsReader("soybean");
+        assertSameAsReader("vote");
+    }
+
+    @Test
+    public void shouldReadNumericDatasetsLikeTheReader() throws Exception {
+        assertSameAsReader("iris");
+        assertSameAsReader("glass");
+    }
+
+    @Test
+    public void shouldReadTheSameRowsInParallel() throws Exception {
+        for (String name : new String[] { "soybean", "iris" }) {
+            MappedARFFInputReader reader = new MappedARFFInputReader(
+                    getFile(name));
+            reader.setThreads(4);
+            reader.setMinChunkSize(64);
+            assertSameAsReader(name, reader);
+        }
+    }
+}
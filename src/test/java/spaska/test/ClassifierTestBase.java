@@ -1,10 +1,13 @@
 package spaska.test;
 
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.junit.Assert.assertThat;
 
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Assume;
@@ -12,6 +15,9 @@ import org.junit.Test;
 import org.slf4j.Logger;
 
 import spaska.classifiers.IClassifier;
+import spaska.data.Dataset;
+import spaska.data.Instance;
+import spaska.data.Value;
 import spaska.statistics.ClassifierStatistics;
 import spaska.test.ClassifierTestBase.TestDescriptor.DatasetRule;
 
@@ -100,6 +106,30 @@ public abstract class ClassifierTestBase {
         shouldGiveGoodResultsOnDataSet("glass");
     }
 
+    @Test
+    public void shouldClassifyBatchesLikeSingleInstances() throws Exception {
+        for (String name : new String[] { "iris", "vote", "soybean" }) {
+            if (getDescriptor().getRule(name) == null) {
+                continue;
+            }
+            Dataset dataset = DataSetResources.getDataSet(name);
+            IClassifier classifier = getClassifier();
+            classifier.buildClassifier(dataset);
+            // repeat the instances, so the batch is split in many chunks
+            List<Instance> batch = new ArrayList<Instance>();
+            for (int i = 0; i < 8; i++) {
+                batch.addAll(dataset.getElements());
+            }
+            List<Value> expected = new ArrayList<Value>();
+            for (Instance instance : batch) {
+                expected.add(classifier.classifyInstance(instance));
+            }
+            assertThat(name, classifier.classifyBatch(batch), is(expected));
+            assertThat(name, classifier.classifyAll(dataset),
+                    is(expected.subList(0, dataset.getElements().size())));
+        }
+    }
+
     /**
      * This constant is used to report if there is a big difference between the
      * results we are stating and the one we are getting. Most of the time we